@@ -0,0 +1,39 @@
+package com.ashwin.fri.flight;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event that spans a single decision of a PacManAi, split into the
+ * time that its sensor took to extract the features and the time that its net took
+ * to choose a direction. The event is disabled unless a recording enables it (see
+ * pacman.jfc).
+ *
+ * @author ashwin
+ */
+@Name("com.ashwin.fri.Decision")
+@Label("Decision")
+@Category({ "PacMan", "Actor" })
+@Description("Direction chosen by the neural net of PacMan")
+@Enabled(false)
+class DecisionEvent extends Event {
+
+	@Label("Sensor Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long sensor;
+
+	@Label("Inference Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long inference;
+
+	@Label("Features")
+	int features;
+
+	@Label("Orientation")
+	String orientation;
+}
@@ -0,0 +1,41 @@
+package com.ashwin.fri.flight;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event that spans the game that a phenotype plays in a single
+ * episode of a PacManDecoder. The event is disabled unless a recording enables it
+ * (see pacman.jfc).
+ *
+ * @author ashwin
+ */
+@Name("com.ashwin.fri.Evaluation")
+@Label("Evaluation")
+@Category({ "PacMan", "Genetic" })
+@Description("Game played to evaluate a chromosome")
+@Enabled(false)
+class EvaluationEvent extends Event {
+
+	@Label("Episode")
+	int episode;
+
+	@Label("Seed")
+	long seed;
+
+	@Label("Ticks")
+	int ticks;
+
+	@Label("Score")
+	int score;
+
+	@Label("Termination")
+	String termination;
+
+	@Label("Fitness")
+	double fitness;
+}
@@ -0,0 +1,126 @@
+package com.ashwin.fri.flight;
+
+/**
+ * Flight records the events of the game and the genetic algorithm with the flight
+ * recorder. The flight recorder (the jdk.jfr module) is optional, so the simulation,
+ * neural and genetic packages only record events through Flight, which does not
+ * depend on it. If jdk.jfr is not present in the runtime image, then the events are
+ * never loaded and nothing is recorded.
+ *
+ * An event is begun by one of the begin methods, which returns null unless the
+ * event is enabled by a recording (see pacman.jfc). An event that is not null is
+ * then passed to its commit method, which records it if it exceeds its threshold.
+ * The commit methods ignore events that are null.
+ *
+ * @author ashwin
+ */
+public final class Flight {
+
+	/** The maximum number of ticks of a game that are recorded in a single event. */
+	public static final int TICK_BATCH = 256;
+
+	private static final boolean PRESENT = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+	private Flight() {}
+
+	/** @return whether the flight recorder is present in the runtime image */
+	public static boolean isPresent() {
+		return PRESENT;
+	}
+
+	/** @return a batch of ticks of a headless game or null if they are not recorded */
+	public static Object beginTicks() {
+		return PRESENT ? FlightEvents.beginTicks() : null;
+	}
+
+	/**
+	 * Records a batch of ticks.
+	 *
+	 * @param event event returned by beginTicks
+	 * @param first first tick of the batch
+	 * @param ticks number of ticks in the batch
+	 * @param termination reason that the game ended during the batch or null
+	 */
+	public static void commitTicks(Object event, int first, int ticks, String termination) {
+		if(event != null)
+			FlightEvents.commitTicks(event, first, ticks, termination);
+	}
+
+	/** @return a decision of PacMan or null if decisions are not recorded */
+	public static Object beginDecision() {
+		return PRESENT ? FlightEvents.beginDecision() : null;
+	}
+
+	/**
+	 * Records a decision.
+	 *
+	 * @param event event returned by beginDecision
+	 * @param sensor nanoseconds that the sensor took to extract the features
+	 * @param inference nanoseconds that the net took to choose a direction
+	 * @param features number of features
+	 * @param orientation chosen direction
+	 */
+	public static void commitDecision(Object event, long sensor, long inference, int features, String orientation) {
+		if(event != null)
+			FlightEvents.commitDecision(event, sensor, inference, features, orientation);
+	}
+
+	/** @return a search for the nearest terrain or null if searches are not recorded */
+	public static Object beginNearest() {
+		return PRESENT ? FlightEvents.beginNearest() : null;
+	}
+
+	/**
+	 * Records a search for the nearest terrain.
+	 *
+	 * @param event event returned by beginNearest
+	 * @param terrain terrain that was searched for
+	 * @param visited number of tiles that were visited
+	 * @param found whether the terrain was found
+	 */
+	public static void commitNearest(Object event, String terrain, int visited, boolean found) {
+		if(event != null)
+			FlightEvents.commitNearest(event, terrain, visited, found);
+	}
+
+	/** @return an evaluation of a phenotype or null if evaluations are not recorded */
+	public static Object beginEvaluation() {
+		return PRESENT ? FlightEvents.beginEvaluation() : null;
+	}
+
+	/**
+	 * Records the game that a phenotype played in an episode.
+	 *
+	 * @param event event returned by beginEvaluation
+	 * @param episode episode
+	 * @param seed seed of the game
+	 * @param ticks length of the game
+	 * @param score points of PacMan
+	 * @param termination reason that the game ended
+	 * @param fitness fitness of the phenotype in the episode
+	 */
+	public static void commitEvaluation(Object event, int episode, long seed, int ticks, int score,
+			String termination, double fitness) {
+		if(event != null)
+			FlightEvents.commitEvaluation(event, episode, seed, ticks, score, termination, fitness);
+	}
+
+	/** @return a generation of the genetic algorithm or null if generations are not recorded */
+	public static Object beginGeneration() {
+		return PRESENT ? FlightEvents.beginGeneration() : null;
+	}
+
+	/**
+	 * Records a generation that has been evaluated.
+	 *
+	 * @param event event returned by beginGeneration
+	 * @param generation generation
+	 * @param best fitness of the best chromosome
+	 * @param average average fitness
+	 * @param evaluations number of evaluations in the generation
+	 */
+	public static void commitGeneration(Object event, int generation, double best, double average, long evaluations) {
+		if(event != null)
+			FlightEvents.commitGeneration(event, generation, best, average, evaluations);
+	}
+}
@@ -0,0 +1,113 @@
+package com.ashwin.fri.flight;
+
+/**
+ * FlightEvents creates and commits the flight recorder events. It is the only class
+ * outside of the events that depends on jdk.jfr, and it is only loaded by Flight
+ * when jdk.jfr is present.
+ *
+ * @author ashwin
+ */
+final class FlightEvents {
+
+	private FlightEvents() {}
+
+	static Object beginTicks() {
+		TickBatchEvent event = new TickBatchEvent();
+		if(!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	}
+
+	static void commitTicks(Object obj, int first, int ticks, String termination) {
+		TickBatchEvent event = (TickBatchEvent) obj;
+		event.end();
+		if(event.shouldCommit()) {
+			event.first = first;
+			event.ticks = ticks;
+			event.termination = termination;
+			event.commit();
+		}
+	}
+
+	static Object beginDecision() {
+		DecisionEvent event = new DecisionEvent();
+		if(!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	}
+
+	static void commitDecision(Object obj, long sensor, long inference, int features, String orientation) {
+		DecisionEvent event = (DecisionEvent) obj;
+		event.end();
+		if(event.shouldCommit()) {
+			event.sensor = sensor;
+			event.inference = inference;
+			event.features = features;
+			event.orientation = orientation;
+			event.commit();
+		}
+	}
+
+	static Object beginNearest() {
+		NearestEvent event = new NearestEvent();
+		if(!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	}
+
+	static void commitNearest(Object obj, String terrain, int visited, boolean found) {
+		NearestEvent event = (NearestEvent) obj;
+		event.end();
+		if(event.shouldCommit()) {
+			event.terrain = terrain;
+			event.visited = visited;
+			event.found = found;
+			event.commit();
+		}
+	}
+
+	static Object beginEvaluation() {
+		EvaluationEvent event = new EvaluationEvent();
+		if(!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	}
+
+	static void commitEvaluation(Object obj, int episode, long seed, int ticks, int score, String termination, double fitness) {
+		EvaluationEvent event = (EvaluationEvent) obj;
+		event.end();
+		if(event.shouldCommit()) {
+			event.episode = episode;
+			event.seed = seed;
+			event.ticks = ticks;
+			event.score = score;
+			event.termination = termination;
+			event.fitness = fitness;
+			event.commit();
+		}
+	}
+
+	static Object beginGeneration() {
+		GenerationEvent event = new GenerationEvent();
+		if(!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	}
+
+	static void commitGeneration(Object obj, int generation, double best, double average, long evaluations) {
+		GenerationEvent event = (GenerationEvent) obj;
+		event.end();
+		if(event.shouldCommit()) {
+			event.generation = generation;
+			event.best = best;
+			event.average = average;
+			event.evaluations = evaluations;
+			event.commit();
+		}
+	}
+}
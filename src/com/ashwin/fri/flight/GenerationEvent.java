@@ -0,0 +1,35 @@
+package com.ashwin.fri.flight;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event that spans a generation of the genetic algorithm, from
+ * the start of breeding until every chromosome has been evaluated. The event is
+ * disabled unless a recording enables it (see pacman.jfc).
+ *
+ * @author ashwin
+ */
+@Name("com.ashwin.fri.Generation")
+@Label("Generation")
+@Category({ "PacMan", "Genetic" })
+@Description("Generation of the genetic algorithm")
+@Enabled(false)
+class GenerationEvent extends Event {
+
+	@Label("Generation")
+	int generation;
+
+	@Label("Best Fitness")
+	double best;
+
+	@Label("Average Fitness")
+	double average;
+
+	@Label("Evaluations")
+	long evaluations;
+}
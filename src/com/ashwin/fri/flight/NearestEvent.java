@@ -0,0 +1,31 @@
+package com.ashwin.fri.flight;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event that spans a breadth first search of Grid.getNearest. The
+ * event is disabled unless a recording enables it (see pacman.jfc).
+ *
+ * @author ashwin
+ */
+@Name("com.ashwin.fri.Nearest")
+@Label("Nearest Terrain")
+@Category({ "PacMan", "Grid" })
+@Description("Search for the nearest tile of a terrain")
+@Enabled(false)
+class NearestEvent extends Event {
+
+	@Label("Terrain")
+	String terrain;
+
+	@Label("Visited Tiles")
+	int visited;
+
+	@Label("Found")
+	boolean found;
+}
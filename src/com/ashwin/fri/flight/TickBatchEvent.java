@@ -0,0 +1,34 @@
+package com.ashwin.fri.flight;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event that spans a batch of consecutive ticks of a game that is
+ * run headlessly (see Game.run). Games are timed in batches of Flight.TICK_BATCH
+ * ticks, because a single tick takes a few microseconds. The event is disabled
+ * unless a recording enables it (see pacman.jfc).
+ *
+ * @author ashwin
+ */
+@Name("com.ashwin.fri.TickBatch")
+@Label("Tick Batch")
+@Category({ "PacMan", "Game" })
+@Description("Consecutive ticks of a headless game")
+@Enabled(false)
+class TickBatchEvent extends Event {
+
+	@Label("First Tick")
+	int first;
+
+	@Label("Ticks")
+	int ticks;
+
+	@Label("Termination")
+	@Description("Reason that the game ended during the batch, if it did")
+	String termination;
+}
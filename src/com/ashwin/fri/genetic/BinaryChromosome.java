@@ -0,0 +1,119 @@
+package com.ashwin.fri.genetic;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * A BinaryChromosome stores its genome as a bit array, packed 64 bits to a word
+ * (bit i is bit i % 64 of word i / 64). Every gene is encoded as a fixed number of
+ * bits (see GeneticGene), so the phenotype must be decoded from the genome whenever
+ * the chromosome is evaluated. Chromosomes are mated using single-point crossover
+ * and mutated by flipping bits.
+ *
+ * @author ashwin
+ */
+public class BinaryChromosome extends GeneticChromosome {
+
+	// Chromosomes are stored in their decoded state as a packed bit array. The
+	// unused bits of the last word are always zero.
+	private long[] _genome;
+	private int _bits;
+
+	/**
+	 * Creates a new BinaryChromosome with the specified number of
+	 * randomized bits. This constructor is used to generate the initial
+	 * population.
+	 *
+	 * @param bits number of bits
+	 * @param random random stream
+	 */
+	public BinaryChromosome(GeneticDecoder decoder, int bits, RandomStream random) {
+		super(decoder);
+		_bits = bits;
+		_genome = new long[(bits + 63) >>> 6];
+		for(int i = 0; i < bits; i++)
+			if(random.nextDouble() < 0.5)
+				_genome[i >>> 6] |= 1L << i;
+	}
+
+	/**
+	 * Creates a new BinaryChromosome from a specified packed bit array.
+	 *
+	 * @param genome packed bit array
+	 * @param bits number of bits
+	 */
+	public BinaryChromosome(GeneticDecoder decoder, long[] genome, int bits) {
+		super(decoder);
+		_genome = genome;
+		_bits = bits;
+	}
+
+	/** Returns the underlying packed bit array. The returned array must not be modified. */
+	long[] getGenome() {
+		return _genome;
+	}
+
+	/** @return number of bits in the genome */
+	public int getBits() {
+		return _bits;
+	}
+
+	@Override
+	public double[] getPhenotype() {
+		return _decoder.getPhenotype(getGenotype());
+	}
+
+	/**
+	 * Returns a bit string representation (true = '1' and false = '0')
+	 * of the underlying bit array.
+	 *
+	 * @return bit string
+	 */
+	@Override
+	public String getGenotype() {
+		StringBuilder sb = new StringBuilder(_bits);
+		for(int i = 0; i < _bits; i++)
+			sb.append((_genome[i >>> 6] & (1L << i)) != 0 ? '1' : '0');
+		return sb.toString();
+	}
+
+	@Override
+	public GeneticChromosome copy() {
+		return new BinaryChromosome(_decoder, _genome.clone(), _bits);
+	}
+
+	/** Mates the chromosomes using single-point crossover. */
+	@Override
+	public GeneticChromosome[] mate(GeneticChromosome othr, double rate, RandomStream random) {
+		long[] g1 = this._genome;
+		long[] g2 = ((BinaryChromosome) othr)._genome;
+		long[] c1 = g1.clone();
+		long[] c2 = g2.clone();
+
+		// The offspring exchange every bit before the crossover point: whole words,
+		// and then the low bits of the word that contains the point.
+		if(random.nextDouble() <= rate) {
+			int index = random.nextInt(_bits);
+			int word = index >>> 6;
+			System.arraycopy(g1, 0, c2, 0, word);
+			System.arraycopy(g2, 0, c1, 0, word);
+
+			long mask = (1L << index) - 1;
+			if((index & 63) != 0) {
+				c1[word] = (g2[word] & mask) | (g1[word] & ~mask);
+				c2[word] = (g1[word] & mask) | (g2[word] & ~mask);
+			}
+		}
+
+		return new GeneticChromosome[] { new BinaryChromosome(_decoder, c1, _bits),
+				 						 new BinaryChromosome(_decoder, c2, _bits) };
+	}
+
+	/** Flips each bit of the genome with the specified probability. */
+	@Override
+	public void mutate(double rate, RandomStream random) {
+		for(int i = 0; i < _bits; i++)
+			if(random.nextDouble() <= rate)
+				_genome[i >>> 6] ^= 1L << i;
+		invalidate();
+	}
+}
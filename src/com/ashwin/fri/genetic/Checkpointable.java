@@ -0,0 +1,23 @@
+package com.ashwin.fri.genetic;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * An optimizer whose state can be written to a checkpoint, from which a later run
+ * resumes (see GeneticAlgorithm, CmaEvolutionStrategy, EvolutionStrategy and
+ * PopulationBasedTraining).
+ *
+ * @author ashwin
+ */
+public interface Checkpointable {
+
+	/**
+	 * Writes the state of the optimizer to the specified file. This is only called
+	 * between generations.
+	 *
+	 * @param file checkpoint file
+	 * @throws IOException write error
+	 */
+	void save(File file) throws IOException;
+}
@@ -0,0 +1,589 @@
+package com.ashwin.fri.genetic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Properties;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * The CmaEvolutionStrategy is an alternative to the GeneticAlgorithm for decoders
+ * whose genes are continuous (like the weights of a neural net). It samples lambda
+ * candidates per generation from a multivariate normal distribution, and then
+ * moves the mean of the distribution towards the best candidates and adapts the
+ * covariance of the distribution (and its step size) to the shape of the fitness
+ * landscape (Hansen, "The CMA Evolution Strategy: A Tutorial").
+ *
+ * Every generation is evaluated by a GeneticEvaluator, so candidates are evaluated
+ * in parallel or on remote workers with the same fitness contract as the genetic
+ * algorithm. The search runs in coordinates that are normalized to the bounds of
+ * each gene, but candidates are not restricted to those bounds.
+ *
+ * For large genomes, the diagonal (separable) variant only adapts the variance of
+ * each gene and takes linear time and memory per candidate. If the search stalls,
+ * it is restarted from a new random mean with twice as many candidates (IPOP). The
+ * state of the search can be checkpointed after every generation and resumed.
+ *
+ * @author ashwin
+ */
+public class CmaEvolutionStrategy implements Checkpointable {
+
+	static final int MAGIC = 0x434D4145;	// "CMAE"
+	static final int VERSION = 2;
+
+	/**
+	 * Runs the evolution strategy with the specified decoder and properties for
+	 * ga.maxgen generations and returns the best chromosome that was evaluated.
+	 * Progress is printed and streamed to ga.metrics.file exactly like the genetic
+	 * algorithm. If the cma.checkpoint property is set, then the state of the search
+	 * is written to it after every generation, and an existing checkpoint is resumed.
+	 *
+	 * @param decoder genetic decoder implementation (fitness calculator)
+	 * @param props algorithm properties
+	 * @return most optimal chromosome
+	 * @throws IOException metrics or checkpoint file cannot be read or written
+	 */
+	public static GeneticChromosome run(GeneticDecoder decoder, Properties props) throws IOException {
+		GeneticMetrics metrics = decoder.getMetrics();
+		MetricsSink sink = MetricsSink.open(props.getProperty("ga.metrics.file"));
+		boolean genotype = Boolean.valueOf(props.getProperty("ga.print.genotype", "false"));
+		int maxGen = Integer.valueOf(props.getProperty("ga.maxgen").trim());
+		String checkpoint = props.getProperty("cma.checkpoint", "").trim();
+		File file = checkpoint.isEmpty() ? null : new File(checkpoint);
+
+		RandomStream random = GeneticAlgorithm.getRandom(props);
+		CmaEvolutionStrategy cma = new CmaEvolutionStrategy(decoder, props, random.split());
+		GeneticEvaluator evaluator = GeneticEvaluator.create(decoder, props, random.split());
+		cma._seeds = evaluator.getRandom();
+		if(file != null && file.exists())
+			cma.load(file);
+
+		GeneticMonitor monitor = GeneticMonitor.register(props, decoder, evaluator, cma);
+		GeneticAlgorithm.printHeader(genotype);
+		while(cma._gen <= maxGen) {
+			metrics.begin();
+			GeneticPopulation pop = cma.step(evaluator);
+			Map<String, Object> row = metrics.end(cma._gen, pop);
+			GeneticAlgorithm.printGen(cma._gen, pop, row, genotype, sink);
+			decoder.generationEvaluated(cma._gen, pop.getBestChromosome());
+
+			cma._gen++;
+			if(file != null)
+				cma.save(file);
+			monitor.generationEvaluated(cma._gen - 1, pop.getBestChromosome(), row);
+		}
+
+		monitor.unregister();
+		evaluator.shutdown();
+		if(sink != null)
+			sink.close();
+		return cma.getBestChromosome();
+	}
+
+	private GeneticDecoder _decoder;
+	private RandomStream _random;
+
+	// The stream that the evaluator of a run draws the seeds of games from, which is
+	// checkpointed along with the search (see run)
+	private RandomStream _seeds;
+	private int _n;
+	private double[] _lower, _range;
+
+	// Parameters of the search that do not change between restarts
+	private boolean _diagonal;
+	private double _sigma0;
+	private int _maxRestarts, _maxStall;
+
+	// Parameters of the current restart (see restart)
+	private int _lambda, _mu;
+	private double[] _weights;
+	private double _mueff, _cc, _cs, _c1, _cmu, _damps, _chiN;
+	private int _eigenInterval;
+
+	// State of the distribution. The covariance matrix is C = B * diag(D^2) * B', and
+	// B is null for the diagonal variant.
+	private double[] _mean, _pc, _ps, _diag, _d;
+	private double[][] _c, _b;
+	private double _sigma;
+
+	private int _gen, _restarts, _restartGen, _eigenGen, _stall;
+	private double _restartBest;
+	private double[] _best;
+	private double _bestFitness;
+
+	/**
+	 * Creates a search using the cma.sigma, cma.lambda, cma.diagonal, cma.restarts and
+	 * cma.stall properties.
+	 *
+	 * @param decoder genetic decoder implementation
+	 * @param props algorithm properties
+	 */
+	public CmaEvolutionStrategy(GeneticDecoder decoder, Properties props) {
+		this(decoder, props, new RandomStream(System.nanoTime()));
+	}
+
+	/**
+	 * Creates a search like CmaEvolutionStrategy(decoder, props) that samples its
+	 * candidates from the specified stream.
+	 *
+	 * @param decoder genetic decoder implementation
+	 * @param props algorithm properties
+	 * @param random random stream
+	 */
+	public CmaEvolutionStrategy(GeneticDecoder decoder, Properties props, RandomStream random) {
+		_decoder = decoder;
+		_random = random;
+		_n = decoder._genes.length;
+		_lower = new double[_n];
+		_range = new double[_n];
+		for(int i = 0; i < _n; i++) {
+			_lower[i] = decoder._genes[i].getLowerBound();
+			_range[i] = decoder._genes[i].getUpperBound() - _lower[i];
+		}
+
+		_diagonal = Boolean.valueOf(props.getProperty("cma.diagonal", "false").trim());
+		_sigma0 = Double.valueOf(props.getProperty("cma.sigma", "0.3").trim());
+		_maxRestarts = Integer.valueOf(props.getProperty("cma.restarts", "4").trim());
+		_maxStall = Integer.valueOf(props.getProperty("cma.stall", "50").trim());
+		_bestFitness = Double.MAX_VALUE;
+
+		int lambda = Integer.valueOf(props.getProperty("cma.lambda", "0").trim());
+		restart((lambda > 0) ? lambda : 4 + (int) (3 * Math.log(_n)));
+
+		// Only the first search starts from the initial phenotype of the decoder, so
+		// restarts still explore other regions of the search space.
+		double[] initial = decoder.getInitialPhenotype();
+		if(initial != null)
+			for(int i = 0; i < _n; i++)
+				_mean[i] = Math.max(0.0, Math.min(1.0, (initial[i] - _lower[i]) / _range[i]));
+	}
+
+	/**
+	 * Restarts the search from a random mean with the specified number of candidates
+	 * per generation and recomputes every parameter that depends on it.
+	 */
+	private void restart(int lambda) {
+		configure(lambda);
+
+		int n = _n;
+		_mean = new double[n];
+		for(int i = 0; i < n; i++)
+			_mean[i] = _random.nextDouble();
+		_pc = new double[n];
+		_ps = new double[n];
+		_d = new double[n];
+		Arrays.fill(_d, 1.0);
+		if(_diagonal) {
+			_diag = new double[n];
+			Arrays.fill(_diag, 1.0);
+		} else {
+			_c = new double[n][n];
+			_b = new double[n][n];
+			for(int i = 0; i < n; i++)
+				_c[i][i] = _b[i][i] = 1.0;
+		}
+
+		_sigma = _sigma0;
+		_restartGen = 0;
+		_eigenGen = 0;
+		_stall = 0;
+		_restartBest = Double.MAX_VALUE;
+	}
+
+	/**
+	 * Computes every parameter that depends on the number of candidates per
+	 * generation. Unlike restart, this does not draw from the stream, so a checkpoint
+	 * can be loaded without changing the candidates that are sampled next.
+	 */
+	private void configure(int lambda) {
+		_lambda = Math.max(2, lambda);
+		_mu = _lambda / 2;
+		_weights = new double[_mu];
+		double sum = 0.0, sumSq = 0.0;
+		for(int i = 0; i < _mu; i++) {
+			_weights[i] = Math.log(_mu + 0.5) - Math.log(i + 1);
+			sum += _weights[i];
+		}
+		for(int i = 0; i < _mu; i++) {
+			_weights[i] /= sum;
+			sumSq += _weights[i] * _weights[i];
+		}
+		_mueff = 1.0 / sumSq;
+
+		int n = _n;
+		_cc = (4.0 + _mueff / n) / (n + 4.0 + 2.0 * _mueff / n);
+		_cs = (_mueff + 2.0) / (n + _mueff + 5.0);
+		_c1 = 2.0 / ((n + 1.3) * (n + 1.3) + _mueff);
+		_cmu = Math.min(1.0 - _c1, 2.0 * (_mueff - 2.0 + 1.0 / _mueff) / ((n + 2.0) * (n + 2.0) + _mueff));
+		if(_diagonal) {
+			// The diagonal variant learns n parameters instead of n^2, so it may learn
+			// them faster (Ros and Hansen, 2008).
+			_c1 = Math.min(1.0, _c1 * (n + 2.0) / 3.0);
+			_cmu = Math.min(1.0 - _c1, _cmu * (n + 2.0) / 3.0);
+		}
+		_damps = 1.0 + 2.0 * Math.max(0.0, Math.sqrt((_mueff - 1.0) / (n + 1.0)) - 1.0) + _cs;
+		_chiN = Math.sqrt(n) * (1.0 - 1.0 / (4.0 * n) + 1.0 / (21.0 * n * n));
+		_eigenInterval = Math.max(1, (int) (_lambda / (_c1 + _cmu) / n / 10.0));
+	}
+
+	/**
+	 * Samples and evaluates a single generation and then updates the distribution.
+	 *
+	 * @param evaluator evaluator of the candidates
+	 * @return evaluated generation
+	 */
+	GeneticPopulation step(GeneticEvaluator evaluator) {
+		int n = _n;
+		double[][] y = new double[_lambda][n];
+		final GeneticChromosome[] candidates = new GeneticChromosome[_lambda];
+		double[] z = new double[n];
+
+		for(int k = 0; k < _lambda; k++) {
+			for(int i = 0; i < n; i++)
+				z[i] = _d[i] * _random.nextGaussian();
+			if(_diagonal)
+				System.arraycopy(z, 0, y[k], 0, n);
+			else
+				multiply(_b, z, y[k]);
+
+			double[] phenotype = new double[n];
+			for(int i = 0; i < n; i++)
+				phenotype[i] = _lower[i] + _range[i] * (_mean[i] + _sigma * y[k][i]);
+			candidates[k] = new RealChromosome(_decoder, phenotype);
+		}
+
+		// The population evaluates and reorders its own copy of the candidates
+		GeneticPopulation pop = new GeneticPopulation(evaluator, candidates.clone());
+		Integer[] order = new Integer[_lambda];
+		for(int k = 0; k < _lambda; k++)
+			order[k] = k;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(candidates[a].getFitness(), candidates[b].getFitness());
+			}
+		});
+
+		GeneticChromosome best = candidates[order[0]];
+		if(best.getFitness() < _bestFitness) {
+			_bestFitness = best.getFitness();
+			_best = best.getPhenotype().clone();
+		}
+
+		update(y, order);
+
+		// Restart the search if it stalled or if the distribution has degenerated
+		if(best.getFitness() < _restartBest) {
+			_restartBest = best.getFitness();
+			_stall = 0;
+		} else {
+			_stall++;
+		}
+
+		double maxD = 0.0, minD = Double.MAX_VALUE;
+		for(int i = 0; i < n; i++) {
+			maxD = Math.max(maxD, _d[i]);
+			minD = Math.min(minD, _d[i]);
+		}
+
+		if(_restarts < _maxRestarts && (_stall >= _maxStall || _sigma * maxD < 1e-12
+				|| maxD > 1e7 * minD)) {
+			_restarts++;
+			restart(2 * _lambda);
+			System.out.printf("Restart %d with %d candidates per generation\n", _restarts, _lambda);
+		}
+		return pop;
+	}
+
+	/** Moves the mean and adapts the covariance and step size of the distribution. */
+	private void update(double[][] y, Integer[] order) {
+		int n = _n;
+		double[] yw = new double[n];
+		for(int k = 0; k < _mu; k++)
+			for(int i = 0; i < n; i++)
+				yw[i] += _weights[k] * y[order[k]][i];
+		for(int i = 0; i < n; i++)
+			_mean[i] += _sigma * yw[i];
+
+		// Evolution path of the step size, which uses C^(-1/2) * yw
+		double[] t = new double[n];
+		if(_diagonal) {
+			for(int i = 0; i < n; i++)
+				t[i] = yw[i] / _d[i];
+		} else {
+			double[] u = new double[n];
+			for(int j = 0; j < n; j++) {
+				double sum = 0.0;
+				for(int i = 0; i < n; i++)
+					sum += _b[i][j] * yw[i];
+				u[j] = sum / _d[j];
+			}
+			multiply(_b, u, t);
+		}
+
+		double norm = 0.0;
+		double cs = Math.sqrt(_cs * (2.0 - _cs) * _mueff);
+		for(int i = 0; i < n; i++) {
+			_ps[i] = (1.0 - _cs) * _ps[i] + cs * t[i];
+			norm += _ps[i] * _ps[i];
+		}
+		norm = Math.sqrt(norm);
+
+		// Evolution path of the covariance, which is stalled while the step size is
+		// increasing quickly
+		boolean hsig = norm / Math.sqrt(1.0 - Math.pow(1.0 - _cs, 2.0 * (_restartGen + 1))) / _chiN
+				< 1.4 + 2.0 / (n + 1.0);
+		double cc = hsig ? Math.sqrt(_cc * (2.0 - _cc) * _mueff) : 0.0;
+		for(int i = 0; i < n; i++)
+			_pc[i] = (1.0 - _cc) * _pc[i] + cc * yw[i];
+
+		// Rank-one and rank-mu updates of the covariance
+		double delta = hsig ? 0.0 : _cc * (2.0 - _cc);
+		double decay = 1.0 - _c1 - _cmu;
+		if(_diagonal) {
+			for(int i = 0; i < n; i++) {
+				double rank = 0.0;
+				for(int k = 0; k < _mu; k++)
+					rank += _weights[k] * y[order[k]][i] * y[order[k]][i];
+				_diag[i] = decay * _diag[i] + _c1 * (_pc[i] * _pc[i] + delta * _diag[i]) + _cmu * rank;
+				_d[i] = Math.sqrt(_diag[i]);
+			}
+		} else {
+			for(int i = 0; i < n; i++) {
+				for(int j = 0; j <= i; j++) {
+					double rank = 0.0;
+					for(int k = 0; k < _mu; k++)
+						rank += _weights[k] * y[order[k]][i] * y[order[k]][j];
+					_c[i][j] = decay * _c[i][j] + _c1 * (_pc[i] * _pc[j] + delta * _c[i][j]) + _cmu * rank;
+					_c[j][i] = _c[i][j];
+				}
+			}
+		}
+
+		_sigma *= Math.exp((_cs / _damps) * (norm / _chiN - 1.0));
+		_restartGen++;
+
+		// The eigendecomposition takes cubic time, so it is only updated every few
+		// generations. The covariance changes slowly, so this does not affect the search.
+		if(!_diagonal && _restartGen - _eigenGen >= _eigenInterval)
+			decompose();
+	}
+
+	/** Updates B and D from the covariance matrix. */
+	private void decompose() {
+		int n = _n;
+		double[][] a = new double[n][];
+		for(int i = 0; i < n; i++)
+			a[i] = _c[i].clone();
+
+		double[] eigenvalues = new double[n];
+		eigen(a, _b, eigenvalues);
+		for(int i = 0; i < n; i++)
+			_d[i] = Math.sqrt(Math.max(eigenvalues[i], 1e-20));
+		_eigenGen = _restartGen;
+	}
+
+	/**
+	 * Computes the eigenvalues and eigenvectors of a symmetric matrix using the
+	 * cyclic Jacobi method. The matrix is destroyed; the eigenvectors are stored in
+	 * the columns of v.
+	 */
+	static void eigen(double[][] a, double[][] v, double[] d) {
+		int n = a.length;
+		for(int i = 0; i < n; i++) {
+			Arrays.fill(v[i], 0.0);
+			v[i][i] = 1.0;
+		}
+
+		for(int sweep = 0; sweep < 50; sweep++) {
+			double off = 0.0, diag = 0.0;
+			for(int i = 0; i < n; i++) {
+				diag += a[i][i] * a[i][i];
+				for(int j = i + 1; j < n; j++)
+					off += a[i][j] * a[i][j];
+			}
+			if(off <= 1e-24 * diag)
+				break;
+
+			for(int p = 0; p < n; p++) {
+				for(int q = p + 1; q < n; q++) {
+					if(a[p][q] == 0.0)
+						continue;
+
+					// Rotate rows and columns p and q so that a[p][q] becomes zero
+					double theta = (a[q][q] - a[p][p]) / (2.0 * a[p][q]);
+					double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1.0));
+					if(theta == 0.0)
+						t = 1.0;
+					double c = 1.0 / Math.sqrt(t * t + 1.0), s = t * c;
+
+					for(int k = 0; k < n; k++) {
+						double akp = a[k][p], akq = a[k][q];
+						a[k][p] = c * akp - s * akq;
+						a[k][q] = s * akp + c * akq;
+					}
+					for(int k = 0; k < n; k++) {
+						double apk = a[p][k], aqk = a[q][k];
+						a[p][k] = c * apk - s * aqk;
+						a[q][k] = s * apk + c * aqk;
+					}
+					for(int k = 0; k < n; k++) {
+						double vkp = v[k][p], vkq = v[k][q];
+						v[k][p] = c * vkp - s * vkq;
+						v[k][q] = s * vkp + c * vkq;
+					}
+				}
+			}
+		}
+
+		for(int i = 0; i < n; i++)
+			d[i] = a[i][i];
+	}
+
+	/** Computes out = m * x. */
+	private static void multiply(double[][] m, double[] x, double[] out) {
+		for(int i = 0; i < m.length; i++) {
+			double sum = 0.0;
+			for(int j = 0; j < x.length; j++)
+				sum += m[i][j] * x[j];
+			out[i] = sum;
+		}
+	}
+
+	/** Returns the best chromosome that has been evaluated. */
+	public GeneticChromosome getBestChromosome() {
+		RealChromosome best = new RealChromosome(_decoder, _best);
+		best.setFitness(_bestFitness);
+		return best;
+	}
+
+	/**
+	 * Writes the state of the search to the specified file. The file is replaced
+	 * atomically, so an interrupted search always leaves a complete checkpoint.
+	 *
+	 * @param file checkpoint file
+	 * @throws IOException write error
+	 */
+	public void save(File file) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(_n);
+			out.writeBoolean(_diagonal);
+			out.writeLong(_random.getState());
+			out.writeBoolean(_seeds != null);
+			if(_seeds != null)
+				out.writeLong(_seeds.getState());
+			out.writeInt(_lambda);
+			out.writeInt(_gen);
+			out.writeInt(_restarts);
+			out.writeInt(_restartGen);
+			out.writeInt(_eigenGen);
+			out.writeInt(_stall);
+			out.writeDouble(_restartBest);
+			out.writeDouble(_sigma);
+			write(out, _mean);
+			write(out, _pc);
+			write(out, _ps);
+			if(_diagonal) {
+				write(out, _diag);
+			} else {
+				// The eigendecomposition is only updated every few generations, so it is
+				// saved rather than recomputed from the covariance
+				for(double[] row : _c)
+					write(out, row);
+				for(double[] row : _b)
+					write(out, row);
+				write(out, _d);
+			}
+
+			out.writeBoolean(_best != null);
+			if(_best != null) {
+				out.writeDouble(_bestFitness);
+				write(out, _best);
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Restores the state of the search from a checkpoint that was written by save.
+	 * The checkpoint must have been written by a search with the same number of genes
+	 * and the same variant. The streams that candidates and the seeds of their games
+	 * are drawn from are restored, so a resumed search samples and plays the same
+	 * games as an uninterrupted one.
+	 *
+	 * @param file checkpoint file
+	 * @throws IOException read error or incompatible checkpoint
+	 */
+	public void load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException(file + " is not a checkpoint (version " + VERSION + ")");
+			if(in.readInt() != _n || in.readBoolean() != _diagonal)
+				throw new IOException(file + " is a checkpoint of a different search");
+
+			_random.setState(in.readLong());
+			if(in.readBoolean()) {
+				long seeds = in.readLong();
+				if(_seeds != null)
+					_seeds.setState(seeds);
+			}
+			configure(in.readInt());
+			_gen = in.readInt();
+			_restarts = in.readInt();
+			_restartGen = in.readInt();
+			_eigenGen = in.readInt();
+			_stall = in.readInt();
+			_restartBest = in.readDouble();
+			_sigma = in.readDouble();
+			read(in, _mean);
+			read(in, _pc);
+			read(in, _ps);
+			if(_diagonal) {
+				read(in, _diag);
+				for(int i = 0; i < _n; i++)
+					_d[i] = Math.sqrt(_diag[i]);
+			} else {
+				for(double[] row : _c)
+					read(in, row);
+				for(double[] row : _b)
+					read(in, row);
+				read(in, _d);
+			}
+
+			if(in.readBoolean()) {
+				_bestFitness = in.readDouble();
+				_best = new double[_n];
+				read(in, _best);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void write(DataOutputStream out, double[] values) throws IOException {
+		for(double val : values)
+			out.writeDouble(val);
+	}
+
+	private static void read(DataInputStream in, double[] values) throws IOException {
+		for(int i = 0; i < values.length; i++)
+			values[i] = in.readDouble();
+	}
+}
@@ -0,0 +1,434 @@
+package com.ashwin.fri.genetic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Properties;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * The EvolutionStrategy is a natural evolution strategy in the style of Salimans et
+ * al. ("Evolution Strategies as a Scalable Alternative to Reinforcement Learning").
+ * Every generation evaluates mirrored pairs of perturbations (theta + sigma * eps
+ * and theta - sigma * eps) of the current parameters, ranks their fitness, and moves
+ * the parameters along the estimated gradient of the centered ranks using Adam.
+ *
+ * Every perturbation is generated from a random seed, so a candidate is completely
+ * described by its seed and sign (see PerturbedChromosome). Workers keep their own
+ * copy of the parameters and apply every update themselves from the seeds and
+ * fitness of the previous generation, which the coordinator broadcasts to them (see
+ * GeneticEvaluator.broadcast). Only scalars are exchanged after the initial
+ * parameters have been sent. Each update carries a fingerprint of the resulting
+ * parameters, so a worker that falls out of sync fails instead of evaluating the
+ * wrong candidates. The state of the search can be checkpointed after every
+ * generation and resumed, in which case the coordinator sends its full state to
+ * the workers instead of the initial parameters.
+ *
+ * Like the CmaEvolutionStrategy, the search runs in coordinates that are
+ * normalized to the bounds of each gene. Weight decay pulls the parameters towards
+ * the center of the bounds of each gene (which is zero for symmetric bounds).
+ *
+ * @author ashwin
+ */
+public class EvolutionStrategy implements Checkpointable {
+
+	static final int MAGIC = 0x45534E45;	// "ESNE"
+	static final int VERSION = 1;
+
+	static final byte INIT = 1;
+	static final byte STEP = 2;
+
+	private static final double BETA1 = 0.9, BETA2 = 0.999, EPSILON = 1e-8;
+
+	/**
+	 * Runs the evolution strategy with the specified decoder and properties for
+	 * ga.maxgen generations, starting from the initial phenotype of the decoder if it
+	 * has one, and returns a chromosome whose phenotype is the final
+	 * parameters. Progress is printed and streamed to ga.metrics.file exactly like the
+	 * genetic algorithm, using the perturbations of each generation as its population.
+	 * If es.checkpoint is set, then the search is checkpointed to it after every
+	 * generation, and an existing checkpoint is resumed.
+	 *
+	 * @param decoder genetic decoder implementation (fitness calculator)
+	 * @param props algorithm properties
+	 * @return final parameters
+	 * @throws IOException metrics or checkpoint file cannot be written
+	 */
+	public static GeneticChromosome run(GeneticDecoder decoder, Properties props) throws IOException {
+		GeneticMetrics metrics = decoder.getMetrics();
+		MetricsSink sink = MetricsSink.open(props.getProperty("ga.metrics.file"));
+		boolean genotype = Boolean.valueOf(props.getProperty("ga.print.genotype", "false"));
+		int maxGen = Integer.valueOf(props.getProperty("ga.maxgen").trim());
+		int pairs  = Integer.valueOf(props.getProperty("es.pairs", "50").trim());
+		String checkpoint = props.getProperty("es.checkpoint", "").trim();
+		File file = checkpoint.isEmpty() ? null : new File(checkpoint);
+
+		RandomStream random = GeneticAlgorithm.getRandom(props);
+		EvolutionStrategy es = new EvolutionStrategy(decoder);
+		double[] theta = new double[decoder._genes.length];
+		double[] initial = decoder.getInitialPhenotype();
+		for(int i = 0; i < theta.length; i++)
+			theta[i] = (initial != null) ? es.normalize(i, initial[i]) : random.nextDouble();
+
+		GeneticEvaluator evaluator = GeneticEvaluator.create(decoder, props, random.split());
+		es.initialize(theta,
+				Double.valueOf(props.getProperty("es.sigma", "0.02").trim()),
+				Double.valueOf(props.getProperty("es.rate", "0.01").trim()),
+				Double.valueOf(props.getProperty("es.decay", "0.005").trim()));
+		es.setStreams(random, evaluator.getRandom());
+		if(file != null && file.exists())
+			es.load(file);
+		evaluator.broadcast(es.getState());
+
+		GeneticMonitor monitor = GeneticMonitor.register(props, decoder, evaluator, es);
+		GeneticAlgorithm.printHeader(genotype);
+		while(es._gen <= maxGen) {
+			metrics.begin();
+			long[] seeds = new long[pairs];
+			GeneticChromosome[] candidates = new GeneticChromosome[2 * pairs];
+			for(int i = 0; i < pairs; i++) {
+				seeds[i] = random.nextLong();
+				candidates[2 * i]     = new PerturbedChromosome(es, seeds[i], true);
+				candidates[2 * i + 1] = new PerturbedChromosome(es, seeds[i], false);
+			}
+
+			// Perturbations are relative to the current parameters, so the generation is
+			// reported before the parameters are updated.
+			GeneticPopulation pop = new GeneticPopulation(evaluator, candidates.clone());
+			Map<String, Object> row = metrics.end(es._gen, pop);
+			GeneticAlgorithm.printGen(es._gen, pop, row, genotype, sink);
+			decoder.generationEvaluated(es._gen, pop.getBestChromosome());
+
+			double[] fitness = new double[candidates.length];
+			for(int i = 0; i < fitness.length; i++)
+				fitness[i] = candidates[i].getFitness();
+			evaluator.broadcast(es.step(seeds, fitness));
+
+			es._gen++;
+			if(file != null)
+				es.save(file);
+			monitor.generationEvaluated(es._gen - 1, pop.getBestChromosome(), row);
+		}
+
+		monitor.unregister();
+		evaluator.shutdown();
+		if(sink != null)
+			sink.close();
+		return new RealChromosome(decoder, es.getPhenotype(0L, 0));
+	}
+
+	private GeneticDecoder _decoder;
+	private double[] _lower, _range;
+
+	private double[] _theta, _m, _v;
+	private double _sigma, _rate, _decay;
+	private double _beta1t, _beta2t;
+
+	// The coordinator draws the seeds of perturbations from _random and the seeds of
+	// games from _seeds. Both are checkpointed with the generation.
+	private RandomStream _random, _seeds;
+	private int _gen;
+
+	/**
+	 * Creates a strategy whose parameters are unknown until an INIT message is
+	 * applied (see initialize and apply).
+	 *
+	 * @param decoder genetic decoder implementation
+	 */
+	public EvolutionStrategy(GeneticDecoder decoder) {
+		_decoder = decoder;
+		int n = decoder._genes.length;
+		_lower = new double[n];
+		_range = new double[n];
+		for(int i = 0; i < n; i++) {
+			_lower[i] = decoder._genes[i].getLowerBound();
+			_range[i] = decoder._genes[i].getUpperBound() - _lower[i];
+		}
+	}
+
+	public GeneticDecoder getDecoder() {
+		return _decoder;
+	}
+
+	/**
+	 * Sets the streams that the coordinator draws the seeds of perturbations and of
+	 * games from, which are saved and restored with the state of the search.
+	 *
+	 * @param random stream of the seeds of perturbations
+	 * @param seeds stream of the seeds of games
+	 */
+	void setStreams(RandomStream random, RandomStream seeds) {
+		_random = random;
+		_seeds = seeds;
+	}
+
+	/**
+	 * Sets the initial parameters (in normalized coordinates) and hyperparameters of
+	 * the strategy and returns the INIT message that sets them on workers.
+	 *
+	 * @param theta initial parameters
+	 * @param sigma standard deviation of perturbations
+	 * @param rate Adam learning rate
+	 * @param decay weight decay
+	 * @return INIT message
+	 */
+	public byte[] initialize(double[] theta, double sigma, double rate, double decay) {
+		_sigma = sigma;
+		_rate  = rate;
+		_decay = decay;
+		_theta = theta.clone();
+		_m = new double[theta.length];
+		_v = new double[theta.length];
+		_beta1t = _beta2t = 1.0;
+		return getState();
+	}
+
+	/**
+	 * Returns the INIT message that sets the current state of the strategy on
+	 * workers: its hyperparameters, its parameters, and the moments of Adam.
+	 *
+	 * @return INIT message
+	 */
+	public byte[] getState() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeByte(INIT);
+			out.writeDouble(_sigma);
+			out.writeDouble(_rate);
+			out.writeDouble(_decay);
+			out.writeInt(_theta.length);
+			for(int i = 0; i < _theta.length; i++) {
+				out.writeDouble(_theta[i]);
+				out.writeDouble(_m[i]);
+				out.writeDouble(_v[i]);
+			}
+			out.writeDouble(_beta1t);
+			out.writeDouble(_beta2t);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Updates the parameters using the fitness of every perturbation of the current
+	 * generation and returns the STEP message that performs the same update on
+	 * workers. The fitness of the positive and negative perturbation of seed i are
+	 * at indices 2i and 2i + 1.
+	 *
+	 * @param seeds seed of each pair of perturbations
+	 * @param fitness fitness of each perturbation
+	 * @return STEP message
+	 */
+	public byte[] step(long[] seeds, double[] fitness) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeByte(STEP);
+			out.writeInt(seeds.length);
+			for(int i = 0; i < seeds.length; i++) {
+				out.writeLong(seeds[i]);
+				out.writeDouble(fitness[2 * i]);
+				out.writeDouble(fitness[2 * i + 1]);
+			}
+
+			apply(bytes.toByteArray());
+			out.writeLong(getFingerprint());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the state of the search to the specified file: the next generation, the
+	 * states of the streams that perturbations and the seeds of games are drawn from,
+	 * and the state of the strategy (see getState). The file is replaced atomically,
+	 * so an interrupted search always leaves a complete checkpoint.
+	 *
+	 * @param file checkpoint file
+	 * @throws IOException write error
+	 */
+	public void save(File file) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(_theta.length);
+			out.writeInt(_gen);
+			out.writeLong(_random.getState());
+			out.writeLong(_seeds.getState());
+
+			byte[] state = getState();
+			out.writeInt(state.length);
+			out.write(state);
+		} finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Restores the state of the search from a checkpoint that was written by save.
+	 * The checkpoint must have been written by a search with the same number of genes.
+	 * The streams that perturbations and the seeds of their games are drawn from are
+	 * restored, so a resumed search samples and plays the same games as an
+	 * uninterrupted one.
+	 *
+	 * @param file checkpoint file
+	 * @throws IOException read error or incompatible checkpoint
+	 */
+	public void load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException(file + " is not a checkpoint (version " + VERSION + ")");
+			if(in.readInt() != _decoder._genes.length)
+				throw new IOException(file + " is a checkpoint of a different search");
+
+			_gen = in.readInt();
+			_random.setState(in.readLong());
+			_seeds.setState(in.readLong());
+
+			byte[] state = new byte[in.readInt()];
+			in.readFully(state);
+			apply(state);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Applies an INIT or STEP message. If a STEP message contains a fingerprint, then
+	 * the resulting parameters are checked against it.
+	 *
+	 * @param message message returned by initialize or step
+	 * @throws IllegalStateException the parameters do not match the fingerprint
+	 */
+	public void apply(byte[] message) {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+		try {
+			byte type = in.readByte();
+			if(type == INIT) {
+				_sigma = in.readDouble();
+				_rate  = in.readDouble();
+				_decay = in.readDouble();
+				_theta = new double[in.readInt()];
+				_m = new double[_theta.length];
+				_v = new double[_theta.length];
+				for(int i = 0; i < _theta.length; i++) {
+					_theta[i] = in.readDouble();
+					_m[i] = in.readDouble();
+					_v[i] = in.readDouble();
+				}
+				_beta1t = in.readDouble();
+				_beta2t = in.readDouble();
+				return;
+			}
+
+			if(type != STEP)
+				throw new IllegalArgumentException("Unknown message " + type);
+
+			int pairs = in.readInt();
+			long[] seeds = new long[pairs];
+			double[] fitness = new double[2 * pairs];
+			for(int i = 0; i < pairs; i++) {
+				seeds[i] = in.readLong();
+				fitness[2 * i] = in.readDouble();
+				fitness[2 * i + 1] = in.readDouble();
+			}
+			update(seeds, fitness);
+
+			if(in.available() >= 8 && in.readLong() != getFingerprint())
+				throw new IllegalStateException("Parameters are out of sync with the coordinator");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** Estimates the gradient of the centered ranks and takes a step of Adam. */
+	private void update(long[] seeds, double[] fitness) {
+		// Fitness shaping: utilities are centered ranks in [-0.5, 0.5], and the fittest
+		// (lowest fitness) perturbation has the greatest utility.
+		final double[] f = fitness;
+		Integer[] order = new Integer[f.length];
+		for(int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(f[a], f[b]);
+			}
+		});
+
+		double[] utility = new double[f.length];
+		for(int r = 0; r < order.length; r++)
+			utility[order[r]] = (order.length > 1) ? 0.5 - (double) r / (order.length - 1) : 0.0;
+
+		int n = _theta.length;
+		double[] grad = new double[n];
+		for(int i = 0; i < seeds.length; i++) {
+			double weight = utility[2 * i] - utility[2 * i + 1];
+			RandomStream noise = new RandomStream(seeds[i]);
+			for(int j = 0; j < n; j++)
+				grad[j] += weight * noise.nextGaussian();
+		}
+
+		// Adam ascends the utility, so the gradient is negated for the usual descent
+		_beta1t *= BETA1;
+		_beta2t *= BETA2;
+		for(int j = 0; j < n; j++) {
+			double g = -grad[j] / (2.0 * seeds.length * _sigma) + _decay * (_theta[j] - 0.5);
+			_m[j] = BETA1 * _m[j] + (1.0 - BETA1) * g;
+			_v[j] = BETA2 * _v[j] + (1.0 - BETA2) * g * g;
+			double mhat = _m[j] / (1.0 - _beta1t), vhat = _v[j] / (1.0 - _beta2t);
+			_theta[j] -= _rate * mhat / (Math.sqrt(vhat) + EPSILON);
+		}
+	}
+
+	/** Returns the value of gene i in normalized coordinates, clamped to its bounds. */
+	private double normalize(int i, double val) {
+		return Math.max(0.0, Math.min(1.0, (val - _lower[i]) / _range[i]));
+	}
+
+	/** Returns a hash of the exact bits of the current parameters. */
+	private long getFingerprint() {
+		long hash = 1125899906842597L;
+		for(double val : _theta)
+			hash = 31 * hash + Double.doubleToLongBits(val);
+		return hash;
+	}
+
+	/**
+	 * Returns the phenotype of a perturbation of the current parameters. A sign of
+	 * zero returns the parameters themselves.
+	 *
+	 * @param seed seed of the perturbation
+	 * @param sign 1 for the positive, -1 for the negative perturbation, or 0
+	 * @return phenotype
+	 */
+	public double[] getPhenotype(long seed, int sign) {
+		RandomStream noise = new RandomStream(seed);
+		double[] phenotype = new double[_theta.length];
+		for(int i = 0; i < phenotype.length; i++) {
+			double eps = (sign != 0) ? sign * _sigma * noise.nextGaussian() : 0.0;
+			phenotype[i] = _lower[i] + _range[i] * (_theta[i] + eps);
+		}
+		return phenotype;
+	}
+}
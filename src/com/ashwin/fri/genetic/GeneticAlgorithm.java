@@ -1,46 +1,192 @@
 package com.ashwin.fri.genetic;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
 import java.util.Properties;
 
-public class GeneticAlgorithm {
+import com.ashwin.fri.flight.Flight;
+import com.ashwin.fri.random.RandomStream;
+
+public class GeneticAlgorithm implements Checkpointable {
 	
 	public static final String PROPERTIES = "./ga.properties";	
 	
+	static final int MAGIC = 0x47414C47;	// "GALG"
+	static final int VERSION = 1;
+	
+	private GeneticEvaluator _evaluator;
+	private GeneticConfig _config;
+	private RandomStream _random;
+	private GeneticPopulation _pop;
+	private int _gen;
+	
+	/**
+	 * Creates a run whose population is bred from the specified stream and whose
+	 * chromosomes are evaluated by the specified evaluator.
+	 * 
+	 * @param evaluator genetic evaluator
+	 * @param config algorithm parameters
+	 * @param random random stream
+	 */
+	GeneticAlgorithm(GeneticEvaluator evaluator, GeneticConfig config, RandomStream random) {
+		_evaluator = evaluator;
+		_config = config;
+		_random = random;
+	}
+	
 	/**
 	 * Runs the binary genetic algorithm with the specified fitness calculator
 	 * and the specified properties. This method returns the best chromosome.
+	 * Chromosomes are evaluated concurrently by ga.threads threads. Metrics for
+	 * every generation are streamed to the file specified by the ga.metrics.file
+	 * property, if any. Every random choice is drawn from streams that are split
+	 * from the master stream of the run (see getRandom), so a run with a fixed
+	 * ga.seed is reproducible regardless of ga.threads. The run can be monitored and
+	 * controlled over JMX while it runs (see GeneticMonitor). If ga.checkpoint is
+	 * set, then the run is checkpointed to it after every generation, and an
+	 * existing checkpoint is resumed.
 	 * 
 	 * @param decoder genetic decoder implementation (fitness calculator)
 	 * @param props algorithm properties
 	 * @return most optimal chromosome
+	 * @throws IOException metrics or checkpoint file cannot be written
 	 */
-	public static GeneticChromosome run(GeneticDecoder decoder, Properties props) {
-		GeneticPopulation pop = new GeneticPopulation(decoder, props);		
+	public static GeneticChromosome run(GeneticDecoder decoder, Properties props) throws IOException {
+		// Population parameters are validated before any chromosome is evaluated
+		GeneticConfig config = new GeneticConfig(props);
+		GeneticMetrics metrics = decoder.getMetrics();
+		MetricsSink sink = MetricsSink.open(props.getProperty("ga.metrics.file"));
+		boolean genotype = Boolean.valueOf(props.getProperty("ga.print.genotype", "false"));
 		int maxGen = Integer.valueOf(props.getProperty("ga.maxgen"));
-		int gen = 0;
+		String checkpoint = props.getProperty("ga.checkpoint", "").trim();
+		File file = checkpoint.isEmpty() ? null : new File(checkpoint);
 		
-		printHeader();
-		printGen(gen, pop, decoder);
-		while(gen < maxGen) {
-			pop = pop.evolve();
-			gen++;
-			printGen(gen, pop, decoder);
+		RandomStream random = getRandom(props);
+		GeneticEvaluator evaluator = GeneticEvaluator.create(decoder, props, random.split());
+		GeneticAlgorithm ga = new GeneticAlgorithm(evaluator, config, random.split());
+		if(file != null && file.exists())
+			ga.load(file);
+		
+		GeneticMonitor monitor = GeneticMonitor.register(props, decoder, evaluator, ga);
+		printHeader(genotype);
+		while(ga._gen <= maxGen) {
+			Object event = Flight.beginGeneration();
+			metrics.begin();
+			ga._pop = (ga._pop == null) ? new GeneticPopulation(evaluator, config, ga._random) : ga._pop.evolve();
+			commit(event, ga._gen, ga._pop, metrics);
+			Map<String, Object> row = metrics.end(ga._gen, ga._pop);
+			printGen(ga._gen, ga._pop, row, genotype, sink);
+			decoder.generationEvaluated(ga._gen, ga._pop.getBestChromosome());
+			
+			ga._gen++;
+			if(file != null)
+				ga.save(file);
+			monitor.generationEvaluated(ga._gen - 1, ga._pop.getBestChromosome(), row);
 		}
 		
-		return pop.getBestChromosome();
+		monitor.unregister();
+		evaluator.shutdown();
+		if(sink != null)
+			sink.close();
+		return ga._pop.getBestChromosome();
+	}
+	
+	/**
+	 * Writes the state of the run to the specified file: the next generation and the
+	 * population, in the format that population-based training saves each of its
+	 * populations in (see GeneticPopulation.write). The file is replaced atomically,
+	 * so an interrupted run always leaves a complete checkpoint.
+	 * 
+	 * @param file checkpoint file
+	 * @throws IOException write error
+	 */
+	public void save(File file) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(_evaluator.getDecoder()._genes.length);
+			out.writeInt(_gen);
+			_pop.write(out);
+		} finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Restores the state of the run from a checkpoint that was written by save. The
+	 * checkpoint must have been written by a run of a decoder with the same number of genes.
+	 * The streams that the population is bred from and that the seeds of its games
+	 * are drawn from are restored, so a resumed run breeds and plays the same games
+	 * as an uninterrupted one.
+	 * 
+	 * @param file checkpoint file
+	 * @throws IOException read error or incompatible checkpoint
+	 */
+	public void load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException(file + " is not a checkpoint (version " + VERSION + ")");
+			if(in.readInt() != _evaluator.getDecoder()._genes.length)
+				throw new IOException(file + " is a checkpoint of a different run");
+			
+			_gen = in.readInt();
+			_pop = GeneticPopulation.read(in, _evaluator, _config, _random);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Returns the master random stream of a run, which is seeded by the ga.seed
+	 * property. If the property is missing or empty, then the seed is chosen by the
+	 * clock. The seed is printed, so that any run can be reproduced.
+	 * 
+	 * @param props algorithm properties
+	 * @return master stream
+	 */
+	public static RandomStream getRandom(Properties props) {
+		String seed = props.getProperty("ga.seed", "").trim();
+		long val = seed.isEmpty() ? System.nanoTime() : Long.valueOf(seed);
+		System.out.println("Seed: " + val);
+		return new RandomStream(val);
+	}
+	
+	/** Records the boundaries of a generation that has been evaluated, if generations are being recorded. */
+	private static void commit(Object event, int gen, GeneticPopulation pop, GeneticMetrics metrics) {
+		if(event != null)
+			Flight.commitGeneration(event, gen, pop.getBestChromosome().getFitness(), pop.getAverageFitness(), metrics.getEvaluations());
 	}
 	
 	/** Prints the header for the tabular data. */
-	private static void printHeader() {
-		System.out.printf("%6s\t%15s\t%15s\t%s\n", "Gen", "Min", "Avg", "Genotype");
+	static void printHeader(boolean genotype) {
+		System.out.printf("%6s\t%15s\t%15s\t%10s\t%8s%s\n", "Gen", "Min", "Avg", "Evals/s", "Secs",
+				genotype ? "\tGenotype" : "");
 	}
 	
-	/** Prints the specified population into tabular form. */
-	private static void printGen(int gen, GeneticPopulation pop, GeneticDecoder decoder) {
+	/** Prints the specified population into tabular form and writes its metrics to the sink. */
+	static void printGen(int gen, GeneticPopulation pop, Map<String, Object> metrics,
+			boolean genotype, MetricsSink sink) {
 		GeneticChromosome best = pop.getBestChromosome();
 		double min = best.getFitness();
 		double avg = pop.getAverageFitness();
 		
-		System.out.printf("%6d\t%15.8f\t%15.8f\t%s\n", gen, min, avg, best.getGenotype());
+		System.out.printf("%6d\t%15.8f\t%15.8f\t%10.1f\t%8.2f%s\n", gen, min, avg, 
+				metrics.get("evals_per_sec"), metrics.get("wall_secs"), 
+				genotype ? "\t" + best.getGenotype() : "");
+		if(sink != null)
+			sink.write(metrics);
 	}
 }
@@ -1,92 +1,151 @@
 package com.ashwin.fri.genetic;
 
-import java.util.Arrays;
+import com.ashwin.fri.random.RandomStream;
 
-public class GeneticChromosome {
-	
-	// Chromosomes are stored in their decoded state as a bit array
-	private boolean[] _genome;
-	private GeneticDecoder _decoder;
+/**
+ * A GeneticChromosome is a single candidate solution and its fitness. The genome
+ * of a chromosome is stored in an encoding that depends on the concrete class:
+ * BinaryChromosomes store every gene as a bit string, and RealChromosomes store
+ * every gene as its actual value. Chromosomes are not evaluated until their
+ * fitness is first requested or until evaluate is called. Chromosomes draw every
+ * random choice from the stream that they are given, so a population that is bred
+ * from a seeded stream is reproducible.
+ *
+ * @author ashwin
+ */
+public abstract class GeneticChromosome {
+
+	protected GeneticDecoder _decoder;
 	private double _fitness;
-	
+	private boolean _evaluated;
+
+	public GeneticChromosome(GeneticDecoder decoder) {
+		_decoder = decoder;
+	}
+
 	/**
-	 * Creates a new GeneticChromosome with the specified number of 
-	 * randomized bits. This constructor is used to generate the initial
-	 * population.
-	 * 
-	 * @param bits number of bits
+	 * Creates a randomized chromosome in the encoding specified by the pop.encoding
+	 * property (binary or real). This is used to generate the initial population.
+	 *
+	 * @param decoder genetic decoder implementation
+	 * @param config algorithm parameters
+	 * @param random random stream
+	 * @return randomized chromosome
 	 */
-	public GeneticChromosome(GeneticDecoder decoder, int bits) {
-		_decoder = decoder;
-		_genome = new boolean[bits];
-		for(int i = 0; i < _genome.length; i++)
-			_genome[i] = Math.random() < 0.5;
-		_fitness = decoder.getFitness(getGenotype());
+	public static GeneticChromosome create(GeneticDecoder decoder, GeneticConfig config, RandomStream random) {
+		if(config.getEncoding() == GeneticConfig.Encoding.REAL)
+			return new RealChromosome(decoder, config.getSigma(), config.getBlend(), random);
+		return new BinaryChromosome(decoder, decoder.getTotalBits(), random);
 	}
-	
+
 	/**
-	 * Creates a new GeneticChromosome from a specified bit array.
-	 * 
-	 * @param genome bit array
+	 * Creates a chromosome in the encoding specified by the pop.encoding property whose
+	 * phenotype is as close to the specified phenotype as the encoding allows. Values
+	 * outside of the bounds of a gene are clamped to its bounds.
+	 *
+	 * @param decoder genetic decoder implementation
+	 * @param config algorithm parameters
+	 * @param phenotype actual values
+	 * @return encoded chromosome
 	 */
-	public GeneticChromosome(GeneticDecoder decoder, boolean[] genome) {
-		_decoder = decoder;
-		_genome = genome;
-		_fitness = decoder.getFitness(getGenotype());
+	public static GeneticChromosome create(GeneticDecoder decoder, GeneticConfig config, double[] phenotype) {
+		GeneticGene[] genes = decoder._genes;
+		double[] values = new double[genes.length];
+		for(int i = 0; i < values.length; i++)
+			values[i] = Math.max(genes[i].getLowerBound(), Math.min(genes[i].getUpperBound(), phenotype[i]));
+
+		if(config.getEncoding() == GeneticConfig.Encoding.REAL)
+			return new RealChromosome(decoder, values, config.getSigma(), config.getBlend());
+
+		int bits = decoder.getTotalBits();
+		long[] genome = new long[(bits + 63) >>> 6];
+		int index = 0;
+		for(int i = 0; i < genes.length; i++) {
+			for(char bit : genes[i].encode(values[i]).toCharArray()) {
+				if(bit == '1')
+					genome[index >>> 6] |= 1L << index;
+				index++;
+			}
+		}
+		return new BinaryChromosome(decoder, genome, bits);
 	}
-	
+
+	public GeneticDecoder getDecoder() {
+		return _decoder;
+	}
+
 	public double getFitness() {
+		if(!_evaluated)
+			evaluate();
 		return _fitness;
 	}
-	
+
+	/** Returns whether or not the fitness of the chromosome is known. */
+	public boolean isEvaluated() {
+		return _evaluated;
+	}
+
+	/** Computes the fitness of the chromosome using its decoder. */
+	public void evaluate() {
+		_decoder.getMetrics().recordEvaluation();
+		_fitness = _decoder.getFitness(getPhenotype());
+		_evaluated = true;
+	}
+
+	/** Sets the fitness of a chromosome that was evaluated by a GeneticEvaluator. */
+	void setFitness(double fitness) {
+		_fitness = fitness;
+		_evaluated = true;
+	}
+
+	/** Marks the fitness of the chromosome as unknown after its genome has changed. */
+	protected void invalidate() {
+		_evaluated = false;
+	}
+
 	/**
-	 * Returns a bit string representation (true = '1' and false = '0')
-	 * of the underlying bit array.
-	 * 
-	 * @return bit string
+	 * Returns the phenotype (actual values) of the genes in the genome. The returned
+	 * array must not be modified.
+	 *
+	 * @return phenotype
 	 */
-	public String getGenotype() {
-		StringBuilder sb = new StringBuilder();
-		for(boolean bit : _genome)
-			sb.append(bit ? '1' : '0');
-		return sb.toString();
-	}
-	
+	public abstract double[] getPhenotype();
+
 	/**
-	 * This method mates this chromosome with a given chromosome. The specified
-	 * crossover rate determines the likelihood that single-point crossover will
+	 * Returns a printable representation of the genome.
+	 *
+	 * @return genotype
+	 */
+	public abstract String getGenotype();
+
+	/**
+	 * Returns an unevaluated chromosome with an identical genome. This is used to
+	 * evaluate a chromosome more than once.
+	 *
+	 * @return copy of the chromosome
+	 */
+	public abstract GeneticChromosome copy();
+
+	/**
+	 * This method mates this chromosome with a given chromosome of the same type.
+	 * The specified crossover rate determines the likelihood that crossover will
 	 * occur between the two chromosomes. This method returns an array containing
 	 * two offspring.
-	 * 
+	 *
 	 * @param othr other parent chromosome
 	 * @param rate crossover probability
+	 * @param random random stream
 	 * @return offspring chromosomes
 	 */
-	public GeneticChromosome[] mate(GeneticChromosome othr, double rate) {
-		boolean[] c1 = Arrays.copyOf(this._genome, this._genome.length);
-		boolean[] c2 = Arrays.copyOf(othr._genome, othr._genome.length);
-		
-		if(Math.random() <= rate) {
-			int index = (int) (Math.random() * this._genome.length);
-			System.arraycopy(this._genome, 0, c2, 0, index);
-			System.arraycopy(othr._genome, 0, c1, 0, index);
-		}
-		
-		return new GeneticChromosome[] { new GeneticChromosome(_decoder, c1),
-				 						 new GeneticChromosome(_decoder, c2) };
-	}
-	
+	public abstract GeneticChromosome[] mate(GeneticChromosome othr, double rate, RandomStream random);
+
 	/**
-	 * This method randomly flips bits in the genome based on a specified 
-	 * mutation probability. The greater the mutation rate, the more likely 
+	 * This method randomly changes genes in the genome based on a specified
+	 * mutation probability. The greater the mutation rate, the more likely
 	 * mutations will occur.
-	 * 
+	 *
 	 * @param rate mutation probability
+	 * @param random random stream
 	 */
-	public void mutate(double rate) {
-		for(int i = 0; i < _genome.length; i++)
-			if(Math.random() <= rate)
-				_genome[i] = !_genome[i];
-		_fitness = _decoder.getFitness(getGenotype());
-	}
+	public abstract void mutate(double rate, RandomStream random);
 }
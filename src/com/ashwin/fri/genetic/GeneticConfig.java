@@ -0,0 +1,191 @@
+package com.ashwin.fri.genetic;
+
+import java.util.Properties;
+
+/**
+ * The GeneticConfig holds the population parameters of the genetic algorithm. It
+ * is parsed and validated once from the algorithm properties, so that populations
+ * do not parse properties while they evolve and invalid properties are reported
+ * before any chromosome is evaluated.
+ *
+ * @author ashwin
+ */
+public class GeneticConfig {
+
+	/** The encodings of a genome (see GeneticChromosome.create). */
+	public enum Encoding { BINARY, REAL }
+
+	/** The schemes that parents are selected with (see GeneticSelection). */
+	public enum Selection { TOURNAMENT, RANK, SUS }
+
+	private int _size;
+	private double _cross, _mutate, _elitism;
+	private Encoding _encoding;
+	private double _sigma, _blend;
+	private double _seedFraction;
+	private Selection _selection;
+	private int _tournamentSize;
+	private double _pressure;
+	private double _diversityMin, _diversityBoost;
+	private int _diversityRestart;
+
+	/**
+	 * Parses the pop.size, pop.cross, pop.mutate, pop.elitism, pop.encoding, pop.sigma,
+	 * pop.blend, pop.seed.fraction, pop.selection, tournament.size, rank.pressure,
+	 * pop.diversity.min, pop.diversity.boost and pop.diversity.restart properties.
+	 *
+	 * @param props algorithm properties
+	 * @throws IllegalArgumentException a property is missing or out of range
+	 */
+	public GeneticConfig(Properties props) {
+		_size    = getInt(props, "pop.size", null);
+		_cross   = getDouble(props, "pop.cross", null);
+		_mutate  = getDouble(props, "pop.mutate", null);
+		_elitism = getDouble(props, "pop.elitism", null);
+		_encoding = getEnum(props, "pop.encoding", "binary", Encoding.class);
+		_sigma   = getDouble(props, "pop.sigma", "0.1");
+		_blend   = getDouble(props, "pop.blend", "0.5");
+		_seedFraction = getDouble(props, "pop.seed.fraction", "0.5");
+		_selection = getEnum(props, "pop.selection", "tournament", Selection.class);
+		_tournamentSize = getInt(props, "tournament.size", "2");
+		_pressure = getDouble(props, "rank.pressure", "1.5");
+		_diversityMin = getDouble(props, "pop.diversity.min", "0");
+		_diversityBoost = getDouble(props, "pop.diversity.boost", "4");
+		_diversityRestart = getInt(props, "pop.diversity.restart", "0");
+
+		// Offspring are produced in pairs, so the population must be even
+		check(_size > 0 && _size % 2 == 0, "pop.size must be positive and even");
+		check(_cross >= 0.0 && _cross <= 1.0, "pop.cross must be between 0 and 1");
+		check(_mutate >= 0.0 && _mutate <= 1.0, "pop.mutate must be between 0 and 1");
+		check(_elitism >= 0.0 && _elitism < 1.0, "pop.elitism must be at least 0 and less than 1");
+		check(_sigma > 0.0, "pop.sigma must be positive");
+		check(_blend >= 0.0, "pop.blend must not be negative");
+		check(_seedFraction >= 0.0 && _seedFraction <= 1.0, "pop.seed.fraction must be between 0 and 1");
+		check(_tournamentSize > 0, "tournament.size must be positive");
+		check(_pressure >= 1.0 && _pressure <= 2.0, "rank.pressure must be between 1 and 2");
+		check(_diversityMin >= 0.0 && _diversityMin <= 1.0, "pop.diversity.min must be between 0 and 1");
+		check(_diversityBoost >= 1.0, "pop.diversity.boost must be at least 1");
+		check(_diversityRestart >= 0, "pop.diversity.restart must not be negative");
+	}
+
+	private static String get(Properties props, String key, String def) {
+		String val = props.getProperty(key, def);
+		if(val == null)
+			throw new IllegalArgumentException(key + " is not specified");
+		return val.trim();
+	}
+
+	private static int getInt(Properties props, String key, String def) {
+		String val = get(props, key, def);
+		try {
+			return Integer.valueOf(val);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(key + " is not a number: " + val);
+		}
+	}
+
+	private static double getDouble(Properties props, String key, String def) {
+		String val = get(props, key, def);
+		try {
+			return Double.valueOf(val);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(key + " is not a number: " + val);
+		}
+	}
+
+	private static <E extends Enum<E>> E getEnum(Properties props, String key, String def, Class<E> type) {
+		String val = get(props, key, def);
+		try {
+			return Enum.valueOf(type, val.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown " + key + " " + val);
+		}
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition)
+			throw new IllegalArgumentException(message);
+	}
+
+	/** @return number of chromosomes in the population */
+	public int getSize() {
+		return _size;
+	}
+
+	/** @return probability that parents are crossed over */
+	public double getCross() {
+		return _cross;
+	}
+
+	/** @return mutation rate of offspring */
+	public double getMutate() {
+		return _mutate;
+	}
+
+	/** @return fraction of the population that is copied into the next generation */
+	public double getElitism() {
+		return _elitism;
+	}
+
+	/**
+	 * Returns the number of the best chromosomes that are copied into the next
+	 * generation. The number is rounded up to be even, so that the rest of the
+	 * generation can be filled with pairs of offspring.
+	 *
+	 * @return number of elites
+	 */
+	public int getElites() {
+		int elites = (int) (_size * _elitism);
+		if(elites % 2 != 0)
+			elites++;
+		return Math.min(elites, _size);
+	}
+
+	public Encoding getEncoding() {
+		return _encoding;
+	}
+
+	/** @return standard deviation of mutations of real genes as a fraction of their range */
+	public double getSigma() {
+		return _sigma;
+	}
+
+	/** @return alpha of blend crossover of real genes */
+	public double getBlend() {
+		return _blend;
+	}
+
+	/** @return fraction of the initial population that is seeded with the initial phenotype */
+	public double getSeedFraction() {
+		return _seedFraction;
+	}
+
+	public Selection getSelection() {
+		return _selection;
+	}
+
+	/** @return number of chromosomes in each tournament */
+	public int getTournamentSize() {
+		return _tournamentSize;
+	}
+
+	/** @return expected number of times the best chromosome is selected under rank selection, relative to the average */
+	public double getPressure() {
+		return _pressure;
+	}
+
+	/** @return diversity below which a population is considered converged (zero to never consider it converged) */
+	public double getDiversityMin() {
+		return _diversityMin;
+	}
+
+	/** @return factor that the mutation rate is multiplied by while the population is converged */
+	public double getDiversityBoost() {
+		return _diversityBoost;
+	}
+
+	/** @return generations that a population may stay converged before it is restarted (zero to never restart) */
+	public int getDiversityRestart() {
+		return _diversityRestart;
+	}
+}
@@ -1,11 +1,54 @@
 package com.ashwin.fri.genetic;
 
+import java.io.File;
+import java.io.IOException;
+
 public abstract class GeneticDecoder {
 
 	protected GeneticGene[] _genes;
+	private GeneticMetrics _metrics;
+	private double[] _initial;
 	
 	public GeneticDecoder(GeneticGene[] genes) {
 		_genes = genes;
+		_metrics = new GeneticMetrics();
+	}
+	
+	/**
+	 * Returns the metrics that evaluations performed by this decoder are recorded in.
+	 * Implementations may record additional statistics (like game lengths) here.
+	 * 
+	 * @return metrics
+	 */
+	public GeneticMetrics getMetrics() {
+		return _metrics;
+	}
+	
+	public void setMetrics(GeneticMetrics metrics) {
+		_metrics = metrics;
+	}
+	
+	/**
+	 * Returns the phenotype that optimizers start their search from, or null if the
+	 * search starts from random phenotypes.
+	 * 
+	 * @return initial phenotype
+	 */
+	public double[] getInitialPhenotype() {
+		return _initial;
+	}
+	
+	/**
+	 * Seeds the search with a known phenotype (ex. weights that were pretrained on
+	 * other data). The genetic algorithm seeds a fraction of its initial population
+	 * with it (see GeneticPopulation), and the evolution strategies start from it.
+	 * 
+	 * @param phenotype initial phenotype or null to start from random phenotypes
+	 */
+	public void setInitialPhenotype(double[] phenotype) {
+		if(phenotype != null && phenotype.length != _genes.length)
+			throw new IllegalArgumentException("Expected " + _genes.length + " genes but got " + phenotype.length);
+		_initial = phenotype;
 	}
 	
 	/**
@@ -49,9 +92,87 @@ public abstract class GeneticDecoder {
 	 * @return fitness
 	 */
 	public double getFitness(String genotype) {
+		_metrics.recordEvaluation();
 		return getFitness(getPhenotype(genotype));
 	}
 	
+	/**
+	 * Returns the number of independent episodes that make up a single evaluation.
+	 * Episodes may be evaluated concurrently by a GeneticEvaluator, so decoders that
+	 * have more than one episode must be thread safe.
+	 * 
+	 * @return number of episodes
+	 */
+	public int getEpisodes() {
+		return 1;
+	}
+	
+	/**
+	 * Returns the fitness of a phenotype in a single episode. By default, every
+	 * episode is a complete evaluation of the phenotype.
+	 * 
+	 * @param phenotype actual values
+	 * @param episode episode index
+	 * @return fitness in the episode
+	 */
+	public double getFitness(double[] phenotype, int episode) {
+		return getFitness(phenotype);
+	}
+	
+	/**
+	 * Returns the fitness of a phenotype in a single episode that is played with the
+	 * specified seed. Evaluations with common random numbers (see GeneticEvaluator)
+	 * use this method, so that every phenotype plays identical episodes. Decoders
+	 * whose episodes are random should override this method; by default, the seed
+	 * is ignored.
+	 * 
+	 * @param phenotype actual values
+	 * @param episode episode index
+	 * @param seed random seed of the episode
+	 * @return fitness in the episode
+	 */
+	public double getFitness(double[] phenotype, int episode, long seed) {
+		return getFitness(phenotype, episode);
+	}
+	
+	/**
+	 * Combines the fitness of every episode into the fitness of the phenotype. By
+	 * default, the fitness of a phenotype is its mean fitness across its episodes.
+	 * 
+	 * @param fitness fitness in each episode
+	 * @return aggregate fitness
+	 */
+	public double aggregate(double[] fitness) {
+		double sum = 0.0;
+		for(double val : fitness)
+			sum += val;
+		return sum / fitness.length;
+	}
+	
+	/**
+	 * Invoked once every generation has been evaluated. Decoders may override this
+	 * method to save artifacts of the best chromosome of each generation.
+	 * 
+	 * @param gen generation number
+	 * @param best best chromosome of the generation
+	 * @throws IOException artifacts cannot be written
+	 */
+	public void generationEvaluated(int gen, GeneticChromosome best) throws IOException {}
+	
+	/**
+	 * Saves a phenotype in the format of the decoder's domain (for example, as a
+	 * neural net), so it can be used outside of the optimizer. Decoders that have no
+	 * such format do not support this.
+	 * 
+	 * @param phenotype phenotype
+	 * @param file output file
+	 * @throws IOException the file cannot be written
+	 * @throws UnsupportedOperationException the decoder cannot save phenotypes
+	 */
+	public void save(double[] phenotype, File file) throws IOException {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot save phenotypes");
+	}
+	
 	/**
 	 * Returns the fitness of a phenotype. This method must be described by concrete
 	 * implementations of this abstract class.
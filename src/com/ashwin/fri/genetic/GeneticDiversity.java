@@ -0,0 +1,135 @@
+package com.ashwin.fri.genetic;
+
+import java.nio.LongBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * GeneticDiversity measures the diversity of a population of BinaryChromosomes as
+ * the chromosomes of a generation are bred. It counts how many genomes have each bit
+ * set, from which the mean Hamming distance between every pair of genomes and the
+ * entropy of every locus follow, and it counts the distinct genomes.
+ *
+ * The counts are stored as bit-sliced counters: plane p holds bit p of the count of
+ * every locus, packed like the genomes themselves. Adding a genome is a ripple-carry
+ * addition of its words into the planes, so measuring a generation takes time in
+ * proportion to the population size times the number of words in a genome (times
+ * the logarithm of the population size), instead of comparing every pair of genomes.
+ *
+ * @author ashwin
+ */
+class GeneticDiversity {
+
+	private int _bits, _size;
+	private long[][] _planes;
+	private Set<LongBuffer> _genomes;
+
+	private boolean _measured;
+	private double _distance, _entropy;
+
+	/**
+	 * Creates an empty measure for genomes of the specified number of bits.
+	 *
+	 * @param bits bits in a genome
+	 * @param capacity maximum number of genomes that will be added
+	 */
+	public GeneticDiversity(int bits, int capacity) {
+		_bits = bits;
+		_planes = new long[Math.max(1, 32 - Integer.numberOfLeadingZeros(capacity))][(bits + 63) >>> 6];
+		_genomes = new HashSet<LongBuffer>();
+	}
+
+	/**
+	 * Creates the measure of a population of binary chromosomes.
+	 *
+	 * @param pop population
+	 * @return diversity of the population
+	 */
+	public static GeneticDiversity of(GeneticChromosome[] pop) {
+		GeneticDiversity diversity = new GeneticDiversity(((BinaryChromosome) pop[0]).getBits(), pop.length);
+		for(GeneticChromosome chromosome : pop)
+			diversity.add((BinaryChromosome) chromosome);
+		return diversity;
+	}
+
+	/**
+	 * Adds a chromosome to the measure. Its genome must not be modified afterwards.
+	 *
+	 * @param chromosome binary chromosome
+	 * @throws IllegalStateException the measure is already at capacity
+	 */
+	public void add(BinaryChromosome chromosome) {
+		long[] genome = chromosome.getGenome();
+		for(int w = 0; w < genome.length; w++) {
+			long carry = genome[w];
+			for(int p = 0; p < _planes.length && carry != 0; p++) {
+				long plane = _planes[p][w];
+				_planes[p][w] = plane ^ carry;
+				carry &= plane;
+			}
+			if(carry != 0)
+				throw new IllegalStateException("Diversity is at capacity");
+		}
+
+		_size++;
+		_genomes.add(LongBuffer.wrap(genome));
+		_measured = false;
+	}
+
+	/** @return number of genomes that have been added */
+	public int size() {
+		return _size;
+	}
+
+	/** @return number of distinct genomes */
+	public int getUnique() {
+		return _genomes.size();
+	}
+
+	/**
+	 * Returns the mean Hamming distance between every pair of genomes divided by the
+	 * number of bits in a genome.
+	 *
+	 * @return distance between zero (converged) and one
+	 */
+	public double getDistance() {
+		measure();
+		return _distance;
+	}
+
+	/**
+	 * Returns the mean entropy of the bits of every locus. A locus where every
+	 * genome agrees has no entropy, and a locus that is set in half of the genomes has
+	 * an entropy of one.
+	 *
+	 * @return entropy between zero (converged) and one
+	 */
+	public double getEntropy() {
+		measure();
+		return _entropy;
+	}
+
+	/** Reads the count of every locus out of the planes. */
+	private void measure() {
+		if(_measured)
+			return;
+
+		double pairs = 0.0, entropy = 0.0;
+		for(int i = 0; i < _bits; i++) {
+			int count = 0;
+			for(int p = 0; p < _planes.length; p++)
+				count |= (int) ((_planes[p][i >>> 6] >>> i) & 1) << p;
+
+			// Each locus contributes one to the distance of every pair that disagrees on it
+			pairs += (double) count * (_size - count);
+			if(count > 0 && count < _size) {
+				double f = (double) count / _size;
+				entropy -= f * Math.log(f) + (1.0 - f) * Math.log(1.0 - f);
+			}
+		}
+
+		_distance = (_size > 1 && _bits > 0) ? pairs / ((double) _size * (_size - 1) / 2) / _bits : 0.0;
+		_entropy = (_bits > 0) ? entropy / Math.log(2) / _bits : 0.0;
+		_measured = true;
+	}
+}
@@ -0,0 +1,358 @@
+package com.ashwin.fri.genetic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * The GeneticEvaluator computes the fitness of chromosomes. Every episode of every
+ * chromosome is scheduled as a separate task on a fixed pool of worker threads,
+ * so a population with n chromosomes and a decoder with m episodes is evaluated as
+ * n * m independent tasks. An evaluator with a single thread evaluates chromosomes
+ * on the calling thread.
+ *
+ * Evaluators may use common random numbers: every call to evaluate draws a fixed
+ * set of seeds, and every chromosome plays each episode once with each seed. The
+ * chromosomes of a generation are then compared on identical scenarios, so fewer
+ * episodes are needed to rank them correctly. Otherwise, every episode of every
+ * chromosome is given its own seed. Either way, seeds are drawn on the calling thread
+ * before any episode is scheduled, so an evaluator whose stream is seeded (see
+ * create) produces identical fitness regardless of its number of threads (or, for a
+ * RemoteEvaluator, of its workers), and the number of threads may be changed while
+ * chromosomes are being evaluated.
+ *
+ * @author ashwin
+ */
+public class GeneticEvaluator {
+
+	private GeneticDecoder _decoder;
+	private volatile ExecutorService _executor;
+	private volatile int _threads;
+
+	private RandomStream _random;
+	private int _seeds;
+
+	// Episodes that are being played and the total time spent playing episodes, which
+	// are used to monitor the utilization of the threads (see GeneticMonitor).
+	private AtomicInteger _inFlight;
+	private LongAdder _busy;
+
+	public GeneticEvaluator(GeneticDecoder decoder, int threads) {
+		_decoder = decoder;
+		_threads = Math.max(1, threads);
+		_random = new RandomStream(System.nanoTime());
+		_inFlight = new AtomicInteger();
+		_busy = new LongAdder();
+
+		if(_threads > 1)
+			_executor = newExecutor(_threads);
+	}
+
+	private static ExecutorService newExecutor(int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int _count;
+
+			public synchronized Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "evaluator-" + _count++);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Creates an evaluator using the number of threads specified by the ga.threads
+	 * property. If the ga.remote.port property is set, then a RemoteEvaluator that
+	 * evaluates chromosomes on GeneticWorkers is created instead. If the race.max
+	 * property is greater than 1, then chromosomes are raced (see RacingEvaluator)
+	 * by the local or remote evaluator. The ga.crn.seeds property sets the number of
+	 * common seeds (see setCommonSeeds). Seeds are drawn from a stream that is seeded
+	 * by the clock.
+	 *
+	 * @param decoder genetic decoder implementation
+	 * @param props algorithm properties
+	 * @return evaluator
+	 * @throws IOException the remote evaluator cannot listen on its port
+	 */
+	public static GeneticEvaluator create(GeneticDecoder decoder, Properties props) throws IOException {
+		return create(decoder, props, new RandomStream(System.nanoTime()));
+	}
+
+	/**
+	 * Creates an evaluator like create(decoder, props) whose seeds are drawn from the
+	 * specified stream.
+	 *
+	 * @param decoder genetic decoder implementation
+	 * @param props algorithm properties
+	 * @param random random stream
+	 * @return evaluator
+	 * @throws IOException the remote evaluator cannot listen on its port
+	 */
+	public static GeneticEvaluator create(GeneticDecoder decoder, Properties props, RandomStream random) throws IOException {
+		int port = Integer.valueOf(props.getProperty("ga.remote.port", "0").trim());
+		GeneticEvaluator evaluator = (port > 0) 
+				? new RemoteEvaluator(decoder, port, 
+						Integer.valueOf(props.getProperty("ga.remote.batch", "16").trim()),
+						Integer.valueOf(props.getProperty("ga.remote.timeout", "10000").trim()))
+				: new GeneticEvaluator(decoder, getThreads(props));
+		evaluator.setCommonSeeds(Integer.valueOf(props.getProperty("ga.crn.seeds", "0").trim()));
+		evaluator._random = random;
+		
+		if(Integer.valueOf(props.getProperty("race.max", "1").trim()) > 1)
+			return RacingEvaluator.create(evaluator, props);
+		return evaluator;
+	}
+
+	/**
+	 * Returns the number of threads specified by the ga.threads property. If the
+	 * property is missing or zero, then one thread is used for every processor.
+	 *
+	 * @param props algorithm properties
+	 * @return number of threads
+	 */
+	public static int getThreads(Properties props) {
+		int threads = Integer.valueOf(props.getProperty("ga.threads", "0").trim());
+		return (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	public GeneticDecoder getDecoder() {
+		return _decoder;
+	}
+
+	public int getThreads() {
+		return _threads;
+	}
+
+	/**
+	 * Changes the number of threads that evaluate chromosomes. Episodes that are
+	 * already being played are finished, and the new number of threads applies to the
+	 * episodes that have not been started yet. Evaluators that do not evaluate
+	 * locally ignore it (see RemoteEvaluator).
+	 *
+	 * @param threads number of threads
+	 */
+	public synchronized void setThreads(int threads) {
+		threads = Math.max(1, threads);
+		if(_executor == null) {
+			if(threads > 1)
+				_executor = newExecutor(threads);
+		} else {
+			resize((ThreadPoolExecutor) _executor, threads);
+		}
+		_threads = threads;
+	}
+
+	/** Changes the number of threads of a fixed pool. */
+	static void resize(ThreadPoolExecutor pool, int threads) {
+		// The maximum size of a pool can never be less than its core size
+		if(threads > pool.getMaximumPoolSize()) {
+			pool.setMaximumPoolSize(threads);
+			pool.setCorePoolSize(threads);
+		} else {
+			pool.setCorePoolSize(threads);
+			pool.setMaximumPoolSize(threads);
+		}
+	}
+
+	/**
+	 * Returns the stream that the seeds of games are drawn from. Optimizers save and
+	 * restore its state in their checkpoints, so that a resumed run plays the same
+	 * games as an uninterrupted one.
+	 *
+	 * @return seed stream
+	 */
+	public RandomStream getRandom() {
+		return _random;
+	}
+
+	/** @return number of episodes that are being played */
+	public int getGamesInFlight() {
+		return _inFlight.get();
+	}
+
+	/** @return total nanoseconds that every thread has spent playing episodes */
+	public long getBusyNanos() {
+		return _busy.sum();
+	}
+
+	/**
+	 * Sets the number of common seeds that each episode is played with. Every call
+	 * to evaluate draws new seeds, so the chromosomes of a generation (or of a round
+	 * of a race) share their seeds. If the count is 0, then the decoder chooses the
+	 * seed of every episode itself.
+	 *
+	 * @param count number of seeds per episode
+	 */
+	public void setCommonSeeds(int count) {
+		_seeds = Math.max(0, count);
+	}
+
+	/**
+	 * Evaluates every chromosome whose fitness is not yet known. This method blocks
+	 * until every chromosome has been evaluated.
+	 *
+	 * @param chromosomes chromosomes to evaluate
+	 */
+	public void evaluate(GeneticChromosome[] chromosomes) {
+		long[] seeds = null;
+		if(_seeds > 0) {
+			seeds = new long[_seeds * _decoder.getEpisodes()];
+			for(int i = 0; i < seeds.length; i++)
+				seeds[i] = _random.nextLong();
+		}
+		evaluate(chromosomes, seeds);
+	}
+
+	/**
+	 * Evaluates every chromosome whose fitness is not yet known with the specified
+	 * seeds. Seed i is used to play episode i % episodes, so every episode must be
+	 * given the same number of seeds. This method blocks until every chromosome has
+	 * been evaluated.
+	 *
+	 * @param chromosomes chromosomes to evaluate
+	 * @param seeds common seeds of every game or null to give every game its own seed
+	 */
+	public void evaluate(GeneticChromosome[] chromosomes, long[] seeds) {
+		GeneticMetrics metrics = _decoder.getMetrics();
+		List<GeneticChromosome> pending = new ArrayList<GeneticChromosome>();
+		for(GeneticChromosome chromosome : chromosomes) {
+			if(chromosome.isEvaluated())
+				metrics.recordCacheHit();
+			else
+				pending.add(chromosome);
+		}
+
+		evaluate(pending.toArray(new GeneticChromosome[pending.size()]), getSeeds(pending.size(), seeds));
+	}
+
+	/**
+	 * Returns the seeds of every game of the specified number of chromosomes. Every
+	 * chromosome is given the common seeds, or if there are none, every game is given
+	 * its own seed. Seeds are drawn in the order of the games, so they do not depend
+	 * on the order that games finish in or on where they are played.
+	 *
+	 * @param count number of chromosomes
+	 * @param seeds common seeds or null
+	 * @return seeds of the games of each chromosome
+	 */
+	long[][] getSeeds(int count, long[] seeds) {
+		int games = (seeds != null) ? seeds.length : _decoder.getEpisodes();
+		long[][] own = new long[count][];
+		for(int i = 0; i < count; i++) {
+			own[i] = seeds;
+			if(seeds == null) {
+				own[i] = new long[games];
+				for(int j = 0; j < games; j++)
+					own[i][j] = _random.nextLong();
+			}
+		}
+		return own;
+	}
+
+	/**
+	 * Evaluates every chromosome with its own seeds, regardless of whether its fitness
+	 * is already known. Seed j of a chromosome is used to play episode j % episodes.
+	 * GeneticWorkers evaluate the batches of a RemoteEvaluator with this method.
+	 *
+	 * @param chromosomes chromosomes to evaluate
+	 * @param seeds seeds of the games of each chromosome
+	 */
+	void evaluate(GeneticChromosome[] chromosomes, long[][] seeds) {
+		GeneticMetrics metrics = _decoder.getMetrics();
+		int episodes = _decoder.getEpisodes();
+		double[][] fitness = new double[chromosomes.length][];
+		for(int i = 0; i < fitness.length; i++)
+			fitness[i] = new double[seeds[i].length];
+
+		ExecutorService executor = _executor;
+		if(executor == null) {
+			for(int i = 0; i < chromosomes.length; i++) {
+				double[] phenotype = chromosomes[i].getPhenotype();
+				for(int j = 0; j < fitness[i].length; j++)
+					fitness[i][j] = new Episode(phenotype, j % episodes, seeds[i][j]).call();
+			}
+		} else {
+			List<List<Future<Double>>> futures = new ArrayList<List<Future<Double>>>();
+			for(int i = 0; i < chromosomes.length; i++) {
+				double[] phenotype = chromosomes[i].getPhenotype();
+				List<Future<Double>> games = new ArrayList<Future<Double>>();
+				for(int j = 0; j < fitness[i].length; j++)
+					games.add(executor.submit(new Episode(phenotype, j % episodes, seeds[i][j])));
+				futures.add(games);
+			}
+
+			for(int i = 0; i < chromosomes.length; i++)
+				for(int j = 0; j < fitness[i].length; j++)
+					fitness[i][j] = get(futures.get(i).get(j));
+		}
+
+		for(int i = 0; i < chromosomes.length; i++) {
+			chromosomes[i].setFitness(_decoder.aggregate(fitness[i]));
+			metrics.recordEvaluation();
+		}
+	}
+
+	private static double get(Future<Double> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Sends a message to every worker that evaluates chromosomes for this evaluator.
+	 * Messages are delivered in order to every current and future worker before its
+	 * next batch (see EvolutionStrategy). Local evaluators have no workers, so they
+	 * ignore broadcasts.
+	 *
+	 * @param message message
+	 */
+	public void broadcast(byte[] message) {}
+
+	/** Stops the worker threads. The evaluator may not be used afterwards. */
+	public void shutdown() {
+		if(_executor != null)
+			_executor.shutdownNow();
+	}
+
+	/** A single episode of the evaluation of a phenotype with a fixed seed. */
+	private class Episode implements Callable<Double> {
+
+		private double[] _phenotype;
+		private int _episode;
+		private long _seed;
+
+		public Episode(double[] phenotype, int episode, long seed) {
+			_phenotype = phenotype;
+			_episode = episode;
+			_seed = seed;
+		}
+
+		public Double call() {
+			_inFlight.incrementAndGet();
+			long start = System.nanoTime();
+			try {
+				return _decoder.getFitness(_phenotype, _episode, _seed);
+			} finally {
+				_busy.add(System.nanoTime() - start);
+				_inFlight.decrementAndGet();
+			}
+		}
+	}
+}
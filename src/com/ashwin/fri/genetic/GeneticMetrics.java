@@ -0,0 +1,208 @@
+package com.ashwin.fri.genetic;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GeneticMetrics collects statistics about a single generation of the genetic
+ * algorithm: how long each phase of the generation took, how many evaluations were
+ * performed, how long the evaluated games were, how they ended, and how much
+ * garbage was produced.
+ * Recording methods are thread safe, so they may be called from evaluation threads.
+ *
+ * @author ashwin
+ */
+public class GeneticMetrics {
+
+	/** Game lengths are bucketed by powers of two: bucket i holds [2^i, 2^(i+1)). */
+	private static final int BUCKETS = 32;
+
+	private LongAdder _evaluations, _hits;
+	private LongAdder _evaluateNanos, _selectNanos, _breedNanos;
+	private AtomicLongArray _lengths;
+	private ConcurrentSkipListMap<String, LongAdder> _outcomes;
+
+	private long _start, _gcCount, _gcTime, _allocated;
+
+	public GeneticMetrics() {
+		begin();
+	}
+
+	/** Resets the metrics at the beginning of a generation. */
+	public void begin() {
+		_evaluations   = new LongAdder();
+		_hits          = new LongAdder();
+		_evaluateNanos = new LongAdder();
+		_selectNanos   = new LongAdder();
+		_breedNanos    = new LongAdder();
+		_lengths = new AtomicLongArray(BUCKETS);
+		_outcomes = new ConcurrentSkipListMap<String, LongAdder>();
+
+		_start = System.nanoTime();
+		_gcCount = getGcCount();
+		_gcTime = getGcTime();
+		_allocated = getAllocatedBytes();
+	}
+
+	/** Records that a chromosome was evaluated. */
+	public void recordEvaluation() {
+		_evaluations.increment();
+	}
+
+	/** Records that a chromosome did not need to be evaluated, because its fitness was known. */
+	public void recordCacheHit() {
+		_hits.increment();
+	}
+
+	/** Records the wall time spent evaluating a batch of chromosomes. */
+	public void recordEvaluate(long nanos) {
+		_evaluateNanos.add(nanos);
+	}
+
+	/** Records the wall time spent selecting parents. */
+	public void recordSelect(long nanos) {
+		_selectNanos.add(nanos);
+	}
+
+	/** Records the wall time spent mating and mutating offspring. */
+	public void recordBreed(long nanos) {
+		_breedNanos.add(nanos);
+	}
+
+	/** Records the length (in ticks) of a game that was played during an evaluation. */
+	public void recordGameLength(long ticks) {
+		int bucket = 63 - Long.numberOfLeadingZeros(Math.max(1, ticks));
+		_lengths.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+	}
+
+	/**
+	 * Records how a game that was played during an evaluation ended (for example, 
+	 * whether PacMan died or the game was terminated early).
+	 *
+	 * @param outcome name of the outcome
+	 */
+	public void recordOutcome(String outcome) {
+		LongAdder count = _outcomes.get(outcome);
+		if(count == null) {
+			_outcomes.putIfAbsent(outcome, new LongAdder());
+			count = _outcomes.get(outcome);
+		}
+		count.increment();
+	}
+
+	/** @return number of evaluations performed in the current generation */
+	public long getEvaluations() {
+		return _evaluations.sum();
+	}
+
+	/**
+	 * Completes the current generation and returns its metrics. The returned map
+	 * preserves insertion order, so it can be written directly as a row of a table.
+	 *
+	 * @param gen generation number
+	 * @param pop population at the end of the generation
+	 * @return metrics for the generation
+	 */
+	public Map<String, Object> end(int gen, GeneticPopulation pop) {
+		double wall = (System.nanoTime() - _start) / 1e9;
+		double evaluate = _evaluateNanos.sum() / 1e9;
+		long evaluations = _evaluations.sum();
+		long hits = _hits.sum();
+
+		Map<String, Object> row = new LinkedHashMap<String, Object>();
+		row.put("gen", gen);
+		row.put("best", pop.getBestChromosome().getFitness());
+		row.put("avg", pop.getAverageFitness());
+		row.put("stddev", pop.getFitnessDeviation());
+		row.put("diversity", pop.getDiversity());
+		row.put("entropy", pop.getEntropy());
+		row.put("unique", pop.getUniqueGenomes());
+		row.put("mutation_rate", pop.getMutationRate());
+		row.put("restarted", pop.isRestarted());
+		row.put("evaluations", evaluations);
+		row.put("evals_per_sec", evaluate > 0 ? evaluations / evaluate : 0.0);
+		row.put("cache_hit_rate", evaluations + hits > 0 ? (double) hits / (evaluations + hits) : 0.0);
+		row.put("wall_secs", wall);
+		row.put("evaluate_secs", evaluate);
+		row.put("select_secs", _selectNanos.sum() / 1e9);
+		row.put("breed_secs", _breedNanos.sum() / 1e9);
+		row.put("gc_count", getGcCount() - _gcCount);
+		row.put("gc_secs", (getGcTime() - _gcTime) / 1e3);
+		row.put("allocated_mb", _allocated < 0 ? -1.0 : (getAllocatedBytes() - _allocated) / 1048576.0);
+		row.put("game_lengths", getHistogram());
+		row.put("outcomes", getOutcomes());
+		return row;
+	}
+
+	/** Returns the number of games with each outcome as a list of name=count pairs. */
+	private String getOutcomes() {
+		StringBuilder sb = new StringBuilder();
+		for(Map.Entry<String, LongAdder> entry : _outcomes.entrySet())
+			sb.append(sb.length() == 0 ? "" : " ").append(entry.getKey()).append('=').append(entry.getValue().sum());
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the game length histogram as a list of bucket counts separated by spaces.
+	 * Trailing empty buckets are omitted.
+	 */
+	private String getHistogram() {
+		int last = BUCKETS - 1;
+		while(last > 0 && _lengths.get(last) == 0)
+			last--;
+
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i <= last; i++)
+			sb.append(i == 0 ? "" : " ").append(_lengths.get(i));
+		return sb.toString();
+	}
+
+	private static long getGcCount() {
+		long count = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+	private static long getGcTime() {
+		long time = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			time += Math.max(0, gc.getCollectionTime());
+		return time;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by all live threads or -1 if the JVM does
+	 * not support allocation accounting. Bytes allocated by threads that terminated
+	 * during the generation are not counted.
+	 */
+	private static long getAllocatedBytes() {
+		try {
+			return getThreadAllocatedBytes();
+		} catch (LinkageError e) {
+			// The jdk.management module is not present in the runtime image
+			return -1;
+		}
+	}
+
+	private static long getThreadAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(!(threads instanceof com.sun.management.ThreadMXBean))
+			return -1;
+
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+		if(!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled())
+			return -1;
+
+		long total = 0;
+		for(long bytes : bean.getThreadAllocatedBytes(threads.getAllThreadIds()))
+			total += Math.max(0, bytes);
+		return total;
+	}
+}
@@ -0,0 +1,221 @@
+package com.ashwin.fri.genetic;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The GeneticMonitor exposes a running optimizer to JMX tools like jconsole. It
+ * reports the progress of the optimizer and the utilization of its evaluator, and
+ * allows the optimizer to be paused and resumed, its evaluator to be resized, its
+ * state to be checkpointed, and the best chromosome so far to be saved, all without
+ * restarting the run.
+ *
+ * The optimizer reports every generation to the monitor once it has been evaluated
+ * (see generationEvaluated). Pauses and checkpoints take effect at that point, so the
+ * state of the optimizer is never observed in the middle of a generation.
+ *
+ * @author ashwin
+ */
+public class GeneticMonitor implements GeneticMonitorMXBean {
+
+	/** The name that monitors are registered under. */
+	public static final String NAME = "com.ashwin.fri:type=GeneticMonitor";
+
+	/**
+	 * Creates a monitor of an optimizer and registers it with the platform MBean
+	 * server, unless the ga.jmx property is false. A monitor that is registered by a
+	 * previous run is replaced.
+	 *
+	 * @param props algorithm properties
+	 * @param decoder decoder of the optimizer
+	 * @param evaluator evaluator of the optimizer or null if it has none
+	 * @param state state of the optimizer or null if it cannot be checkpointed
+	 * @return monitor
+	 */
+	public static GeneticMonitor register(Properties props, GeneticDecoder decoder, 
+			GeneticEvaluator evaluator, Checkpointable state) {
+		GeneticMonitor monitor = new GeneticMonitor(decoder, evaluator, state);
+		if(Boolean.valueOf(props.getProperty("ga.jmx", "true").trim())) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = new ObjectName(NAME);
+				if(server.isRegistered(name))
+					server.unregisterMBean(name);
+				server.registerMBean(monitor, name);
+				monitor._name = name;
+			} catch (JMException e) {
+				System.out.println("Monitor cannot be registered: " + e);
+			}
+		}
+		return monitor;
+	}
+
+	private GeneticDecoder _decoder;
+	private GeneticEvaluator _evaluator;
+	private Checkpointable _state;
+	private ObjectName _name;
+
+	private volatile int _gen = -1;
+	private volatile double _average = Double.NaN, _evaluations, _fitness = Double.NaN;
+
+	// The phenotype of a chromosome is kept rather than the chromosome, because the
+	// phenotypes of some chromosomes change as the optimizer moves on (see
+	// PerturbedChromosome).
+	private double[] _phenotype;
+
+	private boolean _paused;
+	private String _checkpoint;
+	private long _sampled, _busy;
+
+	private GeneticMonitor(GeneticDecoder decoder, GeneticEvaluator evaluator, Checkpointable state) {
+		_decoder = decoder;
+		_evaluator = evaluator;
+		_state = state;
+		_sampled = System.nanoTime();
+	}
+
+	/**
+	 * Reports a generation that has been evaluated. If a checkpoint was requested, it
+	 * is written, and if the optimizer is paused, this blocks until it is resumed.
+	 * Optimizers call this at the end of every generation, once their state is ready
+	 * to be checkpointed.
+	 *
+	 * @param gen generation
+	 * @param best best chromosome of the generation
+	 * @param metrics metrics of the generation (see GeneticMetrics.end)
+	 */
+	public synchronized void generationEvaluated(int gen, GeneticChromosome best, Map<String, Object> metrics) {
+		_gen = gen;
+		_average = ((Number) metrics.get("avg")).doubleValue();
+		_evaluations = ((Number) metrics.get("evals_per_sec")).doubleValue();
+		if(_phenotype == null || best.getFitness() < _fitness) {
+			_phenotype = best.getPhenotype().clone();
+			_fitness = best.getFitness();
+		}
+
+		writeCheckpoint();
+		while(_paused) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			writeCheckpoint();
+		}
+	}
+
+	/** Writes the checkpoint that was requested, if any. */
+	private void writeCheckpoint() {
+		if(_checkpoint == null)
+			return;
+
+		File file = new File(_checkpoint);
+		_checkpoint = null;
+		try {
+			_state.save(file);
+			System.out.println("Checkpoint of gen " + _gen + " written to " + file);
+		} catch (IOException e) {
+			System.out.println("Checkpoint cannot be written to " + file + ": " + e);
+		}
+	}
+
+	/** Unregisters the monitor once its optimizer has finished. */
+	public void unregister() {
+		if(_name == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(_name);
+		} catch (JMException e) {
+			// The monitor was already replaced by another run
+		}
+		_name = null;
+	}
+
+	public int getGeneration() {
+		return _gen;
+	}
+
+	public double getBestFitness() {
+		return _fitness;
+	}
+
+	public double getAverageFitness() {
+		return _average;
+	}
+
+	public double getEvaluationsPerSecond() {
+		return _evaluations;
+	}
+
+	public int getGamesInFlight() {
+		return (_evaluator != null) ? _evaluator.getGamesInFlight() : 0;
+	}
+
+	public double getWorkerUtilization() {
+		if(_evaluator == null)
+			return Double.NaN;
+
+		synchronized(_evaluator) {
+			long now = System.nanoTime(), busy = _evaluator.getBusyNanos();
+			double elapsed = (double) (now - _sampled) * _evaluator.getThreads();
+			double utilization = (elapsed > 0) ? Math.min(1.0, (busy - _busy) / elapsed) : 0.0;
+			_sampled = now;
+			_busy = busy;
+			return utilization;
+		}
+	}
+
+	public int getThreads() {
+		return (_evaluator != null) ? _evaluator.getThreads() : 0;
+	}
+
+	public void setThreads(int threads) {
+		if(_evaluator == null)
+			return;
+		int old = _evaluator.getThreads();
+		_evaluator.setThreads(threads);
+		if(_evaluator.getThreads() != old)
+			System.out.println("Evaluating with " + _evaluator.getThreads() + " threads");
+	}
+
+	public synchronized boolean isPaused() {
+		return _paused;
+	}
+
+	public synchronized void pause() {
+		_paused = true;
+	}
+
+	public synchronized void resume() {
+		_paused = false;
+		notifyAll();
+	}
+
+	public synchronized String checkpoint(String file) {
+		if(_state == null)
+			throw new UnsupportedOperationException("The optimizer cannot be checkpointed");
+		_checkpoint = file;
+		notifyAll();
+		return _paused ? "Checkpoint of gen " + _gen + " will be written to " + file 
+				: "Checkpoint will be written to " + file + " after gen " + (_gen + 1);
+	}
+
+	public synchronized String saveBest(String file) {
+		if(_phenotype == null)
+			throw new IllegalStateException("No generation has been evaluated");
+		try {
+			_decoder.save(_phenotype, new File(file));
+		} catch (IOException e) {
+			throw new IllegalStateException("Best chromosome cannot be saved to " + file + ": " + e);
+		}
+		return "Saved the best chromosome (fitness " + _fitness + ") to " + file;
+	}
+}
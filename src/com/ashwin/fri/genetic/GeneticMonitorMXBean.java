@@ -0,0 +1,66 @@
+package com.ashwin.fri.genetic;
+
+/**
+ * The management interface of a GeneticMonitor, which is registered with the
+ * platform MBean server as com.ashwin.fri:type=GeneticMonitor.
+ *
+ * @author ashwin
+ */
+public interface GeneticMonitorMXBean {
+
+	/** @return last generation that was evaluated */
+	int getGeneration();
+
+	/** @return fitness of the best chromosome of any generation */
+	double getBestFitness();
+
+	/** @return average fitness of the last generation */
+	double getAverageFitness();
+
+	/** @return evaluations per second of the last generation */
+	double getEvaluationsPerSecond();
+
+	/** @return number of games that are being played */
+	int getGamesInFlight();
+
+	/** @return fraction of the time that the threads (or workers) spent playing games since this was last read */
+	double getWorkerUtilization();
+
+	/** @return number of threads that evaluate chromosomes (connected workers if they are evaluated remotely) */
+	int getThreads();
+
+	/**
+	 * Changes the number of threads that evaluate chromosomes. Chromosomes that are
+	 * evaluated remotely are evaluated by every connected worker, so this does nothing.
+	 *
+	 * @param threads number of threads
+	 */
+	void setThreads(int threads);
+
+	/** @return whether or not the optimizer is paused */
+	boolean isPaused();
+
+	/** Pauses the optimizer once the current generation has been evaluated. */
+	void pause();
+
+	/** Resumes the optimizer. */
+	void resume();
+
+	/**
+	 * Writes a checkpoint of the optimizer to the specified file once the current
+	 * generation has been evaluated (immediately if the optimizer is paused).
+	 *
+	 * @param file checkpoint file
+	 * @return description of the request
+	 */
+	String checkpoint(String file);
+
+	/**
+	 * Saves the phenotype of the best chromosome of any generation to the specified
+	 * file (see GeneticDecoder.save).
+	 *
+	 * @param file output file
+	 * @return description of what was saved
+	 */
+	String saveBest(String file);
+}
@@ -1,113 +1,294 @@
 package com.ashwin.fri.genetic;
 
-import java.util.Arrays;
-import java.util.Comparator;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
+
+import com.ashwin.fri.random.RandomStream;
 
 public class GeneticPopulation {
 	
 	private GeneticChromosome[] _pop;
-	private Properties _props;
+	private GeneticConfig _config;
+	private GeneticSelection _selection;
+	private RandomStream _random;
 	private GeneticDecoder _decoder;
+	private GeneticEvaluator _evaluator;
+	
+	// The diversity of binary populations is measured as they are bred. Populations
+	// that stay converged for too long have their mutation rate boosted and are
+	// eventually restarted (see GeneticConfig.getDiversityMin).
+	private GeneticDiversity _diversity;
+	private int _converged;
+	private double _mutate;
+	private boolean _restarted;
 	
 	/**
 	 * Creates a new GeneticPopulation with randomized chromosomes using
 	 * the genetic algorithm parameters specified by the properties file.
+	 * Chromosomes are evaluated on the calling thread.
 	 * 
 	 * @param decoder genetic decoder implementation
 	 * @param props algorithm parameters
 	 */
 	public GeneticPopulation(GeneticDecoder decoder, Properties props) {
-		_props = props;
-		_decoder = decoder;
+		this(new GeneticEvaluator(decoder, 1), props);
+	}
+	
+	/**
+	 * Creates a new GeneticPopulation with randomized chromosomes that are
+	 * evaluated by the specified evaluator. The population is bred from a stream
+	 * that is seeded by the clock.
+	 * 
+	 * @param evaluator genetic evaluator
+	 * @param props algorithm parameters
+	 */
+	public GeneticPopulation(GeneticEvaluator evaluator, Properties props) {
+		this(evaluator, new GeneticConfig(props), new RandomStream(System.nanoTime()));
+	}
+	
+	/**
+	 * Creates a new GeneticPopulation with randomized chromosomes that are
+	 * evaluated by the specified evaluator. If the decoder has an initial phenotype,
+	 * then the pop.seed.fraction of the population is seeded with it: one exact copy
+	 * and mutations of it (at the pop.mutate rate), so that the seed is refined
+	 * without collapsing the diversity of the population. Every random choice of
+	 * this and every later generation is drawn from the specified stream.
+	 * 
+	 * @param evaluator genetic evaluator
+	 * @param config algorithm parameters
+	 * @param random random stream
+	 */
+	public GeneticPopulation(GeneticEvaluator evaluator, GeneticConfig config, RandomStream random) {
+		_config = config;
+		_selection = GeneticSelection.create(config);
+		_random = random;
+		_evaluator = evaluator;
+		_decoder = evaluator.getDecoder();
 		
-		int size = Integer.valueOf(_props.getProperty("pop.size"));
-		int bits = decoder.getTotalBits();
+		double[] initial = _decoder.getInitialPhenotype();
+		int seeded = (initial == null) ? 0 : (int) Math.ceil(config.getSize() * config.getSeedFraction());
 		
-		_pop = new GeneticChromosome[size];
-		for(int i = 0; i < _pop.length; i++)
-			_pop[i] = new GeneticChromosome(_decoder, bits);
-		Arrays.sort(_pop, new ChromosomeComparator());
+		_pop = new GeneticChromosome[config.getSize()];
+		for(int i = 0; i < _pop.length; i++) {
+			if(i < seeded) {
+				_pop[i] = GeneticChromosome.create(_decoder, config, initial);
+				if(i > 0)
+					_pop[i].mutate(config.getMutate(), random);
+			} else {
+				_pop[i] = GeneticChromosome.create(_decoder, config, random);
+			}
+		}
+		_diversity = (_pop[0] instanceof BinaryChromosome) ? GeneticDiversity.of(_pop) : null;
+		_mutate = config.getMutate();
+		evaluate();
 	}
 	
 	/**
 	 * Creates a new GeneticPopulation from an existing chromosome array.
-	 * This is used by the evolve method to generate new generations.
 	 * 
 	 * @param props algorithm parameters
 	 * @param decoder genetic decoder implementation
 	 * @param pop population
 	 */
 	public GeneticPopulation(GeneticDecoder decoder, Properties props, GeneticChromosome[] pop) {
-		_props = props;
-		_decoder = decoder;
+		this(new GeneticEvaluator(decoder, 1), props, pop);
+	}
+	
+	/**
+	 * Creates a new GeneticPopulation from an existing chromosome array whose
+	 * chromosomes are evaluated by the specified evaluator.
+	 * 
+	 * @param evaluator genetic evaluator
+	 * @param props algorithm parameters
+	 * @param pop population
+	 */
+	public GeneticPopulation(GeneticEvaluator evaluator, Properties props, GeneticChromosome[] pop) {
+		this(evaluator, new GeneticConfig(props), null, new RandomStream(System.nanoTime()), pop, null);
+	}
+	
+	/**
+	 * Creates a population that only evaluates the specified chromosomes and cannot
+	 * be evolved. The evolution strategies use it to evaluate and report their
+	 * candidates.
+	 * 
+	 * @param evaluator genetic evaluator
+	 * @param pop population
+	 */
+	GeneticPopulation(GeneticEvaluator evaluator, GeneticChromosome[] pop) {
+		this(evaluator, null, null, null, pop, null);
+	}
+
+	/**
+	 * Creates a population from chromosomes that may have been bred with other
+	 * parameters, which is evolved with the specified parameters and stream from now
+	 * on. Population-based training uses it to hand a population to another member.
+	 *
+	 * @param evaluator genetic evaluator
+	 * @param config algorithm parameters
+	 * @param random random stream
+	 * @param pop population
+	 */
+	GeneticPopulation(GeneticEvaluator evaluator, GeneticConfig config, RandomStream random, GeneticChromosome[] pop) {
+		this(evaluator, config, null, random, pop, null);
+	}
+
+	/**
+	 * Creates a generation of a population that shares the parameters, selection
+	 * scheme and stream. The diversity of binary chromosomes is measured unless it
+	 * was measured while they were bred.
+	 */
+	private GeneticPopulation(GeneticEvaluator evaluator, GeneticConfig config, GeneticSelection selection, 
+			RandomStream random, GeneticChromosome[] pop, GeneticDiversity diversity) {
+		_config = config;
+		_selection = (selection == null && config != null) ? GeneticSelection.create(config) : selection;
+		_random = random;
+		_evaluator = evaluator;
+		_decoder = evaluator.getDecoder();
 		_pop = pop;
-		Arrays.sort(_pop, new ChromosomeComparator());
+		_diversity = (diversity == null && pop[0] instanceof BinaryChromosome) ? GeneticDiversity.of(pop) : diversity;
+		_mutate = (config != null) ? config.getMutate() : 0.0;
+		evaluate();
+	}
+	
+	/**
+	 * Evaluates every chromosome whose fitness is not yet known and then moves
+	 * the best chromosome to the front of the population. The rest of the population
+	 * is not sorted. Chromosomes that were carried over from the previous generation
+	 * are not evaluated again.
+	 */
+	private void evaluate() {
+		GeneticMetrics metrics = _decoder.getMetrics();
+		long start = System.nanoTime();
+		_evaluator.evaluate(_pop);
+		metrics.recordEvaluate(System.nanoTime() - start);
+		
+		start = System.nanoTime();
+		int best = 0;
+		for(int i = 1; i < _pop.length; i++)
+			if(_pop[i].getFitness() < _pop[best].getFitness())
+				best = i;
+		swap(_pop, 0, best);
+		metrics.recordSelect(System.nanoTime() - start);
 	}
 	
 	/**
 	 * This method evolves the population by one generation. It performs
-	 * elitism, selection, mating, and mutation.
+	 * elitism, selection, mating, and mutation. While the diversity of the population
+	 * is below pop.diversity.min, offspring are mutated at pop.diversity.boost times
+	 * the mutation rate, and once it has been below it for pop.diversity.restart
+	 * generations, every chromosome except the elites is replaced by a random one.
 	 * 
 	 * @return evolved population
+	 * @throws IllegalStateException the population only evaluates chromosomes
 	 */
 	public GeneticPopulation evolve() {
+		if(_config == null)
+			throw new IllegalStateException("Population cannot be evolved");
+		
 		GeneticChromosome[] next = new GeneticChromosome[_pop.length];
-		double cross   = Double.valueOf(_props.getProperty("pop.cross"));
-		double mutate  = Double.valueOf(_props.getProperty("pop.mutate"));
-		double elitism = Double.valueOf(_props.getProperty("pop.elitism"));
+		GeneticMetrics metrics = _decoder.getMetrics();
+		
+		double min = _config.getDiversityMin();
+		int converged = (min > 0.0 && getDiversity() < min) ? _converged + 1 : 0;
+		boolean restart = _config.getDiversityRestart() > 0 && converged >= _config.getDiversityRestart();
+		double mutate = (converged > 0) ? Math.min(1.0, _config.getMutate() * _config.getDiversityBoost()) : _config.getMutate();
 		
-		// Population size MUST be even, because we do everything in multiples of 2
-		int index = (int) (_pop.length * elitism);
-		if(index % 2 != 0) index++;
-				
 		// Elitism: Copy the best elements in the population into the next generation.
-		// Because the population is sorted, take elements between [0, index)
+		// The best chromosome is already at the front, so only the rest of the elites
+		// are partitioned into [1, elites) in linear time.
+		long start = System.nanoTime();
+		int index = _config.getElites();
+		partition(_pop, 1, _pop.length, index);
 		System.arraycopy(_pop, 0, next, 0, index);
+		GeneticDiversity diversity = (_diversity != null) ? new GeneticDiversity(((BinaryChromosome) _pop[0]).getBits(), next.length) : null;
+		for(int i = 0; diversity != null && i < index; i++)
+			diversity.add((BinaryChromosome) next[i]);
 		
-		// While the next generation is not yet full, continue natural selection
-		while(index < next.length) {
-			// Select two parents using tournament selection
-			GeneticChromosome p1 = select();
-			GeneticChromosome p2 = select();
-			
-			// Mate the parents and mutate their offspring
-			GeneticChromosome[] off = p1.mate(p2, cross);
-			off[0].mutate(mutate);
-			off[1].mutate(mutate);
+		// Select every parent of the generation at once (see GeneticSelection). The
+		// number of elites is even, so the parents can be paired up.
+		GeneticChromosome[] parents = _selection.select(_pop, next.length - index, _random);
+		metrics.recordSelect(System.nanoTime() - start);
+		
+		start = System.nanoTime();
+		for(int p = 0; index < next.length; p += 2) {
+			// Mate the parents and mutate their offspring. A restart replaces the
+			// offspring with random chromosomes instead.
+			GeneticChromosome[] off;
+			if(restart) {
+				off = new GeneticChromosome[] { GeneticChromosome.create(_decoder, _config, _random),
+												GeneticChromosome.create(_decoder, _config, _random) };
+			} else {
+				off = parents[p].mate(parents[p + 1], _config.getCross(), _random);
+				off[0].mutate(mutate, _random);
+				off[1].mutate(mutate, _random);
+			}
+			if(diversity != null) {
+				diversity.add((BinaryChromosome) off[0]);
+				diversity.add((BinaryChromosome) off[1]);
+			}
 			
 			// Put the offspring into the next generation and increment the counter
 			System.arraycopy(off, 0, next, index, 2);
 			index += 2;
 		}
+		metrics.recordBreed(System.nanoTime() - start);
 
 		// Return a new generation of the population
-		return new GeneticPopulation(_decoder, _props, next);
+		GeneticPopulation pop = new GeneticPopulation(_evaluator, _config, _selection, _random, next, diversity);
+		pop._converged = restart ? 0 : converged;
+		pop._mutate = mutate;
+		pop._restarted = restart;
+		return pop;
 	}
 	
 	/**
-	 * This method performs tournament selection. Tournament selection involves
-	 * selecting a group of chromosomes and returning the chromosome with the
-	 * lowest fitness value.
+	 * Rearranges pop[lo, hi) so that pop[lo, k) contains the chromosomes with the
+	 * lowest fitness in that range, in no particular order. This is a quickselect
+	 * with a median of three pivot and three way partitioning, so it takes linear
+	 * time on average even if many chromosomes have equal fitness.
 	 * 
-	 * @return selected chromosome
+	 * @param pop population
+	 * @param lo first index of the range
+	 * @param hi last index (exclusive) of the range
+	 * @param k end of the partition
 	 */
-	private GeneticChromosome select() {
-		int size = Integer.valueOf(_props.getProperty("tournament.size"));
-		GeneticChromosome winner = null;
-		double min = Double.MAX_VALUE;
-		
-		for(int i = 0; i < size; i++) {
-			int rand = (int) (Math.random() * _pop.length);
-			double fitness = _pop[rand].getFitness();
+	static void partition(GeneticChromosome[] pop, int lo, int hi, int k) {
+		while(lo < k && k < hi) {
+			double a = pop[lo].getFitness();
+			double b = pop[(lo + hi) >>> 1].getFitness();
+			double c = pop[hi - 1].getFitness();
+			double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
 			
-			if(fitness < min) {
-				winner = _pop[rand];
-				min = fitness;
+			// [lo, lt) is less than, [lt, i) is equal to and [gt, hi) is greater than the pivot
+			int lt = lo, i = lo, gt = hi;
+			while(i < gt) {
+				double fitness = pop[i].getFitness();
+				if(fitness < pivot)
+					swap(pop, lt++, i++);
+				else if(fitness > pivot)
+					swap(pop, i, --gt);
+				else
+					i++;
 			}
+			
+			if(k <= lt)
+				hi = lt;
+			else if(k >= gt)
+				lo = gt;
+			else
+				return;
 		}
-		
-		return winner;
+	}
+	
+	private static void swap(GeneticChromosome[] pop, int i, int j) {
+		GeneticChromosome tmp = pop[i];
+		pop[i] = pop[j];
+		pop[j] = tmp;
 	}
 	
 	/** Returns the average fitness of the population. */
@@ -118,22 +299,135 @@ public class GeneticPopulation {
 		return avg / _pop.length;
 	}
 	
+	/** Returns the standard deviation of the fitness of the population. */
+	public double getFitnessDeviation() {
+		double avg = getAverageFitness();
+		double sum = 0.0;
+		for(int i = 0; i < _pop.length; i++)
+			sum += (_pop[i].getFitness() - avg) * (_pop[i].getFitness() - avg);
+		return Math.sqrt(sum / _pop.length);
+	}
+	
+	/**
+	 * Returns the mean distance between every pair of chromosomes in the population
+	 * (see GeneticDiversity.getDistance and RealChromosome.getDiversity).
+	 * 
+	 * @return diversity between zero (converged) and one
+	 */
+	public double getDiversity() {
+		if(_diversity != null)
+			return _diversity.getDistance();
+		return RealChromosome.getDiversity(_pop);
+	}
+	
+	/**
+	 * Returns the mean entropy of every bit of a binary population (see
+	 * GeneticDiversity.getEntropy).
+	 * 
+	 * @return entropy between zero and one, or -1 if the population is not binary
+	 */
+	public double getEntropy() {
+		return (_diversity != null) ? _diversity.getEntropy() : -1.0;
+	}
+	
+	/** Returns the number of distinct genomes (or phenotypes) in the population. */
+	public int getUniqueGenomes() {
+		if(_diversity != null)
+			return _diversity.getUnique();
+		
+		Set<DoubleBuffer> phenotypes = new HashSet<DoubleBuffer>();
+		for(GeneticChromosome chromosome : _pop)
+			phenotypes.add(DoubleBuffer.wrap(chromosome.getPhenotype()));
+		return phenotypes.size();
+	}
+	
+	/** Returns the rate that the offspring of this generation were mutated at. */
+	public double getMutationRate() {
+		return _mutate;
+	}
+	
+	/** Returns whether or not this generation was restarted because it had converged. */
+	public boolean isRestarted() {
+		return _restarted;
+	}
+	
+	/** Returns the chromosomes of the population. The returned array must not be modified. */
+	GeneticChromosome[] getChromosomes() {
+		return _pop;
+	}
+
 	/** Returns the most fit chromosome in the population. */
 	public GeneticChromosome getBestChromosome() {
 		return _pop[0];
 	}
-	
+
 	/**
-	 * This class is responsible for comparing two chromosomes. It is used
-	 * by the evolve function to sort the population by their fitness values.
-	 * 
-	 * @author ashwin
+	 * Writes the state of the population to a checkpoint: the states of the stream
+	 * that it is bred from and of the stream that its evaluator draws the seeds of
+	 * games from, the number of generations that it has been converged, the rate that
+	 * it was mutated at, whether it was restarted, and every chromosome and its fitness.
+	 *
+	 * @param out checkpoint
+	 * @throws IOException write error
 	 */
-	private class ChromosomeComparator implements Comparator<GeneticChromosome> {
-		public int compare(GeneticChromosome o1, GeneticChromosome o2) {
-			Double f1 = o1.getFitness();
-			Double f2 = o2.getFitness();			
-			return f1.compareTo(f2);
-		}
+	void write(DataOutputStream out) throws IOException {
+		out.writeLong(_random.getState());
+		out.writeLong(_evaluator.getRandom().getState());
+		out.writeInt(_converged);
+		out.writeDouble(_mutate);
+		out.writeBoolean(_restarted);
+		out.writeInt(_pop.length);
+		for(GeneticChromosome chromosome : _pop)
+			write(out, chromosome);
+	}
+
+	/**
+	 * Reads a population that was written by write, which is evolved with the
+	 * specified parameters and stream from now on. Both streams are restored, so the
+	 * population continues exactly like the population that was written.
+	 *
+	 * @param in checkpoint
+	 * @param evaluator genetic evaluator
+	 * @param config algorithm parameters
+	 * @param random random stream
+	 * @return population
+	 * @throws IOException read error
+	 */
+	static GeneticPopulation read(DataInputStream in, GeneticEvaluator evaluator, GeneticConfig config,
+			RandomStream random) throws IOException {
+		long breeding = in.readLong(), seeds = in.readLong();
+		int converged = in.readInt();
+		double mutate = in.readDouble();
+		boolean restarted = in.readBoolean();
+		GeneticChromosome[] chromosomes = new GeneticChromosome[in.readInt()];
+		for(int i = 0; i < chromosomes.length; i++)
+			chromosomes[i] = read(in, evaluator.getDecoder());
+
+		GeneticPopulation pop = new GeneticPopulation(evaluator, config, random, chromosomes);
+		pop._converged = converged;
+		pop._mutate = mutate;
+		pop._restarted = restarted;
+
+		// The streams are restored once the population has been created, because
+		// creating it draws the common seeds of its (cached) evaluation.
+		random.setState(breeding);
+		evaluator.getRandom().setState(seeds);
+		return pop;
+	}
+
+	/** Writes a chromosome and its fitness. */
+	static void write(DataOutputStream out, GeneticChromosome chromosome) throws IOException {
+		GeneticProtocol.writeChromosome(out, chromosome);
+		out.writeBoolean(chromosome.isEvaluated());
+		if(chromosome.isEvaluated())
+			out.writeDouble(chromosome.getFitness());
+	}
+
+	/** Reads a chromosome and its fitness that were written by write. */
+	static GeneticChromosome read(DataInputStream in, GeneticDecoder decoder) throws IOException {
+		GeneticChromosome chromosome = GeneticProtocol.readChromosome(in, decoder, null);
+		if(in.readBoolean())
+			chromosome.setFitness(in.readDouble());
+		return chromosome;
 	}
 }
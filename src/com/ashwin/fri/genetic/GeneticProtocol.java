@@ -0,0 +1,121 @@
+package com.ashwin.fri.genetic;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The GeneticProtocol is the binary protocol that a RemoteEvaluator uses to send
+ * chromosomes to GeneticWorkers. Only genomes and fitness values are sent; every
+ * worker builds its own decoder (and therefore its own maps and nets) once when it
+ * starts. Every message begins with a single byte that identifies its type.
+ *
+ * HELLO (worker): magic, version and the number of bits in a genome.
+ * BATCH (coordinator): batch id, number of genomes, and each genome (its encoding
+ * followed by its bits packed into 64-bit words, its gene values, or the seed and
+ * sign of a perturbation) followed by the seeds of its games (a count followed by
+ * the seeds). The coordinator draws every seed, so the fitness of a genome does not
+ * depend on the worker that evaluates it.
+ * RESULT (worker): batch id, number of genomes, and the fitness of each genome.
+ * HEARTBEAT (worker): sent periodically so that the coordinator can detect workers
+ * that have stopped responding.
+ * SHUTDOWN (coordinator): the worker should disconnect and exit.
+ * UPDATE (coordinator): the length and bytes of a broadcast (see
+ * GeneticEvaluator.broadcast), which is applied to the worker's EvolutionStrategy.
+ *
+ * @author ashwin
+ */
+final class GeneticProtocol {
+
+	static final int MAGIC = 0x47414550;	// "GAEP"
+	static final int VERSION = 6;
+
+	static final byte HELLO 	= 1;
+	static final byte BATCH 	= 2;
+	static final byte RESULT	= 3;
+	static final byte HEARTBEAT = 4;
+	static final byte SHUTDOWN	= 5;
+	static final byte UPDATE	= 6;
+
+	static final byte BINARY	= 0;
+	static final byte REAL		= 1;
+	static final byte PERTURBED = 2;
+
+	private GeneticProtocol() {}
+
+	/** Writes the encoding and genome of a chromosome. */
+	static void writeChromosome(DataOutputStream out, GeneticChromosome chromosome) throws IOException {
+		if(chromosome instanceof PerturbedChromosome) {
+			out.writeByte(PERTURBED);
+			out.writeLong(((PerturbedChromosome) chromosome).getSeed());
+			out.writeBoolean(((PerturbedChromosome) chromosome).isPositive());
+		} else if(chromosome instanceof RealChromosome) {
+			double[] genome = ((RealChromosome) chromosome).getGenome();
+			out.writeByte(REAL);
+			for(double val : genome)
+				out.writeDouble(val);
+		} else {
+			out.writeByte(BINARY);
+			writeGenome(out, ((BinaryChromosome) chromosome).getGenome());
+		}
+	}
+
+	/**
+	 * Reads a chromosome that was written by writeChromosome. Perturbations are
+	 * perturbations of the parameters of the specified strategy.
+	 */
+	static GeneticChromosome readChromosome(DataInputStream in, GeneticDecoder decoder,
+			EvolutionStrategy strategy) throws IOException {
+		byte encoding = in.readByte();
+		if(encoding == PERTURBED) {
+			if(strategy == null)
+				throw new IOException("Perturbation received before the strategy was initialized");
+			return new PerturbedChromosome(strategy, in.readLong(), in.readBoolean());
+		}
+		if(encoding == BINARY) {
+			int bits = decoder.getTotalBits();
+			return new BinaryChromosome(decoder, readGenome(in, bits), bits);
+		}
+		if(encoding != REAL)
+			throw new IOException("Unknown encoding " + encoding);
+
+		double[] genome = new double[decoder._genes.length];
+		for(int i = 0; i < genome.length; i++)
+			genome[i] = in.readDouble();
+		return new RealChromosome(decoder, genome);
+	}
+
+	/** Writes a packed genome as its ceil(bits / 64) words. */
+	static void writeGenome(DataOutputStream out, long[] genome) throws IOException {
+		for(long word : genome)
+			out.writeLong(word);
+	}
+
+	/** Writes the seeds of the games of a genome. */
+	static void writeSeeds(DataOutputStream out, long[] seeds) throws IOException {
+		out.writeInt(seeds.length);
+		for(long seed : seeds)
+			out.writeLong(seed);
+	}
+
+	/** Reads the seeds of the games of a genome that were written by writeSeeds. */
+	static long[] readSeeds(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		long[] seeds = new long[count];
+		for(int i = 0; i < count; i++)
+			seeds[i] = in.readLong();
+		return seeds;
+	}
+
+	/** Reads a genome of the specified length that was written by writeGenome. */
+	static long[] readGenome(DataInputStream in, int bits) throws IOException {
+		long[] genome = new long[(bits + 63) >>> 6];
+		for(int i = 0; i < genome.length; i++)
+			genome[i] = in.readLong();
+		
+		// The unused bits of the last word must be zero (see BinaryChromosome)
+		if((bits & 63) != 0)
+			genome[genome.length - 1] &= (1L << bits) - 1;
+		return genome;
+	}
+}
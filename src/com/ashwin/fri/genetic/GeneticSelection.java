@@ -0,0 +1,40 @@
+package com.ashwin.fri.genetic;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * A GeneticSelection selects the parents of the next generation from a population.
+ * Parents are selected for a whole generation at once, so that schemes that need
+ * statistics of the population (like a cumulative table of selection probabilities)
+ * only compute them once per generation. The genetic algorithm minimizes fitness, so
+ * every scheme favors chromosomes with lower fitness.
+ * 
+ * @author ashwin
+ */
+public interface GeneticSelection {
+	
+	/**
+	 * Selects parents from the population. The order of the population is arbitrary,
+	 * and consecutive pairs of parents are mated.
+	 * 
+	 * @param pop evaluated population
+	 * @param count number of parents to select
+	 * @param random random stream
+	 * @return selected parents
+	 */
+	GeneticChromosome[] select(GeneticChromosome[] pop, int count, RandomStream random);
+	
+	/**
+	 * Creates the selection scheme specified by the pop.selection property.
+	 * 
+	 * @param config algorithm parameters
+	 * @return selection scheme
+	 */
+	static GeneticSelection create(GeneticConfig config) {
+		switch(config.getSelection()) {
+			case RANK:	return new RankSelection(config.getPressure());
+			case SUS:	return new UniversalSelection();
+			default:	return new TournamentSelection(config.getTournamentSize());
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package com.ashwin.fri.genetic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * The GeneticSweep tunes the parameters of the genetic algorithm by running many
+ * instances of it (trials) concurrently. Every sweep.space.KEY property is a dimension
+ * of the search space over the property KEY: a comma separated list of values or, for
+ * random searches, a lo:hi range. A grid sweep runs every combination of the lists,
+ * and a random sweep runs sweep.trials random configurations.
+ *
+ * Trials share sweep.threads threads, and every trial evaluates its chromosomes on
+ * the thread that runs it. Threads always advance the trial that has used the least
+ * time by one generation, so every trial gets a fair share of the threads. Once a
+ * trial has run sweep.grace generations, it is stopped as soon as its best fitness
+ * is worse than the sweep.prune quantile of the best fitness of every trial at the
+ * same generation (0.5 stops trials that are worse than the median). The metrics of
+ * every generation of every trial are streamed to sweep.output.
+ *
+ * @author ashwin
+ */
+public class GeneticSweep {
+
+	/** The prefix of the properties that define the search space. */
+	public static final String SPACE = "sweep.space.";
+
+	/** Trials are only compared at a generation that at least this many trials have reached. */
+	private static final int MIN_PEERS = 3;
+
+	/**
+	 * Runs a sweep and prints a summary of every trial, from the best to the worst.
+	 *
+	 * @param decoders creates a new decoder for every trial
+	 * @param props algorithm properties
+	 * @throws Exception a decoder cannot be created or the output cannot be written
+	 */
+	public static void run(Callable<GeneticDecoder> decoders, Properties props) throws Exception {
+		RandomStream random = GeneticAlgorithm.getRandom(props);
+		GeneticSweep sweep = new GeneticSweep(props);
+
+		List<Trial> trials = new ArrayList<Trial>();
+		for(Map<String, String> params : getConfigurations(props, random)) {
+			Properties trial = new Properties();
+			trial.putAll(props);
+			trial.putAll(params);
+
+			// Trials share the threads of the sweep, so they are evaluated locally
+			// on the thread that runs them.
+			trial.setProperty("ga.threads", "1");
+			trial.setProperty("ga.remote.port", "0");
+			try {
+				trials.add(sweep.new Trial(trials.size(), params, trial, decoders.call(), random.split()));
+			} catch (IllegalArgumentException e) {
+				System.out.println("Skipping " + params + ": " + e.getMessage());
+			}
+		}
+		sweep.run(trials);
+
+		Collections.sort(trials, new Comparator<Trial>() {
+			public int compare(Trial a, Trial b) {
+				return Double.compare(a._best, b._best);
+			}
+		});
+		System.out.printf("%6s\t%8s\t%6s\t%15s\t%s\n", "Trial", "Status", "Gen", "Best", "Parameters");
+		for(Trial trial : trials)
+			System.out.printf("%6d\t%8s\t%6d\t%15.8f\t%s\n", trial._id, trial._status, trial._gen, trial._best, trial._params);
+	}
+
+	/**
+	 * Returns the parameters of every trial of a sweep. Dimensions are ordered by the
+	 * names of their properties, so the trials of a sweep are always the same.
+	 *
+	 * @param props algorithm properties
+	 * @param random random stream that random configurations are drawn from
+	 * @return parameters of every trial
+	 * @throws IllegalArgumentException the search space is invalid
+	 */
+	static List<Map<String, String>> getConfigurations(Properties props, RandomStream random) {
+		Map<String, String[]> space = new TreeMap<String, String[]>();
+		for(String name : props.stringPropertyNames())
+			if(name.startsWith(SPACE))
+				space.put(name.substring(SPACE.length()), props.getProperty(name).trim().split("\\s*,\\s*"));
+
+		List<Map<String, String>> configs = new ArrayList<Map<String, String>>();
+		String mode = props.getProperty("sweep.mode", "grid").trim();
+		if(mode.equalsIgnoreCase("grid")) {
+			configs.add(new LinkedHashMap<String, String>());
+			for(Map.Entry<String, String[]> dimension : space.entrySet()) {
+				List<Map<String, String>> product = new ArrayList<Map<String, String>>();
+				for(Map<String, String> config : configs) {
+					for(String val : dimension.getValue()) {
+						if(val.contains(":"))
+							throw new IllegalArgumentException("Ranges can only be searched by random sweeps: " + dimension.getKey());
+						Map<String, String> next = new LinkedHashMap<String, String>(config);
+						next.put(dimension.getKey(), val);
+						product.add(next);
+					}
+				}
+				configs = product;
+			}
+		} else if(mode.equalsIgnoreCase("random")) {
+			int count = Integer.valueOf(props.getProperty("sweep.trials", "20").trim());
+			for(int i = 0; i < count; i++) {
+				Map<String, String> config = new LinkedHashMap<String, String>();
+				for(Map.Entry<String, String[]> dimension : space.entrySet())
+					config.put(dimension.getKey(), sample(dimension.getValue(), random));
+				configs.add(config);
+			}
+		} else {
+			throw new IllegalArgumentException("Unknown sweep.mode " + mode);
+		}
+		return configs;
+	}
+
+	/** Samples a value of a dimension: one of its values, or a uniform value in a lo:hi range. */
+	static String sample(String[] values, RandomStream random) {
+		String val = values[random.nextInt(values.length)];
+		int colon = val.indexOf(':');
+		if(colon < 0)
+			return val;
+
+		String lo = val.substring(0, colon).trim(), hi = val.substring(colon + 1).trim();
+		try {
+			int min = Integer.valueOf(lo), max = Integer.valueOf(hi);
+			return String.valueOf(min + random.nextInt(max - min + 1));
+		} catch (NumberFormatException e) {
+			double min = Double.valueOf(lo), max = Double.valueOf(hi);
+			return String.valueOf(min + random.nextDouble() * (max - min));
+		}
+	}
+
+	private int _threads, _maxGen, _grace;
+	private double _prune;
+	private String _output;
+	private MetricsSink _sink;
+
+	// The running best fitness of every trial that has reached each generation
+	private Map<Integer, List<Double>> _history;
+
+	private GeneticSweep(Properties props) {
+		int threads = Integer.valueOf(props.getProperty("sweep.threads", "0").trim());
+		_threads = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+		_maxGen = Integer.valueOf(props.getProperty("ga.maxgen").trim());
+		_grace = Integer.valueOf(props.getProperty("sweep.grace", "5").trim());
+		_prune = Double.valueOf(props.getProperty("sweep.prune", "0.5").trim());
+		_output = props.getProperty("sweep.output");
+		_history = new HashMap<Integer, List<Double>>();
+	}
+
+	/** Runs every trial to completion on the threads of the sweep. */
+	private void run(List<Trial> trials) throws Exception {
+		_sink = MetricsSink.open(_output);
+		final PriorityBlockingQueue<Trial> queue = new PriorityBlockingQueue<Trial>(Math.max(1, trials.size()),
+				new Comparator<Trial>() {
+					public int compare(Trial a, Trial b) {
+						return Long.compare(a._nanos, b._nanos);
+					}
+				});
+		queue.addAll(trials);
+		final AtomicInteger remaining = new AtomicInteger(trials.size());
+
+		Thread[] threads = new Thread[_threads];
+		for(int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						while(remaining.get() > 0) {
+							Trial trial = queue.poll(100, TimeUnit.MILLISECONDS);
+							if(trial == null)
+								continue;
+							if(trial.step())
+								queue.add(trial);
+							else
+								remaining.decrementAndGet();
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}, "sweep-" + i);
+			threads[i].start();
+		}
+
+		for(Thread thread : threads)
+			thread.join();
+		if(_sink != null)
+			_sink.close();
+	}
+
+	/**
+	 * Records the running best fitness of a trial at a generation and returns whether
+	 * the trial is losing: it is past its grace period and its best fitness is worse
+	 * than the pruning quantile of the trials that have reached the same generation.
+	 */
+	private synchronized boolean isLosing(int gen, double best) {
+		List<Double> bests = _history.get(gen);
+		if(bests == null) {
+			bests = new ArrayList<Double>();
+			_history.put(gen, bests);
+		}
+		bests.add(best);
+		if(gen < _grace || bests.size() < MIN_PEERS || _prune >= 1.0)
+			return false;
+
+		double[] sorted = new double[bests.size()];
+		for(int i = 0; i < sorted.length; i++)
+			sorted[i] = bests.get(i);
+		Arrays.sort(sorted);
+		return best > sorted[(int) (Math.max(0.0, _prune) * (sorted.length - 1))];
+	}
+
+	/** A single instance of the genetic algorithm with its own parameters and decoder. */
+	private class Trial {
+
+		private int _id;
+		private Map<String, String> _params;
+		private Properties _props;
+		private GeneticConfig _config;
+		private GeneticDecoder _decoder;
+		private RandomStream _random;
+
+		private GeneticEvaluator _evaluator;
+		private GeneticPopulation _pop;
+		private int _gen;
+		private double _best;
+		private long _nanos;
+		private String _status;
+
+		/** @throws IllegalArgumentException the parameters of the trial are invalid */
+		public Trial(int id, Map<String, String> params, Properties props, GeneticDecoder decoder, RandomStream random) {
+			_id = id;
+			_params = params;
+			_props = props;
+			_config = new GeneticConfig(props);
+			_decoder = decoder;
+			_random = random;
+			_best = Double.POSITIVE_INFINITY;
+			_status = "pending";
+		}
+
+		/**
+		 * Evaluates the first generation of the trial or evolves the next one and
+		 * writes its metrics. Returns whether the trial should continue.
+		 */
+		public boolean step() {
+			long start = System.nanoTime();
+			GeneticMetrics metrics = _decoder.getMetrics();
+			try {
+				metrics.begin();
+				if(_pop == null) {
+					_evaluator = GeneticEvaluator.create(_decoder, _props, _random.split());
+					_pop = new GeneticPopulation(_evaluator, _config, _random.split());
+				} else {
+					_pop = _pop.evolve();
+					_gen++;
+				}
+			} catch (Exception e) {
+				System.out.println("Trial " + _id + " " + _params + " failed: " + e);
+				if(_evaluator != null)
+					_evaluator.shutdown();
+				_status = "failed";
+				return false;
+			}
+			_nanos += System.nanoTime() - start;
+
+			_best = Math.min(_best, _pop.getBestChromosome().getFitness());
+			if(_gen >= _maxGen)
+				_status = "done";
+			else if(isLosing(_gen, _best))
+				_status = "pruned";
+			else
+				_status = "running";
+
+			Map<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put("trial", _id);
+			row.putAll(_params);
+			row.put("status", _status);
+			row.put("running_best", _best);
+			row.put("trial_secs", _nanos / 1e9);
+			row.putAll(metrics.end(_gen, _pop));
+			if(_sink != null)
+				_sink.write(row);
+
+			if(!_status.equals("running")) {
+				_evaluator.shutdown();
+				System.out.printf("Trial %d %s at gen %d with best %.8f %s\n", _id, _status, _gen, _best, _params);
+				return false;
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.ashwin.fri.genetic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * A GeneticWorker evaluates chromosomes on behalf of a RemoteEvaluator. The worker
+ * connects to the evaluator, receives batches of genomes and replies with their
+ * fitness. Batches are evaluated by a local GeneticEvaluator, so a single worker
+ * process can use every processor of its machine. The decoder (and everything it
+ * loads) is created once when the worker starts and is reused for every batch.
+ *
+ * @author ashwin
+ */
+public class GeneticWorker {
+
+	private GeneticEvaluator _evaluator;
+	private EvolutionStrategy _strategy;
+	private int _heartbeat;
+
+	/**
+	 * @param evaluator local evaluator
+	 * @param heartbeat milliseconds between heartbeats
+	 */
+	public GeneticWorker(GeneticEvaluator evaluator, int heartbeat) {
+		_evaluator = evaluator;
+		_heartbeat = heartbeat;
+	}
+
+	/**
+	 * Runs a worker for the evaluator at the specified address (host:port) until
+	 * the evaluator shuts it down or disconnects. The worker uses ga.threads threads
+	 * and sends heartbeats four times per ga.remote.timeout.
+	 *
+	 * @param decoder genetic decoder implementation
+	 * @param props algorithm properties
+	 * @param address address of the evaluator
+	 * @throws IOException connection error
+	 */
+	public static void run(GeneticDecoder decoder, Properties props, String address) throws IOException {
+		int timeout = Integer.valueOf(props.getProperty("ga.remote.timeout", "10000").trim());
+		int split = address.lastIndexOf(':');
+
+		GeneticEvaluator evaluator = new GeneticEvaluator(decoder, GeneticEvaluator.getThreads(props));
+		try {
+			new GeneticWorker(evaluator, Math.max(1, timeout / 4)).run(address.substring(0, split),
+					Integer.valueOf(address.substring(split + 1)));
+		} finally {
+			evaluator.shutdown();
+		}
+	}
+
+	/**
+	 * Connects to the evaluator at the specified host and port and evaluates batches
+	 * until the evaluator shuts the worker down or disconnects.
+	 *
+	 * @param host evaluator host
+	 * @param port evaluator port
+	 * @throws IOException connection error
+	 */
+	public void run(String host, int port) throws IOException {
+		final Socket socket = new Socket(host, port);
+		socket.setTcpNoDelay(true);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		GeneticDecoder decoder = _evaluator.getDecoder();
+		int bits = decoder.getTotalBits();
+
+		out.writeByte(GeneticProtocol.HELLO);
+		out.writeInt(GeneticProtocol.MAGIC);
+		out.writeInt(GeneticProtocol.VERSION);
+		out.writeInt(bits);
+		out.flush();
+
+		// Heartbeats are sent from a separate thread, so that they continue to be
+		// sent while a batch is being evaluated.
+		Thread heartbeat = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while(!socket.isClosed()) {
+						Thread.sleep(_heartbeat);
+						synchronized(out) {
+							out.writeByte(GeneticProtocol.HEARTBEAT);
+							out.flush();
+						}
+					}
+				} catch (InterruptedException e) {
+					// The worker is shutting down
+				} catch (IOException e) {
+					// The connection was closed
+				}
+			}
+		}, "worker-heartbeat");
+		heartbeat.setDaemon(true);
+		heartbeat.start();
+
+		try {
+			while(true) {
+				byte type = in.readByte();
+				if(type == GeneticProtocol.SHUTDOWN)
+					break;
+				if(type == GeneticProtocol.UPDATE) {
+					byte[] message = new byte[in.readInt()];
+					in.readFully(message);
+					if(_strategy == null)
+						_strategy = new EvolutionStrategy(decoder);
+					_strategy.apply(message);
+					continue;
+				}
+				if(type != GeneticProtocol.BATCH)
+					throw new IOException("Unexpected message " + type);
+
+				int id = in.readInt();
+				GeneticChromosome[] chromosomes = new GeneticChromosome[in.readInt()];
+				long[][] seeds = new long[chromosomes.length][];
+				for(int i = 0; i < chromosomes.length; i++) {
+					chromosomes[i] = GeneticProtocol.readChromosome(in, decoder, _strategy);
+					seeds[i] = GeneticProtocol.readSeeds(in);
+				}
+				_evaluator.evaluate(chromosomes, seeds);
+
+				synchronized(out) {
+					out.writeByte(GeneticProtocol.RESULT);
+					out.writeInt(id);
+					out.writeInt(chromosomes.length);
+					for(GeneticChromosome chromosome : chromosomes)
+						out.writeDouble(chromosome.getFitness());
+					out.flush();
+				}
+			}
+		} catch (EOFException e) {
+			// The evaluator disconnected
+		} finally {
+			heartbeat.interrupt();
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.ashwin.fri.genetic;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A metrics sink streams rows of metrics to a file on a background thread, so that
+ * writing metrics never slows down the genetic algorithm. Files that end in .json
+ * or .jsonl are written as JSON lines and all other files are written as CSV. The
+ * columns of a CSV file are determined by the first row that is written.
+ *
+ * @author ashwin
+ */
+public class MetricsSink implements Runnable {
+
+	/** Signals the writer thread that no more rows will be written. */
+	private static final Map<String, Object> EOF = new HashMap<String, Object>();
+
+	private BlockingQueue<Map<String, Object>> _queue;
+	private BufferedWriter _writer;
+	private boolean _json, _header;
+	private Thread _thread;
+
+	public MetricsSink(File file) throws IOException {
+		_queue  = new LinkedBlockingQueue<Map<String, Object>>();
+		_writer = new BufferedWriter(new FileWriter(file));
+		_json   = file.getName().endsWith(".json") || file.getName().endsWith(".jsonl");
+
+		_thread = new Thread(this, "metrics-sink");
+		_thread.setDaemon(true);
+		_thread.start();
+	}
+
+	/**
+	 * Opens a sink for the specified file name. Returns null if the file name is
+	 * empty or null, which disables metrics output.
+	 *
+	 * @param file file name
+	 * @return metrics sink or null
+	 * @throws IOException file cannot be opened
+	 */
+	public static MetricsSink open(String file) throws IOException {
+		if(file == null || file.trim().isEmpty())
+			return null;
+		return new MetricsSink(new File(file.trim()));
+	}
+
+	/** Queues a row to be written. This method never blocks. */
+	public void write(Map<String, Object> row) {
+		_queue.add(row);
+	}
+
+	/** Writes every queued row and closes the underlying file. */
+	public void close() {
+		_queue.add(EOF);
+		try {
+			_thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void run() {
+		try {
+			while(true) {
+				Map<String, Object> row = _queue.take();
+				if(row == EOF)
+					break;
+
+				_writer.write(_json ? toJson(row) : toCsv(row));
+				_writer.newLine();
+				_writer.flush();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			try {
+				_writer.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private String toCsv(Map<String, Object> row) {
+		StringBuilder sb = new StringBuilder();
+		if(!_header) {
+			sb.append(String.join(",", row.keySet())).append(System.lineSeparator());
+			_header = true;
+		}
+
+		boolean first = true;
+		for(Object value : row.values()) {
+			sb.append(first ? "" : ",").append(value);
+			first = false;
+		}
+		return sb.toString();
+	}
+
+	private String toJson(Map<String, Object> row) {
+		StringBuilder sb = new StringBuilder("{");
+		for(Map.Entry<String, Object> entry : row.entrySet()) {
+			if(sb.length() > 1)
+				sb.append(",");
+
+			sb.append('"').append(entry.getKey()).append("\":");
+			Object value = entry.getValue();
+			// JSON cannot represent infinite fitness values, so they are written as strings
+			if(value instanceof Double && (((Double) value).isNaN() || ((Double) value).isInfinite()))
+				sb.append('"').append(value).append('"');
+			else if(value instanceof Number || value instanceof Boolean)
+				sb.append(value);
+			else
+				sb.append('"').append(String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+		}
+		return sb.append("}").toString();
+	}
+}
@@ -0,0 +1,67 @@
+package com.ashwin.fri.genetic;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * A PerturbedChromosome is a candidate of an EvolutionStrategy: a perturbation of
+ * the strategy's current parameters that is completely described by a random seed
+ * and a sign. Its phenotype is generated from the seed when it is first needed, so
+ * only the seed and sign are sent to remote workers. PerturbedChromosomes are not
+ * mated or mutated.
+ *
+ * @author ashwin
+ */
+public class PerturbedChromosome extends GeneticChromosome {
+
+	private EvolutionStrategy _strategy;
+	private long _seed;
+	private boolean _positive;
+	private double[] _phenotype;
+
+	/**
+	 * @param strategy strategy whose parameters are perturbed
+	 * @param seed seed of the perturbation
+	 * @param positive whether the perturbation is added to or subtracted from the parameters
+	 */
+	public PerturbedChromosome(EvolutionStrategy strategy, long seed, boolean positive) {
+		super(strategy.getDecoder());
+		_strategy = strategy;
+		_seed = seed;
+		_positive = positive;
+	}
+
+	public long getSeed() {
+		return _seed;
+	}
+
+	public boolean isPositive() {
+		return _positive;
+	}
+
+	@Override
+	public double[] getPhenotype() {
+		if(_phenotype == null)
+			_phenotype = _strategy.getPhenotype(_seed, _positive ? 1 : -1);
+		return _phenotype;
+	}
+
+	@Override
+	public String getGenotype() {
+		return (_positive ? "+" : "-") + Long.toHexString(_seed);
+	}
+
+	@Override
+	public GeneticChromosome copy() {
+		return new PerturbedChromosome(_strategy, _seed, _positive);
+	}
+
+	@Override
+	public GeneticChromosome[] mate(GeneticChromosome othr, double rate, RandomStream random) {
+		throw new UnsupportedOperationException("Perturbations cannot be mated");
+	}
+
+	@Override
+	public void mutate(double rate, RandomStream random) {
+		throw new UnsupportedOperationException("Perturbations cannot be mutated");
+	}
+}
@@ -0,0 +1,424 @@
+package com.ashwin.fri.genetic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * PopulationBasedTraining adapts the parameters of the genetic algorithm while it
+ * runs (Jaderberg et al., "Population Based Training of Neural Networks"). It evolves
+ * pbt.members populations (members) concurrently, each with its own values of the
+ * pbt.params properties. Every pbt.interval generations, the members are ranked by
+ * the fitness of their best chromosome, and each member in the worst pbt.fraction
+ * copies the chromosomes and parameters of a random member in the best pbt.fraction
+ * (exploit) and then scales each of its parameters up or down by pbt.perturb
+ * (explore). The members initially use the values of the properties, except that a
+ * parameter that is also a dimension of a sweep (sweep.space.KEY) is drawn from it.
+ *
+ * Every member evaluates its chromosomes on the thread that evolves it, and members
+ * are evolved on ga.threads threads, so a run costs about as much as a single run of
+ * the genetic algorithm with the same total population. The monitor of a run (see
+ * GeneticMonitor) reports and resizes these threads. If the pbt.checkpoint
+ * property is set, then the state of every member is written to it after every
+ * generation, and an existing checkpoint is resumed.
+ *
+ * @author ashwin
+ */
+public class PopulationBasedTraining implements Checkpointable {
+
+	static final int MAGIC = 0x50425452;	// "PBTR"
+	static final int VERSION = 3;
+
+	/**
+	 * Runs population-based training for ga.maxgen generations and returns the best
+	 * chromosome of any member. The best member of every generation is printed like
+	 * the genetic algorithm and is passed to its decoder's generationEvaluated, and
+	 * the metrics of every member are streamed to ga.metrics.file.
+	 *
+	 * @param decoders creates a new decoder for every member
+	 * @param props algorithm properties
+	 * @return most optimal chromosome
+	 * @throws Exception a decoder cannot be created or a file cannot be read or written
+	 */
+	public static GeneticChromosome run(Callable<GeneticDecoder> decoders, Properties props) throws Exception {
+		PopulationBasedTraining pbt = new PopulationBasedTraining(decoders, props, GeneticAlgorithm.getRandom(props));
+		String checkpoint = props.getProperty("pbt.checkpoint", "").trim();
+		File file = checkpoint.isEmpty() ? null : new File(checkpoint);
+		if(file != null && file.exists())
+			pbt.load(file);
+
+		ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(GeneticEvaluator.getThreads(props));
+		MetricsSink sink = MetricsSink.open(props.getProperty("ga.metrics.file"));
+		boolean genotype = Boolean.valueOf(props.getProperty("ga.print.genotype", "false"));
+		GeneticMonitor monitor = GeneticMonitor.register(props, pbt._decoder, pbt.new Pool(executor), pbt);
+		try {
+			GeneticAlgorithm.printHeader(genotype);
+			while(pbt._gen <= pbt._maxGen) {
+				Member best = pbt.step(executor, sink);
+				GeneticAlgorithm.printGen(pbt._gen, best._pop, best._metrics, genotype, null);
+				best._decoder.generationEvaluated(pbt._gen, best._pop.getBestChromosome());
+
+				if(pbt._gen > 0 && pbt._gen % pbt._interval == 0 && pbt._gen < pbt._maxGen)
+					pbt.exploit();
+				pbt._gen++;
+				if(file != null)
+					pbt.save(file);
+				monitor.generationEvaluated(pbt._gen - 1, best._pop.getBestChromosome(), best._metrics);
+			}
+		} finally {
+			monitor.unregister();
+			executor.shutdown();
+			for(Member member : pbt._members)
+				member._evaluator.shutdown();
+			if(sink != null)
+				sink.close();
+		}
+
+		System.out.printf("%6s\t%15s\t%s\n", "Member", "Best", "Parameters");
+		for(Member member : pbt._members)
+			System.out.printf("%6d\t%15.8f\t%s\n", member._id, member._pop.getBestChromosome().getFitness(), member._params);
+		return pbt._best;
+	}
+
+	private Properties _props;
+	private RandomStream _random;
+	private GeneticDecoder _decoder;
+	private Member[] _members;
+	private String[] _keys;
+	private int _maxGen, _interval, _gen;
+	private double _fraction, _perturb;
+	private GeneticChromosome _best;
+
+	/**
+	 * Creates the members of a run from the pbt.members, pbt.params, pbt.interval,
+	 * pbt.fraction and pbt.perturb properties.
+	 *
+	 * @throws IllegalArgumentException a property is invalid
+	 */
+	private PopulationBasedTraining(Callable<GeneticDecoder> decoders, Properties props, RandomStream random) throws Exception {
+		_props = props;
+		_random = random;
+		_maxGen = Integer.valueOf(props.getProperty("ga.maxgen").trim());
+		_interval = Integer.valueOf(props.getProperty("pbt.interval", "5").trim());
+		_fraction = Double.valueOf(props.getProperty("pbt.fraction", "0.25").trim());
+		_perturb = Double.valueOf(props.getProperty("pbt.perturb", "0.2").trim());
+		_keys = props.getProperty("pbt.params", "pop.mutate,pop.cross,tournament.size").trim().split("\\s*,\\s*");
+		int members = Integer.valueOf(props.getProperty("pbt.members", "8").trim());
+		if(members < 2)
+			throw new IllegalArgumentException("pbt.members must be at least 2");
+		if(_interval <= 0)
+			throw new IllegalArgumentException("pbt.interval must be positive");
+		if(_fraction <= 0.0 || _fraction > 0.5)
+			throw new IllegalArgumentException("pbt.fraction must be positive and at most 0.5");
+
+		// Members exchange their chromosomes, so every member must breed the same
+		// number of chromosomes of the same encoding.
+		for(String key : _keys)
+			if(key.equals("pop.size") || key.equals("pop.encoding"))
+				throw new IllegalArgumentException("pbt.params cannot include " + key);
+
+		_members = new Member[members];
+		for(int i = 0; i < members; i++) {
+			Map<String, String> params = new LinkedHashMap<String, String>();
+			for(String key : _keys) {
+				String space = props.getProperty(GeneticSweep.SPACE + key);
+				params.put(key, (space != null) ? GeneticSweep.sample(space.trim().split("\\s*,\\s*"), random) : get(props, key));
+			}
+			_members[i] = new Member(i, params, decoders.call(), random.split());
+		}
+		_decoder = _members[0]._decoder;
+	}
+
+	/** Returns the value of a property of the genetic algorithm. */
+	private static String get(Properties props, String key) {
+		String val = props.getProperty(key);
+		if(val == null)
+			throw new IllegalArgumentException(key + " is not specified");
+		return val.trim();
+	}
+
+	/**
+	 * Evaluates the first generation of every member or evolves their next one, and
+	 * writes the metrics of every member. Returns the member with the best chromosome.
+	 */
+	private Member step(ExecutorService executor, MetricsSink sink) throws Exception {
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for(final Member member : _members) {
+			futures.add(executor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					member.step(_gen);
+					return null;
+				}
+			}));
+		}
+		for(Future<Void> future : futures)
+			future.get();
+
+		Member best = _members[0];
+		for(Member member : _members) {
+			if(member._pop.getBestChromosome().getFitness() < best._pop.getBestChromosome().getFitness())
+				best = member;
+
+			Map<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put("member", member._id);
+			row.putAll(member._params);
+			row.putAll(member._metrics);
+			if(sink != null)
+				sink.write(row);
+		}
+
+		GeneticChromosome chromosome = best._pop.getBestChromosome();
+		if(_best == null || chromosome.getFitness() < _best.getFitness())
+			_best = copy(chromosome);
+		return best;
+	}
+
+	/**
+	 * Replaces every member in the worst fraction of the members with a perturbed
+	 * copy of a random member in the best fraction. Members are ranked by the fitness
+	 * of their best chromosome.
+	 */
+	private void exploit() {
+		Member[] ranked = _members.clone();
+		Arrays.sort(ranked, new Comparator<Member>() {
+			public int compare(Member a, Member b) {
+				return Double.compare(a._pop.getBestChromosome().getFitness(), b._pop.getBestChromosome().getFitness());
+			}
+		});
+
+		int cut = Math.max(1, (int) Math.round(_fraction * ranked.length));
+		for(int i = ranked.length - cut; i < ranked.length; i++) {
+			Member loser = ranked[i], winner = ranked[_random.nextInt(cut)];
+			GeneticChromosome[] pop = winner._pop.getChromosomes();
+			GeneticChromosome[] copies = new GeneticChromosome[pop.length];
+			for(int j = 0; j < pop.length; j++)
+				copies[j] = copy(pop[j]);
+
+			loser.setParams(explore(winner._params));
+			loser._pop = new GeneticPopulation(loser._evaluator, loser._config, loser._random, copies);
+			System.out.printf("Member %d copies member %d with %s\n", loser._id, winner._id, loser._params);
+		}
+	}
+
+	/**
+	 * Scales every parameter up or down by the perturbation factor. Integers are
+	 * rounded and change by at least one, and decimals are rounded to six places. A
+	 * parameter whose new value is invalid keeps its old value.
+	 */
+	private Map<String, String> explore(Map<String, String> params) {
+		Map<String, String> next = new LinkedHashMap<String, String>(params);
+		for(String key : _keys) {
+			String val = params.get(key);
+			double factor = (_random.nextDouble() < 0.5) ? 1.0 + _perturb : 1.0 - _perturb;
+			try {
+				int old = Integer.valueOf(val);
+				int scaled = (int) Math.round(old * factor);
+				if(scaled == old)
+					scaled += (factor > 1.0) ? 1 : -1;
+				next.put(key, String.valueOf(scaled));
+			} catch (NumberFormatException e) {
+				next.put(key, String.valueOf(Math.round(Double.valueOf(val) * factor * 1e6) / 1e6));
+			}
+
+			try {
+				new GeneticConfig(configure(next));
+			} catch (IllegalArgumentException e) {
+				next.put(key, val);
+			}
+		}
+		return next;
+	}
+
+	/** Returns the properties of a member with the specified parameters. */
+	private Properties configure(Map<String, String> params) {
+		Properties props = new Properties();
+		props.putAll(_props);
+		props.putAll(params);
+
+		// Members share the threads of the run, so they are evaluated locally on the
+		// thread that evolves them.
+		props.setProperty("ga.threads", "1");
+		props.setProperty("ga.remote.port", "0");
+		return props;
+	}
+
+	/** Returns a copy of a chromosome that keeps its fitness. */
+	private static GeneticChromosome copy(GeneticChromosome chromosome) {
+		GeneticChromosome copy = chromosome.copy();
+		if(chromosome.isEvaluated())
+			copy.setFitness(chromosome.getFitness());
+		return copy;
+	}
+
+	/**
+	 * Writes the state of every member to the specified file. The file is replaced
+	 * atomically, so an interrupted run always leaves a complete checkpoint.
+	 *
+	 * @param file checkpoint file
+	 * @throws IOException write error
+	 */
+	public void save(File file) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(_decoder._genes.length);
+			out.writeInt(_members.length);
+			out.writeLong(_random.getState());
+			out.writeInt(_gen);
+			for(Member member : _members) {
+				out.writeInt(member._params.size());
+				for(Map.Entry<String, String> param : member._params.entrySet()) {
+					out.writeUTF(param.getKey());
+					out.writeUTF(param.getValue());
+				}
+				member._pop.write(out);
+			}
+
+			out.writeBoolean(_best != null);
+			if(_best != null)
+				GeneticPopulation.write(out, _best);
+		} finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Restores the state of every member from a checkpoint that was written by save.
+	 * The checkpoint must have been written by a run with the same number of genes and
+	 * members. The streams that every member breeds and draws the seeds of its games
+	 * from are restored, so a resumed run continues exactly like an uninterrupted one.
+	 *
+	 * @param file checkpoint file
+	 * @throws IOException read error or incompatible checkpoint
+	 */
+	public void load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException(file + " is not a checkpoint (version " + VERSION + ")");
+			if(in.readInt() != _decoder._genes.length || in.readInt() != _members.length)
+				throw new IOException(file + " is a checkpoint of a different run");
+
+			_random.setState(in.readLong());
+			_gen = in.readInt();
+			for(Member member : _members) {
+				Map<String, String> params = new LinkedHashMap<String, String>();
+				for(int count = in.readInt(); count > 0; count--)
+					params.put(in.readUTF(), in.readUTF());
+				member.setParams(params);
+				member._pop = GeneticPopulation.read(in, member._evaluator, member._config, member._random);
+			}
+
+			if(in.readBoolean())
+				_best = GeneticPopulation.read(in, _decoder);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * The evaluator that the monitor of a run reports on. Members are evolved on the
+	 * threads of the run and evaluate their chromosomes on the thread that evolves
+	 * them, so the threads of the pool are the threads of the run, and its games and
+	 * busy time are the sums of those of every member.
+	 */
+	private class Pool extends GeneticEvaluator {
+
+		private ThreadPoolExecutor _executor;
+
+		public Pool(ThreadPoolExecutor executor) {
+			super(_decoder, 1);
+			_executor = executor;
+		}
+
+		@Override
+		public int getThreads() {
+			return _executor.getMaximumPoolSize();
+		}
+
+		/** At most one thread per member is busy, so threads beyond pbt.members are idle. */
+		@Override
+		public void setThreads(int threads) {
+			resize(_executor, Math.max(1, threads));
+		}
+
+		@Override
+		public int getGamesInFlight() {
+			int games = 0;
+			for(Member member : _members)
+				games += member._evaluator.getGamesInFlight();
+			return games;
+		}
+
+		@Override
+		public long getBusyNanos() {
+			long busy = 0;
+			for(Member member : _members)
+				busy += member._evaluator.getBusyNanos();
+			return busy;
+		}
+	}
+
+	/** A single population with its own parameters, decoder and stream. */
+	private class Member {
+
+		private int _id;
+		private Map<String, String> _params;
+		private Properties _props;
+		private GeneticConfig _config;
+		private GeneticDecoder _decoder;
+		private RandomStream _random;
+		private GeneticEvaluator _evaluator;
+
+		private GeneticPopulation _pop;
+		private Map<String, Object> _metrics;
+
+		/** @throws IllegalArgumentException the parameters of the member are invalid */
+		public Member(int id, Map<String, String> params, GeneticDecoder decoder, RandomStream random) throws IOException {
+			_id = id;
+			_decoder = decoder;
+			_random = random;
+			setParams(params);
+			_evaluator = GeneticEvaluator.create(decoder, _props, random.split());
+		}
+
+		/** Sets the parameters that the next generation of the member is bred with. */
+		public void setParams(Map<String, String> params) {
+			_params = params;
+			_props = configure(params);
+			_config = new GeneticConfig(_props);
+		}
+
+		/** Evaluates the first generation of the member or evolves its next one. */
+		public void step(int gen) {
+			GeneticMetrics metrics = _decoder.getMetrics();
+			metrics.begin();
+			_pop = (_pop == null) ? new GeneticPopulation(_evaluator, _config, _random) : _pop.evolve();
+			_metrics = metrics.end(gen, _pop);
+		}
+	}
+}
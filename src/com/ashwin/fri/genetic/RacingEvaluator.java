@@ -0,0 +1,223 @@
+package com.ashwin.fri.genetic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * The RacingEvaluator estimates the fitness of noisy chromosomes by racing them.
+ * Every chromosome is first evaluated a few times. Chromosomes that are, with the
+ * configured confidence, not among the best fraction of the population are then
+ * dropped from the race, and further evaluations are only spent on the chromosomes
+ * that are still contenders. The race ends once every contender has been evaluated
+ * the maximum number of times or the evaluation budget of the generation is spent.
+ *
+ * Each evaluation (a sample) is performed by another evaluator, so a race can be run
+ * on local threads or on remote workers. The fitness of a chromosome is the
+ * aggregate (see GeneticDecoder.aggregate) of all of its samples.
+ *
+ * @author ashwin
+ */
+public class RacingEvaluator extends GeneticEvaluator {
+
+	private GeneticEvaluator _evaluator;
+	private int _min, _max;
+	private double _budget, _keep, _z;
+
+	/**
+	 * @param evaluator evaluator that performs each sample
+	 * @param min number of samples that every chromosome is evaluated with
+	 * @param max maximum number of samples of a single chromosome
+	 * @param budget mean number of samples per chromosome that a generation may use
+	 * @param keep fraction of the population that chromosomes race to be part of
+	 * @param confidence confidence level at which chromosomes are dropped
+	 */
+	public RacingEvaluator(GeneticEvaluator evaluator, int min, int max, double budget, double keep, double confidence) {
+		super(evaluator.getDecoder(), 1);
+		_evaluator = evaluator;
+		_min = Math.max(1, min);
+		_max = Math.max(_min, max);
+		_budget = Math.max(_min, budget);
+		_keep = keep;
+		_z = getQuantile((1.0 + confidence) / 2.0);
+	}
+
+	/**
+	 * Creates a racing evaluator from the race.min, race.max, race.budget, race.keep
+	 * and race.confidence properties.
+	 *
+	 * @param evaluator evaluator that performs each sample
+	 * @param props algorithm properties
+	 * @return evaluator
+	 */
+	public static RacingEvaluator create(GeneticEvaluator evaluator, Properties props) {
+		return new RacingEvaluator(evaluator,
+				Integer.valueOf(props.getProperty("race.min", "2").trim()),
+				Integer.valueOf(props.getProperty("race.max", "1").trim()),
+				Double.valueOf(props.getProperty("race.budget", "4").trim()),
+				Double.valueOf(props.getProperty("race.keep", "0.2").trim()),
+				Double.valueOf(props.getProperty("race.confidence", "0.95").trim()));
+	}
+
+	@Override
+	public int getThreads() {
+		return _evaluator.getThreads();
+	}
+
+	@Override
+	public void setThreads(int threads) {
+		_evaluator.setThreads(threads);
+	}
+
+	@Override
+	public RandomStream getRandom() {
+		return _evaluator.getRandom();
+	}
+
+	@Override
+	public int getGamesInFlight() {
+		return _evaluator.getGamesInFlight();
+	}
+
+	@Override
+	public long getBusyNanos() {
+		return _evaluator.getBusyNanos();
+	}
+
+	/**
+	 * Races every chromosome whose fitness is not yet known. This method blocks
+	 * until the race is over.
+	 */
+	@Override
+	public void evaluate(GeneticChromosome[] chromosomes) {
+		GeneticMetrics metrics = getDecoder().getMetrics();
+		List<Entrant> entrants = new ArrayList<Entrant>();
+		for(GeneticChromosome chromosome : chromosomes) {
+			if(chromosome.isEvaluated())
+				metrics.recordCacheHit();
+			else
+				entrants.add(new Entrant(chromosome, _max));
+		}
+
+		if(entrants.isEmpty())
+			return;
+
+		long budget = Math.round(_budget * entrants.size());
+		int keep = Math.max(1, (int) Math.ceil(_keep * entrants.size()));
+		List<Entrant> contenders = new ArrayList<Entrant>(entrants);
+		long used = 0;
+
+		for(int round = 0; round < _max && !contenders.isEmpty(); round++) {
+			// The first rounds are always run for every chromosome. Afterwards, the most
+			// promising contenders are sampled first if the budget runs out.
+			if(round >= _min) {
+				Collections.sort(contenders, BY_MEAN);
+				if(budget - used < contenders.size())
+					contenders = new ArrayList<Entrant>(contenders.subList(0, (int) Math.max(0, budget - used)));
+			}
+
+			sample(contenders);
+			used += contenders.size();
+			if(round + 1 >= _min)
+				contenders = drop(entrants, contenders, keep);
+		}
+
+		for(Entrant entrant : entrants)
+			entrant._chromosome.setFitness(getDecoder().aggregate(Arrays.copyOf(entrant._samples, entrant._count)));
+	}
+
+	/** Evaluates every contender once more. */
+	private void sample(List<Entrant> contenders) {
+		GeneticChromosome[] samples = new GeneticChromosome[contenders.size()];
+		for(int i = 0; i < samples.length; i++)
+			samples[i] = contenders.get(i)._chromosome.copy();
+		_evaluator.evaluate(samples);
+
+		for(int i = 0; i < samples.length; i++)
+			contenders.get(i).add(samples[i].getFitness());
+	}
+
+	/**
+	 * Returns the contenders that may still be among the best keep entrants. Fitness
+	 * is minimized, so a contender is dropped if the lower bound of its confidence
+	 * interval is greater than the keep-th smallest upper bound of every entrant.
+	 */
+	private List<Entrant> drop(List<Entrant> entrants, List<Entrant> contenders, int keep) {
+		double[] upper = new double[entrants.size()];
+		for(int i = 0; i < upper.length; i++)
+			upper[i] = entrants.get(i).getMean() + _z * entrants.get(i).getError();
+		Arrays.sort(upper);
+		double threshold = upper[Math.min(keep, upper.length) - 1];
+
+		List<Entrant> remaining = new ArrayList<Entrant>();
+		for(Entrant contender : contenders)
+			if(contender.getMean() - _z * contender.getError() <= threshold)
+				remaining.add(contender);
+		return remaining;
+	}
+
+	@Override
+	public void broadcast(byte[] message) {
+		_evaluator.broadcast(message);
+	}
+
+	@Override
+	public void shutdown() {
+		_evaluator.shutdown();
+	}
+
+	/**
+	 * Returns the standard normal quantile of the specified probability using the
+	 * rational approximation of Abramowitz and Stegun (26.2.23), which is accurate to
+	 * within 4.5e-4.
+	 */
+	static double getQuantile(double p) {
+		double q = (p < 0.5) ? p : 1.0 - p;
+		double t = Math.sqrt(-2.0 * Math.log(q));
+		double z = t - (2.515517 + 0.802853 * t + 0.010328 * t * t)
+				/ (1.0 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+		return (p < 0.5) ? -z : z;
+	}
+
+	private static final Comparator<Entrant> BY_MEAN = new Comparator<Entrant>() {
+		public int compare(Entrant a, Entrant b) {
+			return Double.compare(a.getMean(), b.getMean());
+		}
+	};
+
+	/** A chromosome in the race and the fitness of each of its samples. */
+	private static class Entrant {
+
+		private GeneticChromosome _chromosome;
+		private double[] _samples;
+		private int _count;
+		private double _mean, _m2;
+
+		public Entrant(GeneticChromosome chromosome, int max) {
+			_chromosome = chromosome;
+			_samples = new double[max];
+		}
+
+		/** Adds a sample and updates the running mean and variance (Welford). */
+		public void add(double fitness) {
+			_samples[_count++] = fitness;
+			double delta = fitness - _mean;
+			_mean += delta / _count;
+			_m2 += delta * (fitness - _mean);
+		}
+
+		public double getMean() {
+			return _mean;
+		}
+
+		/** Returns the standard error of the mean. */
+		public double getError() {
+			return (_count < 2) ? Double.POSITIVE_INFINITY : Math.sqrt(_m2 / (_count - 1) / _count);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.ashwin.fri.genetic;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * Rank selection selects parents with a probability that depends only on the rank of
+ * their fitness, so a single outlier cannot take over the population. Probabilities
+ * decrease linearly from pressure / n for the best chromosome to (2 - pressure) / n
+ * for the worst. The population is ranked and a cumulative table of probabilities is
+ * built once per generation (O(n log n)), and each parent is then found by a binary
+ * search of the table (O(log n)).
+ * 
+ * @author ashwin
+ */
+public class RankSelection implements GeneticSelection {
+	
+	private double _pressure;
+	
+	/** @param pressure selective pressure between 1 (uniform) and 2 */
+	public RankSelection(double pressure) {
+		_pressure = pressure;
+	}
+	
+	@Override
+	public GeneticChromosome[] select(GeneticChromosome[] pop, int count, RandomStream random) {
+		int n = pop.length;
+		GeneticChromosome[] ranked = pop.clone();
+		Arrays.sort(ranked, new Comparator<GeneticChromosome>() {
+			public int compare(GeneticChromosome o1, GeneticChromosome o2) {
+				return Double.compare(o1.getFitness(), o2.getFitness());
+			}
+		});
+		
+		double[] cumulative = new double[n];
+		double sum = 0.0;
+		for(int r = 0; r < n; r++) {
+			sum += (n > 1) ? _pressure - (2 * _pressure - 2) * r / (n - 1) : 1.0;
+			cumulative[r] = sum;
+		}
+		
+		GeneticChromosome[] parents = new GeneticChromosome[count];
+		for(int k = 0; k < count; k++)
+			parents[k] = ranked[search(cumulative, random.nextDouble() * sum)];
+		return parents;
+	}
+	
+	/** Returns the index of the first entry of the cumulative table that exceeds the value. */
+	private static int search(double[] cumulative, double val) {
+		int lo = 0, hi = cumulative.length - 1;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(cumulative[mid] > val)
+				hi = mid;
+			else
+				lo = mid + 1;
+		}
+		return lo;
+	}
+}
@@ -0,0 +1,160 @@
+package com.ashwin.fri.genetic;
+
+import java.util.Arrays;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * A RealChromosome stores its genome as the actual values of its genes, so the
+ * genome is its own phenotype and never has to be decoded. Every gene is kept
+ * within the bounds of its GeneticGene. Chromosomes are mated using blend
+ * crossover (BLX-alpha) and mutated by adding Gaussian noise whose standard
+ * deviation is a fraction (sigma) of the range of each gene.
+ *
+ * @author ashwin
+ */
+public class RealChromosome extends GeneticChromosome {
+
+	/** The default standard deviation of mutations as a fraction of the range of a gene. */
+	public static final double SIGMA = 0.1;
+
+	/** The default amount that blend crossover extends the interval between parents by. */
+	public static final double ALPHA = 0.5;
+
+	private double[] _genome;
+	private double _sigma, _alpha;
+
+	/**
+	 * Creates a new RealChromosome whose genes are uniformly distributed within
+	 * their bounds. This constructor is used to generate the initial population.
+	 *
+	 * @param decoder genetic decoder implementation
+	 * @param sigma standard deviation of mutations as a fraction of the range of a gene
+	 * @param alpha blend crossover parameter
+	 * @param random random stream
+	 */
+	public RealChromosome(GeneticDecoder decoder, double sigma, double alpha, RandomStream random) {
+		super(decoder);
+		_sigma = sigma;
+		_alpha = alpha;
+
+		GeneticGene[] genes = decoder._genes;
+		_genome = new double[genes.length];
+		for(int i = 0; i < _genome.length; i++)
+			_genome[i] = genes[i].getLowerBound() + random.nextDouble() * (genes[i].getUpperBound() - genes[i].getLowerBound());
+	}
+
+	/**
+	 * Creates a new RealChromosome from the specified gene values.
+	 *
+	 * @param decoder genetic decoder implementation
+	 * @param genome gene values
+	 * @param sigma standard deviation of mutations as a fraction of the range of a gene
+	 * @param alpha blend crossover parameter
+	 */
+	public RealChromosome(GeneticDecoder decoder, double[] genome, double sigma, double alpha) {
+		super(decoder);
+		_genome = genome;
+		_sigma = sigma;
+		_alpha = alpha;
+	}
+
+	/** Creates a new RealChromosome from the specified gene values with the default parameters. */
+	public RealChromosome(GeneticDecoder decoder, double[] genome) {
+		this(decoder, genome, SIGMA, ALPHA);
+	}
+
+	/** Returns the underlying gene values. The returned array must not be modified. */
+	double[] getGenome() {
+		return _genome;
+	}
+
+	@Override
+	public double[] getPhenotype() {
+		return _genome;
+	}
+
+	@Override
+	public String getGenotype() {
+		return Arrays.toString(_genome);
+	}
+
+	@Override
+	public GeneticChromosome copy() {
+		return new RealChromosome(_decoder, Arrays.copyOf(_genome, _genome.length), _sigma, _alpha);
+	}
+
+	/**
+	 * Mates the chromosomes using blend crossover. Each gene of an offspring is drawn
+	 * uniformly from the interval between the genes of its parents, extended on both
+	 * sides by alpha times the distance between them.
+	 */
+	@Override
+	public GeneticChromosome[] mate(GeneticChromosome othr, double rate, RandomStream random) {
+		double[] g1 = this._genome;
+		double[] g2 = ((RealChromosome) othr)._genome;
+		double[] c1 = Arrays.copyOf(g1, g1.length);
+		double[] c2 = Arrays.copyOf(g2, g2.length);
+
+		if(random.nextDouble() <= rate) {
+			GeneticGene[] genes = _decoder._genes;
+			for(int i = 0; i < c1.length; i++) {
+				double min = Math.min(g1[i], g2[i]);
+				double ext = _alpha * (Math.max(g1[i], g2[i]) - min);
+				double lower = min - ext, range = Math.abs(g1[i] - g2[i]) + 2 * ext;
+				c1[i] = clamp(genes[i], lower + random.nextDouble() * range);
+				c2[i] = clamp(genes[i], lower + random.nextDouble() * range);
+			}
+		}
+
+		return new GeneticChromosome[] { new RealChromosome(_decoder, c1, _sigma, _alpha),
+										 new RealChromosome(_decoder, c2, _sigma, _alpha) };
+	}
+
+	/** Adds Gaussian noise to each gene of the genome with the specified probability. */
+	@Override
+	public void mutate(double rate, RandomStream random) {
+		GeneticGene[] genes = _decoder._genes;
+		for(int i = 0; i < _genome.length; i++)
+			if(random.nextDouble() <= rate)
+				_genome[i] = clamp(genes[i], _genome[i] + random.nextGaussian()
+						* _sigma * (genes[i].getUpperBound() - genes[i].getLowerBound()));
+		invalidate();
+	}
+
+	private static double clamp(GeneticGene gene, double val) {
+		return Math.max(gene.getLowerBound(), Math.min(gene.getUpperBound(), val));
+	}
+
+	/**
+	 * Returns the mean absolute difference between the phenotypes of every pair of
+	 * chromosomes in the population divided by the range of each gene, averaged over
+	 * every gene, so any chromosomes with real phenotypes may be compared. It is
+	 * computed by sorting the values of each gene, so it takes O(n log n) time per
+	 * gene.
+	 *
+	 * @param pop population
+	 * @return diversity between zero (converged) and one
+	 */
+	static double getDiversity(GeneticChromosome[] pop) {
+		int n = pop.length;
+		GeneticGene[] genes = pop[0].getDecoder()._genes;
+		if(n < 2 || genes.length == 0)
+			return 0.0;
+
+		double[] values = new double[n];
+		double diversity = 0.0;
+		for(int i = 0; i < genes.length; i++) {
+			for(int j = 0; j < n; j++)
+				values[j] = pop[j].getPhenotype()[i];
+			Arrays.sort(values);
+
+			// The k-th smallest value is greater than k values and less than n - k - 1
+			double sum = 0.0;
+			for(int k = 0; k < n; k++)
+				sum += values[k] * (2 * k - n + 1);
+			diversity += sum / ((double) n * (n - 1) / 2) / (genes[i].getUpperBound() - genes[i].getLowerBound());
+		}
+		return diversity / genes.length;
+	}
+}
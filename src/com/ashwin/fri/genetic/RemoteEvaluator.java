@@ -0,0 +1,350 @@
+package com.ashwin.fri.genetic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The RemoteEvaluator is a GeneticEvaluator that evaluates chromosomes on
+ * GeneticWorkers, which may run in other processes or on other machines. The
+ * evaluator listens for workers on a TCP port and splits every generation into
+ * batches of genomes. A worker is sent one batch at a time and must reply within
+ * the timeout; workers send heartbeats while they evaluate long batches. If a worker
+ * disconnects or times out, then its batch is reassigned to another worker.
+ * Workers may connect and disconnect at any time. Broadcasts are kept for the
+ * lifetime of the evaluator, so that workers that connect late receive all of them.
+ *
+ * @author ashwin
+ */
+public class RemoteEvaluator extends GeneticEvaluator {
+
+	private ServerSocket _server;
+	private BlockingDeque<Batch> _queue;
+	private List<Connection> _connections;
+	private List<byte[]> _broadcasts;
+	private int _batchSize, _timeout, _batches;
+
+	// Games in the batches that workers are evaluating and the total time that workers
+	// have spent evaluating batches, which are measured from when a batch is sent until
+	// its result is received (see GeneticMonitor).
+	private AtomicInteger _inFlight;
+	private LongAdder _busy;
+
+	/**
+	 * Creates an evaluator that listens for workers on the specified port.
+	 *
+	 * @param decoder genetic decoder implementation
+	 * @param port port to listen on
+	 * @param batchSize number of genomes sent to a worker at a time
+	 * @param timeout milliseconds after which a silent worker is considered lost
+	 * @throws IOException the port cannot be opened
+	 */
+	public RemoteEvaluator(GeneticDecoder decoder, int port, int batchSize, int timeout) throws IOException {
+		super(decoder, 1);
+		_server = new ServerSocket(port);
+		_queue = new LinkedBlockingDeque<Batch>();
+		_connections = new ArrayList<Connection>();
+		_broadcasts = new CopyOnWriteArrayList<byte[]>();
+		_batchSize = Math.max(1, batchSize);
+		_timeout = timeout;
+		_inFlight = new AtomicInteger();
+		_busy = new LongAdder();
+
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				accept();
+			}
+		}, "remote-accept");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** @return the port that the evaluator listens for workers on */
+	public int getPort() {
+		return _server.getLocalPort();
+	}
+
+	/** Accepts workers until the evaluator is shut down. */
+	private void accept() {
+		while(!_server.isClosed()) {
+			try {
+				Socket socket = _server.accept();
+				Connection connection = new Connection(socket);
+				synchronized(_connections) {
+					_connections.add(connection);
+				}
+
+				Thread thread = new Thread(connection, "remote-" + socket.getRemoteSocketAddress());
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				if(!_server.isClosed())
+					e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Evaluates every chromosome whose fitness is not yet known on the connected
+	 * workers. This method blocks until every chromosome has been evaluated, so it
+	 * waits for a worker to connect if none are connected. The seeds of every game are
+	 * drawn here like a local evaluator draws them and are sent with the batch, so
+	 * remote evaluation produces the same fitness as local evaluation regardless of
+	 * the number of workers or which worker evaluates which batch.
+	 */
+	@Override
+	public void evaluate(GeneticChromosome[] chromosomes, long[] seeds) {
+		GeneticMetrics metrics = getDecoder().getMetrics();
+		List<GeneticChromosome> pending = new ArrayList<GeneticChromosome>();
+		for(GeneticChromosome chromosome : chromosomes) {
+			if(chromosome.isEvaluated())
+				metrics.recordCacheHit();
+			else
+				pending.add(chromosome);
+		}
+
+		long[][] own = getSeeds(pending.size(), seeds);
+		int count = (pending.size() + _batchSize - 1) / _batchSize;
+		CountDownLatch latch = new CountDownLatch(count);
+		for(int i = 0; i < count; i++) {
+			int from = i * _batchSize, to = Math.min(pending.size(), (i + 1) * _batchSize);
+			List<GeneticChromosome> batch = pending.subList(from, to);
+			_queue.add(new Batch(_batches++, batch.toArray(new GeneticChromosome[batch.size()]),
+					Arrays.copyOfRange(own, from, to), latch));
+		}
+
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+
+		for(int i = 0; i < pending.size(); i++)
+			metrics.recordEvaluation();
+	}
+
+	/** @return number of workers that are connected */
+	@Override
+	public int getThreads() {
+		synchronized(_connections) {
+			return _connections.size();
+		}
+	}
+
+	/** @return number of games in the batches that workers are evaluating */
+	@Override
+	public int getGamesInFlight() {
+		return _inFlight.get();
+	}
+
+	/**
+	 * Returns the total time that workers have spent evaluating batches, from when a
+	 * batch is sent until its result is received, so a worker that is evaluating a
+	 * batch counts as busy regardless of how many threads it plays games on.
+	 *
+	 * @return total nanoseconds that every worker has spent evaluating batches
+	 */
+	@Override
+	public long getBusyNanos() {
+		return _busy.sum();
+	}
+
+	/**
+	 * Does nothing. Workers play their own games, so they are added or removed by
+	 * starting or stopping them.
+	 */
+	@Override
+	public void setThreads(int threads) {}
+
+	@Override
+	public void broadcast(byte[] message) {
+		_broadcasts.add(message);
+	}
+
+	/** Stops listening for workers and tells every connected worker to exit. */
+	@Override
+	public void shutdown() {
+		try {
+			_server.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		synchronized(_connections) {
+			for(Connection connection : _connections)
+				connection.close(true);
+		}
+	}
+
+	/** A batch of chromosomes that are evaluated by a single worker. */
+	private static class Batch {
+
+		private int _id;
+		private GeneticChromosome[] _chromosomes;
+		private long[][] _seeds;
+		private CountDownLatch _latch;
+		private boolean _done;
+
+		public Batch(int id, GeneticChromosome[] chromosomes, long[][] seeds, CountDownLatch latch) {
+			_id = id;
+			_chromosomes = chromosomes;
+			_seeds = seeds;
+			_latch = latch;
+		}
+
+		/** @return number of games that the chromosomes of the batch play */
+		public int getGames() {
+			int games = 0;
+			for(long[] seeds : _seeds)
+				games += seeds.length;
+			return games;
+		}
+
+		public synchronized void complete(double[] fitness) {
+			if(_done)
+				return;
+
+			for(int i = 0; i < _chromosomes.length; i++)
+				_chromosomes[i].setFitness(fitness[i]);
+			_done = true;
+			_latch.countDown();
+		}
+	}
+
+	/** The connection to a single worker. */
+	private class Connection implements Runnable {
+
+		private Socket _socket;
+		private DataInputStream _in;
+		private DataOutputStream _out;
+		private Thread _thread;
+		private int _broadcasted;
+
+		public Connection(Socket socket) throws IOException {
+			_socket = socket;
+			_socket.setTcpNoDelay(true);
+			_socket.setSoTimeout(_timeout);
+			_in  = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			_out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		public void run() {
+			_thread = Thread.currentThread();
+			Batch batch = null;
+
+			try {
+				int bits = getDecoder().getTotalBits();
+				if(_in.readByte() != GeneticProtocol.HELLO || _in.readInt() != GeneticProtocol.MAGIC
+						|| _in.readInt() != GeneticProtocol.VERSION || _in.readInt() != bits)
+					throw new IOException("Incompatible worker " + _socket.getRemoteSocketAddress());
+
+				while(!_socket.isClosed()) {
+					batch = _queue.take();
+					long start = System.nanoTime();
+					_inFlight.addAndGet(batch.getGames());
+					try {
+						send(batch);
+						batch.complete(receive(batch));
+					} finally {
+						_inFlight.addAndGet(-batch.getGames());
+						_busy.add(System.nanoTime() - start);
+					}
+					batch = null;
+				}
+			} catch (InterruptedException e) {
+				// The evaluator was shut down while the worker was idle
+			} catch (SocketTimeoutException e) {
+				System.err.println("Worker " + _socket.getRemoteSocketAddress() + " timed out");
+			} catch (EOFException | SocketException e) {
+				// The worker disconnected or the evaluator was shut down
+				if(batch != null && !_server.isClosed())
+					System.err.println("Worker " + _socket.getRemoteSocketAddress() + " disconnected");
+			} catch (IOException e) {
+				e.printStackTrace();
+			} finally {
+				// Reassign the batch to the next available worker
+				if(batch != null && !_server.isClosed())
+					_queue.addFirst(batch);
+				close(false);
+			}
+		}
+
+		private void send(Batch batch) throws IOException {
+			// Broadcasts that the worker has not received yet are sent first
+			for(; _broadcasted < _broadcasts.size(); _broadcasted++) {
+				byte[] message = _broadcasts.get(_broadcasted);
+				_out.writeByte(GeneticProtocol.UPDATE);
+				_out.writeInt(message.length);
+				_out.write(message);
+			}
+
+			_out.writeByte(GeneticProtocol.BATCH);
+			_out.writeInt(batch._id);
+			_out.writeInt(batch._chromosomes.length);
+			for(int i = 0; i < batch._chromosomes.length; i++) {
+				GeneticProtocol.writeChromosome(_out, batch._chromosomes[i]);
+				GeneticProtocol.writeSeeds(_out, batch._seeds[i]);
+			}
+			_out.flush();
+		}
+
+		/** Waits for the result of the batch, skipping any heartbeats. */
+		private double[] receive(Batch batch) throws IOException {
+			while(true) {
+				byte type = _in.readByte();
+				if(type == GeneticProtocol.HEARTBEAT)
+					continue;
+
+				if(type != GeneticProtocol.RESULT || _in.readInt() != batch._id
+						|| _in.readInt() != batch._chromosomes.length)
+					throw new IOException("Unexpected message from " + _socket.getRemoteSocketAddress());
+
+				double[] fitness = new double[batch._chromosomes.length];
+				for(int i = 0; i < fitness.length; i++)
+					fitness[i] = _in.readDouble();
+				return fitness;
+			}
+		}
+
+		public void close(boolean shutdown) {
+			try {
+				if(shutdown && !_socket.isClosed()) {
+					_out.writeByte(GeneticProtocol.SHUTDOWN);
+					_out.flush();
+				}
+			} catch (IOException e) {
+				// The worker already disconnected
+			}
+
+			try {
+				_socket.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+
+			if(shutdown && _thread != null)
+				_thread.interrupt();
+			synchronized(_connections) {
+				if(!shutdown)
+					_connections.remove(this);
+			}
+		}
+	}
+}
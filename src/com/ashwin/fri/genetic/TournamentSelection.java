@@ -0,0 +1,41 @@
+package com.ashwin.fri.genetic;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * Tournament selection selects each parent by drawing a group of chromosomes at
+ * random (with replacement) and returning the one with the lowest fitness. Larger
+ * tournaments increase the selective pressure. Each parent takes O(size) time.
+ * 
+ * @author ashwin
+ */
+public class TournamentSelection implements GeneticSelection {
+	
+	private int _size;
+	
+	/** @param size number of chromosomes in each tournament */
+	public TournamentSelection(int size) {
+		_size = size;
+	}
+	
+	@Override
+	public GeneticChromosome[] select(GeneticChromosome[] pop, int count, RandomStream random) {
+		GeneticChromosome[] parents = new GeneticChromosome[count];
+		for(int k = 0; k < count; k++) {
+			GeneticChromosome winner = null;
+			double min = Double.MAX_VALUE;
+			
+			for(int i = 0; i < _size; i++) {
+				int rand = random.nextInt(pop.length);
+				double fitness = pop[rand].getFitness();
+				
+				if(winner == null || fitness < min) {
+					winner = pop[rand];
+					min = fitness;
+				}
+			}
+			parents[k] = winner;
+		}
+		return parents;
+	}
+}
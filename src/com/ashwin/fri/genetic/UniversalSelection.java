@@ -0,0 +1,59 @@
+package com.ashwin.fri.genetic;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * Stochastic universal sampling selects every parent of a generation with a single
+ * spin of a roulette wheel with evenly spaced pointers (Baker, 1987), so the number of
+ * times that each chromosome is selected never strays far from its expected value.
+ * Selection is proportional to how much better than the worst chromosome of the
+ * population a chromosome is (its fitness subtracted from the largest fitness), which
+ * turns the minimized fitness into a weight. If every chromosome has the same fitness,
+ * then every chromosome is equally likely to be selected. The cumulative table of
+ * weights is built once per generation and the wheel is walked once, so selection
+ * takes O(n + count) time.
+ * 
+ * @author ashwin
+ */
+public class UniversalSelection implements GeneticSelection {
+	
+	@Override
+	public GeneticChromosome[] select(GeneticChromosome[] pop, int count, RandomStream random) {
+		int n = pop.length;
+		double max = -Double.MAX_VALUE;
+		for(GeneticChromosome chromosome : pop)
+			max = Math.max(max, chromosome.getFitness());
+		
+		double[] cumulative = new double[n];
+		double sum = 0.0;
+		for(int i = 0; i < n; i++) {
+			sum += max - pop[i].getFitness();
+			cumulative[i] = sum;
+		}
+		if(!(sum > 0.0) || Double.isInfinite(sum)) {
+			for(int i = 0; i < n; i++)
+				cumulative[i] = i + 1;
+			sum = n;
+		}
+		
+		GeneticChromosome[] parents = new GeneticChromosome[count];
+		double spacing = sum / count;
+		double pointer = random.nextDouble() * spacing;
+		int index = 0;
+		for(int k = 0; k < count; k++, pointer += spacing) {
+			while(index < n - 1 && cumulative[index] <= pointer)
+				index++;
+			parents[k] = pop[index];
+		}
+		
+		// Parents are selected in population order, so they are shuffled before they
+		// are paired up for mating.
+		for(int k = count - 1; k > 0; k--) {
+			int j = random.nextInt(k + 1);
+			GeneticChromosome tmp = parents[k];
+			parents[k] = parents[j];
+			parents[j] = tmp;
+		}
+		return parents;
+	}
+}
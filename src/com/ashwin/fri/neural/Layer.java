@@ -4,6 +4,8 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.ashwin.fri.random.RandomStream;
+
 /**
  * A layer represents a collection of neurons. A layer takes a set of
  * inputs, runs them through its neurons, and outputs a collection of
@@ -22,14 +24,16 @@ public class Layer implements Serializable {
 	/**
 	 * Creates a layer with the specified number of neurons that each
 	 * take the specified number of inputs. The neurons weights are
-	 * initialized to random values.
+	 * initialized to random values that are drawn from the stream.
 	 * 
-	 * @param size
+	 * @param inputs number of inputs of each neuron
+	 * @param nodes number of neurons
+	 * @param random random stream
 	 */
-	public Layer(int inputs, int nodes) {
+	public Layer(int inputs, int nodes, RandomStream random) {
 		_neurons = new ArrayList<Neuron>();
 		for(int i = 0; i < nodes; i++)
-			_neurons.add(new Neuron(inputs));
+			_neurons.add(new Neuron(inputs, random));
 		_inputs = inputs;
 	}
 	
@@ -60,4 +64,17 @@ public class Layer implements Serializable {
 			outputs.add(_neurons.get(i).getActionPotential(inputs));
 		return outputs;
 	}
+	
+	/**
+	 * Returns the outputs of the layer given an array of inputs.
+	 * 
+	 * @param inputs
+	 * @return
+	 */
+	public double[] getOutputs(double[] inputs) {
+		double[] outputs = new double[_neurons.size()];
+		for(int i = 0; i < outputs.length; i++)
+			outputs[i] = _neurons.get(i).getActionPotential(inputs);
+		return outputs;
+	}
 }
@@ -0,0 +1,327 @@
+package com.ashwin.fri.neural;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.ashwin.fri.genetic.MetricsSink;
+import com.ashwin.fri.pacman.Game;
+import com.ashwin.fri.pacman.GameMap;
+import com.ashwin.fri.pacman.Termination;
+import com.ashwin.fri.pacman.actor.Ghost;
+import com.ashwin.fri.pacman.actor.Ghost.Difficulty;
+import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Terrain;
+import com.ashwin.fri.pacman.termination.TerminationPolicy;
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * The NeuralArena benchmarks trained nets against each other without a graphical
+ * interface. Every net plays one game for every combination of map, ghost difficulty
+ * and seed, and every net plays with the same seeds, so the ghosts make the same
+ * random choices for every net until their games diverge. Games are played on every
+ * processor, the result of every game is streamed to a CSV file, and the mean of
+ * every result is printed with its 95% confidence interval.
+ *
+ * The first net is the baseline (usually the production net). Every other net is
+ * compared to it game by game, and a net is only reported as better or worse than
+ * the baseline if the confidence interval of the difference in their scores does
+ * not contain zero.
+ *
+ * @author ashwin
+ */
+public class NeuralArena {
+
+	/** The z-score of a two sided 95% confidence interval. */
+	private static final double Z = 1.96;
+
+	/** Seeds are played in blocks, so that each thread creates few games. */
+	private static final int BLOCK = 16;
+
+	/**
+	 * Plays every net specified on the command line on the maps (game.corpus.maps)
+	 * and the arena.difficulties ghost difficulties for arena.seeds seeds, and prints
+	 * the results. Games are terminated early by the same policies as training games.
+	 *
+	 * @param args net files, starting with the baseline
+	 * @throws Exception a net or map cannot be read
+	 */
+	public static void main(String[] args) throws Exception {
+		Properties props = new Properties();
+		props.load(new FileInputStream(new File("./pacman.properties")));
+		if(args.length == 0)
+			throw new IllegalArgumentException("Usage: NeuralArena baseline.ser [challenger.ser ...]");
+
+		List<String> names = new ArrayList<String>();
+		List<NeuralNet> nets = new ArrayList<NeuralNet>();
+		for(String arg : args) {
+			names.add(new File(arg).getName());
+			nets.add(NeuralNet.load(new File(arg)));
+		}
+
+		List<Difficulty> difficulties = new ArrayList<Difficulty>();
+		for(String name : props.getProperty("arena.difficulties", "").split(","))
+			if(!name.trim().isEmpty())
+				difficulties.add(Difficulty.valueOf(name.trim().toUpperCase()));
+		if(difficulties.isEmpty())
+			difficulties.addAll(Arrays.asList(Difficulty.values()));
+
+		// The seeds of the games are drawn from a stream seeded by arena.seed (or the
+		// clock), so a benchmark can be reproduced.
+		String seed = props.getProperty("arena.seed", "").trim();
+		long val = seed.isEmpty() ? System.nanoTime() : Long.valueOf(seed);
+		System.out.println("Seed: " + val);
+		RandomStream random = new RandomStream(val);
+		long[] seeds = new long[Integer.valueOf(props.getProperty("arena.seeds", "100").trim())];
+		for(int i = 0; i < seeds.length; i++)
+			seeds[i] = random.nextLong();
+
+		int threads = Integer.valueOf(props.getProperty("arena.threads", "0").trim());
+		NeuralArena arena = new NeuralArena(names, nets, PacManDecoder.loadMaps(props), difficulties, seeds, props);
+		MetricsSink sink = MetricsSink.open(props.getProperty("arena.output", "./arena-results.csv"));
+		try {
+			arena.run((threads > 0) ? threads : Runtime.getRuntime().availableProcessors(), sink);
+		} finally {
+			if(sink != null)
+				sink.close();
+		}
+		arena.print();
+	}
+
+	private List<String> _names;
+	private List<NeuralNet> _nets;
+	private List<GameMap> _maps;
+	private List<Difficulty> _difficulties;
+	private long[] _seeds;
+	private Properties _termination;
+
+	// The result of every game, indexed by net, episode (map and difficulty) and seed
+	private Result[][][] _results;
+	private double _secs;
+
+	/**
+	 * Creates an arena that plays every net on every combination of the specified
+	 * maps, difficulties and seeds.
+	 *
+	 * @param names names of the nets
+	 * @param nets nets, starting with the baseline
+	 * @param maps compiled maps
+	 * @param difficulties ghost difficulties
+	 * @param seeds seeds of the games
+	 * @param termination properties of the termination policies of every game (see TerminationPolicy.create)
+	 */
+	public NeuralArena(List<String> names, List<NeuralNet> nets, List<GameMap> maps,
+			List<Difficulty> difficulties, long[] seeds, Properties termination) {
+		_names = names;
+		_nets = nets;
+		_maps = maps;
+		_difficulties = difficulties;
+		_seeds = seeds;
+		_termination = termination;
+		_results = new Result[nets.size()][maps.size() * difficulties.size()][seeds.length];
+	}
+
+	/**
+	 * Plays every game on the specified number of threads and writes the result of
+	 * every game to the sink as soon as it has been played.
+	 *
+	 * @param threads number of threads
+	 * @param sink sink of the results or null
+	 * @throws Exception a game failed
+	 */
+	public void run(int threads, final MetricsSink sink) throws Exception {
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for(int n = 0; n < _nets.size(); n++) {
+				for(int e = 0; e < _results[n].length; e++) {
+					for(int s = 0; s < _seeds.length; s += BLOCK) {
+						final int net = n, episode = e, from = s, to = Math.min(_seeds.length, s + BLOCK);
+						futures.add(executor.submit(new Runnable() {
+							public void run() {
+								play(net, episode, from, to, sink);
+							}
+						}));
+					}
+				}
+			}
+			for(Future<?> future : futures)
+				future.get();
+		} finally {
+			executor.shutdown();
+		}
+		_secs = (System.nanoTime() - start) / 1e9;
+	}
+
+	/** Plays the games of a net and episode with the seeds in [from, to). */
+	private void play(int net, int episode, int from, int to, MetricsSink sink) {
+		GameMap map = _maps.get(episode / _difficulties.size());
+		Difficulty difficulty = _difficulties.get(episode % _difficulties.size());
+		Game game = map.newGame(_nets.get(net).copy(), difficulty);
+		if(_termination != null)
+			for(TerminationPolicy policy : TerminationPolicy.create(_termination))
+				game.addTerminationPolicy(policy);
+
+		game.reset();
+		int pellets = countPellets(game.getGrid());
+		for(int s = from; s < to; s++) {
+			game.reset();
+			game.setSeed(_seeds[s]);
+			game.run();
+
+			Result result = new Result(game, pellets - countPellets(game.getGrid()));
+			_results[net][episode][s] = result;
+			if(sink != null) {
+				Map<String, Object> row = new LinkedHashMap<String, Object>();
+				row.put("net", _names.get(net));
+				row.put("map", new File(map.getName()).getName());
+				row.put("difficulty", difficulty);
+				row.put("seed", _seeds[s]);
+				row.put("score", result._score);
+				row.put("ticks", result._ticks);
+				row.put("pellets", result._pellets);
+				row.put("termination", result._termination);
+				row.put("ghost", (result._ghost != null) ? result._ghost : "");
+				sink.write(row);
+			}
+		}
+	}
+
+	/** Returns the number of food and energizers that remain in the grid. */
+	private static int countPellets(Grid grid) {
+		int count = 0;
+		for(int y = 0; y < grid.getHeight(); y++)
+			for(int x = 0; x < grid.getWidth(); x++)
+				if(grid.get(x, y) == Terrain.FOOD || grid.get(x, y) == Terrain.ENERGIZER)
+					count++;
+		return count;
+	}
+
+	/**
+	 * Prints the results of every net on every map and difficulty, the results of
+	 * every net over every game, and the difference between every net and the baseline.
+	 */
+	public void print() {
+		int games = 0;
+		for(Result[][] net : _results)
+			for(Result[] episode : net)
+				games += episode.length;
+
+		System.out.printf("%-16s\t%-20s\t%-10s\t%6s\t%22s\t%22s\t%8s\t%6s\t%6s\n",
+				"Net", "Map", "Difficulty", "Games", "Score", "Ticks", "Pellets", "Won", "Died");
+		for(int n = 0; n < _results.length; n++) {
+			for(int e = 0; e < _results[n].length; e++) {
+				String map = new File(_maps.get(e / _difficulties.size()).getName()).getName();
+				printRow(_names.get(n), map, String.valueOf(_difficulties.get(e % _difficulties.size())), _results[n][e]);
+			}
+		}
+
+		System.out.println();
+		System.out.printf("%-16s\t%-20s\t%-10s\t%6s\t%22s\t%22s\t%8s\t%6s\t%6s\n",
+				"Net", "Map", "Difficulty", "Games", "Score", "Ticks", "Pellets", "Won", "Died");
+		for(int n = 0; n < _results.length; n++)
+			printRow(_names.get(n), "all", "all", flatten(_results[n]));
+
+		if(_results.length > 1) {
+			System.out.println();
+			System.out.printf("%-16s\t%-16s\t%22s\t%8s\n", "Net", "Baseline", "Score difference", "Verdict");
+			Result[] baseline = flatten(_results[0]);
+			for(int n = 1; n < _results.length; n++) {
+				Result[] results = flatten(_results[n]);
+				double[] diff = new double[results.length];
+				for(int i = 0; i < diff.length; i++)
+					diff[i] = results[i]._score - baseline[i]._score;
+
+				double mean = mean(diff), ci = interval(diff);
+				String verdict = (mean - ci > 0.0) ? "better" : (mean + ci < 0.0) ? "worse" : "tie";
+				System.out.printf("%-16s\t%-16s\t%22s\t%8s\n", _names.get(n), _names.get(0), format(mean, ci), verdict);
+			}
+		}
+
+		System.out.println();
+		System.out.printf("Played %d games in %.2f secs (%.1f games/sec)\n", games, _secs, games / _secs);
+	}
+
+	/** Prints the mean results of the specified games. */
+	private static void printRow(String net, String map, String difficulty, Result[] results) {
+		double[] score = new double[results.length], ticks = new double[results.length], pellets = new double[results.length];
+		int won = 0, died = 0;
+		for(int i = 0; i < results.length; i++) {
+			score[i] = results[i]._score;
+			ticks[i] = results[i]._ticks;
+			pellets[i] = results[i]._pellets;
+			if(results[i]._termination == Termination.WON)
+				won++;
+			else if(results[i]._termination == Termination.DIED)
+				died++;
+		}
+
+		System.out.printf("%-16s\t%-20s\t%-10s\t%6d\t%22s\t%22s\t%8.1f\t%5.1f%%\t%5.1f%%\n", net, map, difficulty,
+				results.length, format(mean(score), interval(score)), format(mean(ticks), interval(ticks)),
+				mean(pellets), 100.0 * won / results.length, 100.0 * died / results.length);
+	}
+
+	/** Returns the results of every episode of a net in a single array. */
+	private static Result[] flatten(Result[][] episodes) {
+		List<Result> results = new ArrayList<Result>();
+		for(Result[] episode : episodes)
+			results.addAll(Arrays.asList(episode));
+		return results.toArray(new Result[results.size()]);
+	}
+
+	private static String format(double mean, double ci) {
+		return String.format("%.1f +/- %.1f", mean, ci);
+	}
+
+	private static double mean(double[] values) {
+		double sum = 0.0;
+		for(double val : values)
+			sum += val;
+		return sum / Math.max(1, values.length);
+	}
+
+	/**
+	 * Returns the half width of the 95% confidence interval of the mean of the
+	 * specified values, using the normal approximation.
+	 */
+	private static double interval(double[] values) {
+		if(values.length < 2)
+			return Double.NaN;
+
+		double mean = mean(values), sum = 0.0;
+		for(double val : values)
+			sum += (val - mean) * (val - mean);
+		return Z * Math.sqrt(sum / (values.length - 1) / values.length);
+	}
+
+	/** The result of a single game. */
+	private static class Result {
+
+		private int _score, _ticks, _pellets;
+		private Termination _termination;
+		private String _ghost;
+
+		/** Records the result of a game that has ended. */
+		public Result(Game game, int pellets) {
+			_score = game.getPacMan().getPoints();
+			_ticks = game.getTicks();
+			_pellets = pellets;
+			_termination = game.getTermination();
+
+			// PacMan was caught by a ghost on the same tile
+			if(_termination == Termination.DIED)
+				for(Ghost ghost : game.getGhosts())
+					if(_ghost == null && game.getGrid().isCollision(game.getPacMan(), ghost))
+						_ghost = ghost.getClass().getSimpleName();
+		}
+	}
+}
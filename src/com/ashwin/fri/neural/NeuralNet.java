@@ -11,6 +11,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import com.ashwin.fri.random.RandomStream;
+
 /**
  * NeuralNets are a collection of Layers. They can be executed on a series
  * of inputs to produce a series of outputs. While the NeuralNet itself is
@@ -26,20 +28,78 @@ public class NeuralNet implements Serializable {
 	
 	private List<Layer> _layers;
 	
+	/** 
+	 * The names of the features that the net consumes as inputs. Nets that
+	 * were saved before features were declared will deserialize as null.
+	 */
+	private List<String> _features;
+	
 	public NeuralNet(List<Layer> layers) {
 		_layers = layers;
 	}
 	
+	/**
+	 * Creates a net with randomized weights whose layers have the specified number
+	 * of nodes. The first number is the number of inputs of the net. The weights are
+	 * drawn from a stream that is seeded by the clock.
+	 * 
+	 * @param nodes number of nodes in each layer
+	 */
 	public NeuralNet(int... nodes) {
+		this(new RandomStream(System.nanoTime()), nodes);
+	}
+	
+	/**
+	 * Creates a net like NeuralNet(nodes) whose weights are drawn from the specified
+	 * stream, so that the net is reproducible.
+	 * 
+	 * @param random random stream
+	 * @param nodes number of nodes in each layer
+	 */
+	public NeuralNet(RandomStream random, int... nodes) {
 		_layers = new ArrayList<Layer>();
 		for(int i = 1; i < nodes.length; i++)
-			_layers.add(new Layer(nodes[i-1], nodes[i]));
+			_layers.add(new Layer(nodes[i-1], nodes[i], random));
+	}
+	
+	/**
+	 * Returns a deep copy of this net. Nets are mutable, so threads that evaluate
+	 * different weights concurrently must each use their own copy.
+	 * 
+	 * @return copy of the net
+	 */
+	public NeuralNet copy() {
+		List<Layer> layers = new ArrayList<Layer>();
+		for(Layer layer : _layers) {
+			List<Neuron> neurons = new ArrayList<Neuron>();
+			for(Neuron neuron : layer.getNeurons())
+				neurons.add(new Neuron(new ArrayList<Double>(neuron.getWeights())));
+			layers.add(new Layer(neurons));
+		}
+		
+		NeuralNet copy = new NeuralNet(layers);
+		copy.setFeatures(_features);
+		return copy;
 	}
 	
 	public List<Layer> getLayers() {
 		return _layers;
 	}
 	
+	/**
+	 * Returns the names of the features that this net consumes, in input order,
+	 * or null if the net does not declare its features.
+	 * 
+	 * @return feature names
+	 */
+	public List<String> getFeatures() {
+		return _features;
+	}
+	
+	public void setFeatures(List<String> features) {
+		_features = features;
+	}
+	
 	public List<Double> getWeights() {
 		List<Double> weights = new ArrayList<Double>();
 		
@@ -99,6 +159,20 @@ public class NeuralNet implements Serializable {
 			return _layers.get(layer).getOutputs(execute(layer - 1, inputs));
 	}
 	
+	/**
+	 * Executes the entire neural net on an array of inputs and returns the output
+	 * of the top most layer in the net.
+	 * 
+	 * @param inputs
+	 * @return
+	 */
+	public double[] execute(double[] inputs) {
+		double[] outputs = inputs;
+		for(Layer layer : _layers)
+			outputs = layer.getOutputs(outputs);
+		return outputs;
+	}
+	
 	/**
 	 * Saves a NeuralNet to file. This method performs Object Serialization
 	 * using the Serialization interface provided by Java.
@@ -0,0 +1,271 @@
+package com.ashwin.fri.neural;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import com.ashwin.fri.pacman.actor.PacManAi;
+import com.ashwin.fri.pacman.replay.Demonstrations;
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * The NeuralTrainer fits the weights of a NeuralNet to labeled examples using
+ * mini-batch gradient descent (backpropagation). Every output of the net is trained
+ * towards one for the label of an example and towards zero otherwise, using the
+ * cross entropy of each sigmoid output as the loss. The weights are copied into
+ * primitive arrays for the duration of training and are kept within the specified
+ * bounds, so that the trained weights can be represented by the genes of the
+ * PacManDecoder and seed its initial population (see the pop.seed property).
+ *
+ * @author ashwin
+ */
+public class NeuralTrainer {
+
+	/**
+	 * Trains a new net on demonstrations (see DemonstrationRecorder) and saves it to
+	 * the file specified by the neural.train.output property. The arguments are the
+	 * demonstration files or directories to train on.
+	 *
+	 * @param args demonstration files or directories
+	 * @throws Exception demonstrations cannot be read or the net cannot be saved
+	 */
+	public static void main(String[] args) throws Exception {
+		Properties props = new Properties();
+		props.load(new FileInputStream(new File("./pacman.properties")));
+
+		List<File> files = new ArrayList<File>();
+		for(String arg : args)
+			files.add(new File(arg));
+
+		// The initial weights and the order of the examples are drawn from a stream
+		// seeded by neural.train.seed (or the clock), so training can be reproduced.
+		String seed = props.getProperty("neural.train.seed", "").trim();
+		RandomStream random = new RandomStream(seed.isEmpty() ? System.nanoTime() : Long.valueOf(seed));
+		NeuralNet net = PacManDecoder.newNet(props, random.split());
+		Demonstrations demos = new Demonstrations(files, PacManAi.getFeatures(net));
+		if(demos.size() == 0)
+			throw new IllegalArgumentException("No demonstrations in " + files);
+
+		NeuralTrainer trainer = new NeuralTrainer(net,
+				Double.valueOf(props.getProperty("neural.train.rate", "0.5").trim()),
+				Integer.valueOf(props.getProperty("neural.train.batch", "32").trim()),
+				PacManDecoder.WEIGHT_BOUND);
+		int epochs = Integer.valueOf(props.getProperty("neural.train.epochs", "200").trim());
+
+		System.out.printf("%6s\t%15s\t%10s\n", "Epoch", "Loss", "Accuracy");
+		for(int epoch = 1; epoch <= epochs; epoch++) {
+			double loss = trainer.train(demos.getInputs(), demos.getLabels(), random);
+			if(epoch % 10 == 0 || epoch == epochs)
+				System.out.printf("%6d\t%15.8f\t%10.4f\n", epoch, loss,
+						trainer.getAccuracy(demos.getInputs(), demos.getLabels()));
+		}
+
+		File output = new File(props.getProperty("neural.train.output", "./assets/neural/imitation.ser").trim());
+		trainer.getNeuralNet().save(output);
+		System.out.println("Trained on " + demos.size() + " examples and saved to " + output);
+	}
+
+	private NeuralNet _net;
+	private double _rate, _bound;
+	private int _batch;
+
+	// The weights of each layer are stored neuron by neuron, with the bias of each
+	// neuron after its input weights (the same order as NeuralNet.getWeights).
+	private double[][] _weights, _gradient;
+	private int[] _inputs, _outputs;
+
+	/**
+	 * Creates a trainer that starts from the current weights of the net. The
+	 * weights of the net are updated at the end of every epoch (see train).
+	 *
+	 * @param net net to train
+	 * @param rate learning rate
+	 * @param batch number of examples per mini-batch
+	 * @param bound maximum magnitude of every weight
+	 */
+	public NeuralTrainer(NeuralNet net, double rate, int batch, double bound) {
+		_net = net;
+		_rate = rate;
+		_batch = Math.max(1, batch);
+		_bound = bound;
+
+		List<Layer> layers = net.getLayers();
+		_weights = new double[layers.size()][];
+		_gradient = new double[layers.size()][];
+		_inputs = new int[layers.size()];
+		_outputs = new int[layers.size()];
+		for(int l = 0; l < layers.size(); l++) {
+			List<Neuron> neurons = layers.get(l).getNeurons();
+			_outputs[l] = neurons.size();
+			_inputs[l] = neurons.get(0).size() - 1;
+			_weights[l] = new double[_outputs[l] * (_inputs[l] + 1)];
+			_gradient[l] = new double[_weights[l].length];
+
+			int index = 0;
+			for(Neuron neuron : neurons)
+				for(double weight : neuron.getWeights())
+					_weights[l][index++] = weight;
+		}
+	}
+
+	/** @return trained net */
+	public NeuralNet getNeuralNet() {
+		return _net;
+	}
+
+	/**
+	 * Performs one epoch of training: the examples are shuffled and the weights
+	 * take one step of gradient descent per mini-batch. The weights of the net are
+	 * updated once the epoch is complete.
+	 *
+	 * @param inputs inputs of every example
+	 * @param labels index of the output that should be largest for every example
+	 * @param random random stream that examples are shuffled with
+	 * @return mean loss of the examples during the epoch
+	 */
+	public double train(double[][] inputs, int[] labels, RandomStream random) {
+		int[] order = new int[labels.length];
+		for(int i = 0; i < order.length; i++)
+			order[i] = i;
+		for(int i = order.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+
+		double[][] activations = new double[_weights.length + 1][];
+		double[][] deltas = new double[_weights.length][];
+		for(int l = 0; l < _weights.length; l++) {
+			activations[l + 1] = new double[_outputs[l]];
+			deltas[l] = new double[_outputs[l]];
+		}
+
+		double loss = 0.0;
+		for(int start = 0; start < order.length; start += _batch) {
+			int end = Math.min(order.length, start + _batch);
+			for(double[] gradient : _gradient)
+				Arrays.fill(gradient, 0.0);
+
+			for(int k = start; k < end; k++) {
+				activations[0] = inputs[order[k]];
+				forward(activations);
+				loss += backward(activations, deltas, labels[order[k]]);
+			}
+
+			// Take a step down the mean gradient of the batch
+			double step = _rate / (end - start);
+			for(int l = 0; l < _weights.length; l++)
+				for(int i = 0; i < _weights[l].length; i++)
+					_weights[l][i] = Math.max(-_bound, Math.min(_bound, _weights[l][i] - step * _gradient[l][i]));
+		}
+
+		_net.setWeights(getWeights());
+		return loss / Math.max(1, order.length);
+	}
+
+	/**
+	 * Returns the fraction of the examples whose label is the largest output of the
+	 * net. The PacManAi only chooses between the directions that it can move in, so it
+	 * usually agrees with the demonstrations more often than this.
+	 *
+	 * @param inputs inputs of every example
+	 * @param labels index of the output that should be largest for every example
+	 * @return accuracy between zero and one
+	 */
+	public double getAccuracy(double[][] inputs, int[] labels) {
+		double[][] activations = new double[_weights.length + 1][];
+		for(int l = 0; l < _weights.length; l++)
+			activations[l + 1] = new double[_outputs[l]];
+
+		int correct = 0;
+		for(int k = 0; k < labels.length; k++) {
+			activations[0] = inputs[k];
+			forward(activations);
+			double[] outputs = activations[_weights.length];
+			int best = 0;
+			for(int i = 1; i < outputs.length; i++)
+				if(outputs[i] > outputs[best])
+					best = i;
+			if(best == labels[k])
+				correct++;
+		}
+		return (labels.length > 0) ? (double) correct / labels.length : 0.0;
+	}
+
+	/** Returns the current weights in the order of NeuralNet.getWeights. */
+	public double[] getWeights() {
+		int size = 0;
+		for(double[] layer : _weights)
+			size += layer.length;
+
+		double[] weights = new double[size];
+		int index = 0;
+		for(double[] layer : _weights) {
+			System.arraycopy(layer, 0, weights, index, layer.length);
+			index += layer.length;
+		}
+		return weights;
+	}
+
+	/**
+	 * Computes the output of every layer into activations[l + 1]. Like a Neuron, a
+	 * layer ignores the weights of any inputs beyond the inputs it is given.
+	 */
+	private void forward(double[][] activations) {
+		for(int l = 0; l < _weights.length; l++) {
+			double[] in = activations[l], out = activations[l + 1], w = _weights[l];
+			int stride = _inputs[l] + 1, count = Math.min(in.length, _inputs[l]);
+			for(int n = 0; n < out.length; n++) {
+				int base = n * stride;
+				double sum = w[base + stride - 1];
+				for(int i = 0; i < count; i++)
+					sum += in[i] * w[base + i];
+				out[n] = 1.0 / (1.0 + Math.exp(-sum));
+			}
+		}
+	}
+
+	/**
+	 * Accumulates the gradient of the loss of a single example and returns its loss.
+	 * With a cross entropy loss, the error of each sigmoid output is simply the
+	 * difference between the output and its target.
+	 */
+	private double backward(double[][] activations, double[][] deltas, int label) {
+		int top = _weights.length - 1;
+		double[] outputs = activations[top + 1];
+		double loss = 0.0;
+		for(int n = 0; n < outputs.length; n++) {
+			double target = (n == label) ? 1.0 : 0.0;
+			double out = Math.max(1e-12, Math.min(1.0 - 1e-12, outputs[n]));
+			loss -= target * Math.log(out) + (1.0 - target) * Math.log(1.0 - out);
+			deltas[top][n] = outputs[n] - target;
+		}
+
+		for(int l = top; l >= 0; l--) {
+			double[] in = activations[l], w = _weights[l], g = _gradient[l];
+			int stride = _inputs[l] + 1, count = Math.min(in.length, _inputs[l]);
+			for(int n = 0; n < _outputs[l]; n++) {
+				int base = n * stride;
+				double delta = deltas[l][n];
+				g[base + stride - 1] += delta;
+				for(int i = 0; i < count; i++)
+					g[base + i] += delta * in[i];
+			}
+
+			// Propagate the error through the sigmoid of the layer below
+			if(l > 0) {
+				for(int i = 0; i < count; i++) {
+					double sum = 0.0;
+					for(int n = 0; n < _outputs[l]; n++)
+						sum += deltas[l][n] * w[n * stride + i];
+					deltas[l - 1][i] = sum * in[i] * (1.0 - in[i]);
+				}
+			}
+		}
+		return loss;
+	}
+}
@@ -4,6 +4,8 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.ashwin.fri.random.RandomStream;
+
 /**
  * A neuron models the neurons in our brains. It takes the weighted sum
  * of the products of its inputs and weights and adds it to a bias term.
@@ -26,10 +28,17 @@ public class Neuron implements Serializable {
 	
 	private List<Double> _weights;
 	
-	public Neuron(int inputs) {
+	/**
+	 * Creates a neuron with the specified number of inputs whose weights (and bias)
+	 * are drawn uniformly from [-3, 3).
+	 * 
+	 * @param inputs number of inputs
+	 * @param random random stream
+	 */
+	public Neuron(int inputs, RandomStream random) {
 		_weights = new ArrayList<Double>();
 		for(int i = 0; i < inputs + 1; i++)
-			_weights.add(Math.random() * 6 - 3);
+			_weights.add(random.nextDouble() * 6 - 3);
 	}
 	
 	public Neuron(List<Double> weights) {
@@ -63,4 +72,20 @@ public class Neuron implements Serializable {
 				
 		return 1.0 / (1 + Math.pow(Math.E, -sum * Neuron.SLOPE_PARAMETER));
 	}
+	
+	/**
+	 * Returns the action potential of the neuron for an array of inputs. This
+	 * method is equivalent to getActionPotential(List), but does not require the
+	 * caller to box its inputs.
+	 * 
+	 * @param inputs neural inputs
+	 * @return action potential
+	 */
+	public double getActionPotential(double[] inputs) {
+		double sum = _weights.get(_weights.size() - 1);
+		for(int i = 0; i < inputs.length; i++)
+			sum += inputs[i] * _weights.get(i);
+				
+		return 1.0 / (1 + Math.pow(Math.E, -sum * Neuron.SLOPE_PARAMETER));
+	}
 }
@@ -1,15 +1,38 @@
 package com.ashwin.fri.neural;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.ashwin.fri.flight.Flight;
+import com.ashwin.fri.genetic.CmaEvolutionStrategy;
+import com.ashwin.fri.genetic.EvolutionStrategy;
 import com.ashwin.fri.genetic.GeneticAlgorithm;
 import com.ashwin.fri.genetic.GeneticChromosome;
 import com.ashwin.fri.genetic.GeneticDecoder;
 import com.ashwin.fri.genetic.GeneticGene;
+import com.ashwin.fri.genetic.GeneticSweep;
+import com.ashwin.fri.genetic.GeneticWorker;
+import com.ashwin.fri.genetic.PopulationBasedTraining;
 import com.ashwin.fri.pacman.Game;
+import com.ashwin.fri.pacman.GameMap;
+import com.ashwin.fri.pacman.SpectatorFeed;
+import com.ashwin.fri.pacman.actor.Ghost.Difficulty;
 import com.ashwin.fri.pacman.actor.PacManAi;
+import com.ashwin.fri.pacman.replay.GameRecorder;
+import com.ashwin.fri.pacman.sensor.Feature;
+import com.ashwin.fri.pacman.termination.TerminationPolicy;
+import com.ashwin.fri.random.RandomStream;
 
 /**
  * The PacManDecoder is responsible for training the neural net's weights.
@@ -24,70 +47,384 @@ public class PacManDecoder extends GeneticDecoder {
 	/** Where to save the output of the neural network training algorithm. */
 	private static final String NEURAL_FILE  = "./assets/neural/n2.ser";
 
+	/** The magnitude of the largest weight that can be trained. */
+	public static final double WEIGHT_BOUND = 3.0;
+
 	public static void main(String[] args) throws Exception {
-		Properties props = new Properties();
+		final Properties props = new Properties();
 		props.load(new FileInputStream(new File(GeneticAlgorithm.PROPERTIES)));
 		props.load(new FileInputStream(new File("./pacman.properties")));
-		props.setProperty("game.neural", NEURAL_FILE);		// Point to the generated neural net
-		props.setProperty("game.enable.ai", "true");		// Enable PacMan AI
-		props.setProperty("game.fps", "10000");				// Run game at infinite speed
 		File output = new File(NEURAL_FILE);	// Output file for the neural net
 		
-		// Generate a randomized neural net with an arbitrary number of layers
-		// with an arbitrary number of nodes in each layer. The only restriction is
-		// that the number of inputs must match the number of inputs in PacManAi
-		// and the number of outputs must match the number of outputs in PacManAi.
-		NeuralNet net = new NeuralNet(13, 10, 8, 4);
-		net.save(output);
-		
-		GeneticGene[] genes = new GeneticGene[net.size()];
-		for(int i = 0; i < genes.length; i++)
-			genes[i] = new GeneticGene(null, 40, -3.0, 3.0);
-
 		// Initialize the decoder and run the algorithm using the loaded properties
-		PacManDecoder decoder = new PacManDecoder(genes, Game.load(props));
-		GeneticChromosome best = GeneticAlgorithm.run(decoder, props);
+		final NeuralNet net = newNet(props, new RandomStream(System.nanoTime()));
+		final List<GameMap> maps = loadMaps(props);
+		final List<Difficulty> difficulties = loadDifficulties(props);
+		PacManDecoder decoder = newDecoder(props, net, maps, difficulties);
+		final String records = props.getProperty("game.record.dir", "").trim();
+		if(!records.isEmpty())
+			decoder.setRecordDirectory(new File(records));
+		
+		// Workers evaluate chromosomes for a coordinator that was started with the
+		// ga.remote.port property. Workers and the coordinator must use the same properties.
+		if(args.length == 2 && args[0].equals("--worker")) {
+			GeneticWorker.run(decoder, props, args[1]);
+			return;
+		}
+		
+		// A sweep tunes the parameters of the genetic algorithm (see GeneticSweep) and
+		// does not save a net. Every trial plays its games on its own decoder.
+		if(args.length == 1 && args[0].equals("--sweep")) {
+			GeneticSweep.run(new Callable<GeneticDecoder>() {
+				public GeneticDecoder call() throws Exception {
+					return newDecoder(props, net, maps, difficulties);
+				}
+			}, props);
+			return;
+		}
+		
+		// Training can be watched in a spectator window with game.spectator.views views
+		// of the games being played, which are updated every game.spectator.interval ms.
+		// The window is not opened if the environment is headless.
+		int views = Integer.valueOf(props.getProperty("game.spectator.views", "0").trim());
+		SpectatorFeed spectators = (views > 0) ? new SpectatorFeed(views, 
+				Long.valueOf(props.getProperty("game.spectator.interval", "100").trim())) : null;
+		if(spectators != null && !spectators.open(maps.get(0), difficulties.get(0), net.copy(), 
+				Integer.valueOf(props.getProperty("game.fps", "30").trim())))
+			spectators = null;
+		final SpectatorFeed feed = spectators;
+		decoder.setSpectatorFeed(feed);
+		
+		// The weights are optimized by the genetic algorithm unless the ga.optimizer
+		// property selects the CMA evolution strategy, the evolution strategy or
+		// population-based training, whose members play their games on their own decoders.
+		net.save(output);
+		String optimizer = props.getProperty("ga.optimizer", "genetic").trim();
+		GeneticChromosome best;
+		if(optimizer.equalsIgnoreCase("cma"))
+			best = CmaEvolutionStrategy.run(decoder, props);
+		else if(optimizer.equalsIgnoreCase("es"))
+			best = EvolutionStrategy.run(decoder, props);
+		else if(optimizer.equalsIgnoreCase("pbt"))
+			best = PopulationBasedTraining.run(new Callable<GeneticDecoder>() {
+				public GeneticDecoder call() throws Exception {
+					PacManDecoder member = newDecoder(props, net, maps, difficulties);
+					if(!records.isEmpty())
+						member.setRecordDirectory(new File(records));
+					member.setSpectatorFeed(feed);
+					return member;
+				}
+			}, props);
+		else
+			best = GeneticAlgorithm.run(decoder, props);
 		
 		// Set the weights of the neural net to be the best chromosome in the population
 		// and then save this neural net to the output file. THe program terminates once
 		// this condition has been met.
-		String bits = best.getGenotype();
-		double[] phenotype = decoder.getPhenotype(bits);
-		net.setWeights(phenotype);
+		net.setWeights(best.getPhenotype());
 		System.out.println(net.getWeights());
 		net.save(output);
 	}
 	
-	private Game _game;
+	/**
+	 * Creates a randomized neural net with an arbitrary number of layers with an
+	 * arbitrary number of nodes in each layer. The only restriction is that the
+	 * number of inputs must match the number of inputs in PacManAi and the number of
+	 * outputs must match the number of outputs in PacManAi. The net consumes the
+	 * features specified by the neural.features property, and nets that do not
+	 * declare their features consume the legacy features.
+	 * 
+	 * @param props game properties
+	 * @param random stream that the weights are drawn from
+	 * @return randomized net
+	 */
+	public static NeuralNet newNet(Properties props, RandomStream random) {
+		List<Feature> features = Feature.parse(props.getProperty("neural.features", ""));
+		NeuralNet net = new NeuralNet(random, features.isEmpty() ? 13 : features.size(), 10, 8, 4);
+		if(!features.isEmpty()) {
+			List<String> names = new ArrayList<String>();
+			for(Feature feature : features)
+				names.add(feature.name());
+			net.setFeatures(names);
+		}
+		return net;
+	}
+	
+	/**
+	 * Creates a decoder that trains the weights of the specified net, whose games are
+	 * terminated by the termination properties. If the pop.seed property is set, then
+	 * the initial phenotype of the decoder is the weights of that pretrained net, which
+	 * must have the same topology and features.
+	 * 
+	 * @param props game and algorithm properties
+	 * @param net net whose topology the phenotypes describe
+	 * @param maps compiled maps
+	 * @param difficulties ghost difficulties
+	 * @return decoder
+	 * @throws IOException the pretrained net cannot be read
+	 * @throws ClassNotFoundException the pretrained net cannot be read
+	 */
+	public static PacManDecoder newDecoder(Properties props, NeuralNet net, List<GameMap> maps, 
+			List<Difficulty> difficulties) throws IOException, ClassNotFoundException {
+		GeneticGene[] genes = new GeneticGene[net.size()];
+		for(int i = 0; i < genes.length; i++)
+			genes[i] = new GeneticGene(null, 40, -WEIGHT_BOUND, WEIGHT_BOUND);
+		
+		PacManDecoder decoder = new PacManDecoder(genes, net, maps, difficulties);
+		decoder.setTerminationProperties(props);
+		
+		String seed = props.getProperty("pop.seed", "").trim();
+		if(!seed.isEmpty()) {
+			NeuralNet pretrained = NeuralNet.load(new File(seed));
+			if(pretrained.size() != net.size() || !PacManAi.getFeatures(pretrained).equals(PacManAi.getFeatures(net)))
+				throw new IllegalArgumentException(seed + " does not match the topology and features of the trained net");
+			
+			List<Double> weights = pretrained.getWeights();
+			double[] phenotype = new double[weights.size()];
+			for(int i = 0; i < phenotype.length; i++)
+				phenotype[i] = weights.get(i);
+			decoder.setInitialPhenotype(phenotype);
+		}
+		return decoder;
+	}
+	
+	/**
+	 * Loads the maps that nets are evaluated on. The game.corpus.maps property is a
+	 * comma separated list of map properties files. If it is not specified, then only
+	 * the map specified by game.map.properties is used.
+	 * 
+	 * @param props game properties
+	 * @return compiled maps
+	 * @throws IOException a map cannot be read
+	 */
+	public static List<GameMap> loadMaps(Properties props) throws IOException {
+		String names = props.getProperty("game.corpus.maps", "").trim();
+		if(names.isEmpty())
+			names = props.getProperty("game.map.properties");
+		
+		List<GameMap> maps = new ArrayList<GameMap>();
+		for(String name : names.split(","))
+			if(!name.trim().isEmpty())
+				maps.add(GameMap.load(new File(name.trim())));
+		return maps;
+	}
+	
+	/**
+	 * Loads the ghost difficulties that nets are evaluated at. The game.corpus.difficulties
+	 * property is a comma separated list of difficulties. If it is not specified, then 
+	 * each map is played at the difficulty specified by the map, which is represented 
+	 * by a null difficulty.
+	 * 
+	 * @param props game properties
+	 * @return difficulties
+	 */
+	public static List<Difficulty> loadDifficulties(Properties props) {
+		List<Difficulty> difficulties = new ArrayList<Difficulty>();
+		for(String name : props.getProperty("game.corpus.difficulties", "").split(","))
+			if(!name.trim().isEmpty())
+				difficulties.add(Difficulty.valueOf(name.trim().toUpperCase()));
+		
+		if(difficulties.isEmpty())
+			difficulties.add(null);
+		return difficulties;
+	}
+	
+	private NeuralNet _net;
+	private List<GameMap> _maps;
+	private List<Difficulty> _difficulties;
+	
+	// Games are mutable, so every evaluation thread plays on its own games. The games
+	// of a thread share a single copy of the net, because a thread only plays one game
+	// at a time. The maps that the games are created from are shared by every thread.
+	private ThreadLocal<Game[]> _games;
+	
+	// When recording is enabled, the games of every phenotype evaluated in the current
+	// generation are recorded in memory, and the games of the best phenotype are
+	// written to the record directory once the generation has been evaluated.
+	private File _records;
+	private Map<DoubleBuffer, byte[][]> _recordings;
+	
+	// Every game gets its own termination policies, because policies are stateful.
+	private Properties _termination;
+	
+	private SpectatorFeed _spectators;
 	
-	public PacManDecoder(GeneticGene[] genes, Game game) throws Exception {
+	/**
+	 * Creates a decoder that evaluates every phenotype on every combination of the
+	 * specified maps and difficulties. Each combination is a separate episode.
+	 * 
+	 * @param genes genes of the net weights
+	 * @param net net whose topology the phenotypes describe
+	 * @param maps compiled maps
+	 * @param difficulties ghost difficulties (null for the map's difficulty)
+	 */
+	public PacManDecoder(GeneticGene[] genes, NeuralNet net, List<GameMap> maps, List<Difficulty> difficulties) {
 		super(genes);
-		_game = game;
+		_net = net;
+		_maps = maps;
+		_difficulties = difficulties;
+		_games = new ThreadLocal<Game[]>() {
+			@Override
+			protected Game[] initialValue() {
+				return new Game[getEpisodes()];
+			}
+		};
+		_recordings = new ConcurrentHashMap<DoubleBuffer, byte[][]>();
+	}
+	
+	/**
+	 * Enables recording. The games that the best phenotype of each generation played
+	 * are written to the specified directory (see GameReplay). Recording does not
+	 * require any games to be played again.
+	 * 
+	 * @param dir record directory or null to disable recording
+	 */
+	public void setRecordDirectory(File dir) {
+		_records = dir;
+		if(dir != null)
+			dir.mkdirs();
+	}
+	
+	/**
+	 * Sets the properties that the termination policies of every game are created
+	 * from (see TerminationPolicy.create). Games that are stalled or stuck in a loop
+	 * are then terminated early instead of running until PacMan is caught.
+	 * 
+	 * @param props game properties or null to play every game to completion
+	 */
+	public void setTerminationProperties(Properties props) {
+		_termination = props;
 	}
 	
+	/**
+	 * Publishes snapshots of the games that are played on this machine, and the best
+	 * phenotype of every generation, to the specified feed (see Spectator). This must
+	 * be set before any phenotype is evaluated.
+	 * 
+	 * @param feed spectator feed or null
+	 */
+	public void setSpectatorFeed(SpectatorFeed feed) {
+		_spectators = feed;
+	}
+	
+	/** Returns this thread's game for the specified episode. */
+	private Game getGame(int episode) {
+		Game[] games = _games.get();
+		if(games[episode] == null) {
+			NeuralNet net = (games[0] != null) ? ((PacManAi) games[0].getPacMan()).getNeuralNet() : _net.copy();
+			GameMap map = _maps.get(episode / _difficulties.size());
+			Difficulty difficulty = _difficulties.get(episode % _difficulties.size());
+			games[episode] = map.newGame(net, (difficulty != null) ? difficulty : map.getDifficulty());
+			if(_termination != null)
+				for(TerminationPolicy policy : TerminationPolicy.create(_termination))
+					games[episode].addTerminationPolicy(policy);
+			if(_spectators != null)
+				games[episode].setTickListener(_spectators.newPublisher(map, 
+						new File(map.getName()).getName() + " " + games[episode].getGhosts().get(0).getDifficulty()));
+		}
+		return games[episode];
+	}
+	
+	@Override
+	public int getEpisodes() {
+		return _maps.size() * _difficulties.size();
+	}
+	
+	/**
+	 * Games are only played with seeds that are drawn from a seeded stream (see
+	 * GeneticEvaluator), so that training is reproducible from its seed. Use
+	 * getFitness(phenotype, episode, seed) instead.
+	 * 
+	 * @throws UnsupportedOperationException always
+	 */
 	@Override
 	public double getFitness(double[] phenotype) {
+		throw new UnsupportedOperationException("Games must be played with a seed");
+	}
+	
+	@Override
+	public double getFitness(double[] phenotype, int episode, long seed) {
 		// Set the weights of the NeuralNet to be the weights 
 		// of the phenotype specified in the parameters
-		PacManAi pacman = (PacManAi) _game.getPacMan();
+		Object event = Flight.beginEvaluation();
+		Game game = getGame(episode);
+		PacManAi pacman = (PacManAi) game.getPacMan();
 		pacman.getNeuralNet().setWeights(phenotype);
-		long start = System.currentTimeMillis();
 
-		// Run the game and wait for it to complete.
-		_game.reset();
-		_game.start();
-			
-		while(_game.isRunning()) {
-			try {
-				Thread.sleep(1);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+		// Run the game on this thread until it is complete. The game's random
+		// stream is restarted from the seed, so games with equal seeds are identical
+		// up to the decisions that PacMan makes.
+		game.reset();
+		game.setSeed(seed);
+		if(_records == null)
+			game.run();
+		else
+			record(game, phenotype, episode);
+		getMetrics().recordGameLength(game.getTicks());
+		getMetrics().recordOutcome(game.getTermination().name());
+		
+		// Compute and return the inverse of the score as the fitness. The score
+		// rewards both the length of time that PacMan survived and his points.
+		double fitness = 1.0 / (game.getTicks() + pacman.getPoints());
+		if(event != null)
+			Flight.commitEvaluation(event, episode, seed, game.getTicks(), pacman.getPoints(), game.getTermination().name(), fitness);
+		return fitness;
+	}
+	
+	/** Plays the game to completion and keeps its recording in memory. */
+	private void record(Game game, double[] phenotype, int episode) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			String map = _maps.get(episode / _difficulties.size()).getName();
+			new GameRecorder(game, map, out, GameRecorder.INTERVAL).record();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
 		
-		long elapsed = System.currentTimeMillis() - start;
-		// Compute and return the inverse of the score as the fitness
-		return 1.0 / (elapsed + pacman.getPoints());
+		DoubleBuffer key = DoubleBuffer.wrap(phenotype);
+		_recordings.putIfAbsent(key, new byte[getEpisodes()][]);
+		_recordings.get(key)[episode] = out.toByteArray();
+	}
+	
+	@Override
+	public void generationEvaluated(int gen, GeneticChromosome best) throws IOException {
+		if(_spectators != null)
+			_spectators.setBest(gen, best.getPhenotype(), best.getFitness());
+		if(_records == null)
+			return;
+		
+		// Only the recordings of the best phenotype are kept, because it may survive
+		// into the next generation without being evaluated again.
+		DoubleBuffer key = DoubleBuffer.wrap(best.getPhenotype());
+		byte[][] recordings = _recordings.get(key);
+		_recordings.clear();
+		if(recordings == null)
+			return;
+		
+		_recordings.put(key, recordings);
+		for(int i = 0; i < recordings.length; i++)
+			if(recordings[i] != null)
+				Files.write(new File(_records, String.format("gen-%04d-ep-%d%s", gen, i, 
+						GameRecorder.EXTENSION)).toPath(), recordings[i]);
+	}
+	
+	/** Saves the phenotype as the weights of a copy of the trained net. */
+	@Override
+	public void save(double[] phenotype, File file) throws IOException {
+		NeuralNet net = _net.copy();
+		net.setWeights(phenotype);
+		net.save(file);
+	}
+	
+	/**
+	 * The fitness of a phenotype is the inverse of its mean score across every
+	 * episode, so that a single high scoring game does not dominate the fitness.
+	 */
+	@Override
+	public double aggregate(double[] fitness) {
+		double score = 0.0;
+		for(double val : fitness)
+			score += 1.0 / val;
+		return fitness.length / score;
 	}
-
 }
@@ -1,12 +1,6 @@
 package com.ashwin.fri.pacman;
 
-import java.awt.Dimension;
-import java.awt.Point;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.awt.geom.Point2D;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -14,49 +8,74 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
-import javax.swing.Timer;
-
+import com.ashwin.fri.flight.Flight;
 import com.ashwin.fri.neural.NeuralNet;
 import com.ashwin.fri.pacman.actor.Actor;
+import com.ashwin.fri.pacman.actor.Actor.Orientation;
 import com.ashwin.fri.pacman.actor.Blinky;
 import com.ashwin.fri.pacman.actor.Clyde;
 import com.ashwin.fri.pacman.actor.Ghost;
-import com.ashwin.fri.pacman.actor.Ghost.Difficulty;
 import com.ashwin.fri.pacman.actor.Ghost.Mode;
 import com.ashwin.fri.pacman.actor.Inky;
 import com.ashwin.fri.pacman.actor.PacMan;
-import com.ashwin.fri.pacman.actor.PacManAi;
-import com.ashwin.fri.pacman.actor.PacManHuman;
 import com.ashwin.fri.pacman.actor.Pinky;
 import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Position;
+import com.ashwin.fri.pacman.grid.Terrain;
+import com.ashwin.fri.pacman.termination.TerminationPolicy;
+import com.ashwin.fri.random.RandomStream;
 
-public class Game implements ActionListener {
+/**
+ * A Game contains the state of a single game of PacMan and the rules that advance
+ * it. Games are driven by calling tick, either in a loop on the calling thread (see
+ * run) or from a timer in a graphical interface (see GraphicalGame), so the game
+ * itself has no dependency on AWT or Swing.
+ * 
+ * Every random choice in a game is drawn from the game's random stream, so a game
+ * is completely determined by its seed and the decisions that PacMan makes.
+ * 
+ * A game ends when PacMan is caught or clears the maze, or when one of its
+ * TerminationPolicies decides that the game is no longer worth playing. The reason
+ * that the game ended is available from getTermination.
+ * 
+ * @author ashwin
+ */
+public class Game {
 	
-	/** The number of frames per second that will be rendered. */
+	/** The number of ticks that are simulated per second of game time. */
 	private static final int FRAMES_PER_SECOND = 30;
 	
 	private PacMan _pacman;
 	private List<Ghost> _ghosts;
 	private Grid _grid;
 
-	private Timer _timer;
+	private boolean _running;
+	private int _ticks;
+	private Termination _termination;
+	private List<TerminationPolicy> _policies;
+	private TickListener _listener;
 	
-	public Game(Grid grid, PacMan pacman, Blinky blinky, Clyde clyde, Inky inky, Pinky pinky) {
-		this(grid, pacman, blinky, clyde, inky, pinky, FRAMES_PER_SECOND);
-	}
+	private RandomStream _random;
+	private long _seed;
 	
-	public Game(Grid grid, PacMan pacman, Blinky blinky, Clyde clyde, Inky inky, Pinky pinky, int frames) {
+	public Game(Grid grid, PacMan pacman, Blinky blinky, Clyde clyde, Inky inky, Pinky pinky) {
 		_grid = grid;
 		_pacman = pacman;
 		_ghosts = Arrays.asList(blinky, clyde, inky, pinky);
-		_timer = new Timer(1000 / frames, this);
+		_policies = new ArrayList<TerminationPolicy>();
+		
+		_seed = System.nanoTime();
+		_random = new RandomStream(_seed);
+		for(Ghost ghost : _ghosts)
+			ghost.setRandom(_random);
 	}
 	
 	/**
 	 * Move the actors within the grid and perform collision detection between actors. 
 	 * This method also checks for win/loss conditions.
 	 */
-	public void actionPerformed(ActionEvent e) {
+	public void tick() {
+		_ticks++;
 		_pacman.move(getActors(), _grid);
 		detectCollision();
 		 
@@ -67,39 +86,65 @@ public class Game implements ActionListener {
 		 
 		 detectCollision();
 		 detectWinCondition();
+		 
+		 for(int i = 0; i < _policies.size() && _running; i++) {
+			 Termination termination = _policies.get(i).check(this);
+			 if(termination != null)
+				 stop(termination);
+		 }
+		 
+		 if(_listener != null)
+			 _listener.ticked(this);
 	}
 	
 	private void detectWinCondition() {
 		if(hasWon())
-			stop();
+			stop(Termination.WON);
 	}
 	
 	private void detectCollision() {
 		for(Ghost ghost : _ghosts)
 			if(_grid.isCollision(_pacman, ghost) 
 					&& !_pacman.consume(ghost))
-				stop();
+				stop(Termination.DIED);
 	}
 	
-	/** 
-	 * Add an action listener to the timer so that other classes can
-	 * get updates from when the game refreshes. This is used by the
-	 * graphical interface as a cue to update the UI.
-	 * 
-	 * @param listener
+	/**
+	 * Start execution of the game. The game is advanced by whoever started it
+	 * calling tick until the game is no longer running.
 	 */
-	public void addActionListener(ActionListener listener) {
-		_timer.addActionListener(listener);
-	}
-		
-	/** Start execution of the game. */
 	public void start() {
-		_timer.start();
+		_running = true;
+		_termination = null;
+	}
+	
+	/**
+	 * Executes the game on the calling thread as fast as possible until it terminates.
+	 * This is used to evaluate games without a graphical interface. The ticks are
+	 * executed in batches, which are recorded by the flight recorder when their
+	 * event is enabled (see Flight).
+	 */
+	public void run() {
+		start();
+		while(_running) {
+			Object event = Flight.beginTicks();
+			int first = _ticks;
+			for(int i = 0; i < Flight.TICK_BATCH && _running; i++)
+				tick();
+			
+			if(event != null)
+				Flight.commitTicks(event, first, _ticks - first, (_termination != null) ? _termination.name() : null);
+		}
 	}
 	
 	/** Returns whether or not the game is executing. */
 	public boolean isRunning() {
-		return _timer.isRunning();
+		return _running;
+	}
+	
+	/** Returns the number of ticks that have been executed since the last reset. */
+	public int getTicks() {
+		return _ticks;
 	}
 
 	/** Returns whether or not the game has been won. */
@@ -109,15 +154,141 @@ public class Game implements ActionListener {
 	
 	/** Terminate execution of the game. */
 	public void stop() {
-		_timer.stop();
+		stop(Termination.STOPPED);
+	}
+	
+	/**
+	 * Terminate execution of the game for the specified reason. Only the first reason
+	 * that the game is stopped for is kept.
+	 * 
+	 * @param termination reason
+	 */
+	public void stop(Termination termination) {
+		if(_running || _termination == null)
+			_termination = termination;
+		_running = false;
+	}
+	
+	/** Returns the reason that the game ended, or null if it has not ended. */
+	public Termination getTermination() {
+		return _termination;
+	}
+	
+	/**
+	 * Adds a policy that may terminate the game early. Policies are checked in the
+	 * order that they were added after every tick and are reset with the game.
+	 * 
+	 * @param policy termination policy
+	 */
+	public void addTerminationPolicy(TerminationPolicy policy) {
+		_policies.add(policy);
+		policy.reset();
+	}
+	
+	/**
+	 * Sets the listener that is notified after every tick, after the game has checked
+	 * whether it is over.
+	 * 
+	 * @param listener tick listener or null
+	 */
+	public void setTickListener(TickListener listener) {
+		_listener = listener;
 	}
 	
 	public void reset() {
+		_ticks = 0;
+		_termination = null;
+		for(TerminationPolicy policy : _policies)
+			policy.reset();
+		_random.setState(_seed);
 		for(Actor actor : getActors())
 			actor.reset();
 		_grid.reset();
 	}
 	
+	/** Returns the seed that the game's random stream starts from after a reset. */
+	public long getSeed() {
+		return _seed;
+	}
+	
+	/**
+	 * Sets the seed of the game's random stream. The stream is restarted from the
+	 * new seed immediately and each time that the game is reset.
+	 * 
+	 * @param seed random seed
+	 */
+	public void setSeed(long seed) {
+		_seed = seed;
+		_random.setState(seed);
+	}
+	
+	/**
+	 * Takes a snapshot of the current state of the game. The snapshot can be
+	 * restored into this game or any other game on the same map.
+	 * 
+	 * @return snapshot
+	 */
+	public GameState snapshot() {
+		List<Actor> actors = getActors();
+		GameState state = new GameState(_grid.getWidth() * _grid.getHeight(), actors.size());
+		state._ticks = _ticks;
+		state._running = _running;
+		state._random = _random.getState();
+		state._points = _pacman.getPoints();
+		state._energized = _pacman.isEnergized();
+		
+		for(int i = 0; i < state._terrain.length; i++)
+			state._terrain[i] = (byte) _grid.get(i % _grid.getWidth(), i / _grid.getWidth()).ordinal();
+		
+		for(int i = 0; i < actors.size(); i++) {
+			Actor actor = actors.get(i);
+			state._x[i] = actor.getCurrentPosition().getX();
+			state._y[i] = actor.getCurrentPosition().getY();
+			state._speed[i] = actor.getSpeed();
+			state._dir[i] = (byte) actor.getCurrentOrientation().ordinal();
+			state._moves[i] = actor.getMoveCounter();
+			if(actor instanceof Ghost)
+				state._modes[i] = (byte) ((Ghost) actor).getMode().ordinal();
+		}
+		return state;
+	}
+	
+	/**
+	 * Restores a snapshot of a game on the same map. The game continues exactly as
+	 * the game that the snapshot was taken from did.
+	 * 
+	 * @param state snapshot
+	 */
+	public void restore(GameState state) {
+		_ticks = state._ticks;
+		_running = state._running;
+		_termination = null;
+		_random.setState(state._random);
+		
+		Terrain[] terrain = Terrain.values();
+		for(int i = 0; i < state._terrain.length; i++) {
+			int x = i % _grid.getWidth(), y = i / _grid.getWidth();
+			if(_grid.get(x, y) != terrain[state._terrain[i]])
+				_grid.set(x, y, terrain[state._terrain[i]]);
+		}
+		
+		// Changing the mode of a ghost or the energized state of PacMan resets its
+		// speed and move counter, so they are restored before the rest of the state.
+		_pacman.setEnergized(state._energized);
+		_pacman.setPoints(state._points);
+		List<Actor> actors = getActors();
+		for(int i = 0; i < actors.size(); i++) {
+			Actor actor = actors.get(i);
+			if(actor instanceof Ghost)
+				((Ghost) actor).setMode(Mode.values()[state._modes[i]]);
+			
+			actor.setCurrentPosition(new Position(state._x[i], state._y[i]));
+			actor.setCurrentOrientation(Orientation.values()[state._dir[i]]);
+			actor.setSpeed(state._speed[i]);
+			actor.setMoveCounter(state._moves[i]);
+		}
+	}
+	
 	public Grid getGrid() {
 		return _grid;
 	}
@@ -139,11 +310,6 @@ public class Game implements ActionListener {
 		
 		return actors;
 	}
-		
-	public Dimension getDimensions() {
-		return new Dimension(_grid.getWidth() * Grid.TILE_SIZE,
-				_grid.getHeight() * Grid.TILE_SIZE);
-	}
 	
 	/**
 	 * Returns the number of frames that the specified time takes. This is dependent
@@ -168,46 +334,12 @@ public class Game implements ActionListener {
 	 * @throws ClassNotFoundException 
 	 */
 	public static final Game load(Properties props) throws IOException, URISyntaxException, ClassNotFoundException {
-		int frames = Integer.valueOf(props.getProperty("game.fps"));
-		props.load(new FileInputStream(new File(props.getProperty("game.map.properties"))));
-		
-		// Load Map File
-		FileInputStream fis = new FileInputStream(new File(props.getProperty("grid.file")));
-		byte[] bytes = new byte[fis.available()];
-		fis.read(bytes);
-		fis.close();
-		String text = new String(bytes, "UTF-8").replaceAll("\\s", "");
-		
-		// Initialize Grid
-		String map = text.replaceAll("\\D", "0");
-		int width  = Integer.valueOf(props.getProperty("grid.width"));
-		int height = Integer.valueOf(props.getProperty("grid.height"));
-		Grid grid  = Grid.load(map, width, height);
+		GameMap map = GameMap.load(new File(props.getProperty("game.map.properties")));
 		
 		// Initialize PacMan
-		double pacmanSpeed	= Double.valueOf(props.getProperty("pacman.speed"));
 		Boolean enableAi    = Boolean.valueOf(props.getProperty("game.enable.ai"));
 		NeuralNet neural    = (!enableAi) ? null : NeuralNet.load(new File(props.getProperty("game.neural")));
 		
-		PacMan pacman = (enableAi) ? 
-				new PacManAi   (find(grid, text, 'M'), pacmanSpeed, neural) : 
-				new PacManHuman(find(grid, text, 'M'), pacmanSpeed);
-				
-		// Ghost Properties
-		Point2D ghostExit = find(grid, text, 'E');
-		Difficulty difficulty = Difficulty.valueOf(props.getProperty("ghost.difficulty"));
-		Blinky blinky = new Blinky(find(grid, text, 'B'), find(grid, text, 'b'), ghostExit, Mode.IDLE, difficulty);
-		Clyde clyde   = new Clyde (find(grid, text, 'C'), find(grid, text, 'c'), ghostExit, Mode.IDLE, difficulty);
-		Inky inky 	  = new Inky  (find(grid, text, 'I'), find(grid, text, 'i'), ghostExit, Mode.IDLE, difficulty);
-		Pinky pinky   = new Pinky (find(grid, text, 'P'), find(grid, text, 'p'), ghostExit, Mode.IDLE, difficulty);
-	
-		return new Game(grid, pacman, blinky, clyde, inky, pinky, frames);
-	}
-	
-	private static final Point2D find(Grid grid, String text, char val) {
-		int index = text.indexOf(val);
-		int width = grid.getWidth();
-		
-		return grid.snap(new Point(index % width, index / width));
+		return map.newGame(neural, map.getDifficulty());
 	}
 }
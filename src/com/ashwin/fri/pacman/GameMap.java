@@ -0,0 +1,305 @@
+package com.ashwin.fri.pacman;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Properties;
+
+import com.ashwin.fri.neural.NeuralNet;
+import com.ashwin.fri.pacman.actor.Blinky;
+import com.ashwin.fri.pacman.actor.Clyde;
+import com.ashwin.fri.pacman.actor.Ghost.Difficulty;
+import com.ashwin.fri.pacman.actor.Ghost.Mode;
+import com.ashwin.fri.pacman.actor.Inky;
+import com.ashwin.fri.pacman.actor.PacMan;
+import com.ashwin.fri.pacman.actor.PacManAi;
+import com.ashwin.fri.pacman.actor.PacManHuman;
+import com.ashwin.fri.pacman.actor.Pinky;
+import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Position;
+import com.ashwin.fri.pacman.grid.Terrain;
+import com.ashwin.fri.pacman.grid.Topology;
+
+/**
+ * A GameMap is a compiled PacMan map. It contains everything that is needed to
+ * construct a game on the map: the initial terrain, its precomputed Topology, the
+ * tiles that the actors start on and PacMan's speed. A GameMap is immutable
+ * once it has been compiled, so a single instance can be shared by any number of
+ * games running on any number of threads. Each game only owns its mutable state.
+ * 
+ * Maps can be compiled from a map properties file and its text map file, or read
+ * from the binary format written by GameMap.save (see MapCompiler). Reading a
+ * binary map is a single read of the file and does not recompute the topology.
+ *
+ * @author ashwin
+ */
+public class GameMap {
+
+	/** The extension of binary map files. */
+	public static final String EXTENSION = ".pacmap";
+
+	private static final int MAGIC = 0x504D4150;	// "PMAP"
+	private static final int VERSION = 1;
+
+	/** The characters that mark the spawn and scatter tiles of the ghosts. */
+	private static final String GHOSTS  = "BCIP";
+	private static final String SCATTER = "bcip";
+
+	private String _name;
+	private int _width;
+	private Terrain[][] _terrain;
+	private Topology _topology;
+	private int _pacman, _exit;
+	private int[] _ghosts, _scatter;
+	private double _pacmanSpeed;
+	private Difficulty _difficulty;
+
+	/**
+	 * Creates a map from its initial terrain and the indices (row * width + column)
+	 * of the tiles that the actors start on.
+	 */
+	public GameMap(String name, Terrain[][] terrain, Topology topology, int pacman, int exit,
+			int[] ghosts, int[] scatter, double pacmanSpeed, Difficulty difficulty) {
+		_name = name;
+		_width = terrain[0].length;
+		_terrain = terrain;
+		_topology = (topology != null) ? topology : new Topology(terrain);
+		_pacman = pacman;
+		_exit = exit;
+		_ghosts = ghosts;
+		_scatter = scatter;
+		_pacmanSpeed = pacmanSpeed;
+		_difficulty = difficulty;
+	}
+
+	/** @return the name of the map (the location of the file it was loaded from) */
+	public String getName() {
+		return _name;
+	}
+
+	/** @return the ghost difficulty that the map specifies by default */
+	public Difficulty getDifficulty() {
+		return _difficulty;
+	}
+
+	public Topology getTopology() {
+		return _topology;
+	}
+
+	/**
+	 * Creates a new grid for this map. The grid shares its initial terrain and its
+	 * topology with every other grid created from this map.
+	 *
+	 * @return new grid
+	 */
+	public Grid newGrid() {
+		return new Grid(_terrain, _topology);
+	}
+
+	/**
+	 * Creates a new game on this map. If a neural net is specified, then PacMan is
+	 * controlled by the net, otherwise PacMan is controlled by a human player.
+	 *
+	 * @param neural neural net or null
+	 * @param difficulty ghost difficulty
+	 * @return new game
+	 */
+	public Game newGame(NeuralNet neural, Difficulty difficulty) {
+		PacMan pacman = (neural != null) ?
+				new PacManAi   (getPacManPosition(), _pacmanSpeed, neural) :
+				new PacManHuman(getPacManPosition(), _pacmanSpeed);
+		return newGame(pacman, difficulty);
+	}
+
+	/**
+	 * Creates a new game on this map that is played by the specified PacMan. The
+	 * PacMan should start at getPacManPosition with a speed of getPacManSpeed.
+	 *
+	 * @param pacman PacMan implementation
+	 * @param difficulty ghost difficulty
+	 * @return new game
+	 */
+	public Game newGame(PacMan pacman, Difficulty difficulty) {
+		Position exit = center(_exit);
+		Blinky blinky = new Blinky(center(_ghosts[0]), center(_scatter[0]), exit, Mode.IDLE, difficulty);
+		Clyde clyde   = new Clyde (center(_ghosts[1]), center(_scatter[1]), exit, Mode.IDLE, difficulty);
+		Inky inky     = new Inky  (center(_ghosts[2]), center(_scatter[2]), exit, Mode.IDLE, difficulty);
+		Pinky pinky   = new Pinky (center(_ghosts[3]), center(_scatter[3]), exit, Mode.IDLE, difficulty);
+
+		return new Game(newGrid(), pacman, blinky, clyde, inky, pinky);
+	}
+
+	/** @return the center of the tile that PacMan starts on */
+	public Position getPacManPosition() {
+		return center(_pacman);
+	}
+
+	public double getPacManSpeed() {
+		return _pacmanSpeed;
+	}
+
+	/** Returns the center point of the tile with the specified index. */
+	private Position center(int index) {
+		return new Position((index % _width) * Grid.TILE_SIZE + Grid.TILE_SIZE / 2.0,
+				(index / _width) * Grid.TILE_SIZE + Grid.TILE_SIZE / 2.0);
+	}
+
+	/**
+	 * Loads a map. Files that end in EXTENSION are read as binary maps and all other
+	 * files are compiled as map properties files.
+	 *
+	 * @param file binary map or map properties file
+	 * @return map
+	 * @throws IOException the map cannot be read
+	 */
+	public static GameMap load(File file) throws IOException {
+		return file.getName().endsWith(EXTENSION) ? read(file) : compile(file);
+	}
+
+	/**
+	 * Compiles the map described by the specified properties file. The properties
+	 * file specifies the location of the map file, the dimensions of the map and the
+	 * game properties of the map. Changing these properties allows the game to be
+	 * played on any number of valid PacMan game boards.
+	 * 
+	 * Each character of the map file is either the ordinal of a Terrain or a letter
+	 * that marks the tile an actor starts on (which is otherwise empty). Whitespace
+	 * is ignored.
+	 *
+	 * @param file map properties file
+	 * @return compiled map
+	 * @throws IOException the map cannot be read
+	 */
+	public static GameMap compile(File file) throws IOException {
+		Properties props = new Properties();
+		Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+		props.load(reader);
+		reader.close();
+
+		int width  = Integer.valueOf(props.getProperty("grid.width").trim());
+		int height = Integer.valueOf(props.getProperty("grid.height").trim());
+		byte[] text = Files.readAllBytes(new File(props.getProperty("grid.file").trim()).toPath());
+
+		// Translate the map in a single pass. Digits are terrain ordinals and letters
+		// mark the first tile that an actor starts on.
+		Terrain[] values = Terrain.values();
+		Terrain[][] terrain = new Terrain[height][width];
+		int[] marks = new int[128];
+		Arrays.fill(marks, -1);
+
+		int index = 0;
+		for(int i = 0; i < text.length && index < width * height; i++) {
+			int c = text[i] & 0xFF;
+			if(Character.isWhitespace(c))
+				continue;
+
+			boolean digit = c >= '0' && c <= '9';
+			terrain[index / width][index % width] = digit ? values[c - '0'] : Terrain.EMPTY;
+			if(!digit && c < marks.length && marks[c] < 0)
+				marks[c] = index;
+			index++;
+		}
+
+		if(index < width * height)
+			throw new IOException("Map " + file + " has fewer than " + width * height + " tiles");
+
+		int[] ghosts  = new int[GHOSTS.length()];
+		int[] scatter = new int[SCATTER.length()];
+		for(int i = 0; i < ghosts.length; i++) {
+			ghosts[i]  = find(file, marks, GHOSTS.charAt(i));
+			scatter[i] = find(file, marks, SCATTER.charAt(i));
+		}
+
+		return new GameMap(file.getPath(), terrain, null, find(file, marks, 'M'), find(file, marks, 'E'), 
+				ghosts, scatter, Double.valueOf(props.getProperty("pacman.speed").trim()),
+				Difficulty.valueOf(props.getProperty("ghost.difficulty").trim()));
+	}
+
+	private static int find(File file, int[] marks, char val) throws IOException {
+		if(marks[val] < 0)
+			throw new IOException("Map " + file + " does not specify tile '" + val + "'");
+		return marks[val];
+	}
+
+	/**
+	 * Saves the map in the binary map format. The file contains the terrain, the
+	 * actor tiles and every precomputed table of the topology (including the adjacency
+	 * table, which encodes the tunnels), so that it can be loaded without parsing or
+	 * recomputing anything.
+	 *
+	 * @param file output file
+	 * @throws IOException write error
+	 */
+	public void save(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(_width);
+		out.writeInt(_terrain.length);
+		out.writeDouble(_pacmanSpeed);
+		out.writeInt(_difficulty.ordinal());
+		out.writeInt(_pacman);
+		out.writeInt(_exit);
+		for(int i = 0; i < _ghosts.length; i++) {
+			out.writeInt(_ghosts[i]);
+			out.writeInt(_scatter[i]);
+		}
+
+		for(Terrain[] row : _terrain)
+			for(Terrain tile : row)
+				out.writeByte(tile.ordinal());
+
+		_topology.write(out);
+		out.close();
+	}
+
+	/**
+	 * Reads a map that was saved in the binary map format. The file is memory mapped
+	 * and decoded in a single pass.
+	 *
+	 * @param file binary map file
+	 * @return map
+	 * @throws IOException the map cannot be read
+	 */
+	public static GameMap read(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		ByteBuffer buf = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		channel.close();
+
+		if(buf.getInt() != MAGIC || buf.getInt() != VERSION)
+			throw new IOException(file + " is not a compiled map (version " + VERSION + ")");
+
+		int width  = buf.getInt();
+		int height = buf.getInt();
+		double pacmanSpeed = buf.getDouble();
+		Difficulty difficulty = Difficulty.values()[buf.getInt()];
+		int pacman = buf.getInt();
+		int exit = buf.getInt();
+
+		int[] ghosts  = new int[GHOSTS.length()];
+		int[] scatter = new int[SCATTER.length()];
+		for(int i = 0; i < ghosts.length; i++) {
+			ghosts[i]  = buf.getInt();
+			scatter[i] = buf.getInt();
+		}
+
+		Terrain[] values = Terrain.values();
+		Terrain[][] terrain = new Terrain[height][width];
+		for(int y = 0; y < height; y++)
+			for(int x = 0; x < width; x++)
+				terrain[y][x] = values[buf.get()];
+
+		return new GameMap(file.getPath(), terrain, Topology.read(buf), pacman, exit, 
+				ghosts, scatter, pacmanSpeed, difficulty);
+	}
+}
@@ -0,0 +1,94 @@
+package com.ashwin.fri.pacman;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A GameState is a snapshot of every piece of mutable state in a game: the terrain,
+ * the actors, the score and the state of the game's random stream. Restoring a
+ * snapshot into a game on the same map resumes the game exactly where the snapshot
+ * was taken (see Game.snapshot and Game.restore).
+ *
+ * @author ashwin
+ */
+public class GameState {
+
+	int _ticks;
+	boolean _running;
+	long _random;
+	byte[] _terrain;
+
+	// Actor state is indexed in the order of Game.getActors (PacMan first)
+	double[] _x, _y, _speed;
+	byte[] _dir, _modes;
+	int[] _moves;
+
+	int _points;
+	boolean _energized;
+
+	GameState(int tiles, int actors) {
+		_terrain = new byte[tiles];
+		_x = new double[actors];
+		_y = new double[actors];
+		_speed = new double[actors];
+		_dir = new byte[actors];
+		_modes = new byte[actors];
+		_moves = new int[actors];
+	}
+
+	/** @return the number of ticks that had been executed when the snapshot was taken */
+	public int getTicks() {
+		return _ticks;
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(_ticks);
+		out.writeBoolean(_running);
+		out.writeLong(_random);
+		out.writeInt(_points);
+		out.writeBoolean(_energized);
+
+		out.writeInt(_terrain.length);
+		out.write(_terrain);
+
+		out.writeInt(_x.length);
+		for(int i = 0; i < _x.length; i++) {
+			out.writeDouble(_x[i]);
+			out.writeDouble(_y[i]);
+			out.writeDouble(_speed[i]);
+			out.writeByte(_dir[i]);
+			out.writeByte(_modes[i]);
+			out.writeInt(_moves[i]);
+		}
+	}
+
+	public static GameState read(DataInput in) throws IOException {
+		int ticks = in.readInt();
+		boolean running = in.readBoolean();
+		long random = in.readLong();
+		int points = in.readInt();
+		boolean energized = in.readBoolean();
+
+		byte[] terrain = new byte[in.readInt()];
+		in.readFully(terrain);
+
+		GameState state = new GameState(terrain.length, in.readInt());
+		state._ticks = ticks;
+		state._running = running;
+		state._random = random;
+		state._points = points;
+		state._energized = energized;
+		state._terrain = terrain;
+
+		for(int i = 0; i < state._x.length; i++) {
+			state._x[i] = in.readDouble();
+			state._y[i] = in.readDouble();
+			state._speed[i] = in.readDouble();
+			state._dir[i] = in.readByte();
+			state._modes[i] = in.readByte();
+			state._moves[i] = in.readInt();
+		}
+		return state;
+	}
+}
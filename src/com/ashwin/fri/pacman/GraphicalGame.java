@@ -1,6 +1,7 @@
 package com.ashwin.fri.pacman;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.FontFormatException;
 import java.awt.Graphics;
@@ -8,10 +9,12 @@ import java.awt.GraphicsEnvironment;
 import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.awt.geom.Point2D;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Properties;
@@ -19,13 +22,27 @@ import java.util.Properties;
 import javax.imageio.ImageIO;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 import com.ashwin.fri.pacman.actor.Actor;
-import com.ashwin.fri.pacman.actor.Ghost;
+import com.ashwin.fri.pacman.actor.Actor.Orientation;
 import com.ashwin.fri.pacman.actor.PacManHuman;
+import com.ashwin.fri.pacman.display.MazeLayer;
 import com.ashwin.fri.pacman.display.Sprite;
+import com.ashwin.fri.pacman.display.SpriteAtlas;
+import com.ashwin.fri.pacman.display.SpriteMapper;
 import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Position;
+import com.ashwin.fri.pacman.replay.DemonstrationRecorder;
+import com.ashwin.fri.pacman.replay.GameReplay;
 
+/**
+ * The GraphicalGame renders a game in a Swing window. It owns the timer that advances
+ * the game and the key bindings of human players, which keeps every AWT and Swing
+ * dependency out of the simulation classes.
+ * 
+ * @author ashwin
+ */
 public class GraphicalGame extends JFrame {
 
 	private static final long serialVersionUID = 5424617868101358688L;
@@ -34,11 +51,45 @@ public class GraphicalGame extends JFrame {
 		Properties props = new Properties();
 		props.load(new FileInputStream(new File("./pacman.properties")));
 		
-		new GraphicalGame(Game.load(props));
+		int frames = Integer.valueOf(props.getProperty("game.fps"));
+		
+		// A recording can be watched by specifying it along with an optional speed
+		// multiplier and the tick to start watching from.
+		if(args.length > 0) {
+			GameReplay replay = new GameReplay(new File(args[0]));
+			double speed = (args.length > 1) ? Double.valueOf(args[1]) : 1.0;
+			replay.seek((args.length > 2) ? Integer.valueOf(args[2]) : 0);
+			new GraphicalGame(replay.getGame(), (int) Math.max(1, frames * speed));
+		} else {
+			// The decisions of a human player are recorded as demonstrations for
+			// imitation learning if the game.demo.dir property is specified.
+			Game game = Game.load(props);
+			String demos = props.getProperty("game.demo.dir", "").trim();
+			DemonstrationRecorder recorder = null;
+			if(!demos.isEmpty() && game.getPacMan() instanceof PacManHuman) {
+				File dir = new File(demos);
+				dir.mkdirs();
+				recorder = new DemonstrationRecorder(game, new FileOutputStream(new File(dir, 
+						"demo-" + System.currentTimeMillis() + DemonstrationRecorder.EXTENSION)));
+			}
+			new GraphicalGame(game, frames, recorder);
+		}
 	}
 	
-	public GraphicalGame(Game game) throws IOException, FontFormatException, URISyntaxException {
-		this.setContentPane(new GamePanel(game));
+	public GraphicalGame(Game game, int frames) throws IOException, FontFormatException, URISyntaxException {
+		this(game, frames, null);
+	}
+	
+	/**
+	 * Creates a window that plays the specified game. The recorder, if any, is
+	 * closed once the game is over.
+	 * 
+	 * @param game game to play
+	 * @param frames frames per second
+	 * @param recorder demonstration recorder of the game or null
+	 */
+	public GraphicalGame(Game game, int frames, DemonstrationRecorder recorder) throws IOException, FontFormatException, URISyntaxException {
+		this.setContentPane(new GamePanel(game, frames, recorder));
 		this.setTitle("PacMan - Ashwin Madavan");
 		this.setDefaultCloseOperation(EXIT_ON_CLOSE);
 		this.setLocation(200, 100);
@@ -46,16 +97,33 @@ public class GraphicalGame extends JFrame {
 		this.setVisible(true);
 	}
 	
+	/**
+	 * The GamePanel draws the maze from a MazeLayer, so that the terrain is only
+	 * rendered again where it changes, and repaints only the parts of the panel that
+	 * may have changed during each tick: the tiles whose terrain changed, the previous
+	 * and current bounds of every actor, and the score.
+	 */
 	private class GamePanel extends JPanel implements ActionListener {
 		
 		private static final long serialVersionUID = -8880591303686090656L;
 		private static final String FONT_FILE = "./assets/fonts/namco.ttf";
+		private static final int ACTOR_SIZE = (int) (Grid.TILE_SIZE * 1.5);
+		private static final int SCORE_HEIGHT = 28;
 		
 		private BufferedImage _sprites;
+		private SpriteMapper _mapper;
 		private Game _game;
+		private Timer _timer;
 		private Font _font;
+		private DemonstrationRecorder _recorder;
+		
+		private SpriteAtlas _atlas;
+		private MazeLayer _maze;
+		private Rectangle[] _bounds;
+		private int _points;
 		
-		public GamePanel(Game game) throws IOException, FontFormatException, URISyntaxException {		
+		public GamePanel(Game game, int frames, DemonstrationRecorder recorder) throws IOException, FontFormatException, URISyntaxException {		
+			_recorder = recorder;
 			
 			_sprites = ImageIO.read(new File(Sprite.SHEET));
 			_font = Font.createFont(Font.TRUETYPE_FONT, 
@@ -64,54 +132,118 @@ public class GraphicalGame extends JFrame {
 	        GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
 	        ge.registerFont(_font);
 	        
+			_mapper = new SpriteMapper();
 			_game = game;
-			_game.addActionListener(this);
 			_game.start();
+			_timer = new Timer(1000 / frames, this);
+			_timer.start();
 			
-			this.setPreferredSize(_game.getDimensions());
+			this.setPreferredSize(new Dimension(_game.getGrid().getWidth() * Grid.TILE_SIZE,
+					_game.getGrid().getHeight() * Grid.TILE_SIZE));
 			this.setBackground(Color.BLACK);
+			this.setOpaque(true);
+			
+			// The bounds of every actor when it was last painted, PacMan first
+			_bounds = new Rectangle[1 + _game.getGhosts().size()];
+			for(int i = 0; i < _bounds.length; i++)
+				_bounds[i] = new Rectangle();
+			_points = _game.getPacMan().getPoints();
 
-			// If the PacMan is a human player, then register its key listener so that it
-			// can receive and respond to key events.
+			// If the PacMan is a human player, then translate the arrow keys into the
+			// direction that it should turn toward next.
 			if(_game.getPacMan() instanceof PacManHuman) {
-				this.addKeyListener((PacManHuman) _game.getPacMan());
+				final PacManHuman human = (PacManHuman) _game.getPacMan();
+				this.addKeyListener(new KeyAdapter() {
+					@Override
+					public void keyPressed(KeyEvent e) {
+						switch(e.getKeyCode()) {
+							case KeyEvent.VK_DOWN:	human.setNextOrientation(Orientation.DOWN);  break;
+							case KeyEvent.VK_UP:	human.setNextOrientation(Orientation.UP);    break;
+							case KeyEvent.VK_LEFT:	human.setNextOrientation(Orientation.LEFT);  break;
+							case KeyEvent.VK_RIGHT:	human.setNextOrientation(Orientation.RIGHT); break;
+						}
+					}
+				});
 				this.setFocusable(true);
 				this.requestFocusInWindow();
 			}
 		}
 		
 		public void actionPerformed(ActionEvent e) {
-			this.repaint();
+			if(_game.isRunning()) {
+				_game.tick();
+			} else {
+				_timer.stop();
+				if(_recorder != null) {
+					try {
+						_recorder.close();
+					} catch (IOException ex) {
+						ex.printStackTrace();
+					}
+					_recorder = null;
+				}
+				this.repaint();
+				return;
+			}
+			
+			// Until the maze layer has been created by the first paint, there is nothing
+			// to compare against, so the whole panel is painted.
+			if(_maze == null) {
+				this.repaint();
+				return;
+			}
+			
+			Rectangle tiles = _maze.update();
+			if(tiles != null)
+				this.repaint(tiles);
+			
+			// Swing merges these requests into a single clip, which is still much
+			// smaller than the panel unless actors are on opposite sides of the maze.
+			for(int i = 0; i < _bounds.length; i++) {
+				Actor actor = (i == 0) ? _game.getPacMan() : _game.getGhosts().get(i - 1);
+				this.repaint(_bounds[i]);
+				this.repaint(getBounds(actor, _bounds[i]));
+			}
+			
+			int points = _game.getPacMan().getPoints();
+			if(points != _points) {
+				_points = points;
+				this.repaint(0, 0, this.getWidth(), SCORE_HEIGHT);
+			}
 		}
 		
 		@Override
 		public void paintComponent(Graphics g) {
-			super.paintComponent(g);
-			drawGrid(g, _sprites, _game.getGrid());
+			// Sprites are scaled to the sizes of tiles and actors once the configuration
+			// of the screen that the panel is displayed on is known.
+			if(_maze == null) {
+				if(_atlas == null)
+					_atlas = new SpriteAtlas(_sprites, this.getGraphicsConfiguration(), Grid.TILE_SIZE, ACTOR_SIZE);
+				_maze = new MazeLayer(_game.getGrid(), _atlas, _mapper, this.getGraphicsConfiguration());
+				_maze.update();
+			}
+			g.setColor(Color.BLACK);
+			g.fillRect(0, 0, this.getWidth(), this.getHeight());
+			_maze.draw(g);
 			drawScore(g);
 			
-			int actorSize = (int) (Grid.TILE_SIZE * 1.5);
-			drawActor(g, _sprites, _game.getPacMan(), actorSize);
-			for(Ghost ghost : _game.getGhosts())
-				drawActor(g, _sprites, ghost, actorSize);
-		}
-
-		public void drawActor(Graphics g, BufferedImage sheet, Actor actor, int size) {
-			Point2D pos = actor.getCurrentPosition();
-			Rectangle dest = new Rectangle((int) (pos.getX() - size / 2), 
-										   (int) (pos.getY() - size / 2), 
-										   size, size);
-			actor.getSprite().draw(g, sheet, dest);
+			drawActor(g, _atlas, _game.getPacMan(), _bounds[0]);
+			for(int i = 1; i < _bounds.length; i++)
+				drawActor(g, _atlas, _game.getGhosts().get(i - 1), _bounds[i]);
 		}
 		
-		public void drawGrid(Graphics g, BufferedImage sheet, Grid grid) {		
-			for(int x = 0; x < grid.getWidth() * Grid.TILE_SIZE; x += Grid.TILE_SIZE) {
-				for(int y = 0; y < grid.getHeight() * Grid.TILE_SIZE; y += Grid.TILE_SIZE) {
-					Point2D.Double pos = new Point2D.Double(x, y);				
-					Rectangle dest = new Rectangle((int) pos.x, (int) pos.y, Grid.TILE_SIZE, Grid.TILE_SIZE);
-					grid.get(pos).getSprite().draw(g, sheet, dest);
-				}
-			}
+		/** Stores the bounds of the sprite of the actor in dest and returns it. */
+		private Rectangle getBounds(Actor actor, Rectangle dest) {
+			Position pos = actor.getCurrentPosition();
+			dest.setBounds((int) (pos.getX() - ACTOR_SIZE / 2), (int) (pos.getY() - ACTOR_SIZE / 2), 
+					ACTOR_SIZE, ACTOR_SIZE);
+			return dest;
+		}
+
+		/** Draws the actor and stores the bounds that it was drawn in. */
+		public void drawActor(Graphics g, SpriteAtlas atlas, Actor actor, Rectangle bounds) {
+			getBounds(actor, bounds);
+			_mapper.getSprite(actor).draw(g, atlas, bounds.x, bounds.y, bounds.width, bounds.height);
 		}
 		
 		public void drawScore(Graphics g) {
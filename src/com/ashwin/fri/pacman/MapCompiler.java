@@ -0,0 +1,34 @@
+package com.ashwin.fri.pacman;
+
+import java.io.File;
+
+/**
+ * The MapCompiler compiles map properties files (and the text map files that they
+ * reference) into binary map files, which can be loaded much faster because their
+ * terrain and topology do not need to be parsed or recomputed. Binary maps can be
+ * used anywhere a map properties file can be used.
+ * 
+ * Usage: MapCompiler map.properties [output.pacmap]
+ * 
+ * @author ashwin
+ */
+public class MapCompiler {
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 1) {
+			System.err.println("Usage: MapCompiler map.properties [output" + GameMap.EXTENSION + "]");
+			System.exit(1);
+		}
+		
+		File input = new File(args[0]);
+		File output = new File((args.length > 1) ? args[1] : 
+			args[0].replaceAll("\\.properties$", "") + GameMap.EXTENSION);
+		
+		long start = System.nanoTime();
+		GameMap map = GameMap.compile(input);
+		map.save(output);
+		
+		System.out.printf("Compiled %s to %s (%d bytes) in %.1f ms\n", input, output, 
+				output.length(), (System.nanoTime() - start) / 1e6);
+	}
+}
@@ -0,0 +1,187 @@
+package com.ashwin.fri.pacman;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.ashwin.fri.neural.NeuralNet;
+import com.ashwin.fri.pacman.actor.Ghost.Difficulty;
+
+/**
+ * The SpectatorFeed carries snapshots of games that are being played by training
+ * threads to a Spectator (see display.Spectator). Every thread that plays games publishes to its own view
+ * (threads share views if there are more threads than views) at a throttled rate,
+ * and publishing a snapshot is a single write to an atomic array, so training
+ * threads never wait for the spectator. The spectator reads the latest snapshot of
+ * each view whenever it repaints, and snapshots that it does not read are dropped.
+ *
+ * The feed also carries the phenotype of the best chromosome found so far, which
+ * the spectator plays itself. The feed does not depend on AWT or Swing, and the
+ * spectator is loaded by name when it is opened (see open), so that training can
+ * publish to a feed without linking against the display.
+ *
+ * @author ashwin
+ */
+public class SpectatorFeed {
+
+	private static final String SPECTATOR = "com.ashwin.fri.pacman.display.Spectator";
+
+	// Games are only timed every few ticks, because even reading the clock is
+	// noticeable when every tick of training is a few microseconds.
+	private static final int TICK_MASK = 15;
+
+	private AtomicReferenceArray<Frame> _frames;
+	private long _interval;
+	private AtomicInteger _threads;
+	private ThreadLocal<View> _views;
+
+	private volatile double[] _best;
+	private volatile int _generation;
+	private double _fitness = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Creates a feed with the specified number of views.
+	 *
+	 * @param views number of views
+	 * @param interval minimum milliseconds between snapshots published to a view
+	 */
+	public SpectatorFeed(int views, long interval) {
+		_frames = new AtomicReferenceArray<Frame>(views);
+		_interval = TimeUnit.MILLISECONDS.toNanos(interval);
+		_threads = new AtomicInteger();
+		_views = new ThreadLocal<View>() {
+			@Override
+			protected View initialValue() {
+				return new View(_threads.getAndIncrement() % _frames.length());
+			}
+		};
+	}
+
+	/**
+	 * Opens a spectator window that shows this feed. The window is not opened if the
+	 * runtime image does not contain java.desktop or the environment is headless.
+	 *
+	 * @param map map that the best net plays on
+	 * @param difficulty ghost difficulty of the best net's games (null for the map's difficulty)
+	 * @param net net with the topology of the trained phenotypes
+	 * @param frames frames per second
+	 * @return whether the window was opened
+	 * @throws Exception the spectator cannot be created
+	 */
+	public boolean open(GameMap map, Difficulty difficulty, NeuralNet net, int frames) throws Exception {
+		if(!ModuleLayer.boot().findModule("java.desktop").isPresent())
+			return false;
+
+		try {
+			return (Boolean) Class.forName(SPECTATOR)
+					.getMethod("open", SpectatorFeed.class, GameMap.class, Difficulty.class, NeuralNet.class, int.class)
+					.invoke(null, this, map, difficulty, net, frames);
+		} catch (InvocationTargetException e) {
+			throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+		}
+	}
+
+	/** @return number of views */
+	public int getViews() {
+		return _frames.length();
+	}
+
+	/**
+	 * Returns the latest snapshot that was published to the specified view.
+	 *
+	 * @param view index of the view
+	 * @return latest frame or null if nothing has been published to the view
+	 */
+	public Frame getFrame(int view) {
+		return _frames.get(view);
+	}
+
+	/**
+	 * Creates a listener that publishes snapshots of a game to the view of the
+	 * calling thread. The game must only be played by the calling thread.
+	 *
+	 * @param map map that the game is played on
+	 * @param label description of the game
+	 * @return tick listener of the game (see Game.setTickListener)
+	 */
+	public TickListener newPublisher(final GameMap map, final String label) {
+		final View view = _views.get();
+		return new TickListener() {
+			public void ticked(Game game) {
+				if((game.getTicks() & TICK_MASK) != 0)
+					return;
+
+				long now = System.nanoTime();
+				if(now - view._last < _interval)
+					return;
+				view._last = now;
+				_frames.lazySet(view._index, new Frame(map, label, game.snapshot()));
+			}
+		};
+	}
+
+	/**
+	 * Publishes the phenotype of the best chromosome of a generation if it is fitter
+	 * than the best chromosome so far. This is called by the optimizer thread.
+	 *
+	 * @param generation generation
+	 * @param phenotype phenotype of the best chromosome
+	 * @param fitness fitness of the best chromosome
+	 */
+	public void setBest(int generation, double[] phenotype, double fitness) {
+		if(fitness >= _fitness)
+			return;
+		_fitness = fitness;
+		_generation = generation;
+		_best = phenotype.clone();
+	}
+
+	/** @return phenotype of the best chromosome so far or null */
+	public double[] getBest() {
+		return _best;
+	}
+
+	/** @return generation of the best chromosome so far */
+	public int getGeneration() {
+		return _generation;
+	}
+
+	/** The view of a thread and when it was last published to by that thread. */
+	private static class View {
+
+		private int _index;
+		private long _last;
+
+		public View(int index) {
+			_index = index;
+			_last = System.nanoTime() - Long.MAX_VALUE / 2;
+		}
+	}
+
+	/** A snapshot of a game, along with the map it was played on. */
+	public static class Frame {
+
+		private GameMap _map;
+		private String _label;
+		private GameState _state;
+
+		public Frame(GameMap map, String label, GameState state) {
+			_map = map;
+			_label = label;
+			_state = state;
+		}
+
+		public GameMap getMap() {
+			return _map;
+		}
+
+		public String getLabel() {
+			return _label;
+		}
+
+		public GameState getState() {
+			return _state;
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.ashwin.fri.pacman;
+
+/**
+ * The reason that a game stopped. Games end when PacMan is caught by a ghost or
+ * clears the maze, but they may also be terminated early by a TerminationPolicy.
+ * 
+ * @author ashwin
+ */
+public enum Termination {
+	/** PacMan was caught by a ghost. */
+	DIED,
+	/** PacMan ate every food and energizer. */
+	WON,
+	/** The game was stopped by its caller. */
+	STOPPED,
+	/** The game reached its maximum number of ticks. */
+	TICK_BUDGET,
+	/** PacMan did not earn any points for too long. */
+	NO_PROGRESS,
+	/** PacMan kept revisiting the same tiles without earning any points. */
+	LOOP;
+	
+	/** @return whether or not the game was terminated by a TerminationPolicy */
+	public boolean isEarly() {
+		return this == TICK_BUDGET || this == NO_PROGRESS || this == LOOP;
+	}
+}
@@ -0,0 +1,13 @@
+package com.ashwin.fri.pacman;
+
+/**
+ * A TickListener is notified after every tick of a game, on the thread that ticked
+ * it. Listeners are called on the hot path of training, so they should return as
+ * quickly as possible.
+ *
+ * @author ashwin
+ */
+public interface TickListener {
+
+	void ticked(Game game);
+}
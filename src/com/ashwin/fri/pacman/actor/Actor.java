@@ -1,16 +1,17 @@
 package com.ashwin.fri.pacman.actor;
 
-import java.awt.geom.Point2D;
 import java.util.List;
 
-import com.ashwin.fri.pacman.display.AnimatedSprite;
 import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Position;
 import com.ashwin.fri.pacman.grid.Terrain;
 
 /**
  * Actors are the superclass of all movable objects in PacMan (aka PacMan and ghosts).
  * Unlike Terrain, actors are not confined to a single tile. However, for the purposes
  * of collisions, a center tile is computed based on the center of the sprite.
+ * Actors only contain simulation state; their sprites are selected by the display
+ * layer when the game is rendered.
  * 
  * @author ashwin
  *
@@ -19,10 +20,9 @@ public abstract class Actor {
 	
 	private static final double MAX_SPEED = 0.40;
 
-	private Point2D _curPos, _initPos;
+	private Position _curPos, _initPos;
 	private Orientation _curDir, _initDir;
 	
-	private AnimatedSprite _sprite;
 	private double _curSpeed;
 	private int _moves;
 	
@@ -30,14 +30,12 @@ public abstract class Actor {
 	 * @param grid grid that the actor lives in
 	 * @param maxSpeed maximum possible speed for an actor
 	 * @param speed percentage of max speed that the Actor travels at
-	 * @param sprite the default sprite associated with the Actor
 	 * @param initial the initial TILE that the Actor begins on
 	 */
-	public Actor(Point2D pos, AnimatedSprite sprite, Orientation dir, double curSpeed) {
+	public Actor(Position pos, Orientation dir, double curSpeed) {
 		_curPos = _initPos = pos;
 		_curDir = _initDir = dir;
 		_curSpeed = curSpeed;
-		_sprite = sprite;
 	}
 	
 	public void reset() {
@@ -62,21 +60,30 @@ public abstract class Actor {
 		// Check that the actor can move through the terrain at
 		// the desired point. This ensures that actors are not
 		// moved into invalid tiles.
-		Point2D next = getNextPosition(grid);
+		Position next = getNextPosition(grid);
 		if(!canMove(grid.get(next)))
 			return false;
 		
 		// If the actor can move through the terrain, then set
 		// the new point as the current position, handle the
-		// new position, and update the associated sprite.
-		if(grid.snap(next).equals(next))
+		// new position.
+		if(grid.snap(next).equals(next)) {
 			_curDir = getNextOrientation(actors, grid);
+			decided(_curDir);
+		}
 		
-		_curPos = next;		
-		getSprite().nextFrame(getCurrentOrientation());
+		_curPos = next;
 		return true;
 	}
 	
+	/**
+	 * Invoked each time the actor decides which direction to move in at the center
+	 * of a tile. Subclasses may override this method to observe decisions.
+	 * 
+	 * @param dir direction that the actor decided to move in
+	 */
+	protected void decided(Orientation dir) {}
+	
 	/**
 	 * Returns whether or not the actor can move through the specified terrain.
 	 * By default, actors can only move through passable terrain. However, under
@@ -94,21 +101,25 @@ public abstract class Actor {
 	 * 
 	 * @return
 	 */
-	public Point2D getInitialPosition() {
+	public Position getInitialPosition() {
 		return _initPos;
 	}
 	
 	/**
-	 * The center Point2D of the actor. The tile that the center 
-	 * Point2D is in is used to determine collisions. Actors are 
+	 * The center point of the actor. The tile that the center 
+	 * point is in is used to determine collisions. Actors are 
 	 * allowed to take up more than just their own.
 	 * 
-	 * @return center Point2D of the actor
+	 * @return center point of the actor
 	 */
-	public Point2D getCurrentPosition() {
+	public Position getCurrentPosition() {
 		return _curPos;
 	}
 	
+	public void setCurrentPosition(Position pos) {
+		_curPos = pos;
+	}
+	
 	/**
 	 * The next position that the actor will go to on its next move. The actor will
 	 * move a certain number of pixels determined by its speed and maxSpeed in the
@@ -116,12 +127,12 @@ public abstract class Actor {
 	 * 
 	 * @return next position of the actor
 	 */
-	public Point2D getNextPosition(Grid grid) {
+	public Position getNextPosition(Grid grid) {
 		// If the ghost is closer to the center of the tile then its speed
 		// then snap the ghost to the center of the tile. This forces the ghosts'
 		// ai to work (its only executed at the center point of the grid)
-		Point2D center = grid.snap(_curPos);		
-		Point2D adj	   = grid.adjacent(this, 1);
+		Position center = grid.snap(_curPos);		
+		Position adj   = grid.adjacent(this, 1);
 		boolean valid  = canMove(grid.get(adj));
 		
 		double dx = _curPos.getX() - center.getX();
@@ -132,19 +143,19 @@ public abstract class Actor {
 			case LEFT:  
 				if(dx > 0 && Math.abs(dx) < pixels || dx == 0 && !valid) 
 					return center;
-				return grid.wrap(new Point2D.Double(_curPos.getX() - pixels, _curPos.getY()));
+				return grid.wrap(new Position(_curPos.getX() - pixels, _curPos.getY()));
 			case RIGHT:
 				if(dx < 0 && Math.abs(dx) < pixels || dx == 0 && !valid)
 					return center;
-				return grid.wrap(new Point2D.Double(_curPos.getX() + pixels, _curPos.getY()));
+				return grid.wrap(new Position(_curPos.getX() + pixels, _curPos.getY()));
 			case UP: 
 				if(dy > 0 && Math.abs(dy) < pixels || dy == 0 && !valid)
 					return center;
-				return grid.wrap(new Point2D.Double(_curPos.getX(), _curPos.getY() - pixels));
+				return grid.wrap(new Position(_curPos.getX(), _curPos.getY() - pixels));
 			default:
 				if(dy < 0 && Math.abs(dy) < pixels || dy == 0 && !valid)
 					return center;
-				return grid.wrap(new Point2D.Double(_curPos.getX(), _curPos.getY() + pixels));
+				return grid.wrap(new Position(_curPos.getX(), _curPos.getY() + pixels));
 		}
 	}
 	
@@ -166,6 +177,10 @@ public abstract class Actor {
 		return _curDir;
 	}
 	
+	public void setCurrentOrientation(Orientation dir) {
+		_curDir = dir;
+	}
+	
 	/**
 	 * Returns the next direction that the actor will face once it reaches
 	 * the midpoint of a tile.
@@ -200,18 +215,13 @@ public abstract class Actor {
 		return Grid.TILE_SIZE * _curSpeed * Actor.MAX_SPEED;
 	}
 	
-	public void setSpeed(double speed) {
-		_curSpeed = speed;
+	/** @return the percentage of the max speed that the actor travels at */
+	public double getSpeed() {
+		return _curSpeed;
 	}
 	
-	/**
-	 * Returns the default sprite for this Actor. Subclasses can override the
-	 * default behavior to implement different sprites for different states.
-	 * 
-	 * @return default sprite
-	 */
-	public AnimatedSprite getSprite() {
-		return _sprite;
+	public void setSpeed(double speed) {
+		_curSpeed = speed;
 	}
 	
 	public enum Orientation {
@@ -1,10 +1,9 @@
 package com.ashwin.fri.pacman.actor;
 
-import java.awt.geom.Point2D;
 import java.util.List;
 
-import com.ashwin.fri.pacman.display.AnimatedSprite;
 import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Position;
 
 /**
  * Blinky is the red ghost in PacMan. His target location is simply PacMan's current
@@ -16,12 +15,12 @@ import com.ashwin.fri.pacman.grid.Grid;
  */
 public class Blinky extends Ghost {
 				
-	public Blinky(Point2D initial, Point2D scatter, Point2D exit, Mode mode, Difficulty difficulty) {
+	public Blinky(Position initial, Position scatter, Position exit, Mode mode, Difficulty difficulty) {
 		this(initial, scatter, exit, mode, Orientation.UP, difficulty);
 	}
 	
-	public Blinky(Point2D initial, Point2D scatter, Point2D exit, Mode mode, Orientation dir, Difficulty difficulty) {
-		super(initial, scatter, exit, mode, new AnimatedSprite(34, dir), dir, difficulty);
+	public Blinky(Position initial, Position scatter, Position exit, Mode mode, Orientation dir, Difficulty difficulty) {
+		super(initial, scatter, exit, mode, dir, difficulty);
 	}
 	
 	@Override
@@ -31,7 +30,7 @@ public class Blinky extends Ghost {
 	}
 	
 	@Override
-	public Point2D getChaseTarget(List<Actor> actors, Grid grid) {
+	public Position getChaseTarget(List<Actor> actors, Grid grid) {
 		// Blinky targets PacMan's current tile using the built in fixed targeting mechanism
 		return actors.get(0).getCurrentPosition();
 	}
@@ -1,10 +1,9 @@
 package com.ashwin.fri.pacman.actor;
 
-import java.awt.geom.Point2D;
 import java.util.List;
 
-import com.ashwin.fri.pacman.display.AnimatedSprite;
 import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Position;
 
 /**
  * Clyde is the orange ghost in classic PacMan. Clyde targets the same way as Blinky
@@ -16,12 +15,12 @@ import com.ashwin.fri.pacman.grid.Grid;
 public class Clyde extends Ghost {
 	
 
-	public Clyde(Point2D initial, Point2D scatter, Point2D exit, Mode mode, Difficulty difficulty) {
+	public Clyde(Position initial, Position scatter, Position exit, Mode mode, Difficulty difficulty) {
 		this(initial, scatter, exit, mode, Orientation.UP, difficulty);
 	}
 	
-	public Clyde(Point2D initial, Point2D scatter, Point2D exit, Mode mode, Orientation dir, Difficulty difficulty) {
-		super(initial, scatter, exit, mode, new AnimatedSprite(38, dir), dir, difficulty);
+	public Clyde(Position initial, Position scatter, Position exit, Mode mode, Orientation dir, Difficulty difficulty) {
+		super(initial, scatter, exit, mode, dir, difficulty);
 	}
 	
 	@Override
@@ -30,11 +29,11 @@ public class Clyde extends Ghost {
 	}
 	
 	@Override
-	public Point2D getChaseTarget(List<Actor> actors, Grid grid) {
+	public Position getChaseTarget(List<Actor> actors, Grid grid) {
 		// If the distance between Clyde and PacMan's tile is greater than or equal
 		// to eight, then Clyde targets PacMan exactly like Blinky. Otherwise, Clyde
 		// targets the tile that he uses during scatster mode.
-		Point2D point = actors.get(0).getCurrentPosition();
+		Position point = actors.get(0).getCurrentPosition();
 		double dist = getCurrentPosition().distance(point);
 		return (dist >= 8 * Grid.TILE_SIZE) ? point : getScatterPosition();
 	}
@@ -0,0 +1,15 @@
+package com.ashwin.fri.pacman.actor;
+
+import com.ashwin.fri.pacman.actor.Actor.Orientation;
+
+/**
+ * A DecisionListener is notified each time PacMan decides which direction to move
+ * in at the center of a tile. Together with the seed of a game, these decisions
+ * completely determine how the game plays out.
+ *
+ * @author ashwin
+ */
+public interface DecisionListener {
+
+	void decided(PacMan pacman, Orientation dir);
+}
@@ -1,11 +1,11 @@
 package com.ashwin.fri.pacman.actor;
 
-import java.awt.geom.Point2D;
 import java.util.List;
 
 import com.ashwin.fri.pacman.Game;
-import com.ashwin.fri.pacman.display.AnimatedSprite;
+import com.ashwin.fri.random.RandomStream;
 import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Position;
 import com.ashwin.fri.pacman.grid.Terrain;
 
 /**
@@ -22,17 +22,19 @@ public abstract class Ghost extends Actor {
 	private static final int DURATION_CHASE   = 10000;
 	private static final int DURATION_SCATTER = 5000;
 	
-	private Point2D _scatter, _exit;
+	private Position _scatter, _exit;
 	private Mode _mode;
 	private Difficulty _difficulty;
+	private RandomStream _random;
 	
-	public Ghost(Point2D initial, Point2D scatter, Point2D exit, 
-			Mode mode, AnimatedSprite sprite, Orientation dir, Difficulty difficulty) {
-		super(initial, sprite, dir, 0.0);
+	public Ghost(Position initial, Position scatter, Position exit, 
+			Mode mode, Orientation dir, Difficulty difficulty) {
+		super(initial, dir, 0.0);
 		
 		_exit = exit;
 		_scatter = scatter;
 		_difficulty = difficulty;
+		_random = new RandomStream(System.nanoTime());
 		
 		setMode(mode);
 	}
@@ -40,7 +42,10 @@ public abstract class Ghost extends Actor {
 	@Override
 	public void reset() {
 		super.reset();
-		_mode = Mode.IDLE;
+		
+		// The speed depends on the mode, so it must be reset along with the mode.
+		// Otherwise, a ghost starts the next game at the speed it ended the last one at.
+		setMode(Mode.IDLE);
 	}
 	
 	@Override
@@ -137,20 +142,21 @@ public abstract class Ghost extends Actor {
 	 * @param pacman pacman for reference
 	 * @return target orientation in chase state
 	 */
-	abstract protected Point2D getChaseTarget(List<Actor> actors, Grid grid);
+	abstract protected Position getChaseTarget(List<Actor> actors, Grid grid);
 	
 	/**
 	 * Selects a random valid tile to move to. Unlike fixed target tile, a ghost that uses
-	 * randomized target tiling can move back the way that it came.
+	 * randomized target tiling can move back the way that it came. Random choices are
+	 * drawn from the ghost's random stream, so they are reproducible from its seed.
 	 * 
 	 * @return random valid target tile
 	 */
-	private Orientation getRandomTarget(Grid grid, Point2D source) {
-		Point2D adj = null;
+	private Orientation getRandomTarget(Grid grid, Position source) {
+		Position adj = null;
 		Orientation dir = null;
 		
 		do {
-			int rand = (int) (Math.random() * 4);
+			int rand = _random.nextInt(4);
 			dir = Orientation.values()[rand];
 			adj = grid.adjacent(source, dir, 1);
 		} while(dir.isReverse(getCurrentOrientation()) || !canMove(grid.get(adj)));
@@ -167,12 +173,12 @@ public abstract class Ghost extends Actor {
 	 * @param dest
 	 * @return fixed valid target tile
 	 */
-	private Orientation getFixedTarget(Grid grid, Point2D dest) {	
+	private Orientation getFixedTarget(Grid grid, Position dest) {	
 		Orientation best = null;
 		double min = Double.MAX_VALUE;
 
 		for(Orientation oth : Orientation.values()) {
-			Point2D adj = grid.adjacent(getCurrentPosition(), oth, 1);
+			Position adj = grid.adjacent(getCurrentPosition(), oth, 1);
 			double dist = adj.distance(dest);
 						
 			// The ghost cannot move backward during fixed target tile selection, so ignore
@@ -204,13 +210,27 @@ public abstract class Ghost extends Actor {
 		setMoveCounter(0);
 	}
 	
+	public Difficulty getDifficulty() {
+		return _difficulty;
+	}
+	
+	/**
+	 * Sets the stream that the ghost draws its random choices from. The ghosts of
+	 * a game share the random stream of the game.
+	 * 
+	 * @param random random stream
+	 */
+	public void setRandom(RandomStream random) {
+		_random = random;
+	}
+	
 	/**
 	 * The exit position represents the exit location for ghosts in the ghost pen.
 	 * This position is used as a fixed target to help ghosts exit.
 	 * 
 	 * @return exit position
 	 */
-	public Point2D getExitPosition() {
+	public Position getExitPosition() {
 		return _exit;
 	}
 	
@@ -221,19 +241,10 @@ public abstract class Ghost extends Actor {
 	 * 
 	 * @return scatter position
 	 */
-	public Point2D getScatterPosition() {
+	public Position getScatterPosition() {
 		return _scatter;
 	}
 	
-	@Override
-	public AnimatedSprite getSprite() {
-		switch(_mode) {
-			case FRIGHTENED: return new AnimatedSprite(50, getCurrentOrientation());
-			case EATEN: 	 return new AnimatedSprite(62, getCurrentOrientation());
-			default: 		 return super.getSprite();
-		}
-	}
-	
 	/**
 	 * Ghosts exist in one of four states. They are either chasing, scattering,
 	 * frightened, or being eaten. Which state they are in is dependent on game
@@ -1,12 +1,11 @@
 package com.ashwin.fri.pacman.actor;
 
-import java.awt.geom.Point2D;
 import java.util.List;
 
 import com.ashwin.fri.pacman.Game;
 import com.ashwin.fri.pacman.actor.Ghost.Mode;
-import com.ashwin.fri.pacman.display.AnimatedSprite;
 import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Position;
 import com.ashwin.fri.pacman.grid.Terrain;
 
 /**
@@ -30,13 +29,14 @@ public abstract class PacMan extends Actor {
 	
 	private boolean _isEnergized;
 	private int _points, _ghosts;
+	private DecisionListener _listener;
 	
-	public PacMan(Point2D initial, double speed) {
+	public PacMan(Position initial, double speed) {
 		this(initial, speed, Orientation.LEFT);
 	}
 	
-	public PacMan(Point2D initial, double speed, Orientation dir) {
-		super(initial, new AnimatedSprite(10, dir, 6), dir, speed);
+	public PacMan(Position initial, double speed, Orientation dir) {
+		super(initial, dir, speed);
 	}
 	
 	@Override
@@ -44,7 +44,7 @@ public abstract class PacMan extends Actor {
 		// Process the value on the current tile and then move just like an
 		// actor would. We process the current point and then move to ensure that
 		// the point we are processing is a valid point.		
-		Point2D cur = getCurrentPosition();
+		Position cur = getCurrentPosition();
 		switch(grid.get(cur)) {
 			case FOOD:
 				grid.set(cur, Terrain.EMPTY);
@@ -73,6 +73,22 @@ public abstract class PacMan extends Actor {
 		setEnergized(false);
 	}
 	
+	@Override
+	protected void decided(Orientation dir) {
+		if(_listener != null)
+			_listener.decided(this, dir);
+	}
+	
+	/**
+	 * Sets the listener that is notified of every decision that PacMan makes at
+	 * the center of a tile, or removes the listener if it is null.
+	 * 
+	 * @param listener decision listener
+	 */
+	public void setDecisionListener(DecisionListener listener) {
+		_listener = listener;
+	}
+	
 	/**
 	 * Returns the number of points that the PacMan has collected so far.
 	 * @return score
@@ -81,6 +97,10 @@ public abstract class PacMan extends Actor {
 		return _points;
 	}
 	
+	public void setPoints(int points) {
+		_points = points;
+	}
+	
 	/**
 	 * Attempts to consume the ghost. Returns false if consumption was unsuccessful (PacMan was eaten
 	 * by the ghosts) and true otherwise (PacMan ate the ghosts or nobody ate anyone).
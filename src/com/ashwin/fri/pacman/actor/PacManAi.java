@@ -1,84 +1,116 @@
 package com.ashwin.fri.pacman.actor;
 
-import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.ashwin.fri.flight.Flight;
 import com.ashwin.fri.neural.NeuralNet;
-import com.ashwin.fri.pacman.actor.Ghost.Mode;
 import com.ashwin.fri.pacman.grid.Grid;
-import com.ashwin.fri.pacman.grid.Terrain;
+import com.ashwin.fri.pacman.grid.Position;
+import com.ashwin.fri.pacman.grid.Topology;
+import com.ashwin.fri.pacman.sensor.Feature;
+import com.ashwin.fri.pacman.sensor.Sensor;
 
+/**
+ * PacManAi is controlled by a neural net. Each time it reaches the center of a
+ * tile, its Sensor extracts the features that the net declares and the net decides
+ * which direction to move in next.
+ * 
+ * @author ashwin
+ */
 public class PacManAi extends PacMan {
 	
 	private NeuralNet _neural;
+	private List<Feature> _features;
+	private Sensor _sensor;
+	private double[] _inputs;
 	
-	public PacManAi(Point2D initial, double speed, NeuralNet neural) {
+	public PacManAi(Position initial, double speed, NeuralNet neural) {
 		this(initial, speed, Orientation.LEFT, neural);
 	}
 		
-	public PacManAi(Point2D initial, double speed, Orientation dir, NeuralNet neural) {
+	public PacManAi(Position initial, double speed, Orientation dir, NeuralNet neural) {
 		
 		super(initial, speed, dir);
 		_neural = neural;
+		_features = getFeatures(neural);
 	}
 
 	public NeuralNet getNeuralNet() {
 		return _neural;
 	}
 	
-	@Override
-	public Orientation getNextOrientation(List<Actor> actors, Grid grid) {
-		List<Double> inputs = new ArrayList<Double>();
-		Point2D pos = getCurrentPosition();
-		Orientation dir = getCurrentOrientation();
-		
-		// Add the coordinates of the nearest food and the nearest energizer
-		// to the input list. Normalize values to between zero and 1.
-		Point2D food = grid.getNearest(pos, Terrain.FOOD);
-		Point2D energizer = grid.getNearest(pos, Terrain.ENERGIZER);
-		if(energizer == null)
-			energizer = food;
-		
-		inputs.add(food.getX() / grid.getWidth() / Grid.TILE_SIZE);
-		inputs.add(food.getY() / grid.getHeight() / Grid.TILE_SIZE);
-		inputs.add(energizer.getX() / grid.getWidth() / Grid.TILE_SIZE);
-		inputs.add(energizer.getY() / grid.getHeight() / Grid.TILE_SIZE);
-		
-		double widthSq  = Math.pow(grid.getWidth() * Grid.TILE_SIZE, 2);
-		double heightSq = Math.pow(grid.getHeight() * Grid.TILE_SIZE, 2);
-		double maxDist  = Math.sqrt(widthSq + heightSq);
-		double numModes = Mode.values().length;
+	/** @return the features that are used as inputs to the neural net */
+	public List<Feature> getFeatures() {
+		return _features;
+	}
+	
+	/**
+	 * Returns the features that the specified net consumes. Nets that do not declare
+	 * their features consume the legacy features.
+	 * 
+	 * @param neural neural net
+	 * @return features
+	 */
+	public static List<Feature> getFeatures(NeuralNet neural) {
+		if(neural == null || neural.getFeatures() == null)
+			return Feature.LEGACY;
 		
-		for(Actor actor : actors) {
-			if(actor instanceof Ghost) {
-				Ghost ghost = (Ghost) actor;
-				double dist = pos.distance(ghost.getCurrentPosition());
-
-				inputs.add(dist / maxDist);
-				inputs.add(ghost.getMode().ordinal() / numModes);
-			}
+		List<Feature> features = new ArrayList<Feature>();
+		for(String name : neural.getFeatures())
+			features.add(Feature.valueOf(name));
+		return features;
+	}
+	
+	/**
+	 * Returns the sensor that observes the specified grid. Sensors precompute their
+	 * state when they are created, so a new sensor is only created when PacMan is
+	 * moved into a different grid.
+	 * 
+	 * @param grid grid to observe
+	 * @return sensor
+	 */
+	public Sensor getSensor(Grid grid) {
+		if(_sensor == null || _sensor.getGrid() != grid) {
+			if(_sensor != null)
+				_sensor.detach();
+			_sensor = new Sensor(grid);
 		}
+		return _sensor;
+	}
+	
+	@Override
+	public Orientation getNextOrientation(List<Actor> actors, Grid grid) {
+		// The sensor and the net are only timed while decisions are being recorded
+		Object event = Flight.beginDecision();
+		boolean timed = event != null;
+		long start = timed ? System.nanoTime() : 0;
+		_inputs = getSensor(grid).sense(actors, _features, _inputs);
+		long sensed = timed ? System.nanoTime() : 0;
 				
 		// Each of the four outputs of the neural net corresponds to a different direction.
 		// Select the largest output that represents a direction that PacMan can move in.
 		// If no such direction exists (which is impossible), then PacMan will continue in its
 		// current direction.
-		List<Double> outputs = _neural.execute(inputs);
-		Orientation best = getCurrentOrientation();
+		double[] outputs = _neural.execute(_inputs);
+		Topology topology = grid.getTopology();
+		int tile = grid.getIndex(getCurrentPosition());
+		Orientation dir = getCurrentOrientation();
+		Orientation best = dir;
 		double fitness = Double.MIN_VALUE;
 		
-		for(int i = 0; i < outputs.size(); i++) {
+		for(int i = 0; i < outputs.length; i++) {
 			Orientation oth = Orientation.values()[i];
-			Point2D adj = grid.adjacent(getCurrentPosition(), oth, 1);
 
 			if(!dir.isReverse(oth) && 
-					canMove(grid.get(adj)) && outputs.get(i) > fitness) {
-				fitness = outputs.get(i);
+					topology.getNeighbor(tile, oth) >= 0 && outputs[i] > fitness) {
+				fitness = outputs[i];
 				best = oth;
 			}
 		}
 		
+		if(timed)
+			Flight.commitDecision(event, sensed - start, System.nanoTime() - sensed, _inputs.length, best.name());
 		return best;
 	}
 
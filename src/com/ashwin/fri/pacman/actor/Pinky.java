@@ -1,10 +1,9 @@
 package com.ashwin.fri.pacman.actor;
 
-import java.awt.geom.Point2D;
 import java.util.List;
 
-import com.ashwin.fri.pacman.display.AnimatedSprite;
 import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Position;
 
 /**
  * Pinky is the pink ghost in classic PacMan. Pinky targets a tile that is four tiles
@@ -14,12 +13,12 @@ import com.ashwin.fri.pacman.grid.Grid;
  */
 public class Pinky extends Ghost {
 			
-	public Pinky(Point2D initial, Point2D scatter, Point2D exit, Mode mode, Difficulty difficulty) {
+	public Pinky(Position initial, Position scatter, Position exit, Mode mode, Difficulty difficulty) {
 		this(initial, scatter, exit, mode, Orientation.UP, difficulty);
 	}
 	
-	public Pinky(Point2D initial, Point2D scatter, Point2D exit, Mode mode, Orientation dir, Difficulty difficulty) {
-		super(initial, scatter, exit, mode, new AnimatedSprite(46, dir), dir, difficulty);
+	public Pinky(Position initial, Position scatter, Position exit, Mode mode, Orientation dir, Difficulty difficulty) {
+		super(initial, scatter, exit, mode, dir, difficulty);
 	}
 	
 	@Override
@@ -28,7 +27,7 @@ public class Pinky extends Ghost {
 	}
 	
 	@Override
-	public Point2D getChaseTarget(List<Actor> actors, Grid grid) {
+	public Position getChaseTarget(List<Actor> actors, Grid grid) {
 		// Pinky targets a space four tiles in front of PacMan. In the classic
 		// PacMan, there is an overflow bug that causes the target tile to actually
 		// be four up and four to the left of where PacMan is when he is facing UP.
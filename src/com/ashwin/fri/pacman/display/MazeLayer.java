@@ -0,0 +1,127 @@
+package com.ashwin.fri.pacman.display;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.GridListener;
+import com.ashwin.fri.pacman.grid.Terrain;
+
+/**
+ * The MazeLayer is a pre-rendered image of the terrain of a grid. The whole grid is
+ * rendered once, and afterwards only the tiles whose terrain has changed (usually
+ * the food that PacMan has just eaten) are rendered again, so drawing the maze
+ * costs a single copy of the image per frame instead of scaling a sprite for every
+ * tile. Changes are tracked by listening to the grid. The image is created by the
+ * graphics configuration of the screen, so that Java2D can keep it in video memory.
+ *
+ * @author ashwin
+ */
+public class MazeLayer implements GridListener {
+
+	private Grid _grid;
+	private SpriteAtlas _atlas;
+	private SpriteMapper _mapper;
+	private BufferedImage _image;
+
+	// Tiles that have changed since the last update, as a list of tile indices and
+	// a flag per tile so that every tile is listed at most once.
+	private int[] _dirty;
+	private boolean[] _listed;
+	private int _count;
+	private boolean _all;
+
+	/**
+	 * Creates a layer that renders the specified grid and starts listening to it.
+	 *
+	 * @param grid grid to render
+	 * @param atlas sprite atlas, which should contain sprites of Grid.TILE_SIZE
+	 * @param mapper sprite mapper
+	 * @param config graphics configuration that the layer is drawn with
+	 */
+	public MazeLayer(Grid grid, SpriteAtlas atlas, SpriteMapper mapper, GraphicsConfiguration config) {
+		_grid = grid;
+		_atlas = atlas;
+		_mapper = mapper;
+		_image = config.createCompatibleImage(grid.getWidth() * Grid.TILE_SIZE, grid.getHeight() * Grid.TILE_SIZE);
+		_dirty = new int[grid.getWidth() * grid.getHeight()];
+		_listed = new boolean[_dirty.length];
+		_all = true;
+		grid.addGridListener(this);
+	}
+
+	/** Stops listening to the grid. */
+	public void detach() {
+		_grid.removeGridListener(this);
+	}
+
+	@Override
+	public void terrainChanged(int x, int y, Terrain prev, Terrain next) {
+		int tile = y * _grid.getWidth() + x;
+		if(!_listed[tile]) {
+			_listed[tile] = true;
+			_dirty[_count++] = tile;
+		}
+	}
+
+	@Override
+	public void gridReset() {
+		_all = true;
+	}
+
+	/**
+	 * Renders every tile that has changed since the last update into the layer and
+	 * returns the bounds of those tiles, which are the only part of the maze that must
+	 * be repainted.
+	 *
+	 * @return bounds of the changed tiles (pixels) or null if no tile has changed
+	 */
+	public Rectangle update() {
+		if(!_all && _count == 0)
+			return null;
+
+		int width = _grid.getWidth();
+		Graphics g = _image.getGraphics();
+		Rectangle bounds = null;
+		if(_all) {
+			for(int y = 0; y < _grid.getHeight(); y++)
+				for(int x = 0; x < width; x++)
+					drawTile(g, x, y);
+			bounds = new Rectangle(0, 0, _image.getWidth(), _image.getHeight());
+		} else {
+			for(int i = 0; i < _count; i++) {
+				int x = _dirty[i] % width, y = _dirty[i] / width;
+				drawTile(g, x, y);
+				Rectangle tile = new Rectangle(x * Grid.TILE_SIZE, y * Grid.TILE_SIZE, Grid.TILE_SIZE, Grid.TILE_SIZE);
+				bounds = (bounds == null) ? tile : bounds.union(tile);
+			}
+		}
+		g.dispose();
+
+		for(int i = 0; i < _count; i++)
+			_listed[_dirty[i]] = false;
+		_count = 0;
+		_all = false;
+		return bounds;
+	}
+
+	private void drawTile(Graphics g, int x, int y) {
+		int px = x * Grid.TILE_SIZE, py = y * Grid.TILE_SIZE;
+		g.setColor(Color.BLACK);
+		g.fillRect(px, py, Grid.TILE_SIZE, Grid.TILE_SIZE);
+		_mapper.getSprite(_grid.get(x, y)).draw(g, _atlas, px, py, Grid.TILE_SIZE, Grid.TILE_SIZE);
+	}
+
+	/**
+	 * Draws the layer. Only the part of the layer within the clip of the graphics
+	 * is actually copied.
+	 *
+	 * @param g graphics to draw with
+	 */
+	public void draw(Graphics g) {
+		g.drawImage(_image, 0, 0, null);
+	}
+}
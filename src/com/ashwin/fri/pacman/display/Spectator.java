@@ -0,0 +1,233 @@
+package com.ashwin.fri.pacman.display;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+import com.ashwin.fri.neural.NeuralNet;
+import com.ashwin.fri.pacman.Game;
+import com.ashwin.fri.pacman.GameMap;
+import com.ashwin.fri.pacman.SpectatorFeed;
+import com.ashwin.fri.pacman.SpectatorFeed.Frame;
+import com.ashwin.fri.pacman.actor.Actor;
+import com.ashwin.fri.pacman.actor.Ghost.Difficulty;
+import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Position;
+
+/**
+ * The Spectator shows what training is doing while it runs. The best net found so
+ * far plays a game at normal speed on the left, and a thumbnail of the latest
+ * snapshot of every view of a SpectatorFeed is shown on the right. Every game that
+ * the spectator shows is restored from a snapshot or played by the spectator itself
+ * on the event dispatch thread, so training threads never wait for the spectator.
+ * Closing the window does not stop training. Training opens the spectator through
+ * its feed (see SpectatorFeed.open), which loads it by name.
+ *
+ * @author ashwin
+ */
+public class Spectator extends JFrame {
+
+	private static final long serialVersionUID = -2148092335573618731L;
+
+	/**
+	 * Opens a spectator of the specified feed, unless the environment is headless.
+	 * This is called by SpectatorFeed.open.
+	 *
+	 * @param feed spectator feed
+	 * @param map map that the best net plays on
+	 * @param difficulty ghost difficulty of the best net's games (null for the map's difficulty)
+	 * @param net net with the topology of the trained phenotypes
+	 * @param frames frames per second
+	 * @return whether the spectator was opened
+	 * @throws IOException the sprite sheet cannot be read
+	 */
+	public static boolean open(SpectatorFeed feed, GameMap map, Difficulty difficulty, NeuralNet net, int frames) throws IOException {
+		if(GraphicsEnvironment.isHeadless())
+			return false;
+		new Spectator(feed, map, difficulty, net, frames);
+		return true;
+	}
+
+	/**
+	 * Opens a spectator of the specified feed.
+	 *
+	 * @param feed spectator feed
+	 * @param map map that the best net plays on
+	 * @param difficulty ghost difficulty of the best net's games (null for the map's difficulty)
+	 * @param net net with the topology of the trained phenotypes
+	 * @param frames frames per second
+	 * @throws IOException the sprite sheet cannot be read
+	 */
+	public Spectator(SpectatorFeed feed, GameMap map, Difficulty difficulty, NeuralNet net, int frames) throws IOException {
+		final SpectatorPanel panel = new SpectatorPanel(feed, map, difficulty, net, frames);
+		this.setContentPane(panel);
+		this.setTitle("PacMan - Training");
+		this.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+		this.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosed(WindowEvent e) {
+				panel._timer.stop();
+			}
+		});
+		this.setLocation(100, 50);
+		this.pack();
+		this.setVisible(true);
+	}
+
+	private class SpectatorPanel extends JPanel implements ActionListener {
+
+		private static final long serialVersionUID = 3381786466391935447L;
+		private static final int ACTOR_SIZE = (int) (Grid.TILE_SIZE * 1.5);
+
+		private SpectatorFeed _feed;
+		private BufferedImage _sprites;
+		private SpriteAtlas _atlas;
+		private Timer _timer;
+		private Font _font;
+		private int _width, _height, _columns;
+
+		// The best net plays its own game, which is restarted with a new seed
+		// whenever it ends or a better net is found.
+		private Game _best;
+		private NeuralNet _net;
+		private double[] _phenotype;
+		private MazeLayer _bestLayer;
+		private SpriteMapper _bestMapper;
+
+		private Thumbnail[] _thumbnails;
+
+		public SpectatorPanel(SpectatorFeed feed, GameMap map, Difficulty difficulty, NeuralNet net, int frames) throws IOException {
+			_feed = feed;
+			_sprites = ImageIO.read(new File(Sprite.SHEET));
+			_font = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+			_net = net;
+			_best = map.newGame(net, (difficulty != null) ? difficulty : map.getDifficulty());
+			_bestMapper = new SpriteMapper();
+
+			_width  = _best.getGrid().getWidth() * Grid.TILE_SIZE;
+			_height = _best.getGrid().getHeight() * Grid.TILE_SIZE;
+			_thumbnails = new Thumbnail[feed.getViews()];
+			_columns = (int) Math.ceil(Math.sqrt(_thumbnails.length));
+			int rows = (_thumbnails.length + _columns - 1) / _columns;
+
+			// Thumbnails are drawn at half the size of the best game
+			this.setPreferredSize(new Dimension(_width + _columns * _width / 2,
+					Math.max(_height, rows * _height / 2)));
+			this.setBackground(Color.BLACK);
+
+			_timer = new Timer(1000 / frames, this);
+			_timer.start();
+		}
+
+		public void actionPerformed(ActionEvent e) {
+			double[] phenotype = _feed.getBest();
+			if(phenotype != null && (phenotype != _phenotype || !_best.isRunning())) {
+				_phenotype = phenotype;
+				_net.setWeights(phenotype);
+				_best.reset();
+				_best.setSeed(System.nanoTime());
+				_best.start();
+			}
+			if(_best.isRunning())
+				_best.tick();
+			this.repaint();
+		}
+
+		@Override
+		public void paintComponent(Graphics g) {
+			super.paintComponent(g);
+			GraphicsConfiguration config = this.getGraphicsConfiguration();
+			if(_atlas == null) {
+				_atlas = new SpriteAtlas(_sprites, config, Grid.TILE_SIZE, ACTOR_SIZE);
+				_bestLayer = new MazeLayer(_best.getGrid(), _atlas, _bestMapper, config);
+			}
+
+			_bestLayer.update();
+			_bestLayer.draw(g);
+			drawActors(g, _best, _bestMapper);
+			g.setFont(_font);
+			g.setColor(Color.YELLOW);
+			g.drawString((_phenotype != null)
+					? String.format("best of gen %d  score: %d", _feed.getGeneration(), _best.getPacMan().getPoints())
+					: "waiting for the first generation", 10, 20);
+
+			for(int i = 0; i < _thumbnails.length; i++) {
+				int x = _width + (i % _columns) * _width / 2;
+				int y = (i / _columns) * _height / 2;
+				Frame frame = _feed.getFrame(i);
+				if(frame == null)
+					continue;
+
+				if(_thumbnails[i] == null || _thumbnails[i]._map != frame.getMap())
+					_thumbnails[i] = new Thumbnail(frame.getMap(), config);
+				g.drawImage(_thumbnails[i].render(frame), x, y, _width / 2, _height / 2, null);
+				g.setColor(Color.DARK_GRAY);
+				g.drawRect(x, y, _width / 2 - 1, _height / 2 - 1);
+			}
+		}
+
+		/** Draws every actor of the game at its current position. */
+		private void drawActors(Graphics g, Game game, SpriteMapper mapper) {
+			for(Actor actor : game.getActors()) {
+				Position pos = actor.getCurrentPosition();
+				mapper.getSprite(actor).draw(g, _atlas, (int) (pos.getX() - ACTOR_SIZE / 2),
+						(int) (pos.getY() - ACTOR_SIZE / 2), ACTOR_SIZE, ACTOR_SIZE);
+			}
+		}
+
+		/**
+		 * A Thumbnail restores the snapshots of a view into its own game and renders
+		 * them at full size. The image is only rendered again when a new snapshot
+		 * has been published to the view.
+		 */
+		private class Thumbnail {
+
+			private GameMap _map;
+			private Game _game;
+			private MazeLayer _layer;
+			private SpriteMapper _mapper;
+			private BufferedImage _image;
+			private Frame _frame;
+
+			public Thumbnail(GameMap map, GraphicsConfiguration config) {
+				_map = map;
+				_game = map.newGame((NeuralNet) null, map.getDifficulty());
+				_mapper = new SpriteMapper();
+				_layer = new MazeLayer(_game.getGrid(), _atlas, _mapper, config);
+				_image = config.createCompatibleImage(_width, _height);
+			}
+
+			public BufferedImage render(Frame frame) {
+				if(frame == _frame)
+					return _image;
+				_frame = frame;
+
+				_game.restore(frame.getState());
+				_layer.update();
+				Graphics g = _image.getGraphics();
+				_layer.draw(g);
+				drawActors(g, _game, _mapper);
+				g.setFont(_font.deriveFont(22f));
+				g.setColor(Color.WHITE);
+				g.drawString(frame.getLabel() + "  tick " + frame.getState().getTicks(), 10, 24);
+				g.dispose();
+				return _image;
+			}
+		}
+	}
+}
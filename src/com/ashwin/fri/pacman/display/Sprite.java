@@ -56,9 +56,46 @@ public class Sprite {
 	}
 	
 	public void draw(Graphics g, BufferedImage sheet, Rectangle dest) {
-		Rectangle rect = this.getDimensions();
-		g.drawImage(sheet, dest.x, dest.y, dest.x + dest.width, dest.y + dest.height, 
-				rect.x, rect.y, rect.x + rect.width, rect.y + rect.height, null);
+		draw(g, sheet, dest.x, dest.y, dest.width, dest.height);
+	}
+	
+	/**
+	 * Draws the sprite into the specified destination rectangle. Unlike draw(Graphics,
+	 * BufferedImage, Rectangle), this method does not allocate, so it may be called
+	 * for every tile of every frame.
+	 * 
+	 * @param g graphics to draw with
+	 * @param sheet sprite sheet
+	 * @param x left edge of the destination
+	 * @param y top edge of the destination
+	 * @param width width of the destination
+	 * @param height height of the destination
+	 */
+	public void draw(Graphics g, BufferedImage sheet, int x, int y, int width, int height) {
+		int sx = (_index % SHEET_WIDTH) * SIZE;
+		int sy = (_index / SHEET_WIDTH) * SIZE;
+		g.drawImage(sheet, x, y, x + width, y + height, 
+				sx, sy, sx + _xSpan * SIZE, sy + _ySpan * SIZE, null);
+	}
+	
+	/**
+	 * Draws the sprite into the specified destination rectangle. If the atlas contains
+	 * the sprite at the size of the destination, then it is copied without scaling;
+	 * otherwise, it is scaled from the sprite sheet of the atlas.
+	 * 
+	 * @param g graphics to draw with
+	 * @param atlas sprite atlas
+	 * @param x left edge of the destination
+	 * @param y top edge of the destination
+	 * @param width width of the destination
+	 * @param height height of the destination
+	 */
+	public void draw(Graphics g, SpriteAtlas atlas, int x, int y, int width, int height) {
+		BufferedImage cell = (_xSpan == 1 && _ySpan == 1 && width == height) ? atlas.getCell(_index, width) : null;
+		if(cell != null)
+			g.drawImage(cell, x, y, null);
+		else
+			draw(g, atlas.getSheet(), x, y, width, height);
 	}
 	
 }
@@ -0,0 +1,67 @@
+package com.ashwin.fri.pacman.display;
+
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * The SpriteAtlas slices every cell of a sprite sheet and scales it to each of the
+ * sizes that sprites are drawn at, once, into images that are compatible with the
+ * screen. Sprites that are drawn from an atlas at one of these sizes are copied
+ * without scaling (see Sprite.draw), which is much cheaper than scaling a cell of
+ * the sheet every time that it is drawn.
+ *
+ * @author ashwin
+ */
+public class SpriteAtlas {
+
+	private BufferedImage _sheet;
+	private int[] _sizes;
+	private BufferedImage[][] _cells;
+
+	/**
+	 * Creates an atlas of the specified sheet. Cells are scaled exactly as if they
+	 * were drawn from the sheet, so sprites look the same either way.
+	 *
+	 * @param sheet sprite sheet
+	 * @param config graphics configuration that sprites are drawn with
+	 * @param sizes widths (and heights) in pixels that sprites are drawn at
+	 */
+	public SpriteAtlas(BufferedImage sheet, GraphicsConfiguration config, int... sizes) {
+		_sheet = sheet;
+		_sizes = sizes.clone();
+		_cells = new BufferedImage[sizes.length][Sprite.SHEET_WIDTH * Sprite.SHEET_HEIGHT];
+		for(int s = 0; s < sizes.length; s++) {
+			for(int index = 0; index < _cells[s].length; index++) {
+				int sx = (index % Sprite.SHEET_WIDTH) * Sprite.SIZE;
+				int sy = (index / Sprite.SHEET_WIDTH) * Sprite.SIZE;
+				BufferedImage cell = config.createCompatibleImage(sizes[s], sizes[s], Transparency.TRANSLUCENT);
+				Graphics g = cell.getGraphics();
+				g.drawImage(sheet, 0, 0, sizes[s], sizes[s], sx, sy, sx + Sprite.SIZE, sy + Sprite.SIZE, null);
+				g.dispose();
+				_cells[s][index] = cell;
+			}
+		}
+	}
+
+	/** @return sprite sheet of the atlas */
+	public BufferedImage getSheet() {
+		return _sheet;
+	}
+
+	/**
+	 * Returns the cell at the specified index of the sheet scaled to the specified
+	 * size, or null if the atlas does not contain cells of that size.
+	 *
+	 * @param index index of the cell
+	 * @param size width and height in pixels
+	 * @return scaled cell or null
+	 */
+	public BufferedImage getCell(int index, int size) {
+		for(int s = 0; s < _sizes.length; s++)
+			if(_sizes[s] == size)
+				return _cells[s][index];
+		return null;
+	}
+}
@@ -0,0 +1,104 @@
+package com.ashwin.fri.pacman.display;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.ashwin.fri.pacman.actor.Actor;
+import com.ashwin.fri.pacman.actor.Actor.Orientation;
+import com.ashwin.fri.pacman.actor.Blinky;
+import com.ashwin.fri.pacman.actor.Clyde;
+import com.ashwin.fri.pacman.actor.Ghost;
+import com.ashwin.fri.pacman.actor.Inky;
+import com.ashwin.fri.pacman.actor.PacMan;
+import com.ashwin.fri.pacman.grid.Position;
+import com.ashwin.fri.pacman.grid.Terrain;
+
+/**
+ * The SpriteMapper selects the sprite that is used to render terrain and actors.
+ * Animation state is kept by the mapper and not by the actors, so it is only
+ * computed when a game is rendered. An actor's animation is advanced each time it
+ * is drawn at a different position than the last time it was drawn.
+ *
+ * @author ashwin
+ */
+public class SpriteMapper {
+
+	private static final int PACMAN = 10;
+	private static final int PACMAN_FRAMES = 6;
+	private static final int BLINKY = 34;
+	private static final int CLYDE  = 38;
+	private static final int INKY   = 42;
+	private static final int PINKY  = 46;
+	private static final int FRIGHTENED = 50;
+	private static final int EATEN = 62;
+
+	private Sprite[] _terrain;
+	private Map<Actor, Animation> _actors;
+
+	public SpriteMapper() {
+		_terrain = new Sprite[Terrain.values().length];
+		for(Terrain terrain : Terrain.values())
+			_terrain[terrain.ordinal()] = new Sprite(terrain.ordinal());
+
+		_actors = new IdentityHashMap<Actor, Animation>();
+	}
+
+	/** @return the sprite associated with the specified terrain */
+	public Sprite getSprite(Terrain terrain) {
+		return _terrain[terrain.ordinal()];
+	}
+
+	/**
+	 * Returns the sprite that the actor is currently drawn with. Ghosts that are
+	 * frightened or eaten are drawn with the same sprites regardless of which ghost
+	 * they are.
+	 *
+	 * @param actor actor to draw
+	 * @return current sprite
+	 */
+	public Sprite getSprite(Actor actor) {
+		Animation animation = _actors.get(actor);
+		if(animation == null) {
+			animation = new Animation(newSprite(actor), actor.getCurrentPosition());
+			_actors.put(actor, animation);
+		} else if(!animation._pos.equals(actor.getCurrentPosition())) {
+			animation._sprite.nextFrame(actor.getCurrentOrientation());
+			animation._pos = actor.getCurrentPosition();
+		}
+
+		if(actor instanceof Ghost) {
+			switch(((Ghost) actor).getMode()) {
+				case FRIGHTENED: return new AnimatedSprite(FRIGHTENED, actor.getCurrentOrientation());
+				case EATEN: 	 return new AnimatedSprite(EATEN, actor.getCurrentOrientation());
+				default: 		 break;
+			}
+		}
+
+		return animation._sprite;
+	}
+
+	private AnimatedSprite newSprite(Actor actor) {
+		Orientation dir = actor.getCurrentOrientation();
+		if(actor instanceof PacMan)
+			return new AnimatedSprite(PACMAN, dir, PACMAN_FRAMES);
+		else if(actor instanceof Blinky)
+			return new AnimatedSprite(BLINKY, dir);
+		else if(actor instanceof Clyde)
+			return new AnimatedSprite(CLYDE, dir);
+		else if(actor instanceof Inky)
+			return new AnimatedSprite(INKY, dir);
+		return new AnimatedSprite(PINKY, dir);
+	}
+
+	/** The animated sprite of an actor and the position it was last drawn at. */
+	private static class Animation {
+
+		private AnimatedSprite _sprite;
+		private Position _pos;
+
+		public Animation(AnimatedSprite sprite, Position pos) {
+			_sprite = sprite;
+			_pos = pos;
+		}
+	}
+}
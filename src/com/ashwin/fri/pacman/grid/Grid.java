@@ -1,13 +1,10 @@
 package com.ashwin.fri.pacman.grid;
 
-import java.awt.Point;
-import java.awt.geom.Point2D;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 
+import com.ashwin.fri.flight.Flight;
 import com.ashwin.fri.pacman.actor.Actor;
 import com.ashwin.fri.pacman.actor.Actor.Orientation;
 
@@ -16,36 +13,111 @@ public class Grid {
 	public static final int TILE_SIZE = 16;
 	
 	private Terrain[][] _grid, _init;
+	private List<GridListener> _listeners;
+	private Topology _topology;
+	
+	// Scratch space for breadth first searches. A tile has been visited during
+	// the current search if its stamp is equal to the current epoch.
+	private int[] _queue, _stamps;
+	private int _epoch;
 	
 	public Grid(Terrain[][] grid) {
 		_grid = grid;
+		_listeners = new ArrayList<GridListener>();
 		
 		_init = new Terrain[_grid.length][_grid[0].length];
 		for(int i = 0; i < _grid.length; i++)
 			System.arraycopy(_grid[i], 0, _init[i], 0, _grid[i].length);
 	}
 	
-	public Point2D getNearest(Point2D point, Terrain terrain) {
-		List<Point2D> visited = new ArrayList<Point2D>();
-		Queue<Point2D> queue = new LinkedList<Point2D>();
-		visited.add(point);
-		queue.add(point);
+	/**
+	 * Creates a grid from initial terrain and a topology that are shared with other
+	 * grids. The initial terrain is never modified by the grid, so it is safe to share
+	 * it between grids that are used by different threads.
+	 * 
+	 * @param init initial terrain
+	 * @param topology topology of the initial terrain
+	 */
+	public Grid(Terrain[][] init, Topology topology) {
+		_init = init;
+		_topology = topology;
+		_listeners = new ArrayList<GridListener>();
+		
+		_grid = new Terrain[_init.length][_init[0].length];
+		for(int i = 0; i < _init.length; i++)
+			System.arraycopy(_init[i], 0, _grid[i], 0, _init[i].length);
+	}
+	
+	public Position getNearest(Position point, Terrain terrain) {
+		if(terrain.equals(get(point)))
+			return point;
+		
+		int index = getNearest(getIndex(point), terrain);
+		return (index < 0) ? null : snap(index);
+	}
+	
+	/**
+	 * Returns the index of the nearest tile that contains the specified terrain or
+	 * -1 if no such tile exists. The search is a breadth first search that ignores
+	 * walls and wraps around the edges of the grid. Neighbors are explored in
+	 * Orientation order, so ties are broken the same way by every caller.
+	 * 
+	 * @param index tile index to search from
+	 * @param terrain terrain to search for
+	 * @return index of the nearest tile
+	 */
+	public int getNearest(int index, Terrain terrain) {
+		Topology topology = getTopology();
+		if(_queue == null) {
+			_queue  = new int[topology.size()];
+			_stamps = new int[topology.size()];
+		}
 		
-		while(!queue.isEmpty())  {
-			Point2D top = queue.remove();
-			if(get(top).equals(terrain))
-				return top;
+		Object event = Flight.beginNearest();
+		int epoch = ++_epoch;
+		int head = 0, tail = 0, nearest = -1;
+		_queue[tail++] = index;
+		_stamps[index] = epoch;
+		
+		while(head < tail) {
+			int top = _queue[head++];
+			if(_grid[top / getWidth()][top % getWidth()].equals(terrain)) {
+				nearest = top;
+				break;
+			}
 			
 			for(Orientation dir : Orientation.values()) {
-				Point2D adj = adjacent(top, dir, 1);
-				if(!visited.contains(adj)) {
-					visited.add(adj);
-					queue.add(adj);
+				int adj = topology.step(top, dir);
+				if(_stamps[adj] != epoch) {
+					_stamps[adj] = epoch;
+					_queue[tail++] = adj;
 				}
 			}
 		}
 		
-		return null;
+		if(event != null)
+			Flight.commitNearest(event, terrain.name(), head, nearest >= 0);
+		return nearest;
+	}
+	
+	/**
+	 * Returns the static topology of the grid. The topology is computed from the
+	 * initial terrain the first time that it is requested.
+	 * 
+	 * @return grid topology
+	 */
+	public Topology getTopology() {
+		if(_topology == null)
+			_topology = new Topology(_init);
+		return _topology;
+	}
+	
+	public void addGridListener(GridListener listener) {
+		_listeners.add(listener);
+	}
+	
+	public void removeGridListener(GridListener listener) {
+		_listeners.remove(listener);
 	}
 	
 	/**
@@ -55,14 +127,47 @@ public class Grid {
 	 * @param pos position (pixels)
 	 * @return terrain at the specified position
 	 */
-	public Terrain get(Point2D pos) {
-		Point tile = tile(pos);
-		return _grid[tile.y][tile.x];
+	public Terrain get(Position pos) {
+		int tile = getIndex(pos);
+		return _grid[tile / getWidth()][tile % getWidth()];
+	}
+	
+	/** @return the terrain at the specified column and row */
+	public Terrain get(int x, int y) {
+		return _grid[y][x];
 	}
 	
-	public void set(Point2D point, Terrain terrain) {
-		Point tile = tile(point);
-		_grid[tile.y][tile.x] = terrain;
+	public void set(Position point, Terrain terrain) {
+		int tile = getIndex(point);
+		set(tile % getWidth(), tile / getWidth(), terrain);
+	}
+	
+	/** Sets the terrain at the specified column and row. */
+	public void set(int x, int y, Terrain terrain) {
+		Terrain prev = _grid[y][x];
+		_grid[y][x] = terrain;
+		
+		if(!prev.equals(terrain))
+			for(GridListener listener : _listeners)
+				listener.terrainChanged(x, y, prev, terrain);
+	}
+	
+	/**
+	 * Returns the index (row * width + column) of the tile that contains
+	 * the specified position. The tile that is returned is dependent on the
+	 * size and shape of the grid.
+	 * 
+	 * @param pos position (pixels)
+	 * @return tile index
+	 */
+	public int getIndex(Position pos) {
+		Position wrap = wrap(pos);
+		int pWidth  = Grid.TILE_SIZE * getWidth();
+		int pHeight = Grid.TILE_SIZE * getHeight();
+		
+		int x = (int) (wrap.getX() / pWidth * getWidth());
+		int y = (int) (wrap.getY() / pHeight * getHeight());
+		return y * getWidth() + x;
 	}
 	
 	/** @return the number of rows in the grid. */
@@ -79,6 +184,9 @@ public class Grid {
 		_grid = new Terrain[_init.length][_init[0].length];
 		for(int i = 0; i < _init.length; i++)
 			System.arraycopy(_init[i], 0, _grid[i], 0, _init[i].length);
+		
+		for(GridListener listener : _listeners)
+			listener.gridReset();
 	}
 	
 	/**
@@ -90,8 +198,8 @@ public class Grid {
 	 * @param p2
 	 * @return whether or not the points collide
 	 */
-	public boolean isCollision(Point2D p1, Point2D p2) {
-		return tile(p1).equals(tile(p2));
+	public boolean isCollision(Position p1, Position p2) {
+		return getIndex(p1) == getIndex(p2);
 	}
 	
 	public boolean isCollision(Actor a1, Actor a2) {
@@ -114,22 +222,6 @@ public class Grid {
 		return true;
 	}
 	
-	/**
-	 * Returns the tile that the coordinates are currently on. The tile that is
-	 * returned is dependent on the size and shape of the grid.
-	 * 
-	 * @param pos
-	 * @return tile that the coordinate is on
-	 */
-	private Point tile(Point2D point) {
-		Point2D wrap = wrap(point);
-		int pWidth  = Grid.TILE_SIZE * getWidth();
-		int pHeight = Grid.TILE_SIZE * getHeight();
-		
-		return new Point((int) (wrap.getX() / pWidth * getWidth()),
-				(int) (wrap.getY() / pHeight * getHeight()));
-	}
-	
 	/**
 	 * Performs wrap around on the given tile. This method prevents OutOfBoundsExceptions
 	 * and enables the use of the teleportation tunnel.
@@ -137,10 +229,10 @@ public class Grid {
 	 * @param point
 	 * @return
 	 */
-	public Point2D wrap(Point2D point) {
+	public Position wrap(Position point) {
 		int pWidth  = Grid.TILE_SIZE * getWidth();
 		int pHeight = Grid.TILE_SIZE * getHeight();
-		return new Point2D.Double((point.getX() % pWidth + pWidth) % pWidth, 
+		return new Position((point.getX() % pWidth + pWidth) % pWidth, 
 								  (point.getY() % pHeight + pHeight) % pHeight);
 	}
 	
@@ -152,36 +244,37 @@ public class Grid {
 	 * @param point
 	 * @return center point of current tile
 	 */
-	public Point2D snap(Point2D point) {
-		return snap(tile(point));
+	public Position snap(Position point) {
+		return snap(getIndex(point));
 	}
 	
-	public Point2D snap(Point tile) {
-		return wrap(new Point2D.Double(tile.x * Grid.TILE_SIZE + Grid.TILE_SIZE / 2.0,
-				tile.y * Grid.TILE_SIZE + Grid.TILE_SIZE / 2.0));
+	/** @return the center point of the tile with the specified index */
+	public Position snap(int index) {
+		return wrap(new Position((index % getWidth()) * Grid.TILE_SIZE + Grid.TILE_SIZE / 2.0,
+				(index / getWidth()) * Grid.TILE_SIZE + Grid.TILE_SIZE / 2.0));
 	}
 	
 	/**
-	 * Returns the center Point2D of the tile in the specified direction
+	 * Returns the center point of the tile in the specified direction
 	 * that is dist tiles away. This is used in the targeting mechanisms
 	 * for the various types of ghosts.
 	 * 
 	 * @param src
 	 * @param dir
-	 * @return center Point2D of the tile in the adjacent direction
+	 * @return center point of the tile in the adjacent direction
 	 */
-	public Point2D adjacent(Point2D src, Orientation dir, double dist) {
+	public Position adjacent(Position src, Orientation dir, double dist) {
 		double pDist = dist * Grid.TILE_SIZE;
 		
 		switch(dir) {
-			case UP: 	return snap(new Point2D.Double(src.getX(), src.getY() - pDist));
-			case DOWN: 	return snap(new Point2D.Double(src.getX(), src.getY() + pDist));
-			case LEFT: 	return snap(new Point2D.Double(src.getX() - pDist, src.getY()));
-			default: 	return snap(new Point2D.Double(src.getX() + pDist, src.getY()));
+			case UP: 	return snap(new Position(src.getX(), src.getY() - pDist));
+			case DOWN: 	return snap(new Position(src.getX(), src.getY() + pDist));
+			case LEFT: 	return snap(new Position(src.getX() - pDist, src.getY()));
+			default: 	return snap(new Position(src.getX() + pDist, src.getY()));
 		}
 	}
 	
-	public Point2D adjacent(Actor actor, double dist) {
+	public Position adjacent(Actor actor, double dist) {
 		return adjacent(actor.getCurrentPosition(), actor.getCurrentOrientation(), dist);
 	}
 	
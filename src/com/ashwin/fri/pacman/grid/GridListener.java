@@ -0,0 +1,25 @@
+package com.ashwin.fri.pacman.grid;
+
+/**
+ * Grid listeners are notified whenever the terrain of a grid changes. This allows
+ * other components (like PacMan's sensors) to keep derived state up to date
+ * incrementally instead of rescanning the entire grid on every move.
+ *
+ * @author ashwin
+ */
+public interface GridListener {
+
+	/**
+	 * Called after the terrain of the tile at the specified column and row
+	 * has been changed by a call to Grid.set.
+	 *
+	 * @param x column of the tile
+	 * @param y row of the tile
+	 * @param prev previous terrain
+	 * @param next new terrain
+	 */
+	public void terrainChanged(int x, int y, Terrain prev, Terrain next);
+
+	/** Called after the grid has been restored to its initial terrain. */
+	public void gridReset();
+}
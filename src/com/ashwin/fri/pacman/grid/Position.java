@@ -0,0 +1,53 @@
+package com.ashwin.fri.pacman.grid;
+
+/**
+ * A position is an immutable point in the pixel coordinate space of a grid. The
+ * simulation uses positions instead of the AWT geometry classes, so that games
+ * can be run on a Java runtime that does not include the desktop module.
+ *
+ * @author ashwin
+ */
+public final class Position {
+
+	private final double _x, _y;
+
+	public Position(double x, double y) {
+		_x = x;
+		_y = y;
+	}
+
+	public double getX() {
+		return _x;
+	}
+
+	public double getY() {
+		return _y;
+	}
+
+	/** @return the euclidean distance between the two positions */
+	public double distance(Position oth) {
+		double dx = _x - oth._x;
+		double dy = _y - oth._y;
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(!(obj instanceof Position))
+			return false;
+
+		Position oth = (Position) obj;
+		return _x == oth._x && _y == oth._y;
+	}
+
+	@Override
+	public int hashCode() {
+		long bits = Double.doubleToLongBits(_x) * 31 + Double.doubleToLongBits(_y);
+		return (int) (bits ^ (bits >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return "(" + _x + ", " + _y + ")";
+	}
+}
@@ -1,10 +1,9 @@
 package com.ashwin.fri.pacman.grid;
 
-import com.ashwin.fri.pacman.display.Sprite;
-
 /**
  * The various kinds of Terrains that are used to construct the Pac-Man map.
- * Each terrain type is mapped to a sprite in the terrain.png file.
+ * Each terrain type is mapped to the sprite with the same index in the sprite
+ * sheet by the display layer (see SpriteMapper).
  * 
  * @author ashwin
  * 
@@ -23,11 +22,9 @@ public enum Terrain {
 	LOWER_RIGHT(false),
 	GATE(false);
 	
-	private Sprite _sprite;
 	private boolean _isPassable;
 	
 	private Terrain(boolean isPassable) {
-		_sprite = new Sprite(this.ordinal());
 		_isPassable = isPassable;
 	}
 	
@@ -42,14 +39,4 @@ public enum Terrain {
 	public boolean isPassable() {
 		return _isPassable;
 	}
-	
-	/**
-	 * Returns the sprite associated with this terrain object. This is used to
-	 * render the game.
-	 * 
-	 * @return sprite associated with terrain
-	 */
-	public Sprite getSprite() {
-		return _sprite;
-	}
 }
@@ -0,0 +1,330 @@
+package com.ashwin.fri.pacman.grid;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.ashwin.fri.pacman.actor.Actor.Orientation;
+
+/**
+ * The topology of a grid contains every static property of the maze that can be
+ * precomputed when the map is loaded. Tiles are identified by their index
+ * (row * width + column) and directions by the ordinal of their Orientation. The
+ * topology only considers the terrain that PacMan can move through, so ghost gates
+ * are treated as walls. Topologies are immutable and may be shared between any
+ * number of grids that are built from the same map.
+ *
+ * @author ashwin
+ */
+public class Topology {
+
+	/** Distance used for pairs of tiles that are not connected. */
+	public static final int UNREACHABLE = Short.MAX_VALUE;
+
+	/** Runs are stored as bitmasks, so they are split after this many tiles. */
+	public static final int MAX_RUN = 64;
+
+	private static final int DIRECTIONS = Orientation.values().length;
+
+	private int _width, _height;
+	private int[] _neighbors, _corridors;
+	private int[] _runs, _offsets;
+	private int _numRuns, _maxCorridor;
+
+	private int[] _compact;
+	private int _passable, _maxDistance;
+	private short[] _distances;
+
+	private Topology() {}
+	
+	public Topology(Terrain[][] terrain) {
+		_height = terrain.length;
+		_width  = terrain[0].length;
+
+		int size = _width * _height;
+		_neighbors = new int[size * DIRECTIONS];
+		_corridors = new int[size * DIRECTIONS];
+		_runs      = new int[size * 2];
+		_offsets   = new int[size * 2];
+		_compact   = new int[size];
+
+		// Compute the adjacency table. Neighbors wrap around the edges of the grid
+		// in exactly the same way as Grid.adjacent, which enables the tunnels.
+		Arrays.fill(_compact, -1);
+		for(int i = 0; i < size; i++) {
+			if(isPassable(terrain, i))
+				_compact[i] = _passable++;
+
+			for(Orientation dir : Orientation.values()) {
+				int adj = step(i, dir);
+				_neighbors[i * DIRECTIONS + dir.ordinal()] =
+						isPassable(terrain, i) && isPassable(terrain, adj) ? adj : -1;
+			}
+		}
+
+		computeRuns(terrain);
+		computeDistances();
+	}
+
+	/**
+	 * Splits every row and column into runs, which are maximal straight sequences of
+	 * passable tiles. The corridor length in a particular direction is the number of
+	 * tiles between a tile and the end of its run in that direction.
+	 */
+	private void computeRuns(Terrain[][] terrain) {
+		Arrays.fill(_runs, -1);
+
+		for(int y = 0; y < _height; y++) {
+			for(int x = 0; x < _width; x++) {
+				int i = y * _width + x;
+				if(!isPassable(terrain, i) || _runs[i * 2] >= 0)
+					continue;
+
+				int len = 0;
+				while(x + len < _width && len < MAX_RUN && isPassable(terrain, i + len))
+					len++;
+				for(int k = 0; k < len; k++) {
+					_runs[(i + k) * 2] = _numRuns;
+					_offsets[(i + k) * 2] = k;
+					_corridors[(i + k) * DIRECTIONS + Orientation.LEFT.ordinal()]  = k;
+					_corridors[(i + k) * DIRECTIONS + Orientation.RIGHT.ordinal()] = len - 1 - k;
+				}
+
+				_numRuns++;
+				_maxCorridor = Math.max(_maxCorridor, len - 1);
+			}
+		}
+
+		for(int x = 0; x < _width; x++) {
+			for(int y = 0; y < _height; y++) {
+				int i = y * _width + x;
+				if(!isPassable(terrain, i) || _runs[i * 2 + 1] >= 0)
+					continue;
+
+				int len = 0;
+				while(y + len < _height && len < MAX_RUN && isPassable(terrain, i + len * _width))
+					len++;
+				for(int k = 0; k < len; k++) {
+					int j = i + k * _width;
+					_runs[j * 2 + 1] = _numRuns;
+					_offsets[j * 2 + 1] = k;
+					_corridors[j * DIRECTIONS + Orientation.UP.ordinal()]   = k;
+					_corridors[j * DIRECTIONS + Orientation.DOWN.ordinal()] = len - 1 - k;
+				}
+
+				_numRuns++;
+				_maxCorridor = Math.max(_maxCorridor, len - 1);
+			}
+		}
+	}
+
+	/**
+	 * Computes the maze distance between every pair of passable tiles by performing
+	 * a breadth first search from every passable tile. Distances are stored in a
+	 * compact table that only contains passable tiles.
+	 */
+	private void computeDistances() {
+		_distances = new short[_passable * _passable];
+		Arrays.fill(_distances, (short) UNREACHABLE);
+		int[] queue = new int[_passable];
+
+		for(int src = 0; src < _compact.length; src++) {
+			if(_compact[src] < 0)
+				continue;
+
+			int row = _compact[src] * _passable;
+			int head = 0, tail = 0;
+			queue[tail++] = src;
+			_distances[row + _compact[src]] = 0;
+
+			while(head < tail) {
+				int top = queue[head++];
+				int dist = _distances[row + _compact[top]];
+				_maxDistance = Math.max(_maxDistance, dist);
+
+				for(int dir = 0; dir < DIRECTIONS; dir++) {
+					int adj = _neighbors[top * DIRECTIONS + dir];
+					if(adj >= 0 && _distances[row + _compact[adj]] == UNREACHABLE) {
+						_distances[row + _compact[adj]] = (short) (dist + 1);
+						queue[tail++] = adj;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes every table of the topology to the specified stream. The tables can be
+	 * read back with Topology.read without recomputing them.
+	 *
+	 * @param out output stream
+	 * @throws IOException write error
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeInt(_width);
+		out.writeInt(_height);
+		out.writeInt(_numRuns);
+		out.writeInt(_maxCorridor);
+		out.writeInt(_passable);
+		out.writeInt(_maxDistance);
+
+		for(int[] table : new int[][] { _neighbors, _corridors, _runs, _offsets, _compact })
+			for(int val : table)
+				out.writeInt(val);
+		for(short val : _distances)
+			out.writeShort(val);
+	}
+
+	/**
+	 * Reads a topology that was written by Topology.write from the current position
+	 * of the specified buffer. The position of the buffer is advanced past the topology.
+	 *
+	 * @param buf input buffer
+	 * @return topology
+	 */
+	public static Topology read(ByteBuffer buf) {
+		Topology topology = new Topology();
+		topology._width  = buf.getInt();
+		topology._height = buf.getInt();
+		topology._numRuns = buf.getInt();
+		topology._maxCorridor = buf.getInt();
+		topology._passable = buf.getInt();
+		topology._maxDistance = buf.getInt();
+
+		int size = topology._width * topology._height;
+		topology._neighbors = readInts(buf, size * DIRECTIONS);
+		topology._corridors = readInts(buf, size * DIRECTIONS);
+		topology._runs      = readInts(buf, size * 2);
+		topology._offsets   = readInts(buf, size * 2);
+		topology._compact   = readInts(buf, size);
+
+		topology._distances = new short[topology._passable * topology._passable];
+		buf.asShortBuffer().get(topology._distances);
+		buf.position(buf.position() + topology._distances.length * 2);
+		return topology;
+	}
+
+	private static int[] readInts(ByteBuffer buf, int length) {
+		int[] vals = new int[length];
+		buf.asIntBuffer().get(vals);
+		buf.position(buf.position() + length * 4);
+		return vals;
+	}
+
+	private boolean isPassable(Terrain[][] terrain, int index) {
+		return terrain[index / _width][index % _width].isPassable();
+	}
+
+	/** Returns the index of the tile adjacent to the specified tile, ignoring walls. */
+	public int step(int index, Orientation dir) {
+		int x = index % _width, y = index / _width;
+		switch(dir) {
+			case UP:	y = (y - 1 + _height) % _height; break;
+			case DOWN:	y = (y + 1) % _height; break;
+			case LEFT:	x = (x - 1 + _width) % _width; break;
+			default:	x = (x + 1) % _width; break;
+		}
+		return y * _width + x;
+	}
+
+	public int getWidth() {
+		return _width;
+	}
+
+	public int getHeight() {
+		return _height;
+	}
+
+	/** @return the number of tiles in the grid */
+	public int size() {
+		return _width * _height;
+	}
+
+	/** @return whether or not PacMan can move through the specified tile */
+	public boolean isPassable(int index) {
+		return _compact[index] >= 0;
+	}
+
+	/**
+	 * Returns the index of the passable tile adjacent to the specified tile in the
+	 * specified direction, or -1 if the adjacent tile cannot be moved into.
+	 *
+	 * @param index tile index
+	 * @param dir direction
+	 * @return adjacent tile index or -1
+	 */
+	public int getNeighbor(int index, Orientation dir) {
+		return _neighbors[index * DIRECTIONS + dir.ordinal()];
+	}
+
+	/**
+	 * Returns the number of passable tiles that lie in a straight line from the
+	 * specified tile in the specified direction.
+	 *
+	 * @param index tile index
+	 * @param dir direction
+	 * @return corridor length in tiles
+	 */
+	public int getCorridor(int index, Orientation dir) {
+		return _corridors[index * DIRECTIONS + dir.ordinal()];
+	}
+
+	/** @return the length of the longest corridor in the grid */
+	public int getMaxCorridor() {
+		return _maxCorridor;
+	}
+
+	/** @return the number of horizontal and vertical runs in the grid */
+	public int getRunCount() {
+		return _numRuns;
+	}
+
+	/**
+	 * Returns the identifier of the horizontal (LEFT, RIGHT) or vertical (UP, DOWN)
+	 * run that the specified tile belongs to, or -1 if the tile is not passable.
+	 *
+	 * @param index tile index
+	 * @param dir direction
+	 * @return run identifier
+	 */
+	public int getRun(int index, Orientation dir) {
+		return _runs[index * 2 + axis(dir)];
+	}
+
+	/** @return the position of the tile within its horizontal or vertical run */
+	public int getRunOffset(int index, Orientation dir) {
+		return _offsets[index * 2 + axis(dir)];
+	}
+
+	private static int axis(Orientation dir) {
+		return (dir == Orientation.LEFT || dir == Orientation.RIGHT) ? 0 : 1;
+	}
+
+	/**
+	 * Returns the length of the shortest path through the maze between two tiles
+	 * or UNREACHABLE if no such path exists.
+	 *
+	 * @param from source tile index
+	 * @param to destination tile index
+	 * @return maze distance in tiles
+	 */
+	public int getDistance(int from, int to) {
+		int a = _compact[from], b = _compact[to];
+		if(a < 0 || b < 0)
+			return UNREACHABLE;
+		return _distances[a * _passable + b];
+	}
+
+	/** @return the longest finite maze distance between any two tiles */
+	public int getMaxDistance() {
+		return _maxDistance;
+	}
+
+	/** @return the length of the diagonal of the grid in pixels */
+	public double getMaxEuclidean() {
+		double w = _width  * Grid.TILE_SIZE;
+		double h = _height * Grid.TILE_SIZE;
+		return Math.sqrt(w * w + h * h);
+	}
+}
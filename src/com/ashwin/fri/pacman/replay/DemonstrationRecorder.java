@@ -0,0 +1,113 @@
+package com.ashwin.fri.pacman.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.ashwin.fri.pacman.Game;
+import com.ashwin.fri.pacman.actor.Actor.Orientation;
+import com.ashwin.fri.pacman.actor.DecisionListener;
+import com.ashwin.fri.pacman.actor.PacMan;
+import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Topology;
+import com.ashwin.fri.pacman.sensor.Feature;
+import com.ashwin.fri.pacman.sensor.Sensor;
+
+/**
+ * The DemonstrationRecorder records the decisions that a player (usually a human
+ * playing with PacManHuman) makes as examples for imitation learning (see
+ * NeuralTrainer). Each example is the value of every Feature at the center of a tile,
+ * exactly as PacManAi would sense them, and the direction that the player decided to
+ * move in. Tiles where PacMan cannot turn are skipped, because a net has no choice to
+ * make there either.
+ *
+ * The format of a demonstration is a header (magic, version, the number of features
+ * and their names), followed by one example per decision (the feature values and the
+ * ordinal of the direction) until the end of the file. Every example is flushed as
+ * it is recorded, so a game that is interrupted still leaves a readable demonstration
+ * (see Demonstrations).
+ *
+ * @author ashwin
+ */
+public class DemonstrationRecorder implements DecisionListener {
+
+	/** The extension of demonstration files. */
+	public static final String EXTENSION = ".pmdemo";
+
+	static final int MAGIC = 0x504D4445;	// "PMDE"
+	static final int VERSION = 1;
+
+	private Game _game;
+	private DataOutputStream _out;
+	private List<Feature> _features;
+	private Sensor _sensor;
+	private double[] _inputs;
+	private Orientation _last;
+
+	/**
+	 * Creates a recorder for the specified game, writes the header of the
+	 * demonstration and starts listening to the decisions of its PacMan.
+	 *
+	 * @param game game to record
+	 * @param out stream to write the demonstration to
+	 * @throws IOException write error
+	 */
+	public DemonstrationRecorder(Game game, OutputStream out) throws IOException {
+		_game = game;
+		_out = new DataOutputStream(new BufferedOutputStream(out));
+		_features = Arrays.asList(Feature.values());
+		_sensor = new Sensor(game.getGrid());
+		_last = game.getPacMan().getCurrentOrientation();
+
+		_out.writeInt(MAGIC);
+		_out.writeInt(VERSION);
+		_out.writeInt(_features.size());
+		for(Feature feature : _features)
+			_out.writeUTF(feature.name());
+		_out.flush();
+		game.getPacMan().setDecisionListener(this);
+	}
+
+	@Override
+	public void decided(PacMan pacman, Orientation dir) {
+		Grid grid = _game.getGrid();
+		Topology topology = grid.getTopology();
+		int tile = grid.getIndex(pacman.getCurrentPosition());
+		Orientation prev = _last;
+		_last = dir;
+
+		// PacManAi never reverses, so a tile is only a decision if PacMan could have
+		// continued in more than one direction without reversing.
+		int choices = 0;
+		for(Orientation oth : Orientation.values())
+			if(!prev.isReverse(oth) && topology.getNeighbor(tile, oth) >= 0)
+				choices++;
+		if(choices < 2)
+			return;
+
+		_inputs = _sensor.sense(_game.getActors(), _features, _inputs);
+		try {
+			for(double val : _inputs)
+				_out.writeDouble(val);
+			_out.writeByte(dir.ordinal());
+			_out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Stops listening to the decisions of PacMan and closes the output stream.
+	 *
+	 * @throws IOException write error
+	 */
+	public void close() throws IOException {
+		_game.getPacMan().setDecisionListener(null);
+		_sensor.detach();
+		_out.close();
+	}
+}
@@ -0,0 +1,113 @@
+package com.ashwin.fri.pacman.replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ashwin.fri.pacman.sensor.Feature;
+
+/**
+ * Demonstrations are the examples of one or more demonstration files (see
+ * DemonstrationRecorder), restricted to the features that a particular net consumes.
+ * Inputs and labels are stored as primitive arrays so that they can be trained on
+ * directly (see NeuralTrainer).
+ *
+ * @author ashwin
+ */
+public class Demonstrations {
+
+	private double[][] _inputs;
+	private int[] _labels;
+
+	/**
+	 * Loads every example in the specified files. Directories are searched for
+	 * demonstration files. A truncated example at the end of a file (which is left
+	 * by a game that was interrupted while it was recorded) is ignored.
+	 *
+	 * @param files demonstration files or directories
+	 * @param features features to load, in input order
+	 * @throws IOException a file is not a demonstration or does not contain a feature
+	 */
+	public Demonstrations(List<File> files, List<Feature> features) throws IOException {
+		List<double[]> inputs = new ArrayList<double[]>();
+		List<Integer> labels = new ArrayList<Integer>();
+		for(File file : files) {
+			if(file.isDirectory()) {
+				File[] children = file.listFiles();
+				if(children != null)
+					for(File child : children)
+						if(child.getName().endsWith(DemonstrationRecorder.EXTENSION))
+							read(child, features, inputs, labels);
+			} else {
+				read(file, features, inputs, labels);
+			}
+		}
+
+		_inputs = inputs.toArray(new double[inputs.size()][]);
+		_labels = new int[labels.size()];
+		for(int i = 0; i < _labels.length; i++)
+			_labels[i] = labels.get(i);
+	}
+
+	private static void read(File file, List<Feature> features, List<double[]> inputs, List<Integer> labels) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			int version = (in.readInt() == DemonstrationRecorder.MAGIC) ? in.readInt() : -1;
+			if(version < 1 || version > DemonstrationRecorder.VERSION)
+				throw new IOException(file + " is not a demonstration (version " + DemonstrationRecorder.VERSION + ")");
+
+			// Demonstrations record every feature that existed when they were recorded,
+			// so each requested feature is located by name.
+			List<String> names = new ArrayList<String>();
+			int count = in.readInt();
+			for(int i = 0; i < count; i++)
+				names.add(in.readUTF());
+
+			int[] columns = new int[features.size()];
+			for(int i = 0; i < columns.length; i++) {
+				columns[i] = names.indexOf(features.get(i).name());
+				if(columns[i] < 0)
+					throw new IOException(file + " does not contain feature " + features.get(i));
+			}
+
+			double[] row = new double[count];
+			while(true) {
+				try {
+					for(int i = 0; i < count; i++)
+						row[i] = in.readDouble();
+					int label = in.readByte();
+
+					double[] input = new double[columns.length];
+					for(int i = 0; i < columns.length; i++)
+						input[i] = row[columns[i]];
+					inputs.add(input);
+					labels.add(label);
+				} catch (EOFException e) {
+					break;
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/** @return number of examples */
+	public int size() {
+		return _labels.length;
+	}
+
+	/** @return feature values of every example */
+	public double[][] getInputs() {
+		return _inputs;
+	}
+
+	/** @return ordinal of the direction chosen in every example (see Orientation) */
+	public int[] getLabels() {
+		return _labels;
+	}
+}
@@ -0,0 +1,129 @@
+package com.ashwin.fri.pacman.replay;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import com.ashwin.fri.pacman.Game;
+import com.ashwin.fri.pacman.GameState;
+import com.ashwin.fri.pacman.actor.Actor.Orientation;
+import com.ashwin.fri.pacman.actor.DecisionListener;
+import com.ashwin.fri.pacman.actor.PacMan;
+
+/**
+ * The GameRecorder plays a game to completion and records it as a decision log.
+ * Because a game is completely determined by its seed and the decisions that PacMan
+ * makes at the center of each tile, the log only contains the seed and each decision
+ * packed into 2 bits. The log is written in chunks as the game is played; each chunk
+ * begins with a keyframe (a snapshot of the game) so that a GameReplay can seek to
+ * any point in the game without replaying it from the beginning.
+ *
+ * The format of a recording is a header (magic, version, map, difficulty, seed and
+ * keyframe interval), followed by any number of chunks (a true flag, a keyframe, the
+ * number of decisions in the chunk and the packed decisions), followed by a trailer
+ * (a false flag, the number of ticks, the points, whether PacMan won and the reason
+ * that the game ended).
+ *
+ * @author ashwin
+ */
+public class GameRecorder implements DecisionListener {
+
+	/** The extension of recording files. */
+	public static final String EXTENSION = ".pmrec";
+
+	/** The default number of decisions between keyframes. */
+	public static final int INTERVAL = 1024;
+
+	static final int MAGIC = 0x504D5245;	// "PMRE"
+	static final int VERSION = 2;
+
+	private Game _game;
+	private DataOutputStream _out;
+	private int _interval;
+
+	private GameState _keyframe;
+	private byte[] _decisions;
+	private int _count;
+
+	/**
+	 * Creates a recorder for the specified game and writes the header of the
+	 * recording. The recorded game must be played on the map with the specified
+	 * name, which is used to load the map when the recording is replayed.
+	 *
+	 * @param game game to record
+	 * @param map name of the map that the game is played on (see GameMap.getName)
+	 * @param out stream to write the recording to
+	 * @param interval number of decisions between keyframes
+	 * @throws IOException write error
+	 */
+	public GameRecorder(Game game, String map, OutputStream out, int interval) throws IOException {
+		_game = game;
+		_out = new DataOutputStream(out);
+		_interval = interval;
+		_decisions = new byte[(interval + 3) / 4];
+
+		_out.writeInt(MAGIC);
+		_out.writeInt(VERSION);
+		_out.writeUTF(map);
+		_out.writeInt(game.getGhosts().get(0).getDifficulty().ordinal());
+		_out.writeLong(game.getSeed());
+		_out.writeInt(interval);
+	}
+
+	/**
+	 * Plays the game on the calling thread until it terminates, recording every
+	 * decision that PacMan makes. The game should be reset before it is recorded.
+	 * The output stream is flushed but not closed.
+	 *
+	 * @throws IOException write error
+	 */
+	public void record() throws IOException {
+		PacMan pacman = _game.getPacMan();
+		pacman.setDecisionListener(this);
+
+		try {
+			_game.start();
+			_keyframe = _game.snapshot();
+			while(_game.isRunning()) {
+				// Keyframes are only taken between ticks, so a chunk may contain a
+				// few more decisions than the interval.
+				if(_count >= _interval) {
+					flush();
+					_keyframe = _game.snapshot();
+				}
+				_game.tick();
+			}
+			flush();
+		} finally {
+			pacman.setDecisionListener(null);
+		}
+
+		_out.writeBoolean(false);
+		_out.writeInt(_game.getTicks());
+		_out.writeInt(pacman.getPoints());
+		_out.writeBoolean(_game.hasWon());
+		_out.writeInt(_game.getTermination().ordinal());
+		_out.flush();
+	}
+
+	public void decided(PacMan pacman, Orientation dir) {
+		if(_count / 4 >= _decisions.length)
+			_decisions = Arrays.copyOf(_decisions, _decisions.length * 2);
+
+		_decisions[_count / 4] |= dir.ordinal() << (_count % 4 * 2);
+		_count++;
+	}
+
+	/** Writes the current chunk to the output stream. */
+	private void flush() throws IOException {
+		int bytes = (_count + 3) / 4;
+		_out.writeBoolean(true);
+		_keyframe.write(_out);
+		_out.writeInt(_count);
+		_out.write(_decisions, 0, bytes);
+
+		Arrays.fill(_decisions, 0, bytes, (byte) 0);
+		_count = 0;
+	}
+}
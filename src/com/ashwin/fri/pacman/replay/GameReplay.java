@@ -0,0 +1,195 @@
+package com.ashwin.fri.pacman.replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.ashwin.fri.pacman.Game;
+import com.ashwin.fri.pacman.GameMap;
+import com.ashwin.fri.pacman.GameState;
+import com.ashwin.fri.pacman.Termination;
+import com.ashwin.fri.pacman.actor.Ghost.Difficulty;
+import com.ashwin.fri.pacman.termination.TerminationPolicy;
+
+/**
+ * A GameReplay reconstructs a game from a recording written by a GameRecorder. The
+ * replayed game is an ordinary game, so it can be played headlessly as fast as
+ * possible or rendered by a GraphicalGame at any speed. Seeking restores the
+ * nearest keyframe before the requested tick and replays the remaining ticks.
+ * 
+ * Games that were terminated early by a TerminationPolicy are stopped at the
+ * recorded tick for the recorded reason, because the state of the policies is not
+ * part of a keyframe.
+ *
+ * @author ashwin
+ */
+public class GameReplay {
+
+	/**
+	 * Replays every recording specified on the command line and checks that each
+	 * game ends with the recorded number of ticks, points and termination. Exits with a non-zero
+	 * status if any replay does not match its recording.
+	 *
+	 * @param args recording files
+	 * @throws IOException a recording cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		int mismatches = 0;
+		for(String arg : args) {
+			GameReplay replay = new GameReplay(new File(arg));
+			boolean match = replay.verify();
+			Game game = replay.getGame();
+			System.out.printf("%-8s %s ticks=%d points=%d termination=%s%n", match ? "OK" : "MISMATCH", 
+					arg, game.getTicks(), game.getPacMan().getPoints(), game.getTermination());
+			if(!match)
+				mismatches++;
+		}
+
+		if(mismatches > 0)
+			System.exit(1);
+	}
+
+	private String _map;
+	private Difficulty _difficulty;
+	private long _seed;
+
+	private List<GameState> _keyframes;
+	private List<Integer> _offsets;
+
+	private int _ticks, _points;
+	private boolean _won;
+	private Termination _termination;
+
+	private PacManReplay _pacman;
+	private Game _game;
+
+	public GameReplay(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			int version = (in.readInt() == GameRecorder.MAGIC) ? in.readInt() : -1;
+			if(version < 1 || version > GameRecorder.VERSION)
+				throw new IOException(file + " is not a recording (version " + GameRecorder.VERSION + ")");
+
+			_map = in.readUTF();
+			_difficulty = Difficulty.values()[in.readInt()];
+			_seed = in.readLong();
+			int interval = in.readInt();
+
+			// Decisions are repacked into a single contiguous log and each keyframe
+			// is associated with the index of the first decision in its chunk.
+			_keyframes = new ArrayList<GameState>();
+			_offsets = new ArrayList<Integer>();
+			byte[] decisions = new byte[(interval + 3) / 4];
+			int count = 0;
+
+			while(in.readBoolean()) {
+				_keyframes.add(GameState.read(in));
+				_offsets.add(count);
+
+				int size = in.readInt();
+				byte[] chunk = new byte[(size + 3) / 4];
+				in.readFully(chunk);
+
+				if((count + size + 3) / 4 > decisions.length)
+					decisions = Arrays.copyOf(decisions, Math.max(decisions.length * 2, (count + size + 3) / 4));
+				for(int i = 0; i < size; i++, count++) {
+					int dir = (chunk[i / 4] >>> (i % 4 * 2)) & 3;
+					decisions[count / 4] |= dir << (count % 4 * 2);
+				}
+			}
+
+			_ticks = in.readInt();
+			_points = in.readInt();
+			_won = in.readBoolean();
+			
+			// Recordings before version 2 did not record how the game ended.
+			_termination = (version >= 2) ? Termination.values()[in.readInt()] : null;
+
+			GameMap map = GameMap.load(new File(_map));
+			_pacman = new PacManReplay(map.getPacManPosition(), map.getPacManSpeed(), decisions, count);
+			_game = map.newGame(_pacman, _difficulty);
+			_game.setSeed(_seed);
+			if(_termination != null && _termination.isEarly()) {
+				_game.addTerminationPolicy(new TerminationPolicy() {
+					public void reset() {}
+					
+					public Termination check(Game game) {
+						return (game.getTicks() >= _ticks) ? _termination : null;
+					}
+				});
+			}
+			seek(0);
+		} finally {
+			in.close();
+		}
+	}
+
+	/** @return the replayed game */
+	public Game getGame() {
+		return _game;
+	}
+
+	/** @return the name of the map that the game was recorded on */
+	public String getMap() {
+		return _map;
+	}
+
+	/** @return the number of ticks that the recorded game lasted */
+	public int getRecordedTicks() {
+		return _ticks;
+	}
+
+	/** @return the number of points that PacMan earned in the recorded game */
+	public int getRecordedPoints() {
+		return _points;
+	}
+
+	/** @return whether or not PacMan won the recorded game */
+	public boolean hasRecordedWon() {
+		return _won;
+	}
+
+	/** @return the reason that the recorded game ended or null if it is unknown */
+	public Termination getRecordedTermination() {
+		return _termination;
+	}
+	
+	/**
+	 * Moves the replayed game to the specified tick. The game is restored from the
+	 * last keyframe before the tick and then played forward, so seeking never
+	 * replays more than a single chunk of the recording. Seeking past the end of the
+	 * game moves to the end of the game.
+	 *
+	 * @param tick tick to seek to
+	 */
+	public void seek(int tick) {
+		int index = 0;
+		while(index + 1 < _keyframes.size() && _keyframes.get(index + 1).getTicks() <= tick)
+			index++;
+
+		_game.restore(_keyframes.get(index));
+		_pacman.setCursor(_offsets.get(index));
+		while(_game.isRunning() && _game.getTicks() < tick)
+			_game.tick();
+	}
+
+	/**
+	 * Replays the entire game from the beginning and returns whether or not it ended
+	 * exactly as the recorded game did.
+	 *
+	 * @return whether or not the replay matches the recording
+	 */
+	public boolean verify() {
+		seek(0);
+		while(_game.isRunning())
+			_game.tick();
+
+		return _game.getTicks() == _ticks && _game.getPacMan().getPoints() == _points
+				&& _game.hasWon() == _won && (_termination == null || _game.getTermination() == _termination);
+	}
+}
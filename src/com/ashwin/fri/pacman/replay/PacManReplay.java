@@ -0,0 +1,52 @@
+package com.ashwin.fri.pacman.replay;
+
+import java.util.List;
+
+import com.ashwin.fri.pacman.actor.Actor;
+import com.ashwin.fri.pacman.actor.PacMan;
+import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.Position;
+
+/**
+ * PacManReplay repeats the decisions of a recorded PacMan. Each time it reaches the
+ * center of a tile it moves in the direction of the next recorded decision. Once
+ * the recorded decisions are exhausted, it continues in its current direction.
+ *
+ * @author ashwin
+ */
+public class PacManReplay extends PacMan {
+
+	private byte[] _decisions;
+	private int _count, _cursor;
+
+	public PacManReplay(Position initial, double speed, byte[] decisions, int count) {
+		super(initial, speed);
+		_decisions = decisions;
+		_count = count;
+	}
+
+	/** @return the index of the next decision to be replayed */
+	public int getCursor() {
+		return _cursor;
+	}
+
+	public void setCursor(int cursor) {
+		_cursor = cursor;
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		_cursor = 0;
+	}
+
+	@Override
+	public Orientation getNextOrientation(List<Actor> actors, Grid grid) {
+		if(_cursor >= _count)
+			return getCurrentOrientation();
+
+		int dir = (_decisions[_cursor / 4] >>> (_cursor % 4 * 2)) & 3;
+		_cursor++;
+		return Orientation.values()[dir];
+	}
+}
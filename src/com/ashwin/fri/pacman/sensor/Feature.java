@@ -0,0 +1,95 @@
+package com.ashwin.fri.pacman.sensor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.ashwin.fri.pacman.actor.Actor.Orientation;
+
+/**
+ * The features that a Sensor can extract from the game. Every feature is normalized
+ * to a value between zero and one. Directional features are listed in Orientation
+ * order and per-ghost features are listed in the order that the game stores its
+ * ghosts (Blinky, Clyde, Inky, Pinky). Neural nets declare which features they
+ * consume by name, so features may be added but never renamed.
+ *
+ * @author ashwin
+ */
+public enum Feature {
+
+	// Coordinates of the nearest food and energizer. If there are no energizers
+	// remaining, then the coordinates of the nearest food are used instead.
+	FOOD_X, FOOD_Y, ENERGIZER_X, ENERGIZER_Y,
+
+	// Straight line distance to each ghost and the ordinal of its current mode.
+	BLINKY_DISTANCE, BLINKY_MODE,
+	CLYDE_DISTANCE,  CLYDE_MODE,
+	INKY_DISTANCE,   INKY_MODE,
+	PINKY_DISTANCE,  PINKY_MODE,
+
+	// Maze distance to the nearest food and energizer.
+	FOOD_DISTANCE, ENERGIZER_DISTANCE,
+
+	// Whether or not PacMan is currently energized.
+	ENERGIZED,
+
+	// Number of tiles that PacMan can travel in a straight line in each direction.
+	CORRIDOR_UP, CORRIDOR_LEFT, CORRIDOR_DOWN, CORRIDOR_RIGHT,
+
+	// Number of food and energizers in the corridor in each direction.
+	PELLETS_UP, PELLETS_LEFT, PELLETS_DOWN, PELLETS_RIGHT,
+
+	// Maze distance to the nearest dangerous ghost if PacMan moves in each direction.
+	DANGER_UP, DANGER_LEFT, DANGER_DOWN, DANGER_RIGHT,
+
+	// Maze distance to the nearest frightened ghost if PacMan moves in each direction.
+	PREY_UP, PREY_LEFT, PREY_DOWN, PREY_RIGHT;
+
+	/**
+	 * The features consumed by nets that do not declare any features. These are
+	 * the inputs that PacManAi has always used, in the order it has always used them.
+	 */
+	public static final List<Feature> LEGACY = Arrays.asList(
+			FOOD_X, FOOD_Y, ENERGIZER_X, ENERGIZER_Y,
+			BLINKY_DISTANCE, BLINKY_MODE, CLYDE_DISTANCE, CLYDE_MODE,
+			INKY_DISTANCE, INKY_MODE, PINKY_DISTANCE, PINKY_MODE);
+
+	/**
+	 * Returns the index of the ghost that this feature describes in the list of
+	 * ghosts or -1 if this feature does not describe a particular ghost.
+	 *
+	 * @return ghost index
+	 */
+	public int getGhost() {
+		if(ordinal() < BLINKY_DISTANCE.ordinal() || ordinal() > PINKY_MODE.ordinal())
+			return -1;
+		return (ordinal() - BLINKY_DISTANCE.ordinal()) / 2;
+	}
+
+	/**
+	 * Returns the direction that this feature describes or null if this feature
+	 * is not a directional feature.
+	 *
+	 * @return direction
+	 */
+	public Orientation getOrientation() {
+		if(ordinal() < CORRIDOR_UP.ordinal())
+			return null;
+		return Orientation.values()[(ordinal() - CORRIDOR_UP.ordinal()) % 4];
+	}
+
+	/**
+	 * Parses a comma separated list of feature names. This is used to declare the
+	 * features that a neural net consumes in a properties file.
+	 *
+	 * @param names comma separated feature names
+	 * @return features
+	 */
+	public static List<Feature> parse(String names) {
+		List<Feature> features = new ArrayList<Feature>();
+		for(String name : names.split(","))
+			if(!name.trim().isEmpty())
+				features.add(Feature.valueOf(name.trim().toUpperCase()));
+		return features;
+	}
+}
@@ -0,0 +1,290 @@
+package com.ashwin.fri.pacman.sensor;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.ashwin.fri.pacman.actor.Actor;
+import com.ashwin.fri.pacman.actor.Actor.Orientation;
+import com.ashwin.fri.pacman.actor.Ghost;
+import com.ashwin.fri.pacman.actor.Ghost.Mode;
+import com.ashwin.fri.pacman.actor.PacMan;
+import com.ashwin.fri.pacman.grid.Grid;
+import com.ashwin.fri.pacman.grid.GridListener;
+import com.ashwin.fri.pacman.grid.Position;
+import com.ashwin.fri.pacman.grid.Terrain;
+import com.ashwin.fri.pacman.grid.Topology;
+
+/**
+ * A sensor extracts Features from a game for use as the inputs of a neural net.
+ * Static features are read directly from the precomputed Topology of the grid.
+ * Dynamic features are maintained incrementally: the sensor listens to its grid and
+ * keeps a bitmask of the remaining food and energizers in every run of the maze,
+ * so counting the pellets in a corridor is a single bit count. A sensor is bound to
+ * a single grid and is not thread safe.
+ *
+ * @author ashwin
+ */
+public class Sensor implements GridListener {
+
+	private static final double NUM_MODES = Mode.values().length;
+
+	private Grid _grid;
+	private Topology _topology;
+	private double _pixelWidth, _pixelHeight, _maxEuclidean;
+	private double _maxDistance, _maxCorridor;
+
+	// Remaining pellets in each horizontal and vertical run of the maze
+	private long[] _pellets;
+	private int _energizers;
+
+	// Scratch space for maze searches and per decision caches
+	private int[] _queue, _stamps, _dists;
+	private int _epoch, _food, _energizer, _foodDist, _energizerDist;
+
+	public Sensor(Grid grid) {
+		_grid = grid;
+		_topology = grid.getTopology();
+
+		_pixelWidth   = grid.getWidth()  * Grid.TILE_SIZE;
+		_pixelHeight  = grid.getHeight() * Grid.TILE_SIZE;
+		_maxEuclidean = _topology.getMaxEuclidean();
+		_maxDistance  = Math.max(1, _topology.getMaxDistance());
+		_maxCorridor  = Math.max(1, _topology.getMaxCorridor());
+
+		_pellets = new long[_topology.getRunCount()];
+		_queue = new int[_topology.size()];
+		_stamps = new int[_topology.size()];
+		_dists = new int[_topology.size()];
+
+		gridReset();
+		_grid.addGridListener(this);
+	}
+
+	/** @return the grid that this sensor observes */
+	public Grid getGrid() {
+		return _grid;
+	}
+
+	/** Stops observing the grid. The sensor may not be used afterwards. */
+	public void detach() {
+		_grid.removeGridListener(this);
+	}
+
+	/**
+	 * Computes the specified features for the current state of the game. The actors
+	 * list must contain PacMan followed by the ghosts, as returned by Game.getActors.
+	 *
+	 * @param actors actors in the game
+	 * @param features features to compute
+	 * @param out array to store the features in (or null to allocate one)
+	 * @return feature values
+	 */
+	public double[] sense(List<Actor> actors, List<Feature> features, double[] out) {
+		if(out == null || out.length != features.size())
+			out = new double[features.size()];
+
+		PacMan pacman = (PacMan) actors.get(0);
+		Position pos = pacman.getCurrentPosition();
+		int tile = _grid.getIndex(pos);
+		_food = _energizer = _foodDist = _energizerDist = -2;
+
+		for(int i = 0; i < out.length; i++) {
+			Feature feature = features.get(i);
+			switch(feature) {
+				case FOOD_X:		out[i] = x(getNearestFood(tile)); break;
+				case FOOD_Y:		out[i] = y(getNearestFood(tile)); break;
+				case ENERGIZER_X:	out[i] = x(getNearestEnergizer(tile)); break;
+				case ENERGIZER_Y:	out[i] = y(getNearestEnergizer(tile)); break;
+
+				case BLINKY_DISTANCE: case CLYDE_DISTANCE:
+				case INKY_DISTANCE:   case PINKY_DISTANCE:
+					Actor ghost = actors.get(feature.getGhost() + 1);
+					out[i] = pos.distance(ghost.getCurrentPosition()) / _maxEuclidean;
+					break;
+				case BLINKY_MODE: case CLYDE_MODE:
+				case INKY_MODE:   case PINKY_MODE:
+					Ghost other = (Ghost) actors.get(feature.getGhost() + 1);
+					out[i] = other.getMode().ordinal() / NUM_MODES;
+					break;
+
+				case FOOD_DISTANCE:
+					search(tile);
+					out[i] = normalize(_foodDist);
+					break;
+				case ENERGIZER_DISTANCE:
+					search(tile);
+					out[i] = normalize(_energizerDist);
+					break;
+				case ENERGIZED:
+					out[i] = pacman.isEnergized() ? 1.0 : 0.0;
+					break;
+
+				case CORRIDOR_UP: case CORRIDOR_LEFT: case CORRIDOR_DOWN: case CORRIDOR_RIGHT:
+					out[i] = _topology.isPassable(tile) ?
+							_topology.getCorridor(tile, feature.getOrientation()) / _maxCorridor : 0.0;
+					break;
+				case PELLETS_UP: case PELLETS_LEFT: case PELLETS_DOWN: case PELLETS_RIGHT:
+					out[i] = getPellets(tile, feature.getOrientation()) / _maxCorridor;
+					break;
+				case DANGER_UP: case DANGER_LEFT: case DANGER_DOWN: case DANGER_RIGHT:
+					out[i] = getGhostDistance(actors, tile, feature.getOrientation(), false);
+					break;
+				default:
+					out[i] = getGhostDistance(actors, tile, feature.getOrientation(), true);
+					break;
+			}
+		}
+
+		return out;
+	}
+
+	private double x(int index) {
+		if(index < 0)
+			return 0.0;
+		return ((index % _grid.getWidth()) * Grid.TILE_SIZE + Grid.TILE_SIZE / 2.0) / _pixelWidth;
+	}
+
+	private double y(int index) {
+		if(index < 0)
+			return 0.0;
+		return ((index / _grid.getWidth()) * Grid.TILE_SIZE + Grid.TILE_SIZE / 2.0) / _pixelHeight;
+	}
+
+	private double normalize(int dist) {
+		return (dist < 0) ? 1.0 : Math.min(1.0, dist / _maxDistance);
+	}
+
+	private int getNearestFood(int tile) {
+		if(_food == -2)
+			_food = _grid.getNearest(tile, Terrain.FOOD);
+		return _food;
+	}
+
+	private int getNearestEnergizer(int tile) {
+		if(_energizer == -2)
+			_energizer = (_energizers > 0) ? _grid.getNearest(tile, Terrain.ENERGIZER) : -1;
+		return (_energizer < 0) ? getNearestFood(tile) : _energizer;
+	}
+
+	/**
+	 * Counts the remaining food and energizers in the corridor that begins at the
+	 * specified tile and extends in the specified direction.
+	 */
+	private int getPellets(int tile, Orientation dir) {
+		int run = _topology.getRun(tile, dir);
+		if(run < 0)
+			return 0;
+
+		int offset = _topology.getRunOffset(tile, dir);
+		long mask = _pellets[run];
+		if(dir == Orientation.UP || dir == Orientation.LEFT)
+			return Long.bitCount(mask & ((1L << offset) - 1));
+		return Long.bitCount((mask >>> offset) >>> 1);
+	}
+
+	/**
+	 * Returns the normalized maze distance to the nearest ghost if PacMan were to move
+	 * in the specified direction. Only frightened ghosts are considered when prey is
+	 * true and only chasing or scattering ghosts are considered otherwise.
+	 */
+	private double getGhostDistance(List<Actor> actors, int tile, Orientation dir, boolean prey) {
+		int adj = _topology.isPassable(tile) ? _topology.getNeighbor(tile, dir) : -1;
+		if(adj < 0)
+			return 1.0;
+
+		int min = Topology.UNREACHABLE;
+		for(int i = 1; i < actors.size(); i++) {
+			Ghost ghost = (Ghost) actors.get(i);
+			Mode mode = ghost.getMode();
+			boolean relevant = prey ? mode.equals(Mode.FRIGHTENED) :
+					(mode.equals(Mode.CHASE) || mode.equals(Mode.SCATTER));
+
+			if(relevant)
+				min = Math.min(min, _topology.getDistance(adj, _grid.getIndex(ghost.getCurrentPosition())));
+		}
+
+		return (min == Topology.UNREACHABLE) ? 1.0 : normalize(min + 1);
+	}
+
+	/**
+	 * Performs a single breadth first search through the maze that determines the
+	 * distance to both the nearest food and the nearest energizer. The search stops
+	 * as soon as both have been found.
+	 */
+	private void search(int tile) {
+		if(_foodDist != -2)
+			return;
+
+		_foodDist = _energizerDist = -1;
+		if(!_topology.isPassable(tile))
+			return;
+
+		boolean findEnergizer = _energizers > 0;
+		int epoch = ++_epoch;
+		int head = 0, tail = 0;
+		_queue[tail++] = tile;
+		_stamps[tile] = epoch;
+		_dists[tile] = 0;
+
+		while(head < tail) {
+			int top = _queue[head++];
+			Terrain terrain = _grid.get(top % _grid.getWidth(), top / _grid.getWidth());
+			int dist = _dists[top];
+
+			if(_foodDist < 0 && terrain.equals(Terrain.FOOD))
+				_foodDist = dist;
+			if(_energizerDist < 0 && terrain.equals(Terrain.ENERGIZER))
+				_energizerDist = dist;
+			if(_foodDist >= 0 && (_energizerDist >= 0 || !findEnergizer))
+				break;
+
+			for(Orientation dir : Orientation.values()) {
+				int adj = _topology.getNeighbor(top, dir);
+				if(adj >= 0 && _stamps[adj] != epoch) {
+					_stamps[adj] = epoch;
+					_dists[adj] = dist + 1;
+					_queue[tail++] = adj;
+				}
+			}
+		}
+	}
+
+	private static boolean isPellet(Terrain terrain) {
+		return terrain.equals(Terrain.FOOD) || terrain.equals(Terrain.ENERGIZER);
+	}
+
+	private void toggle(int index) {
+		for(Orientation dir : new Orientation[] { Orientation.LEFT, Orientation.UP }) {
+			int run = _topology.getRun(index, dir);
+			if(run >= 0)
+				_pellets[run] ^= 1L << _topology.getRunOffset(index, dir);
+		}
+	}
+
+	@Override
+	public void terrainChanged(int x, int y, Terrain prev, Terrain next) {
+		if(isPellet(prev) != isPellet(next))
+			toggle(y * _grid.getWidth() + x);
+
+		if(prev.equals(Terrain.ENERGIZER))
+			_energizers--;
+		if(next.equals(Terrain.ENERGIZER))
+			_energizers++;
+	}
+
+	@Override
+	public void gridReset() {
+		Arrays.fill(_pellets, 0L);
+		_energizers = 0;
+
+		for(int y = 0; y < _grid.getHeight(); y++) {
+			for(int x = 0; x < _grid.getWidth(); x++) {
+				Terrain terrain = _grid.get(x, y);
+				if(isPellet(terrain))
+					toggle(y * _grid.getWidth() + x);
+				if(terrain.equals(Terrain.ENERGIZER))
+					_energizers++;
+			}
+		}
+	}
+}
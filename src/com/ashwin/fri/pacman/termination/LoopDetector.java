@@ -0,0 +1,58 @@
+package com.ashwin.fri.pacman.termination;
+
+import com.ashwin.fri.pacman.Game;
+import com.ashwin.fri.pacman.Termination;
+
+/**
+ * Terminates a game once PacMan has entered the same tile a fixed number of times
+ * without earning any points in between, which catches nets that oscillate between
+ * a few tiles. Visits are counted in a table indexed by tile that is cleared in
+ * constant time (by advancing an epoch) whenever PacMan earns points.
+ * 
+ * @author ashwin
+ */
+public class LoopDetector implements TerminationPolicy {
+	
+	private int _visits;
+	private int[] _counts, _stamps;
+	private int _epoch, _tile, _points;
+	
+	/** @param visits number of visits to a single tile after which the game is terminated */
+	public LoopDetector(int visits) {
+		_visits = visits;
+	}
+	
+	public void reset() {
+		_epoch++;
+		_tile = -1;
+		_points = 0;
+	}
+	
+	public Termination check(Game game) {
+		int size = game.getGrid().getWidth() * game.getGrid().getHeight();
+		if(_counts == null || _counts.length != size) {
+			_counts = new int[size];
+			_stamps = new int[size];
+			_epoch = 1;
+			_tile = -1;
+		}
+		
+		int points = game.getPacMan().getPoints();
+		if(points != _points) {
+			_points = points;
+			_epoch++;
+		}
+		
+		int tile = game.getGrid().getIndex(game.getPacMan().getCurrentPosition());
+		if(tile == _tile)
+			return null;
+		
+		_tile = tile;
+		if(_stamps[tile] != _epoch) {
+			_stamps[tile] = _epoch;
+			_counts[tile] = 0;
+		}
+		
+		return (++_counts[tile] >= _visits) ? Termination.LOOP : null;
+	}
+}
@@ -0,0 +1,36 @@
+package com.ashwin.fri.pacman.termination;
+
+import com.ashwin.fri.pacman.Game;
+import com.ashwin.fri.pacman.Termination;
+
+/**
+ * Terminates a game once PacMan has gone a fixed number of ticks without earning
+ * any points, which catches nets that sit safely in a corridor.
+ * 
+ * @author ashwin
+ */
+public class NoProgress implements TerminationPolicy {
+	
+	private int _window;
+	private int _points, _tick;
+	
+	/** @param window number of ticks without points after which the game is terminated */
+	public NoProgress(int window) {
+		_window = window;
+	}
+	
+	public void reset() {
+		_points = 0;
+		_tick = 0;
+	}
+	
+	public Termination check(Game game) {
+		int points = game.getPacMan().getPoints();
+		if(points != _points) {
+			_points = points;
+			_tick = game.getTicks();
+		}
+		
+		return (game.getTicks() - _tick >= _window) ? Termination.NO_PROGRESS : null;
+	}
+}
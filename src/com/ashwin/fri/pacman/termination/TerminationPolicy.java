@@ -0,0 +1,52 @@
+package com.ashwin.fri.pacman.termination;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import com.ashwin.fri.pacman.Game;
+import com.ashwin.fri.pacman.Termination;
+
+/**
+ * A TerminationPolicy ends games that are unlikely to produce anything useful, so
+ * that a net that stalls or oscillates forever cannot keep an evaluation running.
+ * Policies are checked by the game after every tick. Policies are stateful, so
+ * every game must have its own instances.
+ * 
+ * @author ashwin
+ */
+public interface TerminationPolicy {
+	
+	/** Invoked when the game that the policy belongs to is reset. */
+	void reset();
+	
+	/**
+	 * Checks whether or not the game should be terminated.
+	 * 
+	 * @param game game to check
+	 * @return reason for terminating the game or null to continue
+	 */
+	Termination check(Game game);
+	
+	/**
+	 * Creates the policies specified by the game.max.ticks, game.progress.window and
+	 * game.loop.visits properties. Missing or non-positive properties are disabled.
+	 * 
+	 * @param props game properties
+	 * @return new policies
+	 */
+	static List<TerminationPolicy> create(Properties props) {
+		List<TerminationPolicy> policies = new ArrayList<TerminationPolicy>();
+		int ticks  = Integer.valueOf(props.getProperty("game.max.ticks", "0").trim());
+		int window = Integer.valueOf(props.getProperty("game.progress.window", "0").trim());
+		int visits = Integer.valueOf(props.getProperty("game.loop.visits", "0").trim());
+		
+		if(ticks > 0)
+			policies.add(new TickBudget(ticks));
+		if(window > 0)
+			policies.add(new NoProgress(window));
+		if(visits > 0)
+			policies.add(new LoopDetector(visits));
+		return policies;
+	}
+}
@@ -0,0 +1,24 @@
+package com.ashwin.fri.pacman.termination;
+
+import com.ashwin.fri.pacman.Game;
+import com.ashwin.fri.pacman.Termination;
+
+/**
+ * Terminates a game once it has lasted a fixed number of ticks.
+ * 
+ * @author ashwin
+ */
+public class TickBudget implements TerminationPolicy {
+	
+	private int _ticks;
+	
+	public TickBudget(int ticks) {
+		_ticks = ticks;
+	}
+	
+	public void reset() {}
+	
+	public Termination check(Game game) {
+		return (game.getTicks() >= _ticks) ? Termination.TICK_BUDGET : null;
+	}
+}
@@ -0,0 +1,85 @@
+package com.ashwin.fri.random;
+
+/**
+ * A RandomStream is a small, seedable pseudorandom number generator (SplitMix64).
+ * Unlike Math.random, the entire state of a stream is a single long, so a stream
+ * can be saved and restored exactly. This allows games to be replayed from a seed
+ * and resumed from a snapshot. Streams are not thread safe; every thread should use
+ * its own stream, which can be split from a master stream (see split). A program
+ * that splits its streams in a fixed order from a master stream with a fixed seed
+ * produces identical values regardless of how many threads it uses.
+ *
+ * @author ashwin
+ */
+public class RandomStream {
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private long _state;
+
+	public RandomStream(long seed) {
+		_state = seed;
+	}
+
+	/** @return the current state of the stream */
+	public long getState() {
+		return _state;
+	}
+
+	/**
+	 * Restores the stream to a state returned by getState. A stream created with a
+	 * particular seed starts in the state equal to that seed.
+	 *
+	 * @param state stream state
+	 */
+	public void setState(long state) {
+		_state = state;
+	}
+
+	/**
+	 * Returns a new stream whose seed is drawn from this stream. The new stream is
+	 * statistically independent of this stream, and splitting advances this stream
+	 * exactly like nextLong, so the streams split from a stream are reproducible.
+	 *
+	 * @return new stream
+	 */
+	public RandomStream split() {
+		return new RandomStream(nextLong());
+	}
+
+	/** @return a uniformly distributed long */
+	public long nextLong() {
+		long z = (_state += GOLDEN_GAMMA);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/** @return a uniformly distributed double in [0, 1) */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Returns a uniformly distributed integer in [0, bound).
+	 *
+	 * @param bound upper bound (exclusive)
+	 * @return random integer
+	 */
+	public int nextInt(int bound) {
+		return (int) (nextDouble() * bound);
+	}
+
+	/**
+	 * Returns a normally distributed double with mean 0 and standard deviation 1
+	 * (Box-Muller). The second value of each pair is discarded, so that the state of
+	 * the stream remains a single long. StrictMath is used, so that a stream produces
+	 * identical values on every machine.
+	 *
+	 * @return random gaussian
+	 */
+	public double nextGaussian() {
+		double u = 1.0 - nextDouble();
+		return StrictMath.sqrt(-2.0 * StrictMath.log(u)) * StrictMath.cos(2.0 * StrictMath.PI * nextDouble());
+	}
+}
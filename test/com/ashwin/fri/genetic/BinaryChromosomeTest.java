@@ -0,0 +1,84 @@
+package com.ashwin.fri.genetic;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * Checks the packed crossover of BinaryChromosome against single-point crossover of
+ * the bit strings of the parents. Genomes span word boundaries, and every crossover
+ * point of the shorter genomes is tried, including points on a word boundary.
+ *
+ * @author ashwin
+ */
+public class BinaryChromosomeTest {
+
+	private static final int[] BITS = { 1, 2, 63, 64, 65, 127, 128, 130 };
+	private static final int TRIALS = 500;
+
+	@Test
+	public void crossoverExchangesBitsBeforeThePoint() {
+		RandomStream random = new RandomStream(378);
+		for(int bits : BITS) {
+			for(int trial = 0; trial < TRIALS; trial++) {
+				BinaryChromosome a = new BinaryChromosome(null, bits, random);
+				BinaryChromosome b = new BinaryChromosome(null, bits, random);
+				String g1 = a.getGenotype(), g2 = b.getGenotype();
+
+				// Mating draws whether to cross over and then the point, so a copy of
+				// the stream tells the point that mating chooses.
+				RandomStream copy = new RandomStream(0);
+				copy.setState(random.getState());
+				copy.nextDouble();
+				int index = copy.nextInt(bits);
+
+				GeneticChromosome[] children = a.mate(b, 1.0, random);
+				String name = bits + " bits crossed at " + index;
+				assertEquals(name, g2.substring(0, index) + g1.substring(index), children[0].getGenotype());
+				assertEquals(name, g1.substring(0, index) + g2.substring(index), children[1].getGenotype());
+				assertUnusedBitsClear(name, (BinaryChromosome) children[0]);
+				assertUnusedBitsClear(name, (BinaryChromosome) children[1]);
+
+				// The parents are not modified
+				assertEquals(name, g1, a.getGenotype());
+				assertEquals(name, g2, b.getGenotype());
+			}
+		}
+	}
+
+	@Test
+	public void parentsAreCopiedWithoutCrossover() {
+		RandomStream random = new RandomStream(378);
+		BinaryChromosome a = new BinaryChromosome(null, 130, random);
+		BinaryChromosome b = new BinaryChromosome(null, 130, random);
+
+		GeneticChromosome[] children = a.mate(b, 0.0, random);
+		assertEquals(a.getGenotype(), children[0].getGenotype());
+		assertEquals(b.getGenotype(), children[1].getGenotype());
+	}
+
+	@Test
+	public void mutationKeepsUnusedBitsClear() {
+		RandomStream random = new RandomStream(378);
+		for(int bits : BITS) {
+			BinaryChromosome chromosome = new BinaryChromosome(null, bits, random);
+			String genotype = chromosome.getGenotype();
+			chromosome.mutate(1.0, random);
+
+			String name = bits + " bits";
+			assertUnusedBitsClear(name, chromosome);
+			for(int i = 0; i < bits; i++)
+				assertEquals(name, genotype.charAt(i) == '1' ? '0' : '1', chromosome.getGenotype().charAt(i));
+		}
+	}
+
+	private static void assertUnusedBitsClear(String name, BinaryChromosome chromosome) {
+		long[] genome = chromosome.getGenome();
+		int bits = chromosome.getBits();
+		assertEquals(name, (bits + 63) >>> 6, genome.length);
+		if((bits & 63) != 0)
+			assertEquals(name, 0L, genome[genome.length - 1] >>> (bits & 63));
+	}
+}
@@ -0,0 +1,124 @@
+package com.ashwin.fri.genetic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * Minimizes a shifted sphere with both variants of the CmaEvolutionStrategy, and
+ * checks that each converges to its minimum and that a search that is resumed from
+ * a checkpoint samples exactly the candidates that an uninterrupted one does.
+ *
+ * @author ashwin
+ */
+public class CmaEvolutionStrategyTest {
+
+	private static final int GENES = 5;
+	private static final double TARGET = 1.5;
+	private static final int GENERATIONS = 400;
+	private static final int INTERRUPT = 20, RESUME = 40;
+
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	private GeneticDecoder _decoder;
+	private GeneticEvaluator _evaluator;
+
+	@Before
+	public void setUp() {
+		GeneticGene[] genes = new GeneticGene[GENES];
+		for(int i = 0; i < GENES; i++)
+			genes[i] = new GeneticGene("x" + i, 8, -5.0, 5.0);
+		_decoder = new GeneticDecoder(genes) {
+			@Override
+			public double getFitness(double[] phenotype) {
+				double sum = 0.0;
+				for(double val : phenotype)
+					sum += (val - TARGET) * (val - TARGET);
+				return sum;
+			}
+		};
+		_evaluator = new GeneticEvaluator(_decoder, 1);
+	}
+
+	@After
+	public void tearDown() {
+		_evaluator.shutdown();
+	}
+
+	@Test
+	public void fullCovarianceConverges() {
+		assertConverges(false);
+	}
+
+	@Test
+	public void diagonalCovarianceConverges() {
+		assertConverges(true);
+	}
+
+	@Test
+	public void resumedSearchContinuesIdentically() throws IOException {
+		assertResumes(false);
+	}
+
+	@Test
+	public void resumedDiagonalSearchContinuesIdentically() throws IOException {
+		assertResumes(true);
+	}
+
+	private void assertConverges(boolean diagonal) {
+		CmaEvolutionStrategy cma = new CmaEvolutionStrategy(_decoder, props(diagonal), new RandomStream(378));
+		for(int gen = 0; gen < GENERATIONS; gen++)
+			if(cma.step(_evaluator).getBestChromosome().getFitness() <= 1e-10)
+				break;
+
+		GeneticChromosome best = cma.getBestChromosome();
+		assertTrue("the best fitness was " + best.getFitness(), best.getFitness() <= 1e-10);
+		for(double val : best.getPhenotype())
+			assertEquals(TARGET, val, 1e-4);
+	}
+
+	private void assertResumes(boolean diagonal) throws IOException {
+		CmaEvolutionStrategy uninterrupted = new CmaEvolutionStrategy(_decoder, props(diagonal), new RandomStream(378));
+		CmaEvolutionStrategy interrupted = new CmaEvolutionStrategy(_decoder, props(diagonal), new RandomStream(378));
+		for(int gen = 0; gen < INTERRUPT; gen++) {
+			uninterrupted.step(_evaluator);
+			interrupted.step(_evaluator);
+		}
+
+		File file = new File(_folder.getRoot(), "cma.ckpt");
+		interrupted.save(file);
+		CmaEvolutionStrategy resumed = new CmaEvolutionStrategy(_decoder, props(diagonal), new RandomStream(0));
+		resumed.load(file);
+		for(int gen = INTERRUPT; gen < RESUME; gen++) {
+			GeneticChromosome[] expected = uninterrupted.step(_evaluator).getChromosomes();
+			GeneticChromosome[] actual = resumed.step(_evaluator).getChromosomes();
+			assertEquals("candidates of generation " + gen, expected.length, actual.length);
+			for(int k = 0; k < expected.length; k++) {
+				assertArrayEquals("candidate " + k + " of generation " + gen, expected[k].getPhenotype(), actual[k].getPhenotype(), 0.0);
+				assertEquals("candidate " + k + " of generation " + gen, expected[k].getFitness(), actual[k].getFitness(), 0.0);
+			}
+		}
+		assertEquals(uninterrupted.getBestChromosome().getFitness(), resumed.getBestChromosome().getFitness(), 0.0);
+	}
+
+	private static Properties props(boolean diagonal) {
+		Properties props = new Properties();
+		props.setProperty("cma.diagonal", String.valueOf(diagonal));
+		props.setProperty("cma.sigma", "0.3");
+		props.setProperty("cma.restarts", "0");
+		return props;
+	}
+}
@@ -0,0 +1,162 @@
+package com.ashwin.fri.genetic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * Applies the messages of a coordinator to a replica like a worker does, and checks
+ * that every perturbation of the replica is bit-identical to the perturbation of the
+ * coordinator, that a tampered update fails instead of leaving the replica out of
+ * sync, and that a search that is resumed from a checkpoint continues exactly like
+ * an uninterrupted one.
+ *
+ * @author ashwin
+ */
+public class EvolutionStrategyTest {
+
+	private static final int GENES = 12;
+	private static final int PAIRS = 6;
+	private static final int STEPS = 10;
+
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	private GeneticDecoder _decoder;
+
+	@Before
+	public void setUp() {
+		GeneticGene[] genes = new GeneticGene[GENES];
+		for(int i = 0; i < GENES; i++)
+			genes[i] = new GeneticGene("w" + i, 8, -3.0, 3.0);
+		_decoder = new GeneticDecoder(genes) {
+			@Override
+			public double getFitness(double[] phenotype) {
+				double sum = 0.0;
+				for(double val : phenotype)
+					sum += (val - 1.0) * (val - 1.0);
+				return sum;
+			}
+		};
+	}
+
+	@Test
+	public void replicaMatchesTheCoordinator() {
+		RandomStream random = new RandomStream(378);
+		EvolutionStrategy coordinator = new EvolutionStrategy(_decoder);
+		EvolutionStrategy replica = new EvolutionStrategy(_decoder);
+		replica.apply(coordinator.initialize(theta(random), 0.05, 0.02, 0.005));
+		assertSamePerturbations(coordinator, replica, random.nextLong());
+
+		for(int step = 0; step < STEPS; step++) {
+			replica.apply(step(coordinator, random));
+			assertSamePerturbations(coordinator, replica, random.nextLong());
+		}
+	}
+
+	@Test
+	public void tamperedStepFails() {
+		RandomStream random = new RandomStream(378);
+		EvolutionStrategy coordinator = new EvolutionStrategy(_decoder);
+		EvolutionStrategy replica = new EvolutionStrategy(_decoder);
+		replica.apply(coordinator.initialize(theta(random), 0.05, 0.02, 0.005));
+		replica.apply(step(coordinator, random));
+
+		// A STEP starts with its type and number of pairs, so this changes the lowest
+		// byte of the first seed and therefore the direction of the update.
+		byte[] tampered = step(coordinator, random);
+		tampered[12]++;
+		try {
+			replica.apply(tampered);
+			fail("a tampered step was applied");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void resumedSearchContinuesIdentically() throws IOException {
+		RandomStream[] streams = new RandomStream[6];
+		EvolutionStrategy uninterrupted = newSearch(streams, 0);
+		EvolutionStrategy interrupted = newSearch(streams, 2);
+		for(int step = 0; step < STEPS / 2; step++) {
+			step(uninterrupted, streams[0]);
+			step(interrupted, streams[2]);
+		}
+
+		File file = new File(_folder.getRoot(), "es.ckpt");
+		interrupted.save(file);
+		EvolutionStrategy resumed = newSearch(streams, 4);
+		resumed.load(file);
+		assertEquals(streams[2].getState(), streams[4].getState());
+		assertEquals(streams[3].getState(), streams[5].getState());
+
+		// The resumed search sends its full state to its workers, including the
+		// moments of Adam, so a replica that starts from it stays in sync.
+		EvolutionStrategy replica = new EvolutionStrategy(_decoder);
+		replica.apply(resumed.getState());
+		for(int step = STEPS / 2; step < STEPS; step++) {
+			step(uninterrupted, streams[0]);
+			replica.apply(step(resumed, streams[4]));
+			long seed = streams[0].nextLong();
+			assertEquals(seed, streams[4].nextLong());
+			assertSamePerturbations(uninterrupted, resumed, seed);
+			assertSamePerturbations(uninterrupted, replica, seed);
+		}
+	}
+
+	/**
+	 * Returns a coordinator whose streams are split from a fixed master stream, and
+	 * stores its perturbation and game streams at the specified index.
+	 */
+	private EvolutionStrategy newSearch(RandomStream[] streams, int index) {
+		RandomStream random = new RandomStream(378);
+		EvolutionStrategy es = new EvolutionStrategy(_decoder);
+		es.initialize(theta(random), 0.05, 0.02, 0.005);
+		streams[index + 1] = random.split();
+		streams[index] = random;
+		es.setStreams(streams[index], streams[index + 1]);
+		return es;
+	}
+
+	/** Evaluates a generation of mirrored pairs and returns the STEP message. */
+	private byte[] step(EvolutionStrategy es, RandomStream random) {
+		long[] seeds = new long[PAIRS];
+		double[] fitness = new double[2 * PAIRS];
+		for(int i = 0; i < PAIRS; i++) {
+			seeds[i] = random.nextLong();
+			fitness[2 * i]     = _decoder.getFitness(es.getPhenotype(seeds[i], 1));
+			fitness[2 * i + 1] = _decoder.getFitness(es.getPhenotype(seeds[i], -1));
+		}
+		return es.step(seeds, fitness);
+	}
+
+	private static double[] theta(RandomStream random) {
+		double[] theta = new double[GENES];
+		for(int i = 0; i < GENES; i++)
+			theta[i] = random.nextDouble();
+		return theta;
+	}
+
+	private static void assertSamePerturbations(EvolutionStrategy expected, EvolutionStrategy actual, long seed) {
+		for(int sign = -1; sign <= 1; sign++)
+			assertArrayEquals("perturbation " + sign, bits(expected.getPhenotype(seed, sign)), bits(actual.getPhenotype(seed, sign)));
+	}
+
+	private static long[] bits(double[] phenotype) {
+		long[] bits = new long[phenotype.length];
+		for(int i = 0; i < bits.length; i++)
+			bits[i] = Double.doubleToLongBits(phenotype[i]);
+		return bits;
+	}
+}
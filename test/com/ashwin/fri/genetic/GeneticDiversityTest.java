@@ -0,0 +1,137 @@
+package com.ashwin.fri.genetic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * Checks the bit-sliced counters of GeneticDiversity against a brute-force measure
+ * that compares the bits of every pair of genomes. Genomes span word boundaries and
+ * populations span plane boundaries, so that every carry of the counters is used.
+ *
+ * @author ashwin
+ */
+public class GeneticDiversityTest {
+
+	private static final double EPSILON = 1e-12;
+
+	private static final int[] BITS = { 1, 7, 63, 64, 65, 130 };
+	private static final int[] SIZES = { 1, 2, 3, 4, 7, 8, 33, 64 };
+
+	@Test
+	public void matchesPairwiseMeasure() {
+		RandomStream random = new RandomStream(378);
+		for(int bits : BITS) {
+			for(int size : SIZES) {
+				// Some populations are biased, so that loci are not all near a half
+				double bias = random.nextDouble();
+				BinaryChromosome[] pop = new BinaryChromosome[size];
+				for(int i = 0; i < size; i++)
+					pop[i] = (i > 0 && random.nextDouble() < 0.2) ? (BinaryChromosome) pop[i - 1].copy() : random(bits, bias, random);
+
+				GeneticDiversity diversity = GeneticDiversity.of(pop);
+				String name = bits + " bits and " + size + " genomes";
+				assertEquals(name, size, diversity.size());
+				assertEquals(name, unique(pop), diversity.getUnique());
+				assertEquals(name, distance(pop), diversity.getDistance(), EPSILON);
+				assertEquals(name, entropy(pop), diversity.getEntropy(), EPSILON);
+			}
+		}
+	}
+
+	@Test
+	public void convergedPopulationHasNoDiversity() {
+		BinaryChromosome chromosome = random(100, 0.5, new RandomStream(378));
+		GeneticDiversity diversity = new GeneticDiversity(100, 10);
+		for(int i = 0; i < 10; i++)
+			diversity.add((BinaryChromosome) chromosome.copy());
+
+		assertEquals(1, diversity.getUnique());
+		assertEquals(0.0, diversity.getDistance(), 0.0);
+		assertEquals(0.0, diversity.getEntropy(), 0.0);
+	}
+
+	@Test
+	public void complementsAreMaximallyDiverse() {
+		long[] genome = new long[] { 0x5555555555555555L, 0x5L };
+		GeneticDiversity diversity = new GeneticDiversity(67, 2);
+		diversity.add(new BinaryChromosome(null, genome, 67));
+		diversity.add(new BinaryChromosome(null, new long[] { ~genome[0], ~genome[1] & 0x7L }, 67));
+
+		assertEquals(1.0, diversity.getDistance(), EPSILON);
+		assertEquals(1.0, diversity.getEntropy(), EPSILON);
+	}
+
+	@Test
+	public void rejectsGenomesBeyondCapacity() {
+		// A capacity of 3 is counted in 2 planes, so a fourth set bit overflows them
+		GeneticDiversity diversity = new GeneticDiversity(65, 3);
+		long[] ones = new long[] { -1L, 1L };
+		for(int i = 0; i < 3; i++)
+			diversity.add(new BinaryChromosome(null, ones.clone(), 65));
+
+		try {
+			diversity.add(new BinaryChromosome(null, ones.clone(), 65));
+			fail("a genome beyond capacity was counted");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+
+	/** Returns a chromosome whose bits are each set with the specified probability. */
+	private static BinaryChromosome random(int bits, double bias, RandomStream random) {
+		long[] genome = new long[(bits + 63) >>> 6];
+		for(int i = 0; i < bits; i++)
+			if(random.nextDouble() < bias)
+				genome[i >>> 6] |= 1L << i;
+		return new BinaryChromosome(null, genome, bits);
+	}
+
+	private static int unique(BinaryChromosome[] pop) {
+		Set<String> genotypes = new HashSet<String>();
+		for(BinaryChromosome chromosome : pop)
+			genotypes.add(chromosome.getGenotype());
+		return genotypes.size();
+	}
+
+	/** Returns the mean Hamming distance of every pair divided by the number of bits. */
+	private static double distance(BinaryChromosome[] pop) {
+		if(pop.length < 2)
+			return 0.0;
+
+		long total = 0, pairs = 0;
+		for(int i = 0; i < pop.length; i++) {
+			String a = pop[i].getGenotype();
+			for(int j = i + 1; j < pop.length; j++, pairs++) {
+				String b = pop[j].getGenotype();
+				for(int k = 0; k < a.length(); k++)
+					if(a.charAt(k) != b.charAt(k))
+						total++;
+			}
+		}
+		return (double) total / pairs / pop[0].getBits();
+	}
+
+	/** Returns the mean binary entropy of every locus. */
+	private static double entropy(BinaryChromosome[] pop) {
+		int bits = pop[0].getBits();
+		double sum = 0.0;
+		for(int k = 0; k < bits; k++) {
+			int count = 0;
+			for(BinaryChromosome chromosome : pop)
+				if(chromosome.getGenotype().charAt(k) == '1')
+					count++;
+
+			double f = (double) count / pop.length;
+			if(f > 0.0 && f < 1.0)
+				sum -= f * Math.log(f) / Math.log(2) + (1.0 - f) * Math.log(1.0 - f) / Math.log(2);
+		}
+		return sum / bits;
+	}
+}
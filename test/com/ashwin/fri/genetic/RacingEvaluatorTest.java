@@ -0,0 +1,103 @@
+package com.ashwin.fri.genetic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * Races chromosomes whose fitness is their only gene plus a little noise, and checks
+ * that the race spends its budget on the best chromosomes. Also checks the normal
+ * quantiles that the confidence intervals of the race are built from.
+ *
+ * @author ashwin
+ */
+public class RacingEvaluatorTest {
+
+	private static final int CHROMOSOMES = 20;
+	private static final int MIN = 2, MAX = 10;
+	private static final double BUDGET = 4.0;
+	private static final double NOISE = 0.01;
+
+	@Test
+	public void quantilesAreAccurate() {
+		double[][] quantiles = {
+			{ 0.5, 0.0 }, { 0.8, 0.841621 }, { 0.9, 1.281552 },
+			{ 0.975, 1.959964 }, { 0.995, 2.575829 }, { 0.9995, 3.290527 }
+		};
+		for(double[] quantile : quantiles) {
+			assertEquals("quantile of " + quantile[0], quantile[1], RacingEvaluator.getQuantile(quantile[0]), 4.5e-4);
+			assertEquals("quantile of " + (1 - quantile[0]), -quantile[1], RacingEvaluator.getQuantile(1 - quantile[0]), 4.5e-4);
+		}
+	}
+
+	@Test
+	public void raceSpendsItsBudgetOnTheBest() {
+		Decoder decoder = new Decoder();
+		GeneticEvaluator sampler = new GeneticEvaluator(decoder, 1);
+		sampler.getRandom().setState(378);
+		RacingEvaluator race = new RacingEvaluator(sampler, MIN, MAX, BUDGET, 0.2, 0.95);
+
+		GeneticChromosome[] pop = new GeneticChromosome[CHROMOSOMES];
+		for(int i = 0; i < CHROMOSOMES; i++)
+			pop[i] = new BinaryChromosome(decoder, new long[] { (i * 89) % 256 }, 8);
+		race.evaluate(pop);
+		race.shutdown();
+
+		GeneticChromosome best = pop[0], worst = pop[0];
+		int games = 0;
+		for(GeneticChromosome chromosome : pop) {
+			double gene = chromosome.getPhenotype()[0];
+			int samples = decoder.getSamples(gene);
+			assertTrue("fitness of " + gene, Math.abs(chromosome.getFitness() - gene) <= NOISE / 2);
+			assertTrue("samples of " + gene, samples >= MIN && samples <= MAX);
+			games += samples;
+
+			if(gene < best.getPhenotype()[0])
+				best = chromosome;
+			if(gene > worst.getPhenotype()[0])
+				worst = chromosome;
+		}
+
+		assertTrue("the race used " + games + " games", games <= Math.round(BUDGET * CHROMOSOMES));
+		assertEquals("the worst chromosome was not dropped", MIN, decoder.getSamples(worst.getPhenotype()[0]));
+		assertTrue("the best chromosome was dropped", decoder.getSamples(best.getPhenotype()[0]) > MIN);
+	}
+
+	/**
+	 * The fitness of a phenotype is its gene plus uniform noise that is chosen by the
+	 * seed of the game. The decoder counts the games that each gene is played in.
+	 */
+	private static class Decoder extends GeneticDecoder {
+
+		private Map<Double, AtomicInteger> _samples;
+
+		public Decoder() {
+			super(new GeneticGene[] { new GeneticGene("x", 8, 0.0, 1.0) });
+			_samples = new ConcurrentHashMap<Double, AtomicInteger>();
+		}
+
+		public int getSamples(double gene) {
+			AtomicInteger samples = _samples.get(gene);
+			return (samples != null) ? samples.get() : 0;
+		}
+
+		@Override
+		public double getFitness(double[] phenotype) {
+			throw new UnsupportedOperationException("Games are played with seeds");
+		}
+
+		@Override
+		public double getFitness(double[] phenotype, int episode, long seed) {
+			_samples.putIfAbsent(phenotype[0], new AtomicInteger());
+			_samples.get(phenotype[0]).incrementAndGet();
+			return phenotype[0] + NOISE * (new RandomStream(seed).nextDouble() - 0.5);
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package com.ashwin.fri.genetic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * Evaluates a population with a RemoteEvaluator and two workers in the same process,
+ * one of which dies in the middle of a batch. The batch that the worker was playing
+ * is reassigned to the other worker, so every chromosome must still be evaluated,
+ * and because the games are played with common seeds, every chromosome must have
+ * exactly the fitness that a local evaluator gives it.
+ *
+ * @author ashwin
+ */
+public class RemoteEvaluatorTest {
+
+	private static final int CHROMOSOMES = 20;
+	private static final int BATCH = 2;
+	private static final int SEEDS = 2;
+	private static final int TIMEOUT = 10000;
+
+	/** The game of its first batch that the dying worker dies in. */
+	private static final int DEATH = 3;
+
+	@Test(timeout = 60000)
+	public void reassignsTheBatchOfADeadWorker() throws Exception {
+		RandomStream random = new RandomStream(378);
+		GeneticDecoder decoder = new Decoder(0);
+		GeneticChromosome[] remote = new GeneticChromosome[CHROMOSOMES];
+		GeneticChromosome[] local = new GeneticChromosome[CHROMOSOMES];
+		for(int i = 0; i < CHROMOSOMES; i++) {
+			remote[i] = new BinaryChromosome(decoder, decoder.getTotalBits(), random);
+			local[i] = remote[i].copy();
+		}
+		long[] seeds = new long[SEEDS * decoder.getEpisodes()];
+		for(int i = 0; i < seeds.length; i++)
+			seeds[i] = random.nextLong();
+
+		RemoteEvaluator evaluator = new RemoteEvaluator(decoder, 0, BATCH, TIMEOUT);
+		Decoder dying = new Decoder(DEATH);
+		Worker survivor = new Worker(new Decoder(0), evaluator.getPort());
+		Worker casualty = new Worker(dying, evaluator.getPort());
+		try {
+			survivor.start();
+			casualty.start();
+			long deadline = System.currentTimeMillis() + TIMEOUT;
+			while(evaluator.getThreads() < 2 && System.currentTimeMillis() < deadline)
+				Thread.sleep(10);
+			assertEquals("workers did not connect", 2, evaluator.getThreads());
+
+			evaluator.evaluate(remote, seeds);
+		} finally {
+			evaluator.shutdown();
+			survivor.join(TIMEOUT);
+			casualty.join(TIMEOUT);
+		}
+
+		assertTrue("the worker was not killed mid-batch", casualty._error instanceof Death);
+		assertNull("the surviving worker failed", survivor._error);
+		assertTrue("the surviving worker was not shut down", !survivor.isAlive());
+
+		GeneticEvaluator reference = new GeneticEvaluator(decoder, 1);
+		reference.evaluate(local, seeds);
+		reference.shutdown();
+		for(int i = 0; i < CHROMOSOMES; i++) {
+			assertTrue("chromosome " + i + " was not evaluated", remote[i].isEvaluated());
+			assertEquals("fitness of chromosome " + i, local[i].getFitness(), remote[i].getFitness(), 0.0);
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void drawsTheSeedOfEveryGame() throws Exception {
+		// Without common seeds, every game is played with its own seed, which must be
+		// drawn by the coordinator for the fitness to not depend on the workers.
+		RandomStream random = new RandomStream(378);
+		GeneticDecoder decoder = new Decoder(0);
+		GeneticChromosome[] remote = new GeneticChromosome[CHROMOSOMES];
+		GeneticChromosome[] local = new GeneticChromosome[CHROMOSOMES];
+		for(int i = 0; i < CHROMOSOMES; i++) {
+			remote[i] = new BinaryChromosome(decoder, decoder.getTotalBits(), random);
+			local[i] = remote[i].copy();
+		}
+
+		RemoteEvaluator evaluator = new RemoteEvaluator(decoder, 0, BATCH, TIMEOUT);
+		evaluator.getRandom().setState(378);
+		Worker[] workers = { new Worker(new Decoder(0), evaluator.getPort()), new Worker(new Decoder(0), evaluator.getPort()) };
+		try {
+			for(Worker worker : workers)
+				worker.start();
+			evaluator.evaluate(remote);
+		} finally {
+			evaluator.shutdown();
+			for(Worker worker : workers)
+				worker.join(TIMEOUT);
+		}
+
+		GeneticEvaluator reference = new GeneticEvaluator(decoder, 3);
+		reference.getRandom().setState(378);
+		reference.evaluate(local);
+		reference.shutdown();
+		for(int i = 0; i < CHROMOSOMES; i++)
+			assertEquals("fitness of chromosome " + i, local[i].getFitness(), remote[i].getFitness(), 0.0);
+		assertEquals("the coordinator and the reference drew different seeds",
+				reference.getRandom().getState(), evaluator.getRandom().getState());
+	}
+
+	@Test(timeout = 60000)
+	public void reportsTheGamesThatWorkersArePlaying() throws Exception {
+		RandomStream random = new RandomStream(378);
+		GeneticDecoder decoder = new Decoder(0);
+		GeneticChromosome[] pop = new GeneticChromosome[CHROMOSOMES];
+		for(int i = 0; i < CHROMOSOMES; i++)
+			pop[i] = new BinaryChromosome(decoder, decoder.getTotalBits(), random);
+
+		final RemoteEvaluator evaluator = new RemoteEvaluator(decoder, 0, BATCH, TIMEOUT);
+		Worker[] workers = { new Worker(new Decoder(0), evaluator.getPort()), new Worker(new Decoder(0), evaluator.getPort()) };
+		final int[] most = new int[1];
+		Thread sampler = new Thread(new Runnable() {
+			public void run() {
+				while(!Thread.currentThread().isInterrupted()) {
+					most[0] = Math.max(most[0], evaluator.getGamesInFlight());
+					Thread.yield();
+				}
+			}
+		});
+		try {
+			for(Worker worker : workers)
+				worker.start();
+			sampler.start();
+			evaluator.evaluate(pop);
+		} finally {
+			sampler.interrupt();
+			sampler.join();
+			evaluator.shutdown();
+			for(Worker worker : workers)
+				worker.join(TIMEOUT);
+		}
+
+		// Each worker evaluates a single batch at a time
+		int games = BATCH * decoder.getEpisodes();
+		assertTrue("most games in flight was " + most[0], most[0] >= games && most[0] <= 2 * games);
+		assertEquals(0, evaluator.getGamesInFlight());
+		assertTrue("the workers were never busy", evaluator.getBusyNanos() > 0);
+	}
+
+	/** Thrown by a decoder to kill its worker in the middle of a batch. */
+	private static class Death extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public Death() {
+			super("The worker died");
+		}
+	}
+
+	/**
+	 * Scores a phenotype by its distance from a target that is chosen by the seed of
+	 * the game. Games take a millisecond, so that both workers take part in the
+	 * evaluation. If the decoder is given a death, then it throws a Death in that game.
+	 */
+	private static class Decoder extends GeneticDecoder {
+
+		private int _death;
+		private AtomicInteger _games;
+
+		public Decoder(int death) {
+			super(new GeneticGene[] {
+				new GeneticGene("x", 8, -1.0, 1.0),
+				new GeneticGene("y", 8, -1.0, 1.0),
+				new GeneticGene("z", 8, -1.0, 1.0)
+			});
+			_death = death;
+			_games = new AtomicInteger();
+		}
+
+		@Override
+		public int getEpisodes() {
+			return 2;
+		}
+
+		@Override
+		public double getFitness(double[] phenotype) {
+			throw new UnsupportedOperationException("Games are played with common seeds");
+		}
+
+		@Override
+		public double getFitness(double[] phenotype, int episode, long seed) {
+			if(_games.incrementAndGet() == _death)
+				throw new Death();
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			RandomStream target = new RandomStream(seed + episode);
+			double distance = 0.0;
+			for(double gene : phenotype) {
+				double delta = gene - (target.nextDouble() * 2 - 1);
+				distance += delta * delta;
+			}
+			return distance;
+		}
+	}
+
+	/** Runs a GeneticWorker and stores the error that it stopped with. */
+	private static class Worker extends Thread {
+
+		private GeneticWorker _worker;
+		private int _port;
+		private volatile Throwable _error;
+
+		public Worker(GeneticDecoder decoder, int port) {
+			_worker = new GeneticWorker(new GeneticEvaluator(decoder, 1), 250);
+			_port = port;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				_worker.run("localhost", _port);
+			} catch (IOException | RuntimeException e) {
+				_error = e;
+			}
+		}
+	}
+}
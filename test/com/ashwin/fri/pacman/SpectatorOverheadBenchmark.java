@@ -0,0 +1,189 @@
+package com.ashwin.fri.pacman;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.ashwin.fri.neural.NeuralNet;
+import com.ashwin.fri.neural.PacManDecoder;
+import com.ashwin.fri.pacman.SpectatorFeed.Frame;
+import com.ashwin.fri.pacman.actor.Ghost.Difficulty;
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * Benchmarks the cost of watching training. The same games are evaluated by a
+ * decoder without a SpectatorFeed and by a decoder that publishes to a feed, which
+ * is read by a thread that restores every new snapshot like the thumbnails of the
+ * Spectator do. Training threads never wait for the spectator, so the cost is the
+ * processor time that the training thread spends publishing, which is measured as
+ * the thread's CPU time so that the result does not depend on how many processors
+ * the spectator competes with.
+ *
+ * The JIT compiles the games a little differently in every JVM, which can make
+ * either decoder slower by more than publishing does, so the benchmark is run in
+ * forked JVMs like JMH does, and it fails if publishing slows training down by too
+ * much in the median fork. It takes minutes and depends on the load of the machine,
+ * so it is not one of the tests (see the Benchmarks section of the README).
+ *
+ * @author ashwin
+ */
+public class SpectatorOverheadBenchmark {
+
+	/** The maximum fraction that publishing may slow training down by. */
+	private static final double OVERHEAD = 0.05;
+
+	private static final int GAMES = 24;
+	private static final int WARMUP = 3;
+	private static final int ROUNDS = 15;
+	private static final int FORKS = 5;
+
+	private double[][] _phenotypes;
+	private long[] _seeds;
+
+	@Test
+	public void publishingBarelySlowsTraining() throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<Double> overheads = new ArrayList<Double>();
+		for(int fork = 0; fork < FORKS; fork++) {
+			Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					SpectatorOverheadBenchmark.class.getName()).redirectErrorStream(true).start();
+			String line, last = null;
+			try(BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+				while((line = in.readLine()) != null)
+					last = line;
+			}
+			assertEquals("fork failed: " + last, 0, process.waitFor());
+
+			overheads.add(Double.parseDouble(last));
+		}
+
+		Collections.sort(overheads);
+		double median = overheads.get(FORKS / 2);
+		System.out.println("Overhead of publishing in each fork: " + overheads);
+		assertTrue("publishing slowed training down by " + median + " in the median fork", median < OVERHEAD);
+	}
+
+	/**
+	 * Measures the overhead of publishing in this JVM and prints it.
+	 *
+	 * @param args unused
+	 * @throws Exception maps cannot be loaded
+	 */
+	public static void main(String[] args) throws Exception {
+		System.out.println(new SpectatorOverheadBenchmark().measure());
+	}
+
+	/** @return fraction that publishing slowed training down by */
+	private double measure() throws Exception {
+		Properties props = new Properties();
+		props.setProperty("game.max.ticks", "3000");
+		props.setProperty("game.progress.window", "900");
+		props.setProperty("game.loop.visits", "12");
+
+		RandomStream random = new RandomStream(378);
+		NeuralNet net = PacManDecoder.newNet(props, random);
+		List<GameMap> maps = Arrays.asList(GameMap.load(new File("./assets/maps/classic.properties")));
+		_phenotypes = new double[GAMES][net.size()];
+		_seeds = new long[GAMES];
+		for(int i = 0; i < GAMES; i++) {
+			for(int j = 0; j < net.size(); j++)
+				_phenotypes[i][j] = random.nextDouble() * 2 * PacManDecoder.WEIGHT_BOUND - PacManDecoder.WEIGHT_BOUND;
+			_seeds[i] = random.nextLong();
+		}
+
+		PacManDecoder plain = PacManDecoder.newDecoder(props, net.copy(), maps, Arrays.asList((Difficulty) null));
+		PacManDecoder watched = PacManDecoder.newDecoder(props, net.copy(), maps, Arrays.asList((Difficulty) null));
+		SpectatorFeed feed = new SpectatorFeed(4, 100);
+		watched.setSpectatorFeed(feed);
+
+		Reader reader = new Reader(feed);
+		reader.start();
+		try {
+			// Both decoders are warmed up, and then the fastest of several alternating
+			// rounds is compared, so that neither decoder benefits from running last.
+			double[] expected = evaluate(plain, new long[1]);
+			assertArrayEquals(expected, evaluate(watched, new long[1]), 0.0);
+			for(int i = 0; i < WARMUP; i++) {
+				evaluate(plain, new long[1]);
+				evaluate(watched, new long[1]);
+			}
+
+			long without = Long.MAX_VALUE, with = Long.MAX_VALUE;
+			for(int round = 0; round < ROUNDS; round++) {
+				long[] time = new long[1];
+				assertArrayEquals(expected, evaluate(plain, time), 0.0);
+				without = Math.min(without, time[0]);
+				assertArrayEquals(expected, evaluate(watched, time), 0.0);
+				with = Math.min(with, time[0]);
+			}
+
+			assertTrue("no snapshots were read", reader._restored > 0);
+			return (double) with / without - 1.0;
+		} finally {
+			reader.interrupt();
+			reader.join();
+		}
+	}
+
+	/** Evaluates every phenotype with its seed and stores the CPU time that it took. */
+	private double[] evaluate(PacManDecoder decoder, long[] time) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		double[] fitness = new double[GAMES];
+		long start = threads.getCurrentThreadCpuTime();
+		for(int i = 0; i < GAMES; i++)
+			fitness[i] = decoder.getFitness(_phenotypes[i], 0, _seeds[i]);
+		time[0] = threads.getCurrentThreadCpuTime() - start;
+		return fitness;
+	}
+
+	/** Restores the latest snapshot of every view at the frame rate of the Spectator. */
+	private static class Reader extends Thread {
+
+		private SpectatorFeed _feed;
+		private Game[] _games;
+		private Frame[] _frames;
+		private volatile int _restored;
+
+		public Reader(SpectatorFeed feed) {
+			_feed = feed;
+			_games = new Game[feed.getViews()];
+			_frames = new Frame[feed.getViews()];
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while(!isInterrupted()) {
+				for(int i = 0; i < _frames.length; i++) {
+					Frame frame = _feed.getFrame(i);
+					if(frame == null || frame == _frames[i])
+						continue;
+					if(_games[i] == null)
+						_games[i] = frame.getMap().newGame((NeuralNet) null, frame.getMap().getDifficulty());
+					_games[i].restore(frame.getState());
+					_frames[i] = frame;
+					_restored++;
+				}
+
+				try {
+					Thread.sleep(1000 / 30);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+}
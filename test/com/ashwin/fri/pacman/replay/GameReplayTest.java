@@ -0,0 +1,123 @@
+package com.ashwin.fri.pacman.replay;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ashwin.fri.neural.PacManDecoder;
+import com.ashwin.fri.pacman.Game;
+import com.ashwin.fri.pacman.GameMap;
+import com.ashwin.fri.pacman.Termination;
+import com.ashwin.fri.pacman.termination.TerminationPolicy;
+import com.ashwin.fri.random.RandomStream;
+
+/**
+ * Records a game of a random net with keyframes every few decisions, and checks that
+ * the replay verifies against the recording, that seeking to any tick restores the
+ * same state as playing up to it, and that a tampered recording does not verify.
+ *
+ * @author ashwin
+ */
+public class GameReplayTest {
+
+	private static final String MAP = "./assets/maps/classic.properties";
+	private static final int TICKS = 1500;
+	private static final int INTERVAL = 16;
+
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	private byte[] _recording;
+	private int _ticks, _points;
+
+	@Before
+	public void setUp() throws IOException {
+		GameMap map = GameMap.load(new File(MAP));
+		Game game = map.newGame(PacManDecoder.newNet(new Properties(), new RandomStream(378)), map.getDifficulty());
+		game.addTerminationPolicy(new TerminationPolicy() {
+			public void reset() {}
+
+			public Termination check(Game game) {
+				return (game.getTicks() >= TICKS) ? Termination.TICK_BUDGET : null;
+			}
+		});
+		game.reset();
+		game.setSeed(378);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new GameRecorder(game, MAP, out, INTERVAL).record();
+		_recording = out.toByteArray();
+		_ticks = game.getTicks();
+		_points = game.getPacMan().getPoints();
+	}
+
+	@Test
+	public void replayMatchesRecording() throws IOException {
+		GameReplay replay = new GameReplay(write(_recording));
+		assertEquals(_ticks, replay.getRecordedTicks());
+		assertEquals(_points, replay.getRecordedPoints());
+		assertTrue("the replay did not match the recording", replay.verify());
+		assertEquals(_ticks, replay.getGame().getTicks());
+		assertEquals(_points, replay.getGame().getPacMan().getPoints());
+	}
+
+	@Test
+	public void seekingRestoresTheSameState() throws IOException {
+		GameReplay seeker = new GameReplay(write(_recording));
+		GameReplay player = new GameReplay(write(_recording));
+
+		// Seeks backwards and forwards across keyframes
+		int[] ticks = { _ticks / 2, 0, 1, _ticks - 1, _ticks / 3, _ticks, 7 * _ticks / 8 };
+		for(int tick : ticks) {
+			player.seek(0);
+			Game game = player.getGame();
+			while(game.isRunning() && game.getTicks() < tick)
+				game.tick();
+
+			seeker.seek(tick);
+			assertArrayEquals("state at tick " + tick, state(game), state(seeker.getGame()));
+		}
+	}
+
+	@Test
+	public void tamperedRecordingDoesNotVerify() throws IOException {
+		// The trailer ends with the ticks, points, whether PacMan won and the termination,
+		// so this changes the lowest byte of the recorded ticks
+		byte[] tampered = _recording.clone();
+		tampered[tampered.length - 10]++;
+		assertFalse("a tampered recording verified", new GameReplay(write(tampered)).verify());
+	}
+
+	private File write(byte[] recording) throws IOException {
+		File file = _folder.newFile();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(recording);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static byte[] state(Game game) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		game.snapshot().write(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+}